@@ -84,6 +84,7 @@ public final class AdvancedPanel extends javax.swing.JPanel
         cb_debugBuiltSequence = new javax.swing.JCheckBox();
         btn_resetSettings = new javax.swing.JButton();
         cb_noAnalytics = new javax.swing.JCheckBox();
+        cb_preciseMidiTiming = new javax.swing.JCheckBox();
         jScrollPane1 = new javax.swing.JScrollPane();
         helpTextArea = new org.jjazz.flatcomponents.api.HelpTextArea();
 
@@ -222,6 +223,9 @@ public final class AdvancedPanel extends javax.swing.JPanel
         org.openide.awt.Mnemonics.setLocalizedText(cb_noAnalytics, ResUtil.getString(getClass(),"AdvancedPanel.cb_noAnalytics.text", new Object[] {})); // NOI18N
         cb_noAnalytics.setToolTipText(ResUtil.getString(getClass(),"AdvancedPanel.cb_noAnalytics.toolTipText", new Object[] {})); // NOI18N
 
+        org.openide.awt.Mnemonics.setLocalizedText(cb_preciseMidiTiming, org.openide.util.NbBundle.getMessage(AdvancedPanel.class, "AdvancedPanel.cb_preciseMidiTiming.text")); // NOI18N
+        cb_preciseMidiTiming.setToolTipText(org.openide.util.NbBundle.getMessage(AdvancedPanel.class, "AdvancedPanel.cb_preciseMidiTiming.toolTipText")); // NOI18N
+
         jScrollPane1.setBackground(null);
         jScrollPane1.setBorder(null);
 
@@ -242,6 +246,9 @@ public final class AdvancedPanel extends javax.swing.JPanel
                     .addGroup(layout.createSequentialGroup()
                         .addComponent(btn_resetSettings)
                         .addGap(0, 0, Short.MAX_VALUE))
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(cb_preciseMidiTiming)
+                        .addGap(0, 0, Short.MAX_VALUE))
                     .addGroup(layout.createSequentialGroup()
                         .addComponent(cb_noAnalytics)
                         .addGap(18, 18, 18)
@@ -254,6 +261,8 @@ public final class AdvancedPanel extends javax.swing.JPanel
                 .addContainerGap()
                 .addComponent(btn_resetSettings)
                 .addGap(18, 18, 18)
+                .addComponent(cb_preciseMidiTiming)
+                .addGap(18, 18, 18)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addGroup(layout.createSequentialGroup()
                         .addComponent(cb_noAnalytics)
@@ -351,6 +360,7 @@ public final class AdvancedPanel extends javax.swing.JPanel
         cb_logMidiOut.setSelected(JJazzMidiSystem.getInstance().getMidiOutLogConfig().contains(MidiFilter.ConfigLog.LOG_PASSED_MESSAGES));
         cb_debugBuiltSequence.setSelected(MusicController.getInstance().isDebugPlayedSequence());
         cb_noAnalytics.setSelected(!Analytics.getInstance().isEnabled());
+        cb_preciseMidiTiming.setSelected(JJazzMidiSystem.getInstance().isPreciseSequencerTiming());
 
     }
 
@@ -373,6 +383,7 @@ public final class AdvancedPanel extends javax.swing.JPanel
         MusicController.getInstance().setDebugPlayedSequence(cb_debugBuiltSequence.isSelected());
 
         Analytics.getInstance().setEnabled(!cb_noAnalytics.isSelected());
+        JJazzMidiSystem.getInstance().setPreciseSequencerTiming(cb_preciseMidiTiming.isSelected());
     }
 
     boolean valid()
@@ -425,6 +436,7 @@ public final class AdvancedPanel extends javax.swing.JPanel
     private javax.swing.JCheckBox cb_logMidiOut;
     private javax.swing.JComboBox<Level> cb_loggerLevel;
     private javax.swing.JCheckBox cb_noAnalytics;
+    private javax.swing.JCheckBox cb_preciseMidiTiming;
     private org.jjazz.flatcomponents.api.HelpTextArea helpTextArea;
     private javax.swing.JLabel jLabel1;
     private javax.swing.JPanel jPanel2;
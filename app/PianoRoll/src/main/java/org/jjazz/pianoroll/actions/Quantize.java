@@ -99,8 +99,12 @@ public class Quantize extends AbstractAction
                 mapNotePos.put(ne, newPosInBeats);
             }
         }
-        editor.getModel().moveAll(mapNotePos, false);
-        editor.getModel().replaceAll(mapOldNew, false);
+        var phrase = editor.getModel();
+        phrase.runInBatch(() ->
+        {
+            phrase.moveAll(mapNotePos, false);
+            phrase.replaceAll(mapOldNew, false);
+        });
 
 
         editor.getUndoManager().endCEdit(undoText);
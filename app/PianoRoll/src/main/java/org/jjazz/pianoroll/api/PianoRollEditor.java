@@ -1152,6 +1152,23 @@ public class PianoRollEditor extends JPanel implements PropertyChangeListener
                     velocityPanel.revalidate();
                     velocityPanel.repaint();
                 }
+                case Phrase.PROP_NOTES_CHANGED, Phrase.PROP_NOTES_CHANGED_ADJUSTING ->
+                {
+                    var change = (Phrase.NotesChange) evt.getNewValue();
+                    removeNotes(change.removed());
+                    var mapOldNew = change.replaced();
+                    for (var oldNe : mapOldNew.keySet())
+                    {
+                        var newNe = mapOldNew.get(oldNe);
+                        notesPanel.setNoteViewModel(oldNe, newNe);
+                        velocityPanel.setNoteViewModel(oldNe, newNe);
+                    }
+                    addNotes(change.added());
+                    notesPanel.revalidate();
+                    notesPanel.repaint();
+                    velocityPanel.revalidate();
+                    velocityPanel.repaint();
+                }
                 default ->
                 {
                 }
@@ -22,43 +22,72 @@
  */
 package org.jjazz.rhythmdatabaseimpl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jjazz.filedirectorymanager.api.FileDirectoryManager;
+import org.jjazz.rhythm.api.Rhythm;
 import org.jjazz.rhythm.spi.RhythmProvider;
 import org.jjazz.rhythmdatabase.api.RhythmInfo;
 import org.jjazz.rhythmdatabase.api.RhythmDatabase;
+import org.jjazz.utilities.api.MultipleErrorsReport;
 
 /**
- * Contains the serializable cached data of the RhythmDatabase.
+ * Contains the cached data of the RhythmDatabase.
  * <p>
- * Cache file contains only file-based RhythmInfo instances and no AdaptedRhythms.
+ * Cache file contains only file-based RhythmInfo instances and no AdaptedRhythms. RhythmInfos are grouped by rhythm file, each file is stored with a
+ * fingerprint (RhythmProvider id, path, size, last modification time) so that only new or modified rhythm files need to be read again when the cache is
+ * loaded.
+ * <p>
+ * The file format is a compact binary format (see RhythmInfo.writeTo()) starting with a magic number and a format version. A cache file with a different
+ * format version can't be loaded.
  */
-public class RhythmDbCache implements Serializable
+public class RhythmDbCache
 {
 
-    private static final long serialVersionUID = 2922229276100L;
-    private static final String DB_CACHE_FILE = "RhythmDbCache.dat";
-
-    private Map<String, List<RhythmInfo>> savedData;
-    private transient static final Logger LOGGER = Logger.getLogger(RhythmDbCache.class.getSimpleName());
+    /**
+     * The result of loadFromFile().
+     *
+     * @param nbReusedFiles  Number of unchanged rhythm files whose RhythmInfos were reused from the cache
+     * @param nbReadFiles    Number of new or modified rhythm files which were read
+     * @param nbRemovedFiles Number of cached rhythm files which do not exist anymore
+     * @param nbAdded        Number of rhythms added to the database
+     */
+    public record LoadResult(int nbReusedFiles, int nbReadFiles, int nbRemovedFiles, int nbAdded)
+            {
 
-    public RhythmDbCache()
-    {
+        /**
+         * @return True if the cache file does not match anymore the rhythm files.
+         */
+        public boolean isCacheObsolete()
+        {
+            return nbReadFiles > 0 || nbRemovedFiles > 0;
+        }
     }
 
+    private static final String DB_CACHE_FILE = "RhythmDbCache.dat";
+    private static final int MAGIC_NUMBER = 0x4A4A5244;     // "JJRD"
+    /**
+     * Must be increased each time the file format changes, including RhythmInfo.writeTo().
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private final List<FileEntry> fileEntries;
+    private static final Logger LOGGER = Logger.getLogger(RhythmDbCache.class.getSimpleName());
+
     /**
      * Create a cache object for the specified database.
      * <p>
@@ -66,22 +95,30 @@ public class RhythmDbCache implements Serializable
      */
     public RhythmDbCache(RhythmDatabase rdb)
     {
-        savedData = new HashMap<>();
+        fileEntries = new ArrayList<>();
 
-        // Copy data : just change RhythmProvider by its id
         for (var rp : rdb.getRhythmProviders())
         {
-            var rhythms = new ArrayList<>(rdb.getRhythms(rp) // Use ArrayList because returned object by toList() might not be serializable     
+            String rpId = rp.getInfo().getUniqueId();
+
+            // Group the RhythmInfos by file
+            Map<File, List<RhythmInfo>> mapFileRhythmInfos = new LinkedHashMap<>();
+            rdb.getRhythms(rp)
                     .stream()
                     .filter(ri -> !ri.file().getName().equals("") && !ri.isAdaptedRhythm())
-                    .toList());
-            if (!rhythms.isEmpty())
+                    .forEach(ri -> mapFileRhythmInfos.computeIfAbsent(ri.file(), f -> new ArrayList<>()).add(ri));
+
+            for (var file : mapFileRhythmInfos.keySet())
             {
-                savedData.put(rp.getInfo().getUniqueId(), rhythms);
+                fileEntries.add(new FileEntry(rpId, file, file.length(), file.lastModified(), mapFileRhythmInfos.get(file)));
             }
         }
     }
 
+    private RhythmDbCache(List<FileEntry> fileEntries)
+    {
+        this.fileEntries = fileEntries;
+    }
 
     /**
      * Write the cache file.
@@ -93,9 +130,23 @@ public class RhythmDbCache implements Serializable
     {
         Objects.requireNonNull(file);
 
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file)))
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
         {
-            oos.writeObject(this);
+            dos.writeInt(MAGIC_NUMBER);
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeInt(fileEntries.size());
+            for (var fe : fileEntries)
+            {
+                dos.writeUTF(fe.rpId());
+                dos.writeUTF(fe.file().getPath());
+                dos.writeLong(fe.size());
+                dos.writeLong(fe.lastModified());
+                dos.writeInt(fe.rhythmInfos().size());
+                for (var ri : fe.rhythmInfos())
+                {
+                    ri.writeTo(dos);
+                }
+            }
         }
     }
 
@@ -103,12 +154,16 @@ public class RhythmDbCache implements Serializable
     public void dump()
     {
         LOGGER.info("dump():");
-        for (String rpId : savedData.keySet())
+        Map<String, Integer> mapRpIdCount = new LinkedHashMap<>();
+        for (var fe : fileEntries)
+        {
+            mapRpIdCount.merge(fe.rpId(), fe.rhythmInfos().size(), Integer::sum);
+        }
+        for (String rpId : mapRpIdCount.keySet())
         {
-            var rhythms = savedData.get(rpId);
             LOGGER.log(Level.INFO, "- {0}: total={1}", new Object[]
             {
-                rpId, rhythms.size()
+                rpId, mapRpIdCount.get(rpId)
             });
         }
     }
@@ -121,67 +176,132 @@ public class RhythmDbCache implements Serializable
     public int getSize()
     {
         int n = 0;
-        for (String rpId : this.savedData.keySet())
+        for (var fe : fileEntries)
         {
-            n += savedData.get(rpId).size();
+            n += fe.rhythmInfos().size();
         }
         return n;
     }
 
     /**
-     * Read a cache file to update the specified database accordingly.
+     * Read a cache file to update the specified database accordingly, re-reading only the new or modified rhythm files.
+     * <p>
+     * For each RhythmProvider of rdb:<br>
+     * - RhythmInfos of unchanged files (same path, size and last modification time) are directly added to rdb<br>
+     * - new or modified files are read with RhythmProvider.readFastAll()<br>
+     * - cached files which do not exist anymore are dropped.<br>
+     * If RhythmProvider.getFileRhythmFiles() returns null, its file-based rhythms are retrieved with RhythmProvider.getFileRhythms(true, errRpt).
      *
      * @param f
      * @param rdb
-     * @return Number of rhythms successfully added to rdb
-     * @throws java.io.IOException
-     * @throws java.lang.ClassNotFoundException
+     * @param errRpt Updated with the rhythm files reading errors
+     * @return
+     * @throws java.io.IOException If cache file could not be read, e.g. because of an unsupported format version. rdb is not modified in this case.
      */
-    static public int loadFromFile(File f, RhythmDatabase rdb) throws IOException, ClassNotFoundException
+    static public LoadResult loadFromFile(File f, RhythmDatabase rdb, MultipleErrorsReport errRpt) throws IOException
     {
+        Objects.requireNonNull(errRpt);
 
-        // Read the file
-        RhythmDbCache cache;
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(f)))
+        RhythmDbCache cache = readFile(f);       // throws IOException
+
+
+        // Index the cached data by rpId and file path
+        Map<String, Map<String, FileEntry>> mapRpIdEntries = new HashMap<>();
+        for (var fe : cache.fileEntries)
         {
-            cache = (RhythmDbCache) ois.readObject();           // throws IOException, possibly ClassNotFoundException
+            mapRpIdEntries.computeIfAbsent(fe.rpId(), rpId -> new HashMap<>()).put(fe.file().getPath(), fe);
         }
 
 
-        // Process it
-        var rps = RhythmProvider.getRhythmProviders();
-        int added = 0;
-        for (String rpId : cache.savedData.keySet())
+        int nbReused = 0;
+        int nbRead = 0;
+        int nbRemoved = 0;
+        int nbAdded = 0;
+        for (var rp : rdb.getRhythmProviders())
         {
-            List<RhythmInfo> rhythmInfos = cache.savedData.get(rpId);
-
+            String rpId = rp.getInfo().getUniqueId();
+            Map<String, FileEntry> mapPathEntry = mapRpIdEntries.remove(rpId);
+            if (mapPathEntry == null)
+            {
+                mapPathEntry = new HashMap<>();
+            }
 
-            // Check that database is using this RhythmProvider
-            var rp = rps.stream()
-                    .filter(rpi -> rpi.getInfo().getUniqueId().equals(rpId))
-                    .findAny()
-                    .orElse(null);
-            if (rp == null)
+            List<File> files = rp.getFileRhythmFiles();
+            if (files == null)
             {
-                LOGGER.log(Level.WARNING, "loadFromFile() No RhythmProvider found for rpId={0}. Ignoring {1} rhythms.", new Object[]
+                // RhythmProvider can not list its files, we can't use the cache
+                var rhythms = rp.getFileRhythms(true, errRpt);
+                for (var r : rhythms)
                 {
-                    rpId,
-                    rhythmInfos.size()
-                });
+                    if (rdb.addRhythmInstance(rp, r))
+                    {
+                        nbAdded++;
+                    }
+                }
+                nbRead += rhythms.size();
                 continue;
             }
 
-            // Update database
-            for (var ri : rhythmInfos)
+
+            // Reuse the up to date entries, collect the new or modified files
+            List<File> filesToRead = new ArrayList<>();
+            for (var file : files)
             {
-                if (rdb.addRhythm(rp, ri))
+                FileEntry fe = mapPathEntry.remove(file.getPath());
+                if (fe != null && fe.isUpToDate())
+                {
+                    for (var ri : fe.rhythmInfos())
+                    {
+                        if (rdb.addRhythm(rp, ri))
+                        {
+                            nbAdded++;
+                        }
+                    }
+                    nbReused++;
+                } else
                 {
-                    added++;
+                    filesToRead.add(file);
                 }
             }
+            nbRemoved += mapPathEntry.size();       // Files which are not used anymore by rp
+
+
+            if (!filesToRead.isEmpty())
+            {
+                LOGGER.log(Level.INFO, "loadFromFile() rpId={0}: reading {1} new or modified rhythm files", new Object[]
+                {
+                    rpId, filesToRead.size()
+                });
+                for (Rhythm r : rp.readFastAll(filesToRead, errRpt))
+                {
+                    if (rdb.addRhythmInstance(rp, r))
+                    {
+                        nbAdded++;
+                    }
+                }
+                nbRead += filesToRead.size();
+            }
         }
 
-        return added;
+
+        // Remaining entries belong to unavailable RhythmProviders
+        for (String rpId : mapRpIdEntries.keySet())
+        {
+            LOGGER.log(Level.WARNING, "loadFromFile() No RhythmProvider found for rpId={0}. Ignoring {1} rhythm files.", new Object[]
+            {
+                rpId,
+                mapRpIdEntries.get(rpId).size()
+            });
+            nbRemoved += mapRpIdEntries.get(rpId).size();
+        }
+
+
+        if (!errRpt.individualErrorMessages.isEmpty() && errRpt.primaryErrorMessage == null)
+        {
+            errRpt.primaryErrorMessage = errRpt.individualErrorMessages.size() + " rhythm files could not be read.";
+        }
+
+        return new LoadResult(nbReused, nbRead, nbRemoved, nbAdded);
     }
 
     static public File getDefaultFile()
@@ -194,5 +314,65 @@ public class RhythmDbCache implements Serializable
     // =========================================================================
     // Private methods
     // =========================================================================   
+    /**
+     * Read the cache file.
+     *
+     * @param f
+     * @return
+     * @throws IOException If format is invalid or unsupported
+     */
+    static private RhythmDbCache readFile(File f) throws IOException
+    {
+        List<FileEntry> entries = new ArrayList<>();
+
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(f))))
+        {
+            int magic = dis.readInt();
+            if (magic != MAGIC_NUMBER)
+            {
+                throw new IOException("Invalid cache file (magic number=" + Integer.toHexString(magic) + "): " + f.getAbsolutePath());
+            }
+            int version = dis.readInt();
+            if (version != FORMAT_VERSION)
+            {
+                throw new IOException("Unsupported cache file format version=" + version + " (expected=" + FORMAT_VERSION + ")");
+            }
+
+            int nbEntries = dis.readInt();
+            for (int i = 0; i < nbEntries; i++)
+            {
+                String rpId = dis.readUTF();
+                File file = new File(dis.readUTF());
+                long size = dis.readLong();
+                long lastModified = dis.readLong();
+                int nbRhythmInfos = dis.readInt();
+                List<RhythmInfo> rhythmInfos = new ArrayList<>();
+                for (int j = 0; j < nbRhythmInfos; j++)
+                {
+                    rhythmInfos.add(RhythmInfo.readFrom(dis));
+                }
+                entries.add(new FileEntry(rpId, file, size, lastModified, rhythmInfos));
+            }
+        }
+
+        return new RhythmDbCache(entries);
+    }
+
+    // =========================================================================
+    // Inner classes
+    // =========================================================================   
+    /**
+     * The cached RhythmInfos of a rhythm file, with the file fingerprint.
+     */
+    private record FileEntry(String rpId, File file, long size, long lastModified, List<RhythmInfo> rhythmInfos)
+            {
 
+        /**
+         * @return True if file still exists with the same size and last modification time.
+         */
+        boolean isUpToDate()
+        {
+            return file.isFile() && file.length() == size && file.lastModified() == lastModified;
+        }
+    }
 }
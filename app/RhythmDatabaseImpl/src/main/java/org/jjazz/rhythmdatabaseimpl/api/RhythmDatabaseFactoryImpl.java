@@ -52,7 +52,6 @@ import org.netbeans.api.annotations.common.StaticResource;
 import org.netbeans.api.progress.ProgressHandle;
 import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
-import org.openide.util.Exceptions;
 import org.openide.util.Lookup;
 import org.openide.util.NbPreferences;
 
@@ -66,7 +65,7 @@ import org.openide.util.NbPreferences;
  * - save the file-based RhythmInfos to a cache file.<p>
  * Then upon normal start:<br>
  * - retrieve all available builtin rhythm instances by polling RhythmProviders, create the corresponding RhythmInfos.<br>
- * - load additional file-based RhythmInfos from the cache file<br>
+ * - load additional file-based RhythmInfos from the cache file, only new or modified rhythm files are read (cache file is then updated)<br>
  * - create Rhythm instances only when required.<p>
  */
 @ServiceProvider(service = RhythmDatabaseFactory.class)
@@ -234,7 +233,7 @@ public class RhythmDatabaseFactoryImpl implements RhythmDatabaseFactory, Propert
 
 
             // Poll RhythmProviders
-            MultipleErrorsReport errReport = dbInstance.addRhythmsFromRhythmProviders(false, false, true);
+            MultipleErrorsReport errReport = dbInstance.addRhythmsFromRhythmProviders(false, false, true, progressMsg -> ph.progress(progressMsg));
 
 
             // Save cache file
@@ -276,13 +275,30 @@ public class RhythmDatabaseFactoryImpl implements RhythmDatabaseFactory, Propert
             }
 
 
-            // Read cache
+            // Read cache, only new or modified rhythm files are read
             msg = ResUtil.getString(getClass(), "CTL_ReadingRhythmDbCacheFile");
             ph.progress(msg);
             try
             {
-                int added = RhythmDbCache.loadFromFile(RhythmDbCache.getDefaultFile(), dbInstance);
-                LOGGER.log(Level.INFO, "doInitialization() Successfully added {0} RhythmInfos from the cache to the database", added);
+                MultipleErrorsReport fileErrReport = new MultipleErrorsReport();
+                var res = RhythmDbCache.loadFromFile(RhythmDbCache.getDefaultFile(), dbInstance, fileErrReport);
+                LOGGER.log(Level.INFO, "doInitialization() Successfully added {0} RhythmInfos from the cache to the database. {1}", new Object[]
+                {
+                    res.nbAdded(), res
+                });
+
+                if (res.isCacheObsolete())
+                {
+                    writeCacheInSeparateThread();
+                }
+
+                // Notify errors
+                if (fileErrReport.primaryErrorMessage != null)
+                {
+                    SwingUtilities.invokeLater(()
+                            -> new MultipleErrorsReportDialog(ResUtil.getString(getClass(), "CTL_FileBasedRhythmErrors"), fileErrReport).setVisible(true)
+                    );
+                }
 
             } catch (IOException ex)
             {
@@ -290,12 +306,8 @@ public class RhythmDatabaseFactoryImpl implements RhythmDatabaseFactory, Propert
 
                 // Start a full scan (except for built-in rhythms since we already have them)
                 ph.progress(msgScanAll);
-                dbInstance.addRhythmsFromRhythmProviders(true, false, true);     // Ignore errors
+                dbInstance.addRhythmsFromRhythmProviders(true, false, true, progressMsg -> ph.progress(progressMsg));     // Ignore errors
                 writeCacheInSeparateThread();
-
-            } catch (ClassNotFoundException ex)
-            {
-                Exceptions.printStackTrace(ex);
             }
 
             ph.finish();
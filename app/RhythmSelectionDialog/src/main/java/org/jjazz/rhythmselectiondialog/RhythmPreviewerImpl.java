@@ -50,6 +50,7 @@ import org.jjazz.rhythm.api.AdaptedRhythm;
 import org.jjazz.rhythm.api.MusicGenerationException;
 import org.jjazz.rhythm.api.Rhythm;
 import org.jjazz.rhythm.api.RhythmParameter;
+import org.jjazz.rhythm.api.RhythmResourcesCache;
 import org.jjazz.song.api.Song;
 import org.jjazz.song.api.SongFactory;
 import org.jjazz.songcontext.api.SongContext;
@@ -101,10 +102,11 @@ public class RhythmPreviewerImpl implements RhythmPreviewer
         MusicController.getInstance().stop();
 
 
-        // Release resources of all previewed rhythms
+        // Release resources of all previewed rhythms, except those pinned by an opened song or an export
+        var cache = RhythmResourcesCache.getInstance();
         for (Rhythm r : previewedRhythms)
         {
-            r.releaseResources();
+            cache.releaseResources(r);
         }
 
         if (session != null)
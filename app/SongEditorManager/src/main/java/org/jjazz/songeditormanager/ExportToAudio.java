@@ -24,13 +24,12 @@ package org.jjazz.songeditormanager;
 
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.sound.midi.Sequence;
 import javax.swing.AbstractAction;
 import javax.swing.JCheckBox;
 import javax.swing.JFileChooser;
@@ -57,7 +56,6 @@ import org.openide.awt.ActionReference;
 import org.openide.awt.ActionReferences;
 import org.openide.awt.ActionRegistration;
 import org.openide.awt.StatusDisplayer;
-import org.openide.util.Exceptions;
 import org.openide.windows.WindowManager;
 
 /**
@@ -181,21 +179,6 @@ public class ExportToAudio extends AbstractAction
         Analytics.logEvent("Export audio", Analytics.buildMap("separateTracks", separateTracks));
 
 
-        // Prepare temporary files
-        final File tmpMidiFile;
-        final File tmpWavFile;
-        try
-        {
-            tmpMidiFile = Files.createTempFile(songNameNoBlank, ".mid").toFile();
-            tmpWavFile = isMp3 ? Files.createTempFile(songNameNoBlank, ".wav").toFile() : null;
-        } catch (IOException ex)
-        {
-            // Should never happen
-            Exceptions.printStackTrace(ex);
-            return;
-        }
-
-
         // Prepare the MidiMixes
         List<MidiMix> midiMixes = Arrays.asList(midiMix);           // By default export the whole song as is
         if (separateTracks)
@@ -240,50 +223,33 @@ public class ExportToAudio extends AbstractAction
                     }
 
                     // Generate
-                    if (!SongMidiExporter.songToMidiFile(song, mm, tmpMidiFile, null))        // Notifies user if error occurs while exporting
-                    {
-                        return;
-                    }
-                    if (tmpMidiFile.length() < 10)                      // Robustness
+                    Sequence sequence = SongMidiExporter.songToSequence(song, mm, null);        // Notifies user if error occurs
+                    if (sequence == null)
                     {
-                        errorMessage = ResUtil.getString(getClass(), "ErrorGeneratingAudioFile",
-                                file.getAbsolutePath(),
-                                "temporary Midi file is empty " + tmpMidiFile.getAbsolutePath());
                         return;
                     }
 
-                    // Generate the wav file
-                    File wavFile = isMp3 ? tmpWavFile : file;
+                    // Render the wav file, or stream the audio data to the mp3 encoder
                     try
                     {
-                        synth.generateWavFile(tmpMidiFile, wavFile);
-                        if (wavFile.length() < 10)
+                        if (isMp3)
+                        {
+                            var mp3Encoder = Mp3EncoderProvider.getDefault();
+                            assert mp3Encoder != null;
+                            synth.generateAudio(sequence, mp3Encoder.createPcmConsumer(file, false, false));
+                        } else
+                        {
+                            synth.generateWavFile(sequence, file);
+                        }
+                        if (file.length() < 10)
                         {
                             throw new EmbeddedSynthException("generated file is empty");        // Robustness
                         }
                     } catch (EmbeddedSynthException ex)
                     {
-                        errorMessage = ResUtil.getString(getClass(), "ErrorGeneratingAudioFile", wavFile.getAbsolutePath(), ex.getLocalizedMessage());
+                        errorMessage = ResUtil.getString(getClass(), "ErrorGeneratingAudioFile", file.getAbsolutePath(), ex.getLocalizedMessage());
                         return;
                     }
-
-                    if (isMp3)
-                    {
-                        var mp3Encoder = Mp3EncoderProvider.getDefault();
-                        assert mp3Encoder != null;
-                        try
-                        {
-                            mp3Encoder.encode(wavFile, file, false, false);
-                            if (file.length() == 0)
-                            {
-                                throw new EmbeddedSynthException("generated file is empty");
-                            }
-                        } catch (EmbeddedSynthException ex)
-                        {
-                            errorMessage = ResUtil.getString(getClass(), "ErrorGeneratingAudioFile", file.getAbsolutePath(), ex.getLocalizedMessage());
-                            return;
-                        }
-                    }
                 }
             }
         }
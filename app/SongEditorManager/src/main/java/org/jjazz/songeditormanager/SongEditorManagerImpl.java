@@ -47,6 +47,8 @@ import org.jjazz.phrase.api.Phrase;
 import org.jjazz.pianoroll.api.PianoRollEditor;
 import org.jjazz.pianoroll.api.PianoRollEditorTopComponent;
 import org.jjazz.pianoroll.spi.PianoRollEditorSettings;
+import org.jjazz.rhythm.api.Rhythm;
+import org.jjazz.rhythm.api.RhythmResourcesCache;
 import org.jjazz.rhythm.api.RhythmVoice;
 import org.jjazz.rhythm.api.rhythmparameters.RP_SYS_CustomPhrase;
 import org.jjazz.rhythm.api.rhythmparameters.RP_SYS_CustomPhraseValue;
@@ -77,6 +79,10 @@ public class SongEditorManagerImpl implements SongEditorManager, PropertyChangeL
 {
 
     private final HashMap<Song, SongEditorSet> mapSongEditors;       // Don't use WeakHashMap here
+    /**
+     * The rhythms pinned in the RhythmResourcesCache for each opened song.
+     */
+    private final HashMap<Song, List<Rhythm>> mapSongPinnedRhythms = new HashMap<>();
     private final transient PropertyChangeSupport pcs = new java.beans.PropertyChangeSupport(this);
     private static final Logger LOGGER = Logger.getLogger(SongEditorManager.class.getSimpleName());
 
@@ -192,6 +198,7 @@ public class SongEditorManagerImpl implements SongEditorManager, PropertyChangeL
 
 
             song.addPropertyChangeListener(SongEditorManagerImpl.this);
+            updatePinnedRhythms(song);
             pcs.firePropertyChange(PROP_SONG_OPENED, false, song);
 
 
@@ -654,6 +661,10 @@ public class SongEditorManagerImpl implements SongEditorManager, PropertyChangeL
             if (evt.getPropertyName().equals(Song.PROP_MODIFIED_OR_SAVED_OR_RESET) && evt.getOldValue() == Boolean.TRUE && evt.getNewValue() == Boolean.FALSE)
             {
                 songSaved(s);
+            } else if (evt.getPropertyName().equals(Song.PROP_MODIFIED_OR_SAVED_OR_RESET) && evt.getNewValue() == Boolean.TRUE)
+            {
+                // Song rhythms might have changed
+                updatePinnedRhythms(s);
             }
         }
     }
@@ -717,12 +728,39 @@ public class SongEditorManagerImpl implements SongEditorManager, PropertyChangeL
         song.removePropertyChangeListener(this);
         song.removeUndoableEditListener(JJazzUndoManagerFinder.getDefault().get(song));
         mapSongEditors.remove(song);
+        var pinnedRhythms = mapSongPinnedRhythms.remove(song);
+        if (pinnedRhythms != null)
+        {
+            pinnedRhythms.forEach(r -> RhythmResourcesCache.getInstance().unpin(r));
+        }
         pcs.firePropertyChange(PROP_SONG_CLOSED, false, song); // Event used for example by RecentSongProvider
-        song.close(true);  // This will trigger an "activeSong=null" event from the ActiveSongManager
+        // Don't release the rhythm resources: they might be pinned by another song or by an export, RhythmResourcesCache evicts them when needed
+        song.close(false);  // This will trigger an "activeSong=null" event from the ActiveSongManager
         findSongToBeActivated();
     }
 
 
+    /**
+     * Pin the rhythms used by an opened song so that their resources are not evicted from the RhythmResourcesCache.
+     *
+     * @param song
+     */
+    private void updatePinnedRhythms(Song song)
+    {
+        var rhythms = song.getSongStructure().getUniqueRhythms(false, false);
+        var oldRhythms = mapSongPinnedRhythms.put(song, rhythms);
+        if (rhythms.equals(oldRhythms))
+        {
+            return;
+        }
+        var cache = RhythmResourcesCache.getInstance();
+        rhythms.forEach(r -> cache.pin(r));
+        if (oldRhythms != null)
+        {
+            oldRhythms.forEach(r -> cache.unpin(r));
+        }
+    }
+
     /**
      * Show the PianoRollEditorTopComponent for the specified song.
      * <p>
@@ -0,0 +1,626 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.songeditormanager.api;
+
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Sequence;
+import org.jjazz.embeddedsynth.api.EmbeddedSynth;
+import org.jjazz.embeddedsynth.api.Mp3Encoder;
+import org.jjazz.embeddedsynth.api.PcmConsumer;
+import org.jjazz.embeddedsynth.api.WavFileWriter;
+import org.jjazz.embeddedsynth.spi.Mp3EncoderProvider;
+import org.jjazz.midimix.api.BinarySongFile;
+import org.jjazz.midimix.api.MidiMix;
+import org.jjazz.midimix.spi.MidiMixManager;
+import org.jjazz.rhythm.api.MusicGenerationException;
+import org.jjazz.rhythmmusicgeneration.api.SongSequenceBuilder;
+import org.jjazz.song.api.Song;
+import org.jjazz.song.api.SongCreationException;
+import org.jjazz.songcontext.api.SongContext;
+import org.jjazz.utilities.api.Utilities;
+
+/**
+ * Headless export of many song files to Midi, wav and/or mp3 files.
+ * <p>
+ * Each song goes through a pipeline: load → SongSequenceBuilder.buildAll() → Midi file → embedded synth audio rendering (directly from the Midi
+ * sequence). The rendered audio is streamed to the wav file and/or to the mp3 encoder, no intermediate .wav file is used for a mp3-only export. Load,
+ * music generation and Midi writing run on a bounded thread pool. Audio rendering also uses this pool if the synth supports concurrent rendering,
+ * otherwise it is serialized on a dedicated thread. The number of songs in the pipeline is bounded so that memory use does not depend on the number of
+ * songs to export.
+ * <p>
+ * Songs using the same Rhythm instance can be built in parallel: SongSequenceBuilder serializes the music generation of each Rhythm instance.
+ * <p>
+ * No dialog is ever shown: errors are reported in the returned Results. Output files are written to a temporary file in the output directory then renamed,
+ * so an interrupted export never leaves a truncated output file. Songs whose outputs are all more recent than the song file (and its mix file if any) are
+ * skipped, which lets an interrupted batch resume where it stopped. Note that changes in the rhythm files used by a song are not tracked.
+ * <p>
+ * Exported songs are not registered in the SongFactory and are closed once exported.
+ */
+public class BatchExporter
+{
+
+    public enum Format
+    {
+        MIDI("mid"), WAV("wav"), MP3("mp3");
+
+        private final String extension;
+
+        private Format(String ext)
+        {
+            this.extension = ext;
+        }
+
+        public String getExtension()
+        {
+            return extension;
+        }
+    }
+
+    public enum Stage
+    {
+        LOAD, BUILD, MIDI,
+        /**
+         * Audio rendering, including the streamed wav writing and mp3 encoding.
+         */
+        AUDIO
+    }
+
+    public enum Status
+    {
+        EXPORTED, UP_TO_DATE, FAILED, CANCELLED
+    }
+
+    /**
+     * The result of a song export.
+     *
+     * @param songFile
+     * @param status
+     * @param stageTimesMs The time spent in each executed stage, in milliseconds. Waiting time between stages is not counted.
+     * @param errorMessage Null unless status is FAILED.
+     */
+    public record Result(File songFile, Status status, Map<Stage, Long> stageTimesMs, String errorMessage)
+            {
+
+    }
+
+    private static final String PART_EXTENSION = ".part";
+    /**
+     * Song loading and mix creation rely on shared non thread-safe instances (MidiMixManager, rhythm database lazy loading).
+     */
+    private static final Object LOAD_LOCK = new Object();
+    private final File outputDir;
+    private final Set<Format> formats;
+    private final int nbThreads;
+    private final EmbeddedSynth synth;
+    private final Mp3Encoder mp3Encoder;
+    private volatile boolean cancelled;
+    private static final Logger LOGGER = Logger.getLogger(BatchExporter.class.getSimpleName());
+
+    /**
+     * Create an exporter which uses the default Mp3Encoder.
+     *
+     * @param outputDir           The directory where output files are written, created if needed. Output file names are the song file name with the
+     *                            format extension.
+     * @param formats             Can't be empty
+     * @param nbThreads           The max number of songs processed in parallel. Wav rendering is sequential if synth does not support concurrent
+     *                            rendering. Must be &gt; 0.
+     * @param synth               Must be open. Can be null if formats does not contain WAV or MP3.
+     * @param parallelMp3Encoding If true each mp3 file is encoded by segments in parallel, see Mp3EncoderProvider.getMp3Encoder(boolean). Faster when
+     *                            nbThreads is lower than the number of cores, but the quality at a given bitrate might be lower.
+     */
+    public BatchExporter(File outputDir, Set<Format> formats, int nbThreads, EmbeddedSynth synth, boolean parallelMp3Encoding)
+    {
+        this(outputDir, formats, nbThreads, synth,
+                formats != null && formats.contains(Format.MP3) ? Mp3EncoderProvider.getDefault(parallelMp3Encoding) : null);
+    }
+
+    /**
+     * Create an exporter.
+     *
+     * @param outputDir  The directory where output files are written, created if needed. Output file names are the song file name with the format
+     *                   extension.
+     * @param formats    Can't be empty
+     * @param nbThreads  The max number of songs processed in parallel. Wav rendering is sequential if synth does not support concurrent rendering. Must
+     *                   be &gt; 0.
+     * @param synth      Must be open. Can be null if formats does not contain WAV or MP3.
+     * @param mp3Encoder Can be null if formats does not contain MP3.
+     */
+    public BatchExporter(File outputDir, Set<Format> formats, int nbThreads, EmbeddedSynth synth, Mp3Encoder mp3Encoder)
+    {
+        Preconditions.checkNotNull(outputDir);
+        Preconditions.checkArgument(formats != null && !formats.isEmpty(), "formats=%s", formats);
+        Preconditions.checkArgument(nbThreads > 0, "nbThreads=%s", nbThreads);
+        boolean needSynth = formats.contains(Format.WAV) || formats.contains(Format.MP3);
+        Preconditions.checkArgument(!needSynth || (synth != null && synth.isOpen()), "synth=%s", synth);
+        Preconditions.checkArgument(!formats.contains(Format.MP3) || mp3Encoder != null, "mp3Encoder=%s", mp3Encoder);
+        this.outputDir = outputDir;
+        this.formats = Collections.unmodifiableSet(EnumSet.copyOf(formats));
+        this.nbThreads = nbThreads;
+        this.synth = synth;
+        this.mp3Encoder = mp3Encoder;
+    }
+
+    public File getOutputDir()
+    {
+        return outputDir;
+    }
+
+    public Set<Format> getFormats()
+    {
+        return formats;
+    }
+
+    /**
+     * Get the output file for the specified song file and format.
+     *
+     * @param songFile
+     * @param format
+     * @return
+     */
+    public File getOutputFile(File songFile, Format format)
+    {
+        return new File(outputDir, Utilities.replaceExtension(songFile.getName(), format.getExtension()));
+    }
+
+    /**
+     * Check if all the output files of songFile exist and are more recent than songFile and its mix file (if any).
+     *
+     * @param songFile
+     * @return
+     */
+    public boolean isUpToDate(File songFile)
+    {
+        long lastModified = songFile.lastModified();
+        File mixFile = MidiMix.getSongMixFile(songFile);
+        if (mixFile != null && mixFile.exists())
+        {
+            lastModified = Math.max(lastModified, mixFile.lastModified());
+        }
+        for (Format format : formats)
+        {
+            File f = getOutputFile(songFile, format);
+            if (f.length() == 0 || f.lastModified() < lastModified)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Export the song files, blocking until all songs are processed or the export is cancelled.
+     * <p>
+     * Can't be called concurrently on the same instance.
+     *
+     * @param songFiles .sng or .sngb files
+     * @param listener  If non-null called (from a worker thread) each time a song export is complete
+     * @return One Result per song file, in the same order than songFiles
+     * @throws IOException If output directory could not be created
+     */
+    public List<Result> export(List<File> songFiles, Consumer<Result> listener) throws IOException
+    {
+        Preconditions.checkNotNull(songFiles);
+        Files.createDirectories(outputDir.toPath());
+        cancelled = false;
+
+        LOGGER.log(Level.INFO, "export() -- nbSongs={0} formats={1} outputDir={2} nbThreads={3}", new Object[]
+        {
+            songFiles.size(), formats, outputDir.getAbsolutePath(), nbThreads
+        });
+
+
+        ExecutorService workers = Executors.newFixedThreadPool(nbThreads, new ExportThreadFactory("worker"));
+        ExecutorService renderer = Executors.newSingleThreadExecutor(new ExportThreadFactory("renderer"));
+        ExecutorService synthExecutor = synth != null && synth.isConcurrentRenderingSupported() ? workers : renderer;
+        Semaphore inFlight = new Semaphore(2 * nbThreads);      // Enough to keep the renderer busy while workers build the next songs
+        List<CompletableFuture<Result>> futures = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
+
+        try
+        {
+            for (File songFile : songFiles)
+            {
+                CompletableFuture<Result> future;
+                if (cancelled)
+                {
+                    future = CompletableFuture.completedFuture(new Result(songFile, Status.CANCELLED, Map.of(), null));
+                } else if (isUpToDate(songFile))
+                {
+                    LOGGER.log(Level.FINE, "export() {0} is up to date, skipped", songFile.getAbsolutePath());
+                    future = CompletableFuture.completedFuture(new Result(songFile, Status.UP_TO_DATE, Map.of(), null));
+                } else
+                {
+                    inFlight.acquireUninterruptibly();
+                    Job job = new Job(songFile);
+                    future = CompletableFuture.runAsync(job::loadBuildAndWriteMidi, workers)
+                            .thenRunAsync(job::renderAudio, synthExecutor)
+                            .handle((v, ex) -> job.complete(ex))
+                            .whenComplete((r, ex) -> inFlight.release());
+                }
+                if (listener != null)
+                {
+                    future = future.whenComplete((r, ex) -> listener.accept(r));
+                }
+                futures.add(future);
+            }
+
+            List<Result> res = new ArrayList<>();
+            for (var future : futures)
+            {
+                res.add(future.join());
+            }
+
+            logSummary(res, System.currentTimeMillis() - startTime);
+            return res;
+
+        } finally
+        {
+            workers.shutdownNow();
+            renderer.shutdownNow();
+        }
+    }
+
+    /**
+     * Stop the export in progress: songs not yet started are marked CANCELLED, songs in progress stop at the next stage.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    private void logSummary(List<Result> results, long elapsedMs)
+    {
+        EnumMap<Status, Integer> mapStatusCount = new EnumMap<>(Status.class);
+        EnumMap<Stage, Long> mapStageTotal = new EnumMap<>(Stage.class);
+        for (var r : results)
+        {
+            mapStatusCount.merge(r.status(), 1, Integer::sum);
+            r.stageTimesMs().forEach((stage, t) -> mapStageTotal.merge(stage, t, Long::sum));
+            if (r.status() == Status.FAILED)
+            {
+                LOGGER.log(Level.WARNING, "export() {0}: {1}", new Object[]
+                {
+                    r.songFile().getAbsolutePath(), r.errorMessage()
+                });
+            }
+        }
+        LOGGER.log(Level.INFO, "export() completed in {0}ms. results={1} total stage times (ms)={2}", new Object[]
+        {
+            elapsedMs, mapStatusCount, mapStageTotal
+        });
+    }
+
+    /**
+     * Write files via temporary files, then rename them.
+     */
+    private void writeAtomically(List<File> destFiles, FilesWriter writer) throws Exception
+    {
+        List<File> partFiles = destFiles.stream()
+                .map(f -> new File(f.getParentFile(), f.getName() + PART_EXTENSION))
+                .toList();
+        try
+        {
+            writer.write(partFiles);
+            for (int i = 0; i < destFiles.size(); i++)
+            {
+                if (partFiles.get(i).length() == 0)
+                {
+                    throw new IOException("generated file is empty: " + destFiles.get(i).getAbsolutePath());
+                }
+            }
+            for (int i = 0; i < destFiles.size(); i++)
+            {
+                Files.move(partFiles.get(i).toPath(), destFiles.get(i).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally
+        {
+            partFiles.forEach(File::delete);
+        }
+    }
+
+    // =================================================================================================================
+    // Private classes
+    // =================================================================================================================
+    @FunctionalInterface
+    private interface FilesWriter
+    {
+
+        void write(List<File> files) throws Exception;
+    }
+
+    /**
+     * The state of one song in the pipeline.
+     */
+    private class Job
+    {
+
+        private final File songFile;
+        private final EnumMap<Stage, Long> stageTimes = new EnumMap<>(Stage.class);
+        private Song song;
+        private Sequence sequence;
+
+        Job(File songFile)
+        {
+            this.songFile = songFile;
+        }
+
+        void loadBuildAndWriteMidi()
+        {
+            long t = startStage();
+            MidiMix midiMix;
+            synchronized (LOAD_LOCK)
+            {
+                try
+                {
+                    midiMix = load();
+                } catch (SongCreationException | IOException | MidiUnavailableException ex)
+                {
+                    throw new CompletionException(ex);
+                }
+            }
+            endStage(Stage.LOAD, t);
+
+
+            t = startStage();
+            var ssb = new SongSequenceBuilder(new SongContext(song, midiMix));
+            SongSequenceBuilder.SongSequence songSequence;
+            try
+            {
+                songSequence = ssb.buildAll(true);
+            } catch (MusicGenerationException ex)
+            {
+                throw new CompletionException(ex);
+            }
+            ssb.makeSequenceExportable(songSequence, false);
+            endStage(Stage.BUILD, t);
+
+
+            sequence = songSequence.sequence;
+            if (formats.contains(Format.MIDI))
+            {
+                t = startStage();
+                write(List.of(Format.MIDI), files -> MidiSystem.write(sequence, 1, files.get(0)));
+                endStage(Stage.MIDI, t);
+            }
+        }
+
+        /**
+         * Render the sequence to the wav and/or mp3 output files.
+         * <p>
+         * If the synth renders a Sequence directly the audio data is streamed to all the output files. Otherwise the wav file is directly generated by
+         * the synth, and the mp3 file is encoded from this wav file, to avoid a temporary .wav file.
+         */
+        void renderAudio()
+        {
+            List<Format> audioFormats = Stream.of(Format.WAV, Format.MP3).filter(formats::contains).toList();
+            if (audioFormats.isEmpty())
+            {
+                return;
+            }
+            long t = startStage();
+            write(audioFormats, files ->
+            {
+                if (audioFormats.get(0) == Format.WAV && !synth.isSequenceRenderingSupported())
+                {
+                    synth.generateWavFile(sequence, files.get(0));
+                    if (files.size() > 1)
+                    {
+                        mp3Encoder.encode(files.get(0), files.get(1), false, false);
+                    }
+                    return;
+                }
+                PcmConsumer[] consumers = new PcmConsumer[files.size()];
+                for (int i = 0; i < consumers.length; i++)
+                {
+                    consumers[i] = audioFormats.get(i) == Format.WAV ? new WavFileWriter(files.get(i))
+                            : mp3Encoder.createPcmConsumer(files.get(i), false, false);
+                }
+                synth.generateAudio(sequence, PcmConsumer.of(consumers));
+            });
+            endStage(Stage.AUDIO, t);
+        }
+
+        /**
+         * Release the song.
+         *
+         * @param ex The exception which stopped the pipeline, or null
+         * @return
+         */
+        Result complete(Throwable ex)
+        {
+            if (song != null)
+            {
+                synchronized (LOAD_LOCK)
+                {
+                    song.close(false);
+                }
+                song = null;
+            }
+            sequence = null;
+
+            Result res;
+            Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+            if (cause == null)
+            {
+                res = new Result(songFile, Status.EXPORTED, Collections.unmodifiableMap(stageTimes), null);
+            } else if (cause instanceof CancellationException)
+            {
+                res = new Result(songFile, Status.CANCELLED, Collections.unmodifiableMap(stageTimes), null);
+            } else
+            {
+                String msg = cause.getLocalizedMessage() != null ? cause.getLocalizedMessage() : cause.getClass().getSimpleName();
+                res = new Result(songFile, Status.FAILED, Collections.unmodifiableMap(stageTimes), msg);
+            }
+            LOGGER.log(Level.FINE, "complete() {0} {1} stageTimes={2}", new Object[]
+            {
+                songFile.getName(), res.status(), stageTimes
+            });
+            return res;
+        }
+
+        /**
+         * Load the song and its mix.
+         * <p>
+         * The song is not registered in the SongFactory.
+         *
+         * @return The song mix
+         */
+        private MidiMix load() throws SongCreationException, IOException, MidiUnavailableException
+        {
+            MidiMix midiMix = null;
+            if (Utilities.getExtension(songFile.getName()).equalsIgnoreCase(BinarySongFile.EXTENSION))
+            {
+                var content = BinarySongFile.load(songFile);
+                song = content.song();
+                midiMix = content.midiMix();
+            } else
+            {
+                try (var is = Files.newInputStream(songFile.toPath()))
+                {
+                    song = Song.loadFromStream(is);
+                }
+                song.setName(Utilities.replaceExtension(songFile.getName(), ""));
+                File mixFile = MidiMix.getSongMixFile(songFile);
+                if (mixFile.canRead())
+                {
+                    midiMix = MidiMix.loadFromFile(mixFile);
+                }
+            }
+            song.setFile(songFile);
+            song.setSaveNeeded(false);
+
+
+            if (midiMix != null)
+            {
+                try
+                {
+                    midiMix.checkConsistency(song, true);
+                } catch (SongCreationException ex)
+                {
+                    LOGGER.log(Level.WARNING, "load() {0}: song mix not consistent with song, ignored. ex={1}", new Object[]
+                    {
+                        songFile.getAbsolutePath(), ex.getMessage()
+                    });
+                    midiMix = null;
+                }
+            }
+            if (midiMix == null)
+            {
+                midiMix = MidiMixManager.getDefault().createMix(song);
+            }
+            midiMix.setSong(song);
+
+
+            if (midiMix.getInstrumentMixes().stream().allMatch(insMix -> insMix.isMute()))
+            {
+                throw new SongCreationException("All channels are muted");
+            }
+
+            return midiMix;
+        }
+
+        private long startStage()
+        {
+            if (cancelled)
+            {
+                throw new CancellationException();
+            }
+            return System.currentTimeMillis();
+        }
+
+        private void endStage(Stage stage, long startTime)
+        {
+            stageTimes.put(stage, System.currentTimeMillis() - startTime);
+        }
+
+        /**
+         * Write the output files of the specified formats.
+         */
+        private void write(List<Format> outputFormats, FilesWriter writer)
+        {
+            try
+            {
+                writeAtomically(outputFormats.stream().map(f -> getOutputFile(songFile, f)).toList(), writer);
+            } catch (Exception ex)
+            {
+                throw new CompletionException(ex);
+            }
+        }
+    }
+
+    /**
+     * Daemon threads so that an export never prevents JVM shutdown.
+     */
+    static private class ExportThreadFactory implements ThreadFactory
+    {
+
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+        private final String name;
+
+        ExportThreadFactory(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "BatchExporter-" + name + "-" + COUNTER.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
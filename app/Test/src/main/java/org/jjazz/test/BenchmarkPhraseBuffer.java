@@ -0,0 +1,158 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.test;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jjazz.activesong.spi.ActiveSongManager;
+import org.jjazz.midimix.api.MidiMix;
+import org.jjazz.phrase.api.Phrase;
+import org.jjazz.phrase.api.PhraseBuffer;
+import org.jjazz.phrase.api.Phrases;
+import org.jjazz.rhythm.api.MusicGenerationException;
+import org.jjazz.rhythm.api.RhythmVoice;
+import org.jjazz.rhythmmusicgeneration.api.SongSequenceBuilder;
+import org.jjazz.song.api.Song;
+import org.jjazz.songcontext.api.SongContext;
+import org.jjazz.utilities.api.FloatRange;
+import org.openide.awt.ActionID;
+import org.openide.awt.ActionReference;
+import org.openide.awt.ActionReferences;
+import org.openide.awt.ActionRegistration;
+import org.openide.util.Exceptions;
+import org.openide.util.NbBundle;
+
+/**
+ * For debug purposes: compare Phrase and PhraseBuffer on a typical slice/velocity/shift processing, using the phrases generated for the active
+ * song.
+ */
+@ActionID(category = "Test", id = "org.jjazz.test.benchmarkphrasebuffer")
+@ActionRegistration(displayName = "#CTL_BenchmarkPhraseBuffer", lazy = true)
+@ActionReferences(
+        {
+            @ActionReference(path = "Shortcuts", name = "DS-U")           // ctrl-shift U
+        })
+@NbBundle.Messages(
+        {
+            "CTL_BenchmarkPhraseBuffer=[DEBUG] Benchmark Phrase vs PhraseBuffer"
+        })
+public class BenchmarkPhraseBuffer implements ActionListener
+{
+
+    private static final int NB_WARMUP_ITERATIONS = 20;
+    private static final int NB_ITERATIONS = 100;
+    private static final Logger LOGGER = Logger.getLogger(BenchmarkPhraseBuffer.class.getSimpleName());
+    /**
+     * Prevent dead code elimination.
+     */
+    private int blackHole;
+
+    @Override
+    public void actionPerformed(ActionEvent e)
+    {
+        var asm = ActiveSongManager.getDefault();
+        Song song = asm.getActiveSong();
+        MidiMix midiMix = asm.getActiveMidiMix();
+        if (song == null || midiMix == null)
+        {
+            LOGGER.info("actionPerformed() No active song");
+            return;
+        }
+
+
+        Map<RhythmVoice, Phrase> mapRvPhrase;
+        try
+        {
+            mapRvPhrase = new SongSequenceBuilder(new SongContext(song, midiMix)).buildMapRvPhrase(true);
+        } catch (MusicGenerationException ex)
+        {
+            Exceptions.printStackTrace(ex);
+            return;
+        }
+        var phrases = mapRvPhrase.values().stream().filter(p -> !p.isEmpty()).toList();
+        int nbNotes = phrases.stream().mapToInt(p -> p.size()).sum();
+
+
+        for (int i = 0; i < NB_WARMUP_ITERATIONS; i++)
+        {
+            for (var p : phrases)
+            {
+                processPhrase(p);
+                processPhraseBuffer(p);
+            }
+        }
+
+        long t = System.nanoTime();
+        for (int i = 0; i < NB_ITERATIONS; i++)
+        {
+            for (var p : phrases)
+            {
+                processPhrase(p);
+            }
+        }
+        long phraseNs = (System.nanoTime() - t) / NB_ITERATIONS;
+
+        t = System.nanoTime();
+        for (int i = 0; i < NB_ITERATIONS; i++)
+        {
+            for (var p : phrases)
+            {
+                processPhraseBuffer(p);
+            }
+        }
+        long bufferNs = (System.nanoTime() - t) / NB_ITERATIONS;
+
+
+        LOGGER.log(Level.INFO, "song={0}: {1} phrases, {2} notes. Phrase={3} us, PhraseBuffer={4} us (blackHole={5})", new Object[]
+        {
+            song.getName(), phrases.size(), nbNotes, phraseNs / 1000, bufferNs / 1000, blackHole
+        });
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    private void processPhrase(Phrase p)
+    {
+        FloatRange br = p.getBeatRange();
+        FloatRange range = new FloatRange(br.from + br.size() / 4, br.to);
+        Phrase res = Phrases.getSlice(p, range, true, 1, 0);
+        res = res.getProcessedPhraseVelocity(v -> v * 9 / 10);
+        res.shiftAllEvents(-range.from);
+        blackHole += res.size();
+    }
+
+    private void processPhraseBuffer(Phrase p)
+    {
+        FloatRange br = p.getBeatRange();
+        FloatRange range = new FloatRange(br.from + br.size() / 4, br.to);
+        PhraseBuffer buffer = PhraseBuffer.of(p).slice(range, true, 1);
+        buffer.mapVelocity(v -> v * 9 / 10);
+        buffer.shift(-range.from);
+        Phrase res = buffer.toPhrase(p.getChannel(), p.isDrums());
+        blackHole += res.size();
+    }
+}
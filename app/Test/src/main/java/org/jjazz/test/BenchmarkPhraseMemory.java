@@ -0,0 +1,127 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.test;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jjazz.activesong.spi.ActiveSongManager;
+import org.jjazz.midimix.api.MidiMix;
+import org.jjazz.phrase.api.Phrase;
+import org.jjazz.rhythm.api.MusicGenerationException;
+import org.jjazz.rhythm.api.RhythmVoice;
+import org.jjazz.rhythmmusicgeneration.api.SongSequenceBuilder;
+import org.jjazz.song.api.Song;
+import org.jjazz.songcontext.api.SongContext;
+import org.openide.awt.ActionID;
+import org.openide.awt.ActionReference;
+import org.openide.awt.ActionReferences;
+import org.openide.awt.ActionRegistration;
+import org.openide.util.Exceptions;
+import org.openide.util.NbBundle;
+
+/**
+ * For debug purposes: measure the heap retained by the phrases generated by SongSequenceBuilder.buildMapRvPhrase() for the active song.
+ */
+@ActionID(category = "Test", id = "org.jjazz.test.benchmarkphrasememory")
+@ActionRegistration(displayName = "#CTL_BenchmarkPhraseMemory", lazy = true)
+@ActionReferences(
+        {
+            @ActionReference(path = "Shortcuts", name = "DS-M")           // ctrl-shift M
+        })
+@NbBundle.Messages(
+        {
+            "CTL_BenchmarkPhraseMemory=[DEBUG] Benchmark generated phrases memory"
+        })
+public class BenchmarkPhraseMemory implements ActionListener
+{
+
+    /**
+     * Keep several results in memory to make the heap measure more reliable.
+     */
+    private static final int NB_COPIES = 5;
+    private static final Logger LOGGER = Logger.getLogger(BenchmarkPhraseMemory.class.getSimpleName());
+
+    @Override
+    public void actionPerformed(ActionEvent e)
+    {
+        var asm = ActiveSongManager.getDefault();
+        Song song = asm.getActiveSong();
+        MidiMix midiMix = asm.getActiveMidiMix();
+        if (song == null || midiMix == null)
+        {
+            LOGGER.info("actionPerformed() No active song");
+            return;
+        }
+
+
+        var ssb = new SongSequenceBuilder(new SongContext(song, midiMix));
+        @SuppressWarnings("unchecked")
+        Map<RhythmVoice, Phrase>[] results = new Map[NB_COPIES];
+        try
+        {
+            ssb.buildMapRvPhrase(true);           // Warm-up: rhythm resources are loaded
+            long heapBefore = getUsedHeap();
+            long t = System.nanoTime();
+            for (int i = 0; i < NB_COPIES; i++)
+            {
+                results[i] = ssb.buildMapRvPhrase(true);
+            }
+            long durationMs = (System.nanoTime() - t) / NB_COPIES / 1_000_000;
+            long heapAfter = getUsedHeap();
+
+
+            int nbNotes = results[0].values().stream().mapToInt(p -> p.size()).sum();
+            long bytes = (heapAfter - heapBefore) / NB_COPIES;
+            LOGGER.log(Level.INFO, "buildMapRvPhrase() song={0}: {1} ms, {2} phrases, {3} notes, retained heap={4} KB, {5} bytes/note", new Object[]
+            {
+                song.getName(), durationMs, results[0].size(), nbNotes, bytes / 1024, nbNotes == 0 ? 0 : bytes / nbNotes
+            });
+        } catch (MusicGenerationException ex)
+        {
+            Exceptions.printStackTrace(ex);
+        }
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    private long getUsedHeap()
+    {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+            try
+            {
+                Thread.sleep(100);
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
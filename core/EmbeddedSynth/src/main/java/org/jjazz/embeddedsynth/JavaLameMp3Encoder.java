@@ -23,13 +23,15 @@
 package org.jjazz.embeddedsynth;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
@@ -38,18 +40,51 @@ import org.jjazz.embeddedsynth.lame.mp3.Lame;
 import org.jjazz.embeddedsynth.lame.mp3.MPEGMode;
 import org.jjazz.embeddedsynth.api.EmbeddedSynthException;
 import org.jjazz.embeddedsynth.api.Mp3Encoder;
+import org.jjazz.embeddedsynth.api.PcmConsumer;
 import org.jjazz.utilities.api.Utilities;
 
 /**
  * A mp3 encoder which relies on org.jjazz.embeddedsynth.lame-3.98.4.jar found here https://github.com/nwaldispuehl/java-lame
+ * <p>
+ * Fix-rate encoding can optionally be done in parallel, see {@link #JavaLameMp3Encoder(boolean)}.
  */
 public class JavaLameMp3Encoder implements Mp3Encoder
 {
 
     private static final int MP3_GOOD_QUALITY_BITRATE = 320;
     private static final int MP3_LOW_QUALITY_BITRATE = 128;
+    private final boolean parallelEncoding;
     private static final Logger LOGGER = Logger.getLogger(JavaLameMp3Encoder.class.getSimpleName());
 
+    /**
+     * Create an encoder which does not use parallel encoding.
+     */
+    public JavaLameMp3Encoder()
+    {
+        this(false);
+    }
+
+    /**
+     * Create an encoder.
+     *
+     * @param parallelEncoding If true long fix-rate encodings are split in segments encoded in parallel, see ParallelLameEncoder. This is faster on
+     *                         multi-core machines but the LAME bit reservoir is then disabled, which lowers the quality at a given bitrate.
+     */
+    public JavaLameMp3Encoder(boolean parallelEncoding)
+    {
+        this.parallelEncoding = parallelEncoding;
+    }
+
+    /**
+     * @return True if long fix-rate encodings are done in parallel.
+     * @see #JavaLameMp3Encoder(boolean)
+     */
+    @Override
+    public boolean isParallelEncoding()
+    {
+        return parallelEncoding;
+    }
+
     @Override
     public void encode(File inFile, File mp3File, boolean lowQuality, boolean useVariableEncoding) throws EmbeddedSynthException
     {
@@ -58,68 +93,283 @@ public class JavaLameMp3Encoder implements Mp3Encoder
             throw new EmbeddedSynthException("File format not supported: " + inFile.getName());
         }
 
-        try
+        // BufferedInputStream needed to add mark/reset support
+        try (AudioInputStream audioIs = AudioSystem.getAudioInputStream(new BufferedInputStream(new FileInputStream(inFile))))
         {
-            wavToMp3(inFile, mp3File, lowQuality ? MP3_LOW_QUALITY_BITRATE : MP3_GOOD_QUALITY_BITRATE, useVariableEncoding);
-
+            encode(audioIs, mp3File, lowQuality, useVariableEncoding);
         } catch (IOException | UnsupportedAudioFileException ex)
         {
             LOGGER.log(Level.WARNING, "encode() inFile={0} ex={1}", new Object[]
             {
                 inFile, ex
             });
-            String msg = ex.getMessage();
-            if (msg == null)
+            throw new EmbeddedSynthException(getMessage(ex));
+        }
+    }
+
+    /**
+     * Encode the stream while reading it: encoded frames are directly written to mp3File, memory usage does not depend on the stream length.
+     * <p>
+     * Uses the same encoding path than createPcmConsumer().
+     */
+    @Override
+    public void encode(AudioInputStream audioIs, File mp3File, boolean lowQuality, boolean useVariableEncoding) throws EmbeddedSynthException
+    {
+        PcmConsumer consumer = createPcmConsumer(mp3File, lowQuality, useVariableEncoding);
+        boolean ended = false;
+        try
+        {
+            AudioFormat format = audioIs.getFormat();
+            byte[] buffer = new byte[format.getFrameSize() * 4096];
+            consumer.start(format);
+            int size;
+            while (0 < (size = readFully(audioIs, buffer)))
+            {
+                consumer.accept(buffer, 0, size - size % format.getFrameSize());
+            }
+            consumer.end();
+            ended = true;
+        } catch (IOException ex)
+        {
+            LOGGER.log(Level.WARNING, "encode() mp3File={0} ex={1}", new Object[]
+            {
+                mp3File, ex
+            });
+            throw new EmbeddedSynthException(getMessage(ex));
+        } finally
+        {
+            if (!ended)
             {
-                msg = "Unknown exception";
+                consumer.abort();
             }
-            throw new EmbeddedSynthException(msg);
         }
     }
+
+    /**
+     * Encode data blocks as they come: no temporary file is used.
+     * <p>
+     * This is the encoding path used by all the encode() methods.
+     */
+    @Override
+    public PcmConsumer createPcmConsumer(File mp3File, boolean lowQuality, boolean useVariableEncoding) throws EmbeddedSynthException
+    {
+        return new LamePcmConsumer(mp3File, lowQuality ? MP3_LOW_QUALITY_BITRATE : MP3_GOOD_QUALITY_BITRATE, useVariableEncoding);
+    }
+
     // ============================================================================================================
     // Private methods
     // ============================================================================================================
 
     /**
-     * Convert a WAV file to a MP3 file.
+     * Check if the encoding can be split in segments encoded in parallel.
+     * <p>
+     * Only if enabled, for fix-rate encoding.
+     */
+    private boolean isParallelEncodingUsed(AudioFormat format, int bitRate, boolean useVariableEncoding)
+    {
+        if (!parallelEncoding || useVariableEncoding || Runtime.getRuntime().availableProcessors() < 2)
+        {
+            return false;
+        }
+        return ParallelLameEncoder.isSupported(format, bitRate, Lame.QUALITY_HIGHEST);
+    }
+
+    /**
+     * Read until buffer is full or end of stream is reached.
+     * <p>
+     * Make sure that only complete sample frames are passed to the encoder.
      *
-     * @param wavFile
-     * @param mp3File
-     * @param bitRate             E.g 128 for medium quality, 320 for high quality
-     * @param useVariableEncoding
-     * @throws IOException
-     * @throws UnsupportedAudioFileException
+     * @return The number of bytes read, 0 if end of stream.
      */
-    private void wavToMp3(File wavFile, File mp3File, int bitRate, boolean useVariableEncoding) throws IOException, UnsupportedAudioFileException
+    private int readFully(AudioInputStream ais, byte[] buffer) throws IOException
     {
-        var is = new FileInputStream(wavFile);
-        AudioInputStream audioIs = AudioSystem.getAudioInputStream(new BufferedInputStream(is));        // BufferedInputStream needed to add mark/reset support
-        byte[] mp3Bytes = encodeToMp3(audioIs, bitRate, useVariableEncoding);
-        new FileOutputStream(mp3File).write(mp3Bytes);
+        int total = 0;
+        int n;
+        while (total < buffer.length && (n = ais.read(buffer, total, buffer.length - total)) > 0)
+        {
+            total += n;
+        }
+        return total;
     }
 
+    private void write(FileChannel channel, ByteBuffer bb, int size) throws IOException
+    {
+        bb.clear().limit(size);
+        while (bb.hasRemaining())
+        {
+            channel.write(bb);
+        }
+    }
+
+    private String getMessage(Exception ex)
+    {
+        String msg = ex.getMessage();
+        return msg == null ? "Unknown exception" : msg;
+    }
+
+    // ============================================================================================================
+    // Private classes
+    // ============================================================================================================
     /**
-     * Do the stream encoding using lame.
+     * Use a sequential LameEncoder, or a ParallelLameEncoder if parallel encoding is used.
      */
-    private byte[] encodeToMp3(AudioInputStream audioInputStream, int bitRate, boolean useVariableEncoding) throws IOException
+    private class LamePcmConsumer implements PcmConsumer
     {
-        LameEncoder encoder = new LameEncoder(audioInputStream.getFormat(), bitRate, MPEGMode.STEREO, Lame.QUALITY_HIGHEST,
-                useVariableEncoding);
 
-        ByteArrayOutputStream mp3 = new ByteArrayOutputStream();
-        byte[] inputBuffer = new byte[encoder.getPCMBufferSize()];
-        byte[] outputBuffer = new byte[encoder.getPCMBufferSize()];
+        private final File mp3File;
+        private final int bitRate;
+        private final boolean useVariableEncoding;
+        private FileChannel channel;
+        private LameEncoder encoder;
+        private ParallelLameEncoder.Session parallelSession;
+        private byte[] inputBuffer;
+        private int inputSize;
+        private byte[] outputBuffer;
+        private ByteBuffer outputByteBuffer;
+        private boolean ended;
+
+        LamePcmConsumer(File mp3File, int bitRate, boolean useVariableEncoding)
+        {
+            this.mp3File = mp3File;
+            this.bitRate = bitRate;
+            this.useVariableEncoding = useVariableEncoding;
+        }
+
+        @Override
+        public void start(AudioFormat format) throws EmbeddedSynthException
+        {
+            if (channel != null)
+            {
+                throw new IllegalStateException("start() already called");
+            }
+            try
+            {
+                channel = FileChannel.open(mp3File.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            } catch (IOException ex)
+            {
+                throw handleException(ex);
+            }
+
+            if (isParallelEncodingUsed(format, bitRate, useVariableEncoding))
+            {
+                var parallelEncoder = new ParallelLameEncoder(format, bitRate, Lame.QUALITY_HIGHEST, Runtime.getRuntime().availableProcessors());
+                parallelSession = parallelEncoder.open(channel);
+            } else
+            {
+                encoder = new LameEncoder(format, bitRate, MPEGMode.STEREO, Lame.QUALITY_HIGHEST, useVariableEncoding);
+                inputBuffer = new byte[encoder.getPCMBufferSize()];
+                outputBuffer = new byte[encoder.getPCMBufferSize()];
+                outputByteBuffer = ByteBuffer.wrap(outputBuffer);
+                inputSize = 0;
+            }
+        }
+
+        @Override
+        public void accept(byte[] data, int offset, int length) throws EmbeddedSynthException
+        {
+            try
+            {
+                if (parallelSession != null)
+                {
+                    parallelSession.write(data, offset, length);
+                    return;
+                }
+                while (length > 0)
+                {
+                    int n = Math.min(length, inputBuffer.length - inputSize);
+                    System.arraycopy(data, offset, inputBuffer, inputSize, n);
+                    inputSize += n;
+                    offset += n;
+                    length -= n;
+                    if (inputSize == inputBuffer.length)
+                    {
+                        encodeInputBuffer();
+                    }
+                }
+            } catch (IOException ex)
+            {
+                throw handleException(ex);
+            }
+        }
+
+        @Override
+        public void end() throws EmbeddedSynthException
+        {
+            try
+            {
+                if (parallelSession != null)
+                {
+                    parallelSession.finish();
+                } else
+                {
+                    if (inputSize > 0)
+                    {
+                        encodeInputBuffer();
+                    }
+                    write(channel, outputByteBuffer, encoder.encodeFinish(outputBuffer));
+                }
+                channel.close();
+                ended = true;
+            } catch (IOException ex)
+            {
+                throw handleException(ex);
+            } finally
+            {
+                release();
+            }
+        }
+
+        /**
+         * Release the encoder and the file, delete the incomplete mp3 file.
+         */
+        @Override
+        public void abort()
+        {
+            release();
+            if (!ended)
+            {
+                mp3File.delete();
+            }
+        }
 
-        int bytesRead;
-        int bytesWritten;
+        private void encodeInputBuffer() throws IOException
+        {
+            int bytesWritten = encoder.encodeBuffer(inputBuffer, 0, inputSize, outputBuffer);
+            write(channel, outputByteBuffer, bytesWritten);
+            inputSize = 0;
+        }
 
-        while (0 < (bytesRead = audioInputStream.read(inputBuffer)))
+        private void release()
         {
-            bytesWritten = encoder.encodeBuffer(inputBuffer, 0, bytesRead, outputBuffer);
-            mp3.write(outputBuffer, 0, bytesWritten);
+            if (parallelSession != null)
+            {
+                parallelSession.close();
+                parallelSession = null;
+            }
+            if (encoder != null)
+            {
+                encoder.close();
+                encoder = null;
+            }
+            if (channel != null)
+            {
+                try
+                {
+                    channel.close();
+                } catch (IOException ex)
+                {
+                    // Nothing
+                }
+            }
         }
 
-        encoder.close();
-        return mp3.toByteArray();
+        private EmbeddedSynthException handleException(IOException ex)
+        {
+            LOGGER.log(Level.WARNING, "LamePcmConsumer mp3File={0} ex={1}", new Object[]
+            {
+                mp3File, ex
+            });
+            return new EmbeddedSynthException(getMessage(ex));
+        }
     }
 }
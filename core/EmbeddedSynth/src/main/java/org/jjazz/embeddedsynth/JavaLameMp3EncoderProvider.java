@@ -31,6 +31,7 @@ public class JavaLameMp3EncoderProvider implements Mp3EncoderProvider
 {
 
     private static final JavaLameMp3Encoder encoder = new JavaLameMp3Encoder();
+    private static final JavaLameMp3Encoder parallelEncoder = new JavaLameMp3Encoder(true);
 
     @Override
     public Mp3Encoder getMp3Encoder()
@@ -38,4 +39,10 @@ public class JavaLameMp3EncoderProvider implements Mp3EncoderProvider
         return encoder;
     }
 
+    @Override
+    public Mp3Encoder getMp3Encoder(boolean parallelEncoding)
+    {
+        return parallelEncoding ? parallelEncoder : encoder;
+    }
+
 }
@@ -0,0 +1,411 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.embeddedsynth;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sound.sampled.AudioFormat;
+import org.jjazz.embeddedsynth.lame.lowlevel.LameEncoder;
+import org.jjazz.embeddedsynth.lame.mp3.MPEGMode;
+import org.jjazz.embeddedsynth.lame.mp3.Tables;
+
+/**
+ * Encode PCM data to a CBR mp3 stream using several LameEncoder instances in parallel.
+ * <p>
+ * PCM data is split in mp3 frame-aligned segments, each segment is encoded by its own LameEncoder. The encoder also receives PRE_ROLL_FRAMES frames of
+ * the previous segment and POST_ROLL_FRAMES frames of the next segment, so that the MDCT and psycho-acoustic model states are warmed up at the segment
+ * boundaries. The mp3 frames produced for these overlapping parts are then dropped.
+ * <p>
+ * The bit reservoir is disabled so that each mp3 frame is self-contained, which is required to join frames produced by different encoders. This reduces
+ * quality, especially at low bitrates: this is why parallel encoding is opt-in in JavaLameMp3Encoder. No Xing/Info tag frame is written.
+ */
+class ParallelLameEncoder
+{
+
+    /**
+     * About 6.7s at 44.1kHz.
+     */
+    static final int SEGMENT_FRAMES = 256;
+    static final int PRE_ROLL_FRAMES = 4;
+    static final int POST_ROLL_FRAMES = 4;
+    private final AudioFormat format;
+    private final int bitRate;
+    private final int quality;
+    private final int nbThreads;
+    private final int mp3FrameSize;
+    private static final Logger LOGGER = Logger.getLogger(ParallelLameEncoder.class.getSimpleName());
+
+    /**
+     * Create an encoder.
+     *
+     * @param format    Must be supported, see isSupported().
+     * @param bitRate
+     * @param quality
+     * @param nbThreads
+     */
+    ParallelLameEncoder(AudioFormat format, int bitRate, int quality, int nbThreads)
+    {
+        if (nbThreads < 1)
+        {
+            throw new IllegalArgumentException("nbThreads=" + nbThreads);
+        }
+        this.format = format;
+        this.bitRate = bitRate;
+        this.quality = quality;
+        this.nbThreads = nbThreads;
+
+        LameEncoder encoder = createEncoder();
+        mp3FrameSize = encoder.getFrameSize();
+        encoder.close();
+    }
+
+    /**
+     * Check if the specified encoding can be done in parallel.
+     * <p>
+     * Not supported if LAME needs to resample the PCM data: mp3 frames are then not aligned with PCM frames.
+     *
+     * @param format
+     * @param bitRate
+     * @param quality
+     * @return
+     */
+    static boolean isSupported(AudioFormat format, int bitRate, int quality)
+    {
+        LameEncoder encoder = new LameEncoder(format, bitRate, MPEGMode.STEREO, quality, false, true, false);
+        boolean b = encoder.getEffectiveSampleRate() == Math.round(format.getSampleRate());
+        encoder.close();
+        return b;
+    }
+
+    /**
+     * Encode PCM data read from is.
+     * <p>
+     * Memory usage depends on the number of threads, not on the stream length.
+     *
+     * @param is      PCM data in the format specified in the constructor. Read until its end, not closed by this method.
+     * @param channel Where the mp3 frames are written. Not closed by this method.
+     * @throws IOException
+     */
+    void encode(InputStream is, WritableByteChannel channel) throws IOException
+    {
+        try (Session session = open(channel))
+        {
+            byte[] buffer = new byte[16 * mp3FrameSize * format.getFrameSize()];
+            int n;
+            while ((n = is.read(buffer)) >= 0)
+            {
+                session.write(buffer, 0, n);
+            }
+            session.finish();
+        }
+    }
+
+    /**
+     * Start an encoding session: PCM data is then pushed block by block with Session.write().
+     * <p>
+     * Memory usage depends on the number of threads, not on the data length.
+     *
+     * @param channel Where the mp3 frames are written. Not closed by the session.
+     * @return
+     */
+    Session open(WritableByteChannel channel)
+    {
+        return new Session(channel);
+    }
+
+    // ============================================================================================================
+    // Private methods
+    // ============================================================================================================
+    private LameEncoder createEncoder()
+    {
+        return new LameEncoder(format, bitRate, MPEGMode.STEREO, quality, false, true, false);
+    }
+
+    /**
+     * Encode a segment and return only its mp3 frames.
+     *
+     * @param pre    The end of the previous segment
+     * @param pcm    The segment data
+     * @param post   The start of the next segment
+     * @param isLast If true keep all the frames after the pre-roll frames
+     * @return
+     */
+    private byte[] encodeSegment(byte[] pre, byte[] pcm, byte[] post, boolean isLast)
+    {
+        LameEncoder encoder = createEncoder();
+        ByteArrayOutputStream mp3 = new ByteArrayOutputStream(pcm.length / 4);
+        try
+        {
+            byte[] outputBuffer = new byte[encoder.getPCMBufferSize()];
+            int chunkSize = (encoder.getPCMBufferSize() / format.getFrameSize()) * format.getFrameSize();
+            for (byte[] data : new byte[][]
+            {
+                pre, pcm, post
+            })
+            {
+                for (int offset = 0; offset < data.length; offset += chunkSize)
+                {
+                    int n = encoder.encodeBuffer(data, offset, Math.min(chunkSize, data.length - offset), outputBuffer);
+                    mp3.write(outputBuffer, 0, n);
+                }
+            }
+            int n = encoder.encodeFinish(outputBuffer);
+            mp3.write(outputBuffer, 0, n);
+        } finally
+        {
+            encoder.close();
+        }
+
+
+        byte[] data = mp3.toByteArray();
+        int pcmFrameBytes = mp3FrameSize * format.getFrameSize();
+        int nbDroppedFrames = pre.length / pcmFrameBytes;
+        int start = skipFrames(data, 0, nbDroppedFrames);
+        int end = isLast ? data.length : skipFrames(data, start, pcm.length / pcmFrameBytes);
+        return Arrays.copyOfRange(data, start, end);
+    }
+
+    /**
+     * Skip mp3 frames.
+     *
+     * @param data
+     * @param offset Must be the start of a mp3 frame
+     * @param nbFrames
+     * @return The offset after the skipped frames
+     * @throws IllegalStateException If data does not contain enough valid frames
+     */
+    static private int skipFrames(byte[] data, int offset, int nbFrames)
+    {
+        for (int i = 0; i < nbFrames; i++)
+        {
+            int size = getFrameLength(data, offset);
+            if (size <= 0 || offset + size > data.length)
+            {
+                throw new IllegalStateException("Invalid mp3 frame at offset=" + offset + " data.length=" + data.length + " i=" + i + " nbFrames=" + nbFrames);
+            }
+            offset += size;
+        }
+        return offset;
+    }
+
+    /**
+     * Compute the length of the Layer III frame starting at offset.
+     *
+     * @param data
+     * @param offset
+     * @return -1 if no valid frame header at offset
+     */
+    static int getFrameLength(byte[] data, int offset)
+    {
+        if (offset + 4 > data.length || (data[offset] & 0xFF) != 0xFF || (data[offset + 1] & 0xE0) != 0xE0)
+        {
+            return -1;
+        }
+        int versionBits = (data[offset + 1] >> 3) & 3;        // 3=MPEG1, 2=MPEG2, 0=MPEG2.5
+        int layerBits = (data[offset + 1] >> 1) & 3;          // 1=Layer III
+        int bitRateIndex = (data[offset + 2] >> 4) & 0xF;
+        int sampleRateIndex = (data[offset + 2] >> 2) & 3;
+        int padding = (data[offset + 2] >> 1) & 1;
+        if (versionBits == 1 || layerBits != 1 || bitRateIndex == 0 || bitRateIndex == 15 || sampleRateIndex == 3)
+        {
+            return -1;
+        }
+
+        boolean mpeg1 = versionBits == 3;
+        int bitRate = Tables.bitrate_table[mpeg1 ? 1 : 0][bitRateIndex];
+        int sampleRate = Tables.samplerate_table[mpeg1 ? 1 : (versionBits == 2 ? 0 : 2)][sampleRateIndex];
+        return (mpeg1 ? 144000 : 72000) * bitRate / sampleRate + padding;
+    }
+
+    static private void write(WritableByteChannel channel, Future<byte[]> future) throws IOException, InterruptedException
+    {
+        byte[] data;
+        try
+        {
+            data = future.get();
+        } catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException re)
+            {
+                throw re;
+            }
+            throw new IOException(cause);
+        }
+        ByteBuffer bb = ByteBuffer.wrap(data);
+        while (bb.hasRemaining())
+        {
+            channel.write(bb);
+        }
+    }
+
+    // ============================================================================================================
+    // Inner classes
+    // ============================================================================================================
+    /**
+     * An encoding session.
+     * <p>
+     * Methods must be called in this order: write() 0 or more times, then finish(). close() must always be called.
+     */
+    class Session implements AutoCloseable
+    {
+
+        private final WritableByteChannel channel;
+        private final int pcmFrameBytes = mp3FrameSize * format.getFrameSize();
+        private final int preRollBytes = PRE_ROLL_FRAMES * pcmFrameBytes;
+        private final int postRollBytes = POST_ROLL_FRAMES * pcmFrameBytes;
+        private final ExecutorService executor;
+        private final Deque<Future<byte[]>> futures = new ArrayDeque<>();
+        private final byte[] next = new byte[SEGMENT_FRAMES * pcmFrameBytes];
+        private int nextSize;
+        private byte[] prev = new byte[0];
+        private byte[] cur;
+        private int nbSegments;
+
+        private Session(WritableByteChannel channel)
+        {
+            this.channel = channel;
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(nbThreads, r -> 
+            {
+                Thread t = new Thread(r, "ParallelLameEncoder-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        /**
+         * Encode a block of PCM data.
+         *
+         * @param data
+         * @param offset
+         * @param length
+         * @throws IOException
+         */
+        void write(byte[] data, int offset, int length) throws IOException
+        {
+            while (length > 0)
+            {
+                int n = Math.min(length, next.length - nextSize);
+                System.arraycopy(data, offset, next, nextSize, n);
+                nextSize += n;
+                offset += n;
+                length -= n;
+                if (nextSize == next.length)
+                {
+                    pushSegment(next.clone());
+                    nextSize = 0;
+                }
+            }
+        }
+
+        /**
+         * Encode the remaining data and write all the mp3 frames.
+         *
+         * @throws IOException
+         */
+        void finish() throws IOException
+        {
+            if (nextSize > 0)
+            {
+                pushSegment(Arrays.copyOf(next, nextSize));
+                nextSize = 0;
+            }
+            if (cur != null)
+            {
+                submit(cur, new byte[0], true);
+                cur = null;
+            }
+            while (!futures.isEmpty())
+            {
+                writeFirstResult();
+            }
+
+            LOGGER.log(Level.FINE, "Session.finish() nbSegments={0} nbThreads={1}", new Object[]
+            {
+                nbSegments, nbThreads
+            });
+        }
+
+        /**
+         * Stop the encoding threads.
+         */
+        @Override
+        public void close()
+        {
+            executor.shutdownNow();
+        }
+
+        /**
+         * A new segment is available: the current one can be encoded since its post-roll frames are now known.
+         */
+        private void pushSegment(byte[] segment) throws IOException
+        {
+            if (cur != null)
+            {
+                submit(cur, segment, false);
+            }
+            cur = segment;
+        }
+
+        private void submit(byte[] segment, byte[] nextSegment, boolean isLast) throws IOException
+        {
+            byte[] pre = Arrays.copyOfRange(prev, Math.max(0, prev.length - preRollBytes), prev.length);
+            byte[] post = Arrays.copyOf(nextSegment, Math.min(postRollBytes, nextSegment.length));
+            futures.add(executor.submit(() -> encodeSegment(pre, segment, post, isLast)));
+            nbSegments++;
+            prev = segment;
+
+            // Write results in order, limit the number of pending segments
+            while (futures.size() > 2 * nbThreads)
+            {
+                writeFirstResult();
+            }
+        }
+
+        private void writeFirstResult() throws IOException
+        {
+            try
+            {
+                ParallelLameEncoder.write(channel, futures.removeFirst());
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Encoding interrupted", ex);
+            }
+        }
+    }
+}
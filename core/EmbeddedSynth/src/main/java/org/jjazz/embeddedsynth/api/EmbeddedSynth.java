@@ -23,7 +23,15 @@
 package org.jjazz.embeddedsynth.api;
 
 import java.awt.Component;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
 import org.jjazz.outputsynth.api.OutputSynth;
 
 /**
@@ -83,4 +91,135 @@ public interface EmbeddedSynth
      */
     void generateWavFile(File midiFile, File wavFile) throws EmbeddedSynthException;
 
+    /**
+     * Check if generateWavFile() and generateAudio() can be called concurrently from different threads.
+     * <p>
+     * Default implementation returns false.
+     *
+     * @return
+     */
+    default boolean isConcurrentRenderingSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Check if generateAudio() renders a Sequence directly, without temporary Midi and .wav files.
+     * <p>
+     * Default implementation returns false. Implementations which override generateAudio() should return true.
+     *
+     * @return
+     */
+    default boolean isSequenceRenderingSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Generate a .wav file from the specified Midi sequence.
+     * <p>
+     * If isSequenceRenderingSupported() is true, the sequence is rendered directly to wavFile. Otherwise the sequence is written to a temporary Midi
+     * file and generateWavFile(File, File) directly writes wavFile.
+     *
+     * @param sequence
+     * @param wavFile
+     * @throws org.jjazz.embeddedsynth.api.EmbeddedSynthException
+     */
+    default void generateWavFile(Sequence sequence, File wavFile) throws EmbeddedSynthException
+    {
+        if (isSequenceRenderingSupported())
+        {
+            generateAudio(sequence, new WavFileWriter(wavFile));
+            return;
+        }
+
+        File midiFile = null;
+        try
+        {
+            midiFile = File.createTempFile("EmbeddedSynth", ".mid");
+            MidiSystem.write(sequence, 1, midiFile);
+            generateWavFile(midiFile, wavFile);
+        } catch (IOException ex)
+        {
+            throw new EmbeddedSynthException(ex.getMessage(), ex);
+        } finally
+        {
+            if (midiFile != null)
+            {
+                midiFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Render a Midi sequence and stream the audio data to a consumer.
+     * <p>
+     * If isSequenceRenderingSupported() is true, the consumer (e.g. a mp3 encoder PcmConsumer) processes audio blocks as they are rendered.
+     * <p>
+     * Default implementation writes the sequence to a temporary Midi file, calls generateWavFile() with a temporary .wav file, then streams this file to
+     * the consumer. To only produce a .wav file, use generateWavFile(Sequence, File) which does not need the temporary .wav file.
+     * <p>
+     * Implementations must call consumer.abort() if consumer.end() could not be successfully called.
+     *
+     * @param sequence
+     * @param consumer
+     * @throws org.jjazz.embeddedsynth.api.EmbeddedSynthException
+     */
+    default void generateAudio(Sequence sequence, PcmConsumer consumer) throws EmbeddedSynthException
+    {
+        File midiFile = null;
+        File wavFile = null;
+        boolean ended = false;
+        try
+        {
+            midiFile = File.createTempFile("EmbeddedSynth", ".mid");
+            wavFile = File.createTempFile("EmbeddedSynth", ".wav");
+            MidiSystem.write(sequence, 1, midiFile);
+            generateWavFile(midiFile, wavFile);
+
+            // BufferedInputStream needed to add mark/reset support
+            try (AudioInputStream ais = AudioSystem.getAudioInputStream(new BufferedInputStream(new FileInputStream(wavFile))))
+            {
+                int frameSize = ais.getFormat().getFrameSize();
+                byte[] buffer = new byte[frameSize * 4096];
+                consumer.start(ais.getFormat());
+                int size = 0;
+                int n;
+                while ((n = ais.read(buffer, size, buffer.length - size)) > 0)
+                {
+                    size += n;
+                    if (size == buffer.length)
+                    {
+                        consumer.accept(buffer, 0, size);
+                        size = 0;
+                    }
+                }
+                size -= size % frameSize;
+                if (size > 0)
+                {
+                    consumer.accept(buffer, 0, size);
+                }
+                consumer.end();
+                ended = true;
+            }
+        } catch (IOException | UnsupportedAudioFileException ex)
+        {
+            throw new EmbeddedSynthException(ex.getMessage(), ex);
+        } finally
+        {
+            if (!ended)
+            {
+                consumer.abort();
+            }
+            if (midiFile != null)
+            {
+                midiFile.delete();
+            }
+            if (wavFile != null)
+            {
+                wavFile.delete();
+            }
+        }
+    }
+
 }
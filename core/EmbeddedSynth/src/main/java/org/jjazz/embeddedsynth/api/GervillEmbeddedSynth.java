@@ -0,0 +1,393 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.embeddedsynth.api;
+
+import java.awt.Component;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Soundbank;
+import javax.sound.midi.Synthesizer;
+import javax.sound.midi.Track;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import org.jjazz.outputsynth.api.OutputSynth;
+import org.jjazz.outputsynth.spi.OutputSynthManager;
+
+/**
+ * A pure Java EmbeddedSynth based on the JDK software synthesizer (Gervill), which renders offline as fast as the CPU allows.
+ * <p>
+ * Each rendering uses its own synthesizer instance driven via AudioSynthesizer.openStream(): Midi events are sent with their timestamps, then the audio
+ * stream is read for the sequence duration plus a release tail. Rendering does not depend on a native library nor on an audio device, is deterministic,
+ * and can be done concurrently for different sequences.
+ * <p>
+ * AudioSynthesizer is not exported by the java.desktop module: the JVM must be started with
+ * <code>--add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED</code>, see isSupported().
+ */
+public class GervillEmbeddedSynth implements EmbeddedSynth
+{
+
+    public static final AudioFormat DEFAULT_AUDIO_FORMAT = new AudioFormat(44100, 16, 2, true, false);
+    /**
+     * Rendering duration added after the last Midi event to let notes and effects fade out.
+     */
+    private static final int RELEASE_TAIL_MS = 2000;
+    private static final int BLOCK_SIZE_IN_FRAMES = 4096;
+    private final AudioFormat audioFormat;
+    private File soundFontFile;
+    private Soundbank soundbank;
+    private boolean isOpen;
+    private OutputSynth outputSynth;
+    private static final Logger LOGGER = Logger.getLogger(GervillEmbeddedSynth.class.getSimpleName());
+    private static final Method OPEN_STREAM_METHOD = getOpenStreamMethod();     // After LOGGER which is used by getOpenStreamMethod()
+
+    /**
+     * Create a synth which renders with DEFAULT_AUDIO_FORMAT.
+     */
+    public GervillEmbeddedSynth()
+    {
+        this(DEFAULT_AUDIO_FORMAT);
+    }
+
+    /**
+     * @param audioFormat A signed PCM format
+     */
+    public GervillEmbeddedSynth(AudioFormat audioFormat)
+    {
+        if (!audioFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED))
+        {
+            throw new IllegalArgumentException("audioFormat=" + audioFormat);
+        }
+        this.audioFormat = audioFormat;
+    }
+
+    /**
+     * Check if the JDK software synthesizer can be used for offline rendering in this JVM.
+     *
+     * @return
+     */
+    static public boolean isSupported()
+    {
+        return OPEN_STREAM_METHOD != null;
+    }
+
+    public AudioFormat getAudioFormat()
+    {
+        return audioFormat;
+    }
+
+    /**
+     * Set the soundfont used for rendering.
+     *
+     * @param config A .sf2 or .dls File, or null to use the JDK default soundbank.
+     */
+    @Override
+    public void configure(Object config)
+    {
+        if (isOpen)
+        {
+            throw new IllegalStateException("Synth is open");
+        }
+        if (config != null && !(config instanceof File))
+        {
+            throw new IllegalArgumentException("config=" + config);
+        }
+        soundFontFile = (File) config;
+    }
+
+    @Override
+    public void open() throws EmbeddedSynthException
+    {
+        if (isOpen)
+        {
+            return;
+        }
+        if (!isSupported())
+        {
+            throw new EmbeddedSynthException("Offline rendering with the Java internal synth is not available. "
+                    + "JVM must be started with --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED");
+        }
+        if (soundFontFile != null)
+        {
+            try
+            {
+                soundbank = MidiSystem.getSoundbank(soundFontFile);
+            } catch (InvalidMidiDataException | IOException ex)
+            {
+                throw new EmbeddedSynthException("Can't load soundfont " + soundFontFile.getAbsolutePath() + ": " + ex.getMessage(), ex);
+            }
+        }
+        isOpen = true;
+        LOGGER.log(Level.INFO, "open() soundFontFile={0}", soundFontFile);
+    }
+
+    @Override
+    public void close()
+    {
+        soundbank = null;
+        isOpen = false;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return isOpen;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "Gervill";
+    }
+
+    @Override
+    public String getVersion()
+    {
+        return System.getProperty("java.version");
+    }
+
+    /**
+     * A GM OutputSynth.
+     *
+     * @return
+     */
+    @Override
+    public synchronized OutputSynth getOutputSynth()
+    {
+        if (outputSynth == null)
+        {
+            outputSynth = OutputSynthManager.getDefault().getStandardOutputSynth(OutputSynthManager.STD_GM);
+        }
+        return outputSynth;
+    }
+
+    /**
+     * No settings: do nothing.
+     *
+     * @param c
+     */
+    @Override
+    public void showSettings(Component c)
+    {
+        // Nothing
+    }
+
+    @Override
+    public void generateWavFile(File midiFile, File wavFile) throws EmbeddedSynthException
+    {
+        Sequence sequence;
+        try
+        {
+            sequence = MidiSystem.getSequence(midiFile);
+        } catch (InvalidMidiDataException | IOException ex)
+        {
+            throw new EmbeddedSynthException(ex.getMessage(), ex);
+        }
+        generateAudio(sequence, new WavFileWriter(wavFile));
+    }
+
+    @Override
+    public boolean isConcurrentRenderingSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean isSequenceRenderingSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public void generateAudio(Sequence sequence, PcmConsumer consumer) throws EmbeddedSynthException
+    {
+        if (!isOpen)
+        {
+            throw new IllegalStateException("Synth is not open");
+        }
+
+        Synthesizer synth;
+        try
+        {
+            synth = MidiSystem.getSynthesizer();        // A new instance each time
+        } catch (MidiUnavailableException ex)
+        {
+            consumer.abort();
+            throw new EmbeddedSynthException(ex.getMessage(), ex);
+        }
+
+        boolean ended = false;
+        try
+        {
+            AudioInputStream ais = openStream(synth);
+            if (soundbank != null)
+            {
+                Soundbank defaultSoundbank = synth.getDefaultSoundbank();
+                if (defaultSoundbank != null)
+                {
+                    synth.unloadAllInstruments(defaultSoundbank);
+                }
+                synth.loadAllInstruments(soundbank);
+            }
+
+
+            // Queue all the events, then read the rendered audio
+            long durationMicros = sendEvents(sequence, synth.getReceiver());
+            long nbFrames = (long) Math.ceil((durationMicros + RELEASE_TAIL_MS * 1000L) * audioFormat.getFrameRate() / 1000000);
+            int frameSize = audioFormat.getFrameSize();
+            byte[] buffer = new byte[BLOCK_SIZE_IN_FRAMES * frameSize];
+
+            consumer.start(audioFormat);
+            long remaining = nbFrames * frameSize;
+            while (remaining > 0)
+            {
+                int size = (int) Math.min(buffer.length, remaining);
+                int n = 0;
+                while (n < size)
+                {
+                    int r = ais.read(buffer, n, size - n);
+                    if (r < 0)
+                    {
+                        throw new EmbeddedSynthException("Unexpected end of synthesizer stream");
+                    }
+                    n += r;
+                }
+                consumer.accept(buffer, 0, size);
+                remaining -= size;
+            }
+            consumer.end();
+            ended = true;
+
+        } catch (MidiUnavailableException | IOException ex)
+        {
+            throw new EmbeddedSynthException(ex.getMessage(), ex);
+        } finally
+        {
+            synth.close();
+            if (!ended)
+            {
+                consumer.abort();
+            }
+        }
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    private AudioInputStream openStream(Synthesizer synth) throws EmbeddedSynthException
+    {
+        try
+        {
+            return (AudioInputStream) OPEN_STREAM_METHOD.invoke(synth, audioFormat, null);
+        } catch (IllegalAccessException | InvocationTargetException ex)
+        {
+            Throwable t = ex instanceof InvocationTargetException ? ex.getCause() : ex;
+            throw new EmbeddedSynthException("Can't open synthesizer stream: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Send all the sequence events to receiver, with their timestamp in microseconds.
+     * <p>
+     * Meta events are not sent, tempo changes are used to compute the timestamps.
+     *
+     * @return The timestamp of the last event
+     */
+    private long sendEvents(Sequence sequence, Receiver receiver)
+    {
+        // Merge the tracks, keeping the track order for events at the same tick
+        List<MidiEvent> events = new ArrayList<>();
+        for (Track track : sequence.getTracks())
+        {
+            for (int i = 0; i < track.size(); i++)
+            {
+                events.add(track.get(i));
+            }
+        }
+        events.sort((e1, e2) -> Long.compare(e1.getTick(), e2.getTick()));
+
+
+        boolean isPPQ = sequence.getDivisionType() == Sequence.PPQ;
+        double resolution = sequence.getResolution();
+        long lastTick = 0;
+        double lastTickMicros = 0;
+        int microsPerQuarter = 500000;          // 120 bpm
+        long timeMicros = 0;
+        for (MidiEvent me : events)
+        {
+            long tick = me.getTick();
+            if (isPPQ)
+            {
+                lastTickMicros += (tick - lastTick) * microsPerQuarter / resolution;
+                lastTick = tick;
+                timeMicros = (long) lastTickMicros;
+            } else
+            {
+                timeMicros = (long) (tick * 1000000d / (sequence.getDivisionType() * resolution));
+            }
+
+            if (me.getMessage() instanceof MetaMessage mm)
+            {
+                if (isPPQ && mm.getType() == 0x51 && mm.getData().length == 3)
+                {
+                    byte[] data = mm.getData();
+                    microsPerQuarter = ((data[0] & 0xFF) << 16) | ((data[1] & 0xFF) << 8) | (data[2] & 0xFF);
+                }
+                continue;
+            }
+            receiver.send(me.getMessage(), timeMicros);
+        }
+        return timeMicros;
+    }
+
+    static private Method getOpenStreamMethod()
+    {
+        try
+        {
+            Class<?> c = Class.forName("com.sun.media.sound.AudioSynthesizer");
+            if (!c.getModule().isExported(c.getPackageName(), GervillEmbeddedSynth.class.getModule()))
+            {
+                LOGGER.info("getOpenStreamMethod() com.sun.media.sound package is not exported, offline rendering with Gervill not available");
+                return null;
+            }
+            return c.getMethod("openStream", AudioFormat.class, Map.class);
+        } catch (ClassNotFoundException | NoSuchMethodException ex)
+        {
+            LOGGER.log(Level.WARNING, "getOpenStreamMethod() ex={0}", ex.getMessage());
+            return null;
+        }
+    }
+}
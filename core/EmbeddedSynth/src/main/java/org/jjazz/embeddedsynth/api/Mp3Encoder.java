@@ -23,6 +23,13 @@
 package org.jjazz.embeddedsynth.api;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
 
 public interface Mp3Encoder
 {
@@ -38,4 +45,139 @@ public interface Mp3Encoder
      * @throws EmbeddedSynthException
      */
     void encode(File audioFile, File mp3File, boolean lowQuality, boolean useVariableEncoding) throws EmbeddedSynthException;
+
+    /**
+     * Encode an audio stream to a mp3 file.
+     * <p>
+     * Default implementation writes the stream to a temporary .wav file then calls encode(File, File, boolean, boolean). Implementations should override
+     * this method to encode the stream directly.
+     *
+     * @param audioIs             Read until its end, not closed by this method.
+     * @param mp3File
+     * @param lowQuality          If true encode with low-quality settings.
+     * @param useVariableEncoding If false use fix-rate encoding
+     * @throws EmbeddedSynthException
+     */
+    default void encode(AudioInputStream audioIs, File mp3File, boolean lowQuality, boolean useVariableEncoding) throws EmbeddedSynthException
+    {
+        File wavFile = null;
+        try
+        {
+            wavFile = File.createTempFile("Mp3Encoder", ".wav");
+            AudioSystem.write(audioIs, AudioFileFormat.Type.WAVE, wavFile);
+            encode(wavFile, mp3File, lowQuality, useVariableEncoding);
+        } catch (IOException ex)
+        {
+            throw new EmbeddedSynthException(ex.getMessage());
+        } finally
+        {
+            if (wavFile != null)
+            {
+                wavFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Encode PCM audio data to a mp3 file.
+     * <p>
+     * Default implementation calls encode(AudioInputStream, File, boolean, boolean).
+     *
+     * @param pcmData             The PCM data between position and limit. Buffer position is not changed.
+     * @param format              The format of pcmData
+     * @param mp3File
+     * @param lowQuality          If true encode with low-quality settings.
+     * @param useVariableEncoding If false use fix-rate encoding
+     * @throws EmbeddedSynthException
+     */
+    default void encode(ByteBuffer pcmData, AudioFormat format, File mp3File, boolean lowQuality, boolean useVariableEncoding) throws EmbeddedSynthException
+    {
+        ByteBuffer bb = pcmData.duplicate();
+        InputStream is = new InputStream()
+        {
+            @Override
+            public int read()
+            {
+                return bb.hasRemaining() ? bb.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len)
+            {
+                if (len == 0)
+                {
+                    return 0;
+                }
+                if (!bb.hasRemaining())
+                {
+                    return -1;
+                }
+                len = Math.min(len, bb.remaining());
+                bb.get(b, off, len);
+                return len;
+            }
+        };
+        long nbFrames = bb.remaining() / format.getFrameSize();
+        encode(new AudioInputStream(is, format, nbFrames), mp3File, lowQuality, useVariableEncoding);
+    }
+
+    /**
+     * Get a PcmConsumer which encodes the received PCM data to a mp3 file.
+     * <p>
+     * The mp3 file is complete once the consumer end() method has returned. Default implementation writes the data to a temporary .wav file, then calls
+     * encode(File, File, boolean, boolean) when end() is called. Implementations should override this method to encode data blocks as they come.
+     *
+     * @param mp3File
+     * @param lowQuality          If true encode with low-quality settings.
+     * @param useVariableEncoding If false use fix-rate encoding
+     * @return
+     * @throws EmbeddedSynthException
+     */
+    default PcmConsumer createPcmConsumer(File mp3File, boolean lowQuality, boolean useVariableEncoding) throws EmbeddedSynthException
+    {
+        File wavFile;
+        try
+        {
+            wavFile = File.createTempFile("Mp3Encoder", ".wav");
+        } catch (IOException ex)
+        {
+            throw new EmbeddedSynthException(ex.getMessage());
+        }
+        wavFile.deleteOnExit();
+        return new WavFileWriter(wavFile)
+        {
+            @Override
+            public void end() throws EmbeddedSynthException
+            {
+                try
+                {
+                    super.end();
+                    encode(wavFile, mp3File, lowQuality, useVariableEncoding);
+                } finally
+                {
+                    wavFile.delete();
+                }
+            }
+
+            @Override
+            public void abort()
+            {
+                super.abort();
+                wavFile.delete();
+            }
+        };
+    }
+
+    /**
+     * Check if long fix-rate encodings are split in segments encoded in parallel.
+     * <p>
+     * Faster on multi-core machines, but the quality at a given bitrate might be lower. Default implementation returns false.
+     *
+     * @return
+     * @see org.jjazz.embeddedsynth.spi.Mp3EncoderProvider#getMp3Encoder(boolean)
+     */
+    default boolean isParallelEncoding()
+    {
+        return false;
+    }
 }
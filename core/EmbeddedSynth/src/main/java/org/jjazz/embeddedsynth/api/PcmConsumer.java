@@ -0,0 +1,133 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.embeddedsynth.api;
+
+import java.util.List;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Receive PCM audio data block by block, e.g. from EmbeddedSynth.generateAudio().
+ * <p>
+ * Methods are called in this order: start() once, accept() 0 or more times, end() once. If an exception occured, end() is not called but abort() is
+ * called instead, so that the consumer can release its resources.
+ */
+public interface PcmConsumer
+{
+
+    /**
+     * Called once before the first data block.
+     *
+     * @param format The format of the data blocks
+     * @throws EmbeddedSynthException
+     */
+    void start(AudioFormat format) throws EmbeddedSynthException;
+
+    /**
+     * Process a block of PCM data.
+     * <p>
+     * A block always contains complete sample frames. The data array might be reused by the caller once this method returns.
+     *
+     * @param data
+     * @param offset
+     * @param length
+     * @throws EmbeddedSynthException
+     */
+    void accept(byte[] data, int offset, int length) throws EmbeddedSynthException;
+
+    /**
+     * Called once after the last data block.
+     *
+     * @throws EmbeddedSynthException
+     */
+    void end() throws EmbeddedSynthException;
+
+    /**
+     * Called instead of end() when data production failed, or when start(), accept() or end() threw an exception.
+     * <p>
+     * Must release all the resources (files, encoders...) and should remove incomplete output. Must not throw an exception, can be called several times
+     * and at any time, even if start() was not called. Has no effect after a successful end().
+     * <p>
+     * Default implementation does nothing.
+     */
+    default void abort()
+    {
+        // Nothing
+    }
+
+    /**
+     * Get a PcmConsumer which forwards all calls to each of the specified consumers, in order.
+     *
+     * @param consumers
+     * @return
+     */
+    static PcmConsumer of(PcmConsumer... consumers)
+    {
+        if (consumers.length == 0)
+        {
+            throw new IllegalArgumentException("consumers is empty");
+        }
+        if (consumers.length == 1)
+        {
+            return consumers[0];
+        }
+        List<PcmConsumer> list = List.of(consumers);
+        return new PcmConsumer()
+        {
+            @Override
+            public void start(AudioFormat format) throws EmbeddedSynthException
+            {
+                for (var c : list)
+                {
+                    c.start(format);
+                }
+            }
+
+            @Override
+            public void accept(byte[] data, int offset, int length) throws EmbeddedSynthException
+            {
+                for (var c : list)
+                {
+                    c.accept(data, offset, length);
+                }
+            }
+
+            @Override
+            public void end() throws EmbeddedSynthException
+            {
+                for (var c : list)
+                {
+                    c.end();
+                }
+            }
+
+            @Override
+            public void abort()
+            {
+                for (var c : list)
+                {
+                    c.abort();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.embeddedsynth.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * A PcmConsumer which writes a .wav file.
+ * <p>
+ * Data is written as it comes, the RIFF sizes are updated when end() is called. Only little-endian PCM formats (or 8-bit) are supported. abort() deletes
+ * the incomplete file.
+ */
+public class WavFileWriter implements PcmConsumer
+{
+
+    private static final int HEADER_SIZE = 44;
+    private final File wavFile;
+    private FileChannel channel;
+    private long dataSize;
+    private boolean ended;
+
+    public WavFileWriter(File wavFile)
+    {
+        Objects.requireNonNull(wavFile);
+        this.wavFile = wavFile;
+    }
+
+    public File getFile()
+    {
+        return wavFile;
+    }
+
+    @Override
+    public void start(AudioFormat format) throws EmbeddedSynthException
+    {
+        if (channel != null)
+        {
+            throw new IllegalStateException("start() already called");
+        }
+        var encoding = format.getEncoding();
+        int sampleSize = format.getSampleSizeInBits();
+        boolean pcm = encoding.equals(AudioFormat.Encoding.PCM_SIGNED) || encoding.equals(AudioFormat.Encoding.PCM_UNSIGNED);
+        if (!pcm || (sampleSize > 8 && format.isBigEndian()) || sampleSize % 8 != 0)
+        {
+            throw new EmbeddedSynthException("Unsupported audio format for a .wav file: " + format);
+        }
+
+        try
+        {
+            channel = FileChannel.open(wavFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put("RIFF".getBytes()).putInt(0).put("WAVE".getBytes());
+            header.put("fmt ".getBytes()).putInt(16);
+            header.putShort((short) 1);         // PCM
+            header.putShort((short) format.getChannels());
+            header.putInt((int) format.getSampleRate());
+            header.putInt((int) format.getSampleRate() * format.getFrameSize());
+            header.putShort((short) format.getFrameSize());
+            header.putShort((short) sampleSize);
+            header.put("data".getBytes()).putInt(0);
+            write(header.flip());
+        } catch (IOException ex)
+        {
+            close();
+            throw new EmbeddedSynthException(ex.getMessage(), ex);
+        }
+        dataSize = 0;
+    }
+
+    @Override
+    public void accept(byte[] data, int offset, int length) throws EmbeddedSynthException
+    {
+        checkStarted();
+        try
+        {
+            write(ByteBuffer.wrap(data, offset, length));
+        } catch (IOException ex)
+        {
+            close();
+            throw new EmbeddedSynthException(ex.getMessage(), ex);
+        }
+        dataSize += length;
+    }
+
+    @Override
+    public void end() throws EmbeddedSynthException
+    {
+        checkStarted();
+        try
+        {
+            ByteBuffer bb = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            bb.putInt(0, (int) (HEADER_SIZE - 8 + dataSize));
+            channel.write(bb, 4);
+            bb.clear();
+            bb.putInt(0, (int) dataSize);
+            channel.write(bb, HEADER_SIZE - 4);
+            channel.close();
+            ended = true;
+        } catch (IOException ex)
+        {
+            throw new EmbeddedSynthException(ex.getMessage(), ex);
+        } finally
+        {
+            close();
+        }
+    }
+
+    @Override
+    public void abort()
+    {
+        close();
+        if (!ended)
+        {
+            wavFile.delete();
+        }
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    private void write(ByteBuffer bb) throws IOException
+    {
+        while (bb.hasRemaining())
+        {
+            channel.write(bb);
+        }
+    }
+
+    private void checkStarted()
+    {
+        if (channel == null)
+        {
+            throw new IllegalStateException("start() not called");
+        }
+    }
+
+    private void close()
+    {
+        if (channel != null)
+        {
+            try
+            {
+                channel.close();
+            } catch (IOException ex)
+            {
+                // Nothing
+            }
+            channel = null;
+        }
+    }
+}
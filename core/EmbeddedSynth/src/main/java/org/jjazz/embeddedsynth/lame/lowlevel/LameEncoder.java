@@ -87,6 +87,13 @@ public class LameEncoder {
   private int sampleSizeInBits;
   private ByteOrder byteOrder;
   private MPEGMode chMode;
+  private boolean disableReservoir;
+  private boolean writeVbrTag = true;
+  /**
+   * Conversion buffers reused across encodeBuffer() calls, grown on demand.
+   */
+  private int[] sampleBuffer = new int[0];
+  private float[][] floatBuffer = new float[2][0];
 
   // these fields are set upon successful initialization to show effective
   // values.
@@ -131,10 +138,29 @@ public class LameEncoder {
    */
   public LameEncoder(AudioFormat sourceFormat, int bitRate,
                      MPEGMode channelMode, int quality, boolean VBR) {
+    this(sourceFormat, bitRate, channelMode, quality, VBR, false, true);
+  }
+
+  /**
+   * Same as above, with additional bitstream options.
+   *
+   * @param disableReservoir if true the bit reservoir is not used: each
+   *                         frame only contains its own data, so that
+   *                         frames can be cut and joined with frames from
+   *                         another encoder.
+   * @param writeVbrTag      if false no (empty) Xing/Info tag frame is
+   *                         written at the start of the bitstream.
+   * @throws IllegalArgumentException when parameters are not supported by LAME.
+   */
+  public LameEncoder(AudioFormat sourceFormat, int bitRate,
+                     MPEGMode channelMode, int quality, boolean VBR,
+                     boolean disableReservoir, boolean writeVbrTag) {
     this.bitRate = bitRate;
     this.chMode = channelMode;
     this.quality = quality;
     this.vbrMode = VBR;
+    this.disableReservoir = disableReservoir;
+    this.writeVbrTag = writeVbrTag;
     initParams(sourceFormat);
   }
 
@@ -185,6 +211,8 @@ public class LameEncoder {
     lame.getId3().init(lame.getFlags());
     lame.getFlags().setWriteId3tagAutomatic(false);
     lame.getFlags().setFindReplayGain(true);
+    lame.getFlags().disable_reservoir = disableReservoir;
+    lame.getFlags().bWriteVbrTag = writeVbrTag;
     // Analyze parameters and set more internal options accordingly
     int rc = lame.initParams();
     // return effective values
@@ -216,6 +244,13 @@ public class LameEncoder {
     return DEFAULT_PCM_BUFFER_SIZE;
   }
 
+  /**
+   * Number of PCM samples (per channel) encoded in one mp3 frame.
+   */
+  public final int getFrameSize() {
+    return lame.getFlags().getFrameSize();
+  }
+
   public final int getMP3BufferSize() {
     // bad estimate :)
     return getPCMBufferSize() / 2 + 1024;
@@ -225,7 +260,10 @@ public class LameEncoder {
                              final int length, final byte[] encoded) {
     int bytesPerSample = sampleSizeInBits >> 3;
     int samplesRead = length / bytesPerSample;
-    int[] sampleBuffer = new int[samplesRead];
+    if (sampleBuffer.length < samplesRead) {
+      sampleBuffer = new int[samplesRead];
+    }
+    final int[] sampleBuffer = this.sampleBuffer;
 
     int sampleBufferPos = samplesRead;
     if (byteOrder == ByteOrder.LITTLE_ENDIAN) {
@@ -272,7 +310,10 @@ public class LameEncoder {
     sampleBufferPos = samplesRead;
     samplesRead /= lame.getFlags().getInNumChannels();
 
-    float buffer[][] = new float[2][samplesRead];
+    if (floatBuffer[0].length < samplesRead) {
+      floatBuffer = new float[2][samplesRead];
+    }
+    final float buffer[][] = floatBuffer;
     if (lame.getFlags().getInNumChannels() == 2) {
       for (int i = samplesRead; --i >= 0; ) {
         buffer[1][i] = sampleBuffer[--sampleBufferPos];
@@ -193,6 +193,16 @@ public class Encoder {
   VBRTag vbr;
   QuantizePVT qupvt;
   private NewMDCT newMDCT = new NewMDCT();
+  /**
+   * Per-frame masking ratios, entirely rewritten by the psychoacoustic model
+   * for every granule and channel it reports.
+   */
+  private final III_psy_ratio maskingLR[][] = {
+      {new III_psy_ratio(), new III_psy_ratio()},
+      {new III_psy_ratio(), new III_psy_ratio()}};
+  private final III_psy_ratio maskingMS[][] = {
+      {new III_psy_ratio(), new III_psy_ratio()},
+      {new III_psy_ratio(), new III_psy_ratio()}};
 
   public final void setModules(BitStream bs, PsyModel psy, QuantizePVT qupvt,
                                VBRTag vbr) {
@@ -373,20 +383,8 @@ public class Encoder {
                                          final float[] inbuf_l, final float[] inbuf_r, byte[] mp3buf,
                                          int mp3bufPos, int mp3buf_size) {
     int mp3count;
-    III_psy_ratio masking_LR[][] = new III_psy_ratio[2][2]; /*
-																 * LR masking &
-																 * energy
-																 */
-    masking_LR[0][0] = new III_psy_ratio();
-    masking_LR[0][1] = new III_psy_ratio();
-    masking_LR[1][0] = new III_psy_ratio();
-    masking_LR[1][1] = new III_psy_ratio();
-    III_psy_ratio masking_MS[][] = new III_psy_ratio[2][2];
-		/* MS masking & energy */
-    masking_MS[0][0] = new III_psy_ratio();
-    masking_MS[0][1] = new III_psy_ratio();
-    masking_MS[1][0] = new III_psy_ratio();
-    masking_MS[1][1] = new III_psy_ratio();
+    final III_psy_ratio masking_LR[][] = maskingLR; /* LR masking & energy */
+    final III_psy_ratio masking_MS[][] = maskingMS; /* MS masking & energy */
     III_psy_ratio masking[][];
 		/* pointer to selected maskings */
     final float[] inbuf[] = new float[2][];
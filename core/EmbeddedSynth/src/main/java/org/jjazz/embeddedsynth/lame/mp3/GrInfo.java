@@ -39,10 +39,16 @@ public final class GrInfo {
 
   int max_nonzero_coeff;
 
+  /**
+   * Copy the content of other.
+   * <p>
+   * Arrays are copied into the existing arrays of this instance: assign() is
+   * called several times per granule by the quantization loops.
+   */
   public final void assign(final GrInfo other) {
-    xr = other.xr.clone();
-    l3_enc = other.l3_enc.clone();
-    scalefac = other.scalefac.clone();
+    System.arraycopy(other.xr, 0, xr, 0, xr.length);
+    System.arraycopy(other.l3_enc, 0, l3_enc, 0, l3_enc.length);
+    System.arraycopy(other.scalefac, 0, scalefac, 0, scalefac.length);
     xrpow_max = other.xrpow_max;
 
     part2_3_length = other.part2_3_length;
@@ -52,8 +58,8 @@ public final class GrInfo {
     scalefac_compress = other.scalefac_compress;
     block_type = other.block_type;
     mixed_block_flag = other.mixed_block_flag;
-    table_select = other.table_select.clone();
-    subblock_gain = other.subblock_gain.clone();
+    System.arraycopy(other.table_select, 0, table_select, 0, table_select.length);
+    System.arraycopy(other.subblock_gain, 0, subblock_gain, 0, subblock_gain.length);
     region0_count = other.region0_count;
     region1_count = other.region1_count;
     preflag = other.preflag;
@@ -67,12 +73,13 @@ public final class GrInfo {
     sfbmax = other.sfbmax;
     psymax = other.psymax;
     sfbdivide = other.sfbdivide;
-    width = other.width.clone();
-    window = other.window.clone();
+    System.arraycopy(other.width, 0, width, 0, width.length);
+    System.arraycopy(other.window, 0, window, 0, window.length);
     count1bits = other.count1bits;
 
-    sfb_partition_table = other.sfb_partition_table.clone();
-    slen = other.slen.clone();
+    // Read-only reference to a QuantizePVT.nr_of_sfb_block table
+    sfb_partition_table = other.sfb_partition_table;
+    System.arraycopy(other.slen, 0, slen, 0, slen.length);
     max_nonzero_coeff = other.max_nonzero_coeff;
   }
 }
@@ -493,6 +493,10 @@ public class NewMDCT {
   private static final float[] cx = win[Encoder.SHORT_TYPE];
   private static final float[] ca = win[Encoder.SHORT_TYPE];
   private static final float[] cs = win[Encoder.SHORT_TYPE];
+  /**
+   * Long block MDCT input, fully rewritten for each subband.
+   */
+  private final float[] mdctLongWork = new float[18];
 
   /**
    * new IDCT routine written by Takehiro TOMINAGA
@@ -1095,7 +1099,7 @@ public class NewMDCT {
               }
               mdct_short(mdct_enc, mdct_encPos);
             } else {
-              float work[] = new float[18];
+              final float work[] = mdctLongWork;
               for (int k = -NL / 4; k < 0; k++) {
                 float a, b;
                 a = win[type][k + 27]
@@ -252,6 +252,34 @@ public class PsyModel {
   private float ma_max_i1;
   private float ma_max_i2;
   private float ma_max_m;
+  /**
+   * Scratch data for L3psycho_anal_ns(), L3psycho_anal_vbr() and their
+   * helpers, allocated once per encoder. Arrays the original code relied on
+   * being zero-initialised are cleared before each use.
+   */
+  private final float wsamp_L[][] = new float[2][Encoder.BLKSIZE];
+  private final float wsamp_S[][][] = new float[2][3][Encoder.BLKSIZE_s];
+  private final float fftenergy[] = new float[Encoder.HBLKSIZE];
+  private final float fftenergy_s[][] = new float[3][Encoder.HBLKSIZE_s];
+  private final float ns_hpfsmpl[][] = new float[2][576];
+  private final float eb_l[] = new float[Encoder.CBANDS + 1];
+  private final float eb_s[] = new float[Encoder.CBANDS + 1];
+  private final float thr[] = new float[Encoder.CBANDS + 2];
+  private final float eb_vbr[][] = new float[4][Encoder.CBANDS];
+  private final float thr_vbr[][] = new float[4][Encoder.CBANDS];
+  private final float max[] = new float[Encoder.CBANDS];
+  private final float avg[] = new float[Encoder.CBANDS];
+  private final int mask_idx_l[] = new int[Encoder.CBANDS + 2];
+  private final int mask_idx_s[] = new int[Encoder.CBANDS + 2];
+  private final float en_subshort[] = new float[12];
+  private final float en_short[] = new float[4];
+  private final float attack_intensity[] = new float[12];
+  private final int ns_attacks[] = new int[4];
+  private final int ns_attacks_vbr[][] = new int[4][4];
+  private final float sub_short_factor[][] = new float[4][3];
+  private final float new_thmm[] = new float[3];
+  private final int blocktype[] = new int[2];
+  private final int uselongblock[] = new int[2];
 
   private static final float NON_LINEAR_SCALE_ENERGY(float x) {
     return x;
@@ -997,28 +1025,26 @@ public class PsyModel {
 		 */
     final LameInternalFlags gfc = gfp.internal_flags;
 
-		/* fft and energy calculation */
-    float wsamp_L[][] = new float[2][Encoder.BLKSIZE];
-    float wsamp_S[][][] = new float[2][3][Encoder.BLKSIZE_s];
+		/* fft and energy calculation: wsamp_L, wsamp_S are fully overwritten */
 
 		/* convolution */
-    float eb_l[] = new float[Encoder.CBANDS + 1], eb_s[] = new float[Encoder.CBANDS + 1];
-    float thr[] = new float[Encoder.CBANDS + 2];
+    Arrays.fill(eb_l, 0);
+    Arrays.fill(eb_s, 0);
+    Arrays.fill(thr, 0);
 
 		/* block type */
-    int blocktype[] = new int[2], uselongblock[] = new int[2];
+    Arrays.fill(blocktype, 0);
+    Arrays.fill(uselongblock, 0);
 
 		/* usual variables like loop indices, etc.. */
     int numchn, chn;
     int b, i, j, k;
     int sb, sblock;
 
-		/* variables used for --nspsytune */
-    float ns_hpfsmpl[][] = new float[2][576];
+		/* variables used for --nspsytune, ns_hpfsmpl is fully overwritten */
     float pcfact;
 
-    int mask_idx_l[] = new int[Encoder.CBANDS + 2], mask_idx_s[] = new int[Encoder.CBANDS + 2];
-
+    Arrays.fill(mask_idx_l, 0);
     Arrays.fill(mask_idx_s, 0);
 
     numchn = gfc.channels_out;
@@ -1073,15 +1099,14 @@ public class PsyModel {
     for (chn = 0; chn < numchn; chn++) {
       float wsamp_l[][];
       float wsamp_s[][][];
-      float en_subshort[] = new float[12];
-      float en_short[] = {0, 0, 0, 0};
-      float attack_intensity[] = new float[12];
       int ns_uselongblock = 1;
       float attackThreshold;
-      float max[] = new float[Encoder.CBANDS], avg[] = new float[Encoder.CBANDS];
-      int ns_attacks[] = {0, 0, 0, 0};
-      float fftenergy[] = new float[Encoder.HBLKSIZE];
-      float fftenergy_s[][] = new float[3][Encoder.HBLKSIZE_s];
+      Arrays.fill(en_subshort, 0);
+      Arrays.fill(en_short, 0);
+      Arrays.fill(attack_intensity, 0);
+      Arrays.fill(max, 0);
+      Arrays.fill(avg, 0);
+      Arrays.fill(ns_attacks, 0);
 
 			/*
 			 * rh 20040301: the following loops do access one off the limits so
@@ -1475,7 +1500,6 @@ public class PsyModel {
                                        final III_psy_ratio masking_MS_ratio[][],
                                        final float energy[], float sub_short_factor[][],
                                        final int ns_attacks[][], final int uselongblock[]) {
-    float ns_hpfsmpl[][] = new float[2][576];
     final LameInternalFlags gfc = gfp.internal_flags;
     int n_chn_out = gfc.channels_out;
 		/* chn=2 and 3 = Mid and Side channels */
@@ -1511,9 +1535,9 @@ public class PsyModel {
       }
     }
     for (int chn = 0; chn < n_chn_psy; chn++) {
-      float attack_intensity[] = new float[12];
-      float en_subshort[] = new float[12];
-      float en_short[] = {0, 0, 0, 0};
+      Arrays.fill(attack_intensity, 0);
+      Arrays.fill(en_subshort, 0);
+      Arrays.fill(en_short, 0);
       float[] pf = ns_hpfsmpl[chn & 1];
       int pfPos = 0;
       final float attackThreshold = (chn == 3) ? gfc.nsPsy.attackthre_s
@@ -1744,9 +1768,10 @@ public class PsyModel {
                                         final float[] fftenergy_s[], final float[] eb, final float[] thr,
                                         final int chn, final int sblock) {
     final LameInternalFlags gfc = gfp.internal_flags;
-    float max[] = new float[Encoder.CBANDS], avg[] = new float[Encoder.CBANDS];
     int i, j, b;
-    int mask_idx_s[] = new int[Encoder.CBANDS];
+    Arrays.fill(max, 0);
+    Arrays.fill(avg, 0);
+    Arrays.fill(mask_idx_s, 0);
 
     for (b = j = 0; b < gfc.npart_s; ++b) {
       float ebb = 0, m = 0;
@@ -1830,9 +1855,10 @@ public class PsyModel {
   private void vbrpsy_compute_masking_l(final LameInternalFlags gfc,
                                         final float fftenergy[], final float eb_l[], final float thr[],
                                         final int chn) {
-    float max[] = new float[Encoder.CBANDS], avg[] = new float[Encoder.CBANDS];
-    int mask_idx_l[] = new int[Encoder.CBANDS + 2];
     int b;
+    Arrays.fill(max, 0);
+    Arrays.fill(avg, 0);
+    Arrays.fill(mask_idx_l, 0);
 
     /*********************************************************************
      * Calculate the energy and the tonality of each partition.
@@ -2076,19 +2102,23 @@ public class PsyModel {
 		/* fft and energy calculation */
     float wsamp_l[][];
     float wsamp_s[][][];
-    float fftenergy[] = new float[Encoder.HBLKSIZE];
-    float fftenergy_s[][] = new float[3][Encoder.HBLKSIZE_s];
-    float wsamp_L[][] = new float[2][Encoder.BLKSIZE];
-    float wsamp_S[][][] = new float[2][3][Encoder.BLKSIZE_s];
-    float eb[][] = new float[4][Encoder.CBANDS], thr[][] = new float[4][Encoder.CBANDS];
-
-    float sub_short_factor[][] = new float[4][3];
+		/* short block FFTs are only computed for channels using short blocks */
+    for (int ch = 0; ch < 2; ch++)
+      for (int sblock = 0; sblock < 3; sblock++)
+        Arrays.fill(wsamp_S[ch][sblock], 0);
+    final float eb[][] = eb_vbr, thr[][] = thr_vbr;
+    for (int ch = 0; ch < 4; ch++) {
+      Arrays.fill(eb[ch], 0);
+      Arrays.fill(thr[ch], 0);
+      Arrays.fill(sub_short_factor[ch], 0);
+    }
     float pcfact = 0.6f;
 
 		/* block type */
-    int ns_attacks[][] = {{0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0},
-        {0, 0, 0, 0}};
-    int uselongblock[] = new int[2];
+    final int ns_attacks[][] = ns_attacks_vbr;
+    for (int ch = 0; ch < 4; ch++)
+      Arrays.fill(ns_attacks[ch], 0);
+    Arrays.fill(uselongblock, 0);
 
 		/* usual variables like loop indices, etc.. */
 
@@ -2181,7 +2211,6 @@ public class PsyModel {
           continue;
         }
         for (int sb = 0; sb < Encoder.SBMAX_s; sb++) {
-          float new_thmm[] = new float[3];
           for (int sblock = 0; sblock < 3; sblock++) {
             float thmm = gfc.thm[chn].s[sb][sblock];
             thmm *= NS_PREECHO_ATT0;
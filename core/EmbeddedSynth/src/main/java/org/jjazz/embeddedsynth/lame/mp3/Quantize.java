@@ -34,6 +34,15 @@ public class Quantize {
   QuantizePVT qupvt;
   VBRQuantize vbr = new VBRQuantize();
   Takehiro tk;
+  /**
+   * Scratch buffers for outer_loop() and VBR_encode_granule(), allocated once
+   * per encoder instead of once per granule.
+   */
+  private final GrInfo outerLoopCodInfo = new GrInfo();
+  private final float[] outerLoopSaveXrpow = new float[576];
+  private final float[] outerLoopDistort = new float[L3Side.SFBMAX];
+  private final GrInfo vbrBestCodInfo = new GrInfo();
+  private final float[] vbrBestXrpow = new float[576];
 
   public final void setModules(BitStream bs, Reservoir rv, QuantizePVT qupvt,
                                Takehiro tk) {
@@ -841,9 +850,10 @@ public class Quantize {
                               final GrInfo cod_info, final float[] l3_xmin, float xrpow[],
                               final int ch, final int targ_bits) {
     final LameInternalFlags gfc = gfp.internal_flags;
-    GrInfo cod_info_w = new GrInfo();
-    float save_xrpow[] = new float[576];
-    float distort[] = new float[L3Side.SFBMAX];
+    GrInfo cod_info_w = outerLoopCodInfo;
+    float save_xrpow[] = outerLoopSaveXrpow;
+    float distort[] = outerLoopDistort;
+    Arrays.fill(distort, 0);
     CalcNoiseResult best_noise_info = new CalcNoiseResult();
     int better;
     CalcNoiseData prev_noise = new CalcNoiseData();
@@ -1058,8 +1068,8 @@ public class Quantize {
                                        GrInfo cod_info, final float[] l3_xmin, float xrpow[],
                                        final int ch, int min_bits, int max_bits) {
     final LameInternalFlags gfc = gfp.internal_flags;
-    GrInfo bst_cod_info = new GrInfo();
-    float bst_xrpow[] = new float[576];
+    GrInfo bst_cod_info = vbrBestCodInfo;
+    float bst_xrpow[] = vbrBestXrpow;
     final int Max_bits = max_bits;
     int real_bits = max_bits + 1;
     int this_bits = (max_bits + min_bits) / 2;
@@ -154,6 +154,10 @@ public class QuantizePVT {
   Takehiro tak;
   Reservoir rv;
   PsyModel psy;
+  /**
+   * Reused by calc_noise for every scalefactor band.
+   */
+  private final StartLine calcNoiseStartLine = new StartLine(0);
 
   public final void setModules(Takehiro tk, Reservoir rv, PsyModel psy) {
     this.tak = tk;
@@ -781,7 +785,8 @@ public class QuantizePVT {
             l = 0;
         }
 
-        StartLine sl = new StartLine(j);
+        final StartLine sl = calcNoiseStartLine;
+        sl.s = j;
         noise = calc_noise_core(cod_info, sl, l, step);
         j = sl.s;
 
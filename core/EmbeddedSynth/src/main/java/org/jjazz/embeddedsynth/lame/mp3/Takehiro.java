@@ -28,6 +28,15 @@ import java.util.Arrays;
 
 
 public class Takehiro {
+  /**
+   * Scratch data for best_huffman_divide(), allocated once per encoder.
+   */
+  private final GrInfo divideCodInfo = new GrInfo();
+  private final int[] divideR01Bits = new int[7 + 15 + 1];
+  private final int[] divideR01Div = new int[7 + 15 + 1];
+  private final int[] divideR0Tbl = new int[7 + 15 + 1];
+  private final int[] divideR1Tbl = new int[7 + 15 + 1];
+  private final Bits scratchBits = new Bits(0);
 
   public static final int slen1_tab[] = {0, 0, 0, 0, 3, 1, 1, 1, 2, 2, 2, 3,
       3, 3, 4, 4};
@@ -150,6 +159,7 @@ public class Takehiro {
                                     int xrPos, int[] ix, int ixPos) {
     assert (l > 0);
 
+    final float[] adj43 = qupvt.adj43;
     l = l >> 1;
     int remaining = l % 2;
     l = l >> 1;
@@ -164,13 +174,13 @@ public class Takehiro {
       rx1 = (int) x1;
       x3 = xr[xrPos++] * istep;
       rx2 = (int) x2;
-      x0 += qupvt.adj43[rx0];
+      x0 += adj43[rx0];
       rx3 = (int) x3;
-      x1 += qupvt.adj43[rx1];
+      x1 += adj43[rx1];
       ix[ixPos++] = (int) x0;
-      x2 += qupvt.adj43[rx2];
+      x2 += adj43[rx2];
       ix[ixPos++] = (int) x1;
-      x3 += qupvt.adj43[rx3];
+      x3 += adj43[rx3];
       ix[ixPos++] = (int) x2;
       ix[ixPos++] = (int) x3;
     }
@@ -182,8 +192,8 @@ public class Takehiro {
       x1 = xr[xrPos++] * istep;
       rx0 = (int) x0;
       rx1 = (int) x1;
-      x0 += qupvt.adj43[rx0];
-      x1 += qupvt.adj43[rx1];
+      x0 += adj43[rx0];
+      x1 += adj43[rx1];
       ix[ixPos++] = (int) x0;
       ix[ixPos++] = (int) x1;
     }
@@ -599,7 +609,7 @@ public class Takehiro {
       a2 = gfc.scalefac_band.l[a1 + a2 + 2];
       a1 = gfc.scalefac_band.l[a1 + 1];
       if (a2 < i) {
-        Bits bi = new Bits(bits);
+        Bits bi = resetBits(bits);
         gi.table_select[2] = choose_table(ix, a2, i, bi);
         bits = bi.bits;
       }
@@ -624,12 +634,12 @@ public class Takehiro {
 
 		/* Count the number of bits necessary to code the bigvalues region. */
     if (0 < a1) {
-      Bits bi = new Bits(bits);
+      Bits bi = resetBits(bits);
       gi.table_select[0] = choose_table(ix, 0, a1, bi);
       bits = bi.bits;
     }
     if (a1 < a2) {
-      Bits bi = new Bits(bits);
+      Bits bi = resetBits(bits);
       gi.table_select[1] = choose_table(ix, a1, a2, bi);
       bits = bi.bits;
     }
@@ -703,7 +713,7 @@ public class Takehiro {
       if (a1 >= bigv)
         break;
       int r0bits = 0;
-      Bits bi = new Bits(r0bits);
+      Bits bi = resetBits(r0bits);
       int r0t = choose_table(ix, 0, a1, bi);
       r0bits = bi.bits;
 
@@ -713,7 +723,7 @@ public class Takehiro {
           break;
 
         int bits = r0bits;
-        bi = new Bits(bits);
+        bi = resetBits(bits);
         int r1t = choose_table(ix, a1, a2, bi);
         bits = bi.bits;
         if (r01_bits[r0 + r1] > bits) {
@@ -741,7 +751,7 @@ public class Takehiro {
       if (gi.part2_3_length <= bits)
         break;
 
-      Bits bi = new Bits(bits);
+      Bits bi = resetBits(bits);
       int r2t = choose_table(ix, a2, bigv, bi);
       bits = bi.bits;
       if (gi.part2_3_length <= bits)
@@ -759,13 +769,16 @@ public class Takehiro {
 
   public void best_huffman_divide(final LameInternalFlags gfc,
                                   GrInfo gi) {
-    GrInfo cod_info2 = new GrInfo();
+    GrInfo cod_info2 = divideCodInfo;
     final int[] ix = gi.l3_enc;
 
-    int r01_bits[] = new int[7 + 15 + 1];
-    int r01_div[] = new int[7 + 15 + 1];
-    int r0_tbl[] = new int[7 + 15 + 1];
-    int r1_tbl[] = new int[7 + 15 + 1];
+    int r01_bits[] = divideR01Bits;
+    int r01_div[] = divideR01Div;
+    int r0_tbl[] = divideR0Tbl;
+    int r1_tbl[] = divideR1Tbl;
+    Arrays.fill(r01_div, 0);
+    Arrays.fill(r0_tbl, 0);
+    Arrays.fill(r1_tbl, 0);
 
 		/* SHORT BLOCK stuff fails for MPEG2 */
     if (gi.block_type == Encoder.SHORT_TYPE && gfc.mode_gr == 1)
@@ -821,12 +834,12 @@ public class Takehiro {
         a1 = i;
       }
       if (a1 > 0) {
-        Bits bi = new Bits(cod_info2.part2_3_length);
+        Bits bi = resetBits(cod_info2.part2_3_length);
         cod_info2.table_select[0] = choose_table(ix, 0, a1, bi);
         cod_info2.part2_3_length = bi.bits;
       }
       if (i > a1) {
-        Bits bi = new Bits(cod_info2.part2_3_length);
+        Bits bi = resetBits(cod_info2.part2_3_length);
         cod_info2.table_select[1] = choose_table(ix, a1, i, bi);
         cod_info2.part2_3_length = bi.bits;
       }
@@ -1164,6 +1177,15 @@ public class Takehiro {
     }
   }
 
+  /**
+   * Reuse the same Bits instance: choose_table() is called many times per
+   * granule. Returned instance must be used before the next call.
+   */
+  private Bits resetBits(int b) {
+    scratchBits.bits = b;
+    return scratchBits;
+  }
+
   static class Bits {
     int bits;
 
@@ -37,6 +37,19 @@ public class VBRQuantize {
       7, 3, 3, 3, 3, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
   QuantizePVT qupvt;
   Takehiro tak;
+  /**
+   * Scratch buffers reused by the per-band noise search and quantization,
+   * which are called for every scalefactor band of every granule.
+   */
+  private final CalcNoiseCache[] didIt = new CalcNoiseCache[256];
+  private final double[] x34Work = new double[4];
+  private final int[] l3Work = new int[4];
+
+  public VBRQuantize() {
+    for (int j = 0; j < didIt.length; j++) {
+      didIt[j] = new CalcNoiseCache();
+    }
+  }
 
   public final void setModules(QuantizePVT qupvt, Takehiro tk) {
     this.qupvt = qupvt;
@@ -129,8 +142,8 @@ public class VBRQuantize {
 
   private float calc_sfb_noise_x34(final float[] xr, final float[] xr34,
                                    int xrPos, int bw, int sf) {
-    double x[] = new double[4];
-    int l3[] = new int[4];
+    final double x[] = x34Work;
+    final int l3[] = l3Work;
     final float sfpow = qupvt.pow20[sf + QuantizePVT.Q_MAX2];
     final float sfpow34 = qupvt.ipow20[sf];
 
@@ -213,10 +226,10 @@ public class VBRQuantize {
    */
   private int find_scalefac_x34(final float[] xr, final float[] xr34,
                                 final int xrPos, final float l3_xmin, final int bw, final int sf_min) {
-    CalcNoiseCache did_it[] = new CalcNoiseCache[256];
+    final CalcNoiseCache did_it[] = didIt;
     int sf = 128, sf_ok = 255, delsf = 128, seen_good_one = 0, i;
     for (int j = 0; j < did_it.length; j++) {
-      did_it[j] = new CalcNoiseCache();
+      did_it[j].valid = 0;
     }
     for (i = 0; i < 8; ++i) {
       delsf >>= 1;
@@ -329,7 +342,7 @@ public class VBRQuantize {
    * @author Robert Hegemann 2000-10-20 made functions of them
    */
   private final void quantize_x34(final algo_t that) {
-    double x[] = new double[4];
+    final double x[] = x34Work;
     int xr34_orig = 0;
     final GrInfo cod_info = that.cod_info;
     final int ifqstep = (cod_info.scalefac_scale == 0) ? 2 : 4;
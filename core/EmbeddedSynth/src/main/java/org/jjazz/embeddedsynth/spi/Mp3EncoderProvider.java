@@ -44,5 +44,34 @@ public interface Mp3EncoderProvider
         return provider == null ? null : provider.getMp3Encoder();
     }
 
+    /**
+     * Get the default Mp3Encoder (if any) with the specified parallel encoding setting.
+     * <p>
+     * Rely on the first Mp3EncoderProvider found in the global lookup.
+     *
+     * @param parallelEncoding
+     * @return Can be null.
+     * @see #getMp3Encoder(boolean)
+     */
+    static Mp3Encoder getDefault(boolean parallelEncoding)
+    {
+        Mp3EncoderProvider provider = Lookup.getDefault().lookup(Mp3EncoderProvider.class);
+        return provider == null ? null : provider.getMp3Encoder(parallelEncoding);
+    }
+
     Mp3Encoder getMp3Encoder();
+
+    /**
+     * Get a Mp3Encoder which splits long fix-rate encodings in segments encoded in parallel, or not.
+     * <p>
+     * Default implementation returns getMp3Encoder(), i.e. the parallel encoding setting is ignored.
+     *
+     * @param parallelEncoding
+     * @return
+     * @see Mp3Encoder#isParallelEncoding()
+     */
+    default Mp3Encoder getMp3Encoder(boolean parallelEncoding)
+    {
+        return getMp3Encoder();
+    }
 }
@@ -0,0 +1,159 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.embeddedsynth;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import javax.sound.sampled.AudioFormat;
+import org.jjazz.embeddedsynth.lame.lowlevel.LameEncoder;
+import org.jjazz.embeddedsynth.lame.mp3.Lame;
+import org.jjazz.embeddedsynth.lame.mp3.MPEGMode;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Check that the LAME encoder scratch buffers, which are reused between granules, do not change the encoded output and keep the
+ * heap allocation per encoding low.
+ * <p>
+ * The expected MD5 values were produced by the encoder before its scratch buffers were made per-instance.
+ */
+public class LameEncoderTest
+{
+
+    private static final AudioFormat FORMAT = new AudioFormat(44100, 16, 2, true, false);
+    private static final int NB_SECONDS = 10;
+    /**
+     * Max heap allocation for a NB_SECONDS encoding, encoder setup included.
+     * <p>
+     * Around 7MB with the per-instance scratch buffers, it was 155MB-280MB when allocating per granule.
+     */
+    private static final long MAX_ALLOCATED_BYTES = 15 * 1024 * 1024;
+    private static byte[] pcm;
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        pcm = createPcm();
+    }
+
+    @Test
+    public void testCbr320Output()
+    {
+        assertEquals("7eb24214dbc38e9de0dc5072f54b8354", md5(encode(320, MPEGMode.STEREO, false)));
+    }
+
+    @Test
+    public void testCbr128Output()
+    {
+        assertEquals("ec09311b0754b69dd876fbfabb80b9cd", md5(encode(128, MPEGMode.STEREO, false)));
+        assertEquals("b9630c908b4f5fa7085516c423a8818d", md5(encode(128, MPEGMode.JOINT_STEREO, false)));
+    }
+
+    @Test
+    public void testVbrOutput()
+    {
+        assertEquals("fa6d79f1d1708d192ae39d64d59f4ee3", md5(encode(0, MPEGMode.STEREO, true)));
+        assertEquals("68b246c7defb98faae9832c732d4d21c", md5(encode(0, MPEGMode.JOINT_STEREO, true)));
+    }
+
+    @Test
+    public void testAllocation()
+    {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+
+        encode(128, MPEGMode.JOINT_STEREO, true);       // Warm-up
+        for (boolean vbr : new boolean[]
+        {
+            false, true
+        })
+        {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            encode(vbr ? 0 : 128, MPEGMode.JOINT_STEREO, vbr);
+            long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+            assertTrue("vbr=" + vbr + " allocated=" + allocated, allocated < MAX_ALLOCATED_BYTES);
+        }
+    }
+
+    // =====================================================================================================
+    // Private methods
+    // =====================================================================================================
+    private static byte[] encode(int bitRate, MPEGMode mode, boolean vbr)
+    {
+        LameEncoder encoder = new LameEncoder(FORMAT, bitRate, mode, Lame.QUALITY_HIGHEST, vbr);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(pcm.length / 4);
+        int chunkSize = encoder.getPCMBufferSize();
+        byte[] mp3 = new byte[encoder.getMP3BufferSize()];
+        for (int offset = 0; offset < pcm.length; offset += chunkSize)
+        {
+            int n = encoder.encodeBuffer(pcm, offset, Math.min(chunkSize, pcm.length - offset), mp3);
+            baos.write(mp3, 0, n);
+        }
+        baos.write(mp3, 0, encoder.encodeFinish(mp3));
+        encoder.close();
+        return baos.toByteArray();
+    }
+
+    private static String md5(byte[] data)
+    {
+        try
+        {
+            return String.format("%032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(data)));
+        } catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Two sweeping tones plus periodic noise bursts, so that both long and short blocks are exercised.
+     */
+    private static byte[] createPcm()
+    {
+        int nbSamples = NB_SECONDS * (int) FORMAT.getSampleRate();
+        ByteBuffer bb = ByteBuffer.allocate(nbSamples * FORMAT.getFrameSize()).order(ByteOrder.LITTLE_ENDIAN);
+        Random rnd = new Random(1234);
+        double sr = FORMAT.getSampleRate();
+        double p1 = 0, p2 = 0;
+        for (int i = 0; i < nbSamples; i++)
+        {
+            double t = i / sr;
+            p1 += 2 * Math.PI * (220 + 200 * Math.sin(t * 0.7)) / sr;
+            p2 += 2 * Math.PI * (1500 + 1000 * Math.sin(t * 0.3)) / sr;
+            double burst = (i % 22050) < 2000 ? rnd.nextGaussian() * 0.2 : 0;
+            bb.putShort((short) ((0.4 * Math.sin(p1) + 0.1 * Math.sin(p2) + burst) * 32000));
+            bb.putShort((short) ((0.3 * Math.sin(p1 * 1.5) + 0.15 * Math.sin(p2) + burst) * 32000));
+        }
+        return bb.array();
+    }
+}
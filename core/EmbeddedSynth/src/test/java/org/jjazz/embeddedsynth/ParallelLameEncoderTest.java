@@ -0,0 +1,304 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.embeddedsynth;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import org.jjazz.embeddedsynth.api.EmbeddedSynthException;
+import org.jjazz.embeddedsynth.lame.lowlevel.LameDecoder;
+import org.jjazz.embeddedsynth.lame.lowlevel.LameEncoder;
+import org.jjazz.embeddedsynth.lame.mp3.Lame;
+import org.jjazz.embeddedsynth.lame.mp3.MPEGMode;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Check the JavaLameMp3Encoder default path and compare it with the parallel encoding, at the low and high quality bitrates.
+ */
+public class ParallelLameEncoderTest
+{
+
+    private static final AudioFormat FORMAT = new AudioFormat(44100, 16, 2, true, false);
+    private static final int[] BITRATES =
+    {
+        128, 320
+    };
+    private static final int NB_SECONDS = 20;
+    /**
+     * Minimum SNR in dB of the parallel encoding versus the default path.
+     */
+    private static final double MIN_SNR = 15;
+    private static byte[] pcm;
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        pcm = createPcm();
+    }
+
+    @Test
+    public void testParallelEncodingIsOptIn()
+    {
+        assertFalse(new JavaLameMp3Encoder().isParallelEncoding());
+        var provider = new JavaLameMp3EncoderProvider();
+        assertFalse(provider.getMp3Encoder().isParallelEncoding());
+        assertFalse(provider.getMp3Encoder(false).isParallelEncoding());
+        assertTrue(provider.getMp3Encoder(true).isParallelEncoding());
+    }
+
+    /**
+     * The default path must be the plain sequential LAME encoding, with the bit reservoir.
+     */
+    @Test
+    public void testDefaultPath() throws IOException, EmbeddedSynthException
+    {
+        for (int bitRate : BITRATES)
+        {
+            byte[] defaultMp3 = encodeDefaultPath(new JavaLameMp3Encoder(), bitRate);
+            byte[] sequentialMp3 = encodeSequential(bitRate, false);
+            assertArrayEquals("bitRate=" + bitRate, sequentialMp3, defaultMp3);
+        }
+    }
+
+    /**
+     * Parallel encoding must produce the same frames than the sequential encoding done with the same LameEncoder settings (no bit reservoir), except
+     * around the segment boundaries.
+     */
+    @Test
+    public void testFrames() throws IOException
+    {
+        for (int bitRate : BITRATES)
+        {
+            List<byte[]> seqFrames = getFrames(encodeSequential(bitRate, true));
+            List<byte[]> parFrames = getFrames(encodeParallel(bitRate, Math.max(2, Runtime.getRuntime().availableProcessors())));
+            assertEquals("bitRate=" + bitRate + " number of frames", seqFrames.size(), parFrames.size());
+
+            int nbIdentical = 0;
+            for (int i = 0; i < seqFrames.size(); i++)
+            {
+                if (Arrays.equals(seqFrames.get(i), parFrames.get(i)))
+                {
+                    nbIdentical++;
+                }
+            }
+            System.out.println("testFrames() bitRate=" + bitRate + " bit-identical frames: " + nbIdentical + "/" + seqFrames.size());
+
+            // The first segment is encoded exactly like the sequential path
+            for (int i = 0; i < ParallelLameEncoder.SEGMENT_FRAMES; i++)
+            {
+                assertArrayEquals("bitRate=" + bitRate + " frame " + i, seqFrames.get(i), parFrames.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testSingleThreadIsDeterministic() throws IOException
+    {
+        for (int bitRate : BITRATES)
+        {
+            assertArrayEquals("bitRate=" + bitRate, encodeParallel(bitRate, 2), encodeParallel(bitRate, 1));
+        }
+    }
+
+    /**
+     * Compare the opt-in parallel encoding with the default path.
+     * <p>
+     * The parallel encoding disables the bit reservoir: check that its quality loss is not worse than the one of a sequential encoding without bit
+     * reservoir, i.e. that the segmentation itself does not add noise.
+     */
+    @Test
+    public void testQuality() throws IOException, EmbeddedSynthException
+    {
+        for (int bitRate : BITRATES)
+        {
+            long t = System.nanoTime();
+            byte[] defaultMp3 = encodeDefaultPath(new JavaLameMp3Encoder(), bitRate);
+            long defaultMs = (System.nanoTime() - t) / 1_000_000;
+
+            // Use ParallelLameEncoder directly: JavaLameMp3Encoder(true) falls back to the sequential encoding on a single-core machine
+            t = System.nanoTime();
+            byte[] parallelMp3 = encodeParallel(bitRate, Math.max(2, Runtime.getRuntime().availableProcessors()));
+            long parallelMs = (System.nanoTime() - t) / 1_000_000;
+
+
+            short[] ref = decode(defaultMp3);
+            short[] par = decode(parallelMp3);
+            short[] seqNoReservoir = decode(encodeSequential(bitRate, true));
+
+
+            // The default path starts with a Xing/Info tag frame, decoded as one additional silent mp3 frame
+            int refOffset = ref.length - par.length;
+            assertEquals(1152 * FORMAT.getChannels(), refOffset);
+            assertEquals(seqNoReservoir.length, par.length);
+
+
+            double snrParallel = getSnr(ref, refOffset, par);
+            double snrNoReservoir = getSnr(ref, refOffset, seqNoReservoir);
+            System.out.println("testQuality() bitRate=" + bitRate + " default=" + defaultMs + "ms parallel=" + parallelMs + "ms SNR vs default: parallel="
+                    + snrParallel + "dB sequential without reservoir=" + snrNoReservoir + "dB");
+            assertTrue("bitRate=" + bitRate + " snrParallel=" + snrParallel, snrParallel > MIN_SNR);
+            assertTrue("bitRate=" + bitRate + " snrParallel=" + snrParallel + " snrNoReservoir=" + snrNoReservoir, snrParallel > snrNoReservoir - 0.5);
+        }
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    /**
+     * A deterministic signal with changing tones and noise bursts, to exercise long and short blocks.
+     */
+    static private byte[] createPcm()
+    {
+        int nbFrames = NB_SECONDS * (int) FORMAT.getSampleRate();
+        ByteBuffer bb = ByteBuffer.allocate(nbFrames * FORMAT.getFrameSize()).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        Random rnd = new Random(1234);
+        double phase1 = 0, phase2 = 0;
+        for (int i = 0; i < nbFrames; i++)
+        {
+            double t = i / FORMAT.getSampleRate();
+            phase1 += 2 * Math.PI * (220 + 200 * Math.sin(t * 0.7)) / FORMAT.getSampleRate();
+            phase2 += 2 * Math.PI * (1500 + 1000 * Math.sin(t * 0.3)) / FORMAT.getSampleRate();
+            double burst = (i % 22050) < 2000 ? rnd.nextGaussian() * 0.2 : 0;
+            double left = 0.4 * Math.sin(phase1) + 0.1 * Math.sin(phase2) + burst;
+            double right = 0.3 * Math.sin(phase1 * 1.5) + 0.15 * Math.sin(phase2) + burst;
+            bb.putShort((short) (left * 32000));
+            bb.putShort((short) (right * 32000));
+        }
+        return bb.array();
+    }
+
+    /**
+     * Encode pcm with the Mp3Encoder API, as done by the application.
+     */
+    static private byte[] encodeDefaultPath(JavaLameMp3Encoder encoder, int bitRate) throws IOException, EmbeddedSynthException
+    {
+        File f = File.createTempFile("ParallelLameEncoderTest", ".mp3");
+        try
+        {
+            var ais = new AudioInputStream(new ByteArrayInputStream(pcm), FORMAT, pcm.length / FORMAT.getFrameSize());
+            encoder.encode(ais, f, bitRate == 128, false);
+            return Files.readAllBytes(f.toPath());
+        } finally
+        {
+            f.delete();
+        }
+    }
+
+    static private byte[] encodeSequential(int bitRate, boolean disableReservoir)
+    {
+        LameEncoder encoder = new LameEncoder(FORMAT, bitRate, MPEGMode.STEREO, Lame.QUALITY_HIGHEST, false, disableReservoir, !disableReservoir);
+        ByteArrayOutputStream mp3 = new ByteArrayOutputStream();
+        byte[] outputBuffer = new byte[encoder.getPCMBufferSize()];
+        int chunkSize = encoder.getPCMBufferSize();
+        for (int offset = 0; offset < pcm.length; offset += chunkSize)
+        {
+            int n = encoder.encodeBuffer(pcm, offset, Math.min(chunkSize, pcm.length - offset), outputBuffer);
+            mp3.write(outputBuffer, 0, n);
+        }
+        int n = encoder.encodeFinish(outputBuffer);
+        mp3.write(outputBuffer, 0, n);
+        encoder.close();
+        return mp3.toByteArray();
+    }
+
+    static private byte[] encodeParallel(int bitRate, int nbThreads) throws IOException
+    {
+        assertTrue(ParallelLameEncoder.isSupported(FORMAT, bitRate, Lame.QUALITY_HIGHEST));
+        var encoder = new ParallelLameEncoder(FORMAT, bitRate, Lame.QUALITY_HIGHEST, nbThreads);
+        ByteArrayOutputStream mp3 = new ByteArrayOutputStream();
+        encoder.encode(new ByteArrayInputStream(pcm), Channels.newChannel(mp3));
+        return mp3.toByteArray();
+    }
+
+    /**
+     * The signal to noise ratio of data versus ref.
+     *
+     * @param ref
+     * @param refOffset Compare data[i] with ref[refOffset+i]
+     * @param data
+     * @return In dB
+     */
+    static private double getSnr(short[] ref, int refOffset, short[] data)
+    {
+        double signal = 0;
+        double noise = 0;
+        for (int i = 0; i < data.length; i++)
+        {
+            double r = ref[refOffset + i];
+            signal += r * r;
+            double d = r - data[i];
+            noise += d * d;
+        }
+        return noise == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(signal / noise);
+    }
+
+    static private List<byte[]> getFrames(byte[] mp3)
+    {
+        List<byte[]> res = new ArrayList<>();
+        int offset = 0;
+        while (offset < mp3.length)
+        {
+            int size = ParallelLameEncoder.getFrameLength(mp3, offset);
+            assertTrue("Invalid frame at offset=" + offset, size > 0 && offset + size <= mp3.length);
+            res.add(Arrays.copyOfRange(mp3, offset, offset + size));
+            offset += size;
+        }
+        return res;
+    }
+
+    static private short[] decode(byte[] mp3) throws IOException
+    {
+        File f = File.createTempFile("ParallelLameEncoderTest", ".mp3");
+        try
+        {
+            Files.write(f.toPath(), mp3);
+            LameDecoder decoder = new LameDecoder(f.getAbsolutePath());
+            ByteBuffer buffer = ByteBuffer.allocate(decoder.getBufferSize());
+            ByteArrayOutputStream pcmOut = new ByteArrayOutputStream();
+            while (decoder.decode(buffer))
+            {
+                pcmOut.write(buffer.array(), 0, buffer.array().length);
+            }
+            decoder.close();
+            ByteBuffer bb = ByteBuffer.wrap(pcmOut.toByteArray()).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            short[] res = new short[bb.remaining() / 2];
+            bb.asShortBuffer().get(res);
+            return res;
+        } finally
+        {
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.embeddedsynth.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import javax.sound.sampled.AudioFormat;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Offline rendering with the JDK software synth. Skipped if JVM is not started with --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED.
+ */
+public class GervillEmbeddedSynthTest
+{
+
+    private static final int RESOLUTION = 480;
+    private static GervillEmbeddedSynth synth;
+
+    @BeforeClass
+    public static void setUpClass() throws EmbeddedSynthException
+    {
+        assumeTrue(GervillEmbeddedSynth.isSupported());
+        synth = new GervillEmbeddedSynth();
+        synth.open();
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        if (synth != null)
+        {
+            synth.close();
+        }
+    }
+
+    @Test
+    public void testRenderingIsDeterministic() throws Exception
+    {
+        Sequence sequence = createSequence();
+        byte[] pcm1 = render(sequence);
+        byte[] pcm2 = render(sequence);
+        assertArrayEquals(pcm1, pcm2);
+    }
+
+    @Test
+    public void testRenderingLength() throws Exception
+    {
+        // Last note off on beat 7.5: 4 beats at 120 bpm (2s) + 3.5 beats at 60 bpm (3.5s), plus the 2s release tail
+        byte[] pcm = render(createSequence());
+        AudioFormat f = synth.getAudioFormat();
+        long expectedFrames = (long) Math.ceil(7.5 * f.getFrameRate());
+        assertEquals(expectedFrames * f.getFrameSize(), pcm.length);
+
+
+        // Not silent
+        boolean silent = true;
+        for (int i = 0; i < pcm.length && silent; i++)
+        {
+            silent = pcm[i] == 0;
+        }
+        assertFalse(silent);
+    }
+
+    @Test
+    public void testAbortOnConsumerError() throws InvalidMidiDataException, IOException
+    {
+        File wavFile = File.createTempFile("GervillEmbeddedSynthTest", ".wav");
+        int[] nbAborts = new int[1];
+        var writer = new WavFileWriter(wavFile)
+        {
+            @Override
+            public void accept(byte[] data, int offset, int length) throws EmbeddedSynthException
+            {
+                super.accept(data, offset, length);
+                throw new EmbeddedSynthException("Test error");
+            }
+
+            @Override
+            public void end() throws EmbeddedSynthException
+            {
+                fail("end() must not be called");
+            }
+
+            @Override
+            public void abort()
+            {
+                nbAborts[0]++;
+                super.abort();
+            }
+        };
+
+        try
+        {
+            synth.generateAudio(createSequence(), writer);
+            fail("No exception");
+        } catch (EmbeddedSynthException ex)
+        {
+            // Expected
+        }
+        assertEquals(1, nbAborts[0]);
+        assertFalse(wavFile.exists());
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    private byte[] render(Sequence sequence) throws EmbeddedSynthException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        synth.generateAudio(sequence, new PcmConsumer()
+        {
+            @Override
+            public void start(AudioFormat format)
+            {
+                assertEquals(synth.getAudioFormat(), format);
+            }
+
+            @Override
+            public void accept(byte[] data, int offset, int length)
+            {
+                assertEquals(0, length % synth.getAudioFormat().getFrameSize());
+                baos.write(data, offset, length);
+            }
+
+            @Override
+            public void end()
+            {
+                // Nothing
+            }
+        });
+        return baos.toByteArray();
+    }
+
+    /**
+     * One note per beat on 8 beats, tempo change from 120 to 60 bpm on beat 4.
+     */
+    private Sequence createSequence() throws InvalidMidiDataException
+    {
+        Sequence sequence = new Sequence(Sequence.PPQ, RESOLUTION);
+        Track track = sequence.createTrack();
+        track.add(new MidiEvent(new MetaMessage(0x51, new byte[]
+        {
+            0x0F, 0x42, 0x40            // 1000000 microseconds per quarter
+        }, 3), 4 * RESOLUTION));
+        track.add(new MidiEvent(new ShortMessage(ShortMessage.PROGRAM_CHANGE, 0, 0, 0), 0));
+        for (int beat = 0; beat < 8; beat++)
+        {
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 60 + beat, 100), beat * RESOLUTION));
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60 + beat, 0), beat * RESOLUTION + RESOLUTION / 2));
+        }
+        return sequence;
+    }
+}
@@ -48,6 +48,8 @@ import javax.sound.midi.Transmitter;
 import javax.swing.event.SwingPropertyChangeSupport;
 import org.jjazz.midi.api.device.JJazzMidiDevice;
 import org.jjazz.midi.api.device.MidiFilter.Config;
+import org.jjazz.midi.api.sequencer.SchedulingSequencer;
+import org.jjazz.midi.api.sequencer.SchedulingSequencer.SchedulingMode;
 import org.jjazz.utilities.api.ResUtil;
 import org.netbeans.api.progress.BaseProgressUtils;
 import org.openide.DialogDisplayer;
@@ -77,6 +79,7 @@ public final class JJazzMidiSystem
     public final static String PROP_MIDI_THRU = "MidiThruProp";
     public final static String PROP_MASTER_VOL_FACTOR = "MasterVolumeFactor";
     public final static String PROP_MIDI_OUT_FILTERING = "MidiOutFiltering";
+    public final static String PROP_PRECISE_SEQUENCER_TIMING = "PreciseSequencerTiming";
     public final static String PREF_JAVA_SYNTH_SOUNDFONT_FILE = "JavaSynthSoundFontFile";
     public final static String PREF_EXTERNAL_MIDI_EDITOR_PATH = "MidiEditorPath";
 
@@ -182,6 +185,12 @@ public final class JJazzMidiSystem
 
             // Connect the sequencer to the JJazzMidiOut device
             defaultSequencer.getTransmitter().setReceiver(jjazzMidiOut.getReceiver());
+
+            // Restore scheduling mode
+            if (defaultSequencer instanceof SchedulingSequencer ss)
+            {
+                ss.setSchedulingMode(isPreciseSequencerTiming() ? SchedulingMode.PRECISE : SchedulingMode.SLEEP);
+            }
         } catch (MidiUnavailableException ex)
         {
             LOGGER.log(Level.SEVERE, "JJazzMidiSystem() No sequencer found on this system. Music can not be played ! {0}", ex.getMessage());
@@ -813,6 +822,37 @@ public final class JJazzMidiSystem
         return prefs.getBoolean(PROP_MIDI_THRU, false);
     }
 
+    /**
+     * Enable/Disable the precise scheduling mode of the default sequencer.
+     * <p>
+     * Fire the PROP_PRECISE_SEQUENCER_TIMING property change event. Do nothing on the sequencer if it is not a SchedulingSequencer.
+     *
+     * @param b If true use SchedulingMode.PRECISE, otherwise SchedulingMode.SLEEP.
+     * @see SchedulingSequencer
+     */
+    public void setPreciseSequencerTiming(boolean b)
+    {
+        if (b == isPreciseSequencerTiming())
+        {
+            return;
+        }
+        if (defaultSequencer instanceof SchedulingSequencer ss)
+        {
+            ss.setSchedulingMode(b ? SchedulingMode.PRECISE : SchedulingMode.SLEEP);
+        }
+        prefs.putBoolean(PROP_PRECISE_SEQUENCER_TIMING, b);
+        LOGGER.log(Level.INFO, "setPreciseSequencerTiming() b={0}", b);
+        pcs.firePropertyChange(PROP_PRECISE_SEQUENCER_TIMING, !b, b);
+    }
+
+    /**
+     * @return True if the precise scheduling mode of the default sequencer is enabled. False by default.
+     */
+    public boolean isPreciseSequencerTiming()
+    {
+        return prefs.getBoolean(PROP_PRECISE_SEQUENCER_TIMING, false);
+    }
+
     /**
      * The Midi panic method.
      * <p>
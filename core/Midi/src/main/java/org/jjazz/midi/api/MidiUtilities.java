@@ -27,6 +27,9 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -187,24 +190,77 @@ public class MidiUtilities
 
     /**
      * Remove all MidiEvents from a track, but leave the End Of Track MetaEvent unchanged.
+     * <p>
+     * Events are removed from the start of the track: Track.remove() searches the event index from the start, so it's much faster than
+     * removing from the end on large tracks.
      *
      * @param track
      */
     static public void clearTrack(Track track)
     {
-        int last = track.size() - 1;
-        for (int i = last; i >= 0; i--)
+        int i = 0;
+        while (i < track.size())
         {
             MidiEvent me = track.get(i);
             MidiMessage mm = me.getMessage();
             if ((mm instanceof MetaMessage) && ((MetaMessage) mm).getType() == MidiConst.META_END_OF_TRACK)
             {
+                i++;
                 continue;
             }
             track.remove(me);
         }
     }
 
+    /**
+     * Add MidiEvents to a track in tick order.
+     * <p>
+     * Track.add() is immediate when the event is added at the end of the track, but it searches backwards the insertion point otherwise. By
+     * adding events in tick order, loading n events is O(n log n) instead of O(n²) in the worst case.
+     * <p>
+     * Events with the same tick keep their relative order: the resulting track is the same as when adding events one by one.
+     *
+     * @param track
+     * @param events Not modified. Events already present in track are ignored.
+     */
+    static public void addAllSorted(Track track, Collection<MidiEvent> events)
+    {
+        checkNotNull(track);
+        checkNotNull(events);
+        MidiEvent[] sortedEvents = events.toArray(MidiEvent[]::new);
+        boolean sorted = true;
+        for (int i = 1; i < sortedEvents.length; i++)
+        {
+            if (sortedEvents[i].getTick() < sortedEvents[i - 1].getTick())
+            {
+                sorted = false;
+                break;
+            }
+        }
+        if (!sorted)
+        {
+            Arrays.sort(sortedEvents, Comparator.comparingLong(MidiEvent::getTick));     // Stable sort
+        }
+        for (MidiEvent me : sortedEvents)
+        {
+            track.add(me);
+        }
+    }
+
+    /**
+     * Replace all the MidiEvents of a track, but leave the End Of Track MetaEvent unchanged.
+     *
+     * @param track
+     * @param events
+     * @see #clearTrack(javax.sound.midi.Track)
+     * @see #addAllSorted(javax.sound.midi.Track, java.util.Collection)
+     */
+    static public void replaceTrackEvents(Track track, Collection<MidiEvent> events)
+    {
+        clearTrack(track);
+        addAllSorted(track, events);
+    }
+
     /**
      * Get a clone copy of all MidiEvents found in track.
      * <p>
@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 import javax.sound.midi.ControllerEventListener;
@@ -57,7 +58,7 @@ import javax.sound.midi.Transmitter;
  * Updated for JJazzLab @author Jerome Lelasseux - based on AdoptOpenJDK16 version.
  *
  */
-final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, AutoConnectSequencer
+final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, AutoConnectSequencer, SchedulingSequencer
 {
 
     /**
@@ -80,6 +81,15 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
     };
 
     private static final Sequencer.SyncMode masterSyncMode = Sequencer.SyncMode.INTERNAL_CLOCK;
+
+    /**
+     * In PRECISE scheduling mode, max time the play thread parks before re-checking the sequence (live track updates).
+     */
+    private static final long PRECISE_MAX_PARK_NANOS = 5_000_000L;
+    /**
+     * In PRECISE scheduling mode, the play thread busy-spins instead of parking for the last nanoseconds before an event.
+     */
+    private static final long PRECISE_SPIN_NANOS = 200_000L;
     private static final Sequencer.SyncMode slaveSyncMode = Sequencer.SyncMode.NO_SYNC;
 
     /**
@@ -132,6 +142,16 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
      */
     private final List<RecordingTrack> recordingTracks = new ArrayList<>();
 
+    /**
+     * How the play thread waits between 2 pumps.
+     */
+    private volatile SchedulingMode schedulingMode = SchedulingMode.SLEEP;
+
+    /**
+     * Dispatch latency of the played events.
+     */
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
     private long loopStart = 0;
     private long loopEnd = -1;
     private int loopCount = 0;
@@ -170,6 +190,34 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
         LOGGER.info("JJazzLabSequencer() Setting up JJazzLab sequencer");
     }
 
+    /* ****************************** SCHEDULINGSEQUENCER METHODS ******************** */
+    @Override
+    public void setSchedulingMode(SchedulingMode mode)
+    {
+        if (mode == null)
+        {
+            throw new NullPointerException("mode");
+        }
+        if (mode != schedulingMode)
+        {
+            LOGGER.info("setSchedulingMode() mode=" + mode);
+            schedulingMode = mode;
+            wakeUpPlayThread();
+        }
+    }
+
+    @Override
+    public SchedulingMode getSchedulingMode()
+    {
+        return schedulingMode;
+    }
+
+    @Override
+    public LatencyHistogram getLatencyHistogram()
+    {
+        return latencyHistogram;
+    }
+
     /* ****************************** SEQUENCER METHODS ******************** */
     @Override
     public synchronized void setSequence(Sequence sequence)
@@ -1073,7 +1121,8 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
         }
         ShortMessage msg = (ShortMessage) message;
         int controller = msg.getData1();
-        List<Object> sendToListeners = new ArrayList<>();
+        // Only allocate the list if a listener is interested, this is called from the play thread for each controller event
+        List<Object> sendToListeners = null;
         for (int i = 0; i < size; i++)
         {
             ControllerListElement cve = controllerEventListeners.get(i);
@@ -1081,12 +1130,19 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
             {
                 if (cve.controllers[j] == controller)
                 {
+                    if (sendToListeners == null)
+                    {
+                        sendToListeners = new ArrayList<>();
+                    }
                     sendToListeners.add(cve.listener);
                     break;
                 }
             }
         }
-        getEventDispatcher().sendAudioEvents(message, sendToListeners);
+        if (sendToListeners != null)
+        {
+            getEventDispatcher().sendAudioEvents(message, sendToListeners);
+        }
     }
 
     private boolean needCaching()
@@ -1107,6 +1163,18 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
         return null;
     }
 
+    /**
+     * Wake up the play thread if it is parked waiting for the next event (PRECISE scheduling mode).
+     */
+    private void wakeUpPlayThread()
+    {
+        PlayThread pt = playThread;
+        if (pt != null)
+        {
+            pt.wakeUp();
+        }
+    }
+
     private MidiUtils.TempoCache getTempoCache()
     {
         return tempoCache;
@@ -1481,7 +1549,7 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
                 long tickPos = getTickPosition();
                 dataPump.setTempoMPQ(tempoCache.getTempoMPQAt(tickPos));
             }
-            dataPump.checkPointMillis = 0; // means restarted
+            dataPump.checkPointMicros = 0; // means restarted
             dataPump.clearNoteOnCache();
             dataPump.needReindex = true;
 
@@ -1531,6 +1599,19 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
             {
                 lock.notifyAll();
             }
+            wakeUp();
+        }
+
+        /**
+         * Unpark the thread if it is waiting for the next event in PRECISE scheduling mode.
+         */
+        void wakeUp()
+        {
+            Thread t = thread;
+            if (t != null)
+            {
+                LockSupport.unpark(t);
+            }
         }
 
         void close()
@@ -1545,11 +1626,12 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
             }
             if (oldThread != null)
             {
-                // wake up the thread if it's in wait()
+                // wake up the thread if it's in wait() or parked
                 synchronized (lock)
                 {
                     lock.notifyAll();
                 }
+                LockSupport.unpark(oldThread);
             }
             // wait for the thread to terminate itself,
             // but max. 2 seconds. Must not be synchronized!
@@ -1582,12 +1664,21 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
                 {
                     EOM = dataPump.pump();
 
-                    try
+                    if (EOM)
                     {
-                        Thread.sleep(1);
-                    } catch (InterruptedException ie)
+                        // no need to wait
+                    } else if (schedulingMode == SchedulingMode.PRECISE)
                     {
-                        // ignore
+                        waitForNextEvent();
+                    } else
+                    {
+                        try
+                        {
+                            Thread.sleep(1);
+                        } catch (InterruptedException ie)
+                        {
+                            // ignore
+                        }
                     }
                 }
 
@@ -1627,6 +1718,42 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
                 }
             } // end of while(!EOM && !interrupted && running)
         }
+
+        /**
+         * Wait until the due time of the next event: park until a bit before, then busy-spin.
+         * <p>
+         * Park duration is capped by PRECISE_MAX_PARK_NANOS so that events inserted in the sequence while playing are not played
+         * late. There is no busy-spin when there is no next event or when it is beyond this cap, so that CPU stays idle during long
+         * pauses. Returns early if unparked by wakeUp(), e.g. on position, tempo or mode change.
+         */
+        private void waitForNextEvent()
+        {
+            long now = System.nanoTime();
+            long maxDeadline = now + PRECISE_MAX_PARK_NANOS;
+            long deadline = dataPump.getNextEventDueNanos();
+            if (deadline == Long.MIN_VALUE || deadline - maxDeadline > 0)
+            {
+                // No event, or event is far away: just park, caller will pump again and recompute the deadline
+                LockSupport.parkNanos(this, PRECISE_MAX_PARK_NANOS);
+                return;
+            }
+
+            long remaining = deadline - now;
+            if (remaining > PRECISE_SPIN_NANOS)
+            {
+                LockSupport.parkNanos(this, remaining - PRECISE_SPIN_NANOS);
+                if (!running || interrupted || schedulingMode != SchedulingMode.PRECISE || deadline - System.nanoTime() > PRECISE_SPIN_NANOS)
+                {
+                    // Woken up by wakeUp() or spurious wake up: let caller pump again, it will recompute the deadline
+                    return;
+                }
+            }
+
+            while (running && System.nanoTime() - deadline < 0)
+            {
+                Thread.onSpinWait();
+            }
+        }
     }
 
     /**
@@ -1641,7 +1768,7 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
         private long ignoreTempoEventAt; // ignore next META tempo during playback at this tick pos only
         private int resolution;
         private float divisionType;
-        private long checkPointMillis;   // microseconds at checkoint
+        private long checkPointMicros;   // microseconds at checkoint
         private long checkPointTick;     // ticks at checkpoint
         private int[] noteOnCache;       // bit-mask of notes that are currently on
         private Track[] tracks;
@@ -1695,7 +1822,8 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
                 ignoreTempoEventAt = -1;
             }
             // trigger re-configuration
-            checkPointMillis = 0;
+            checkPointMicros = 0;
+            wakeUpPlayThread();
         }
 
         long getTickPos()
@@ -1721,7 +1849,8 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
                 ignoreTempoEventAt = lastTick;
                 this.currTempo = tempoMPQ;
                 // re-calculate check point
-                checkPointMillis = 0;
+                checkPointMicros = 0;
+                wakeUpPlayThread();
             }
         }
 
@@ -1737,7 +1866,8 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
                 tempoFactor = factor;
                 inverseTempoFactor = 1.0f / factor;
                 // re-calculate check point
-                checkPointMillis = 0;
+                checkPointMicros = 0;
+                wakeUpPlayThread();
             }
         }
 
@@ -1769,8 +1899,9 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
             divisionType = seq.getDivisionType();
             trackReadPos = new int[tracks.length];
             // trigger re-initialization
-            checkPointMillis = 0;
+            checkPointMicros = 0;
             needReindex = true;
+            wakeUpPlayThread();
         }
 
         synchronized void resetLoopCount()
@@ -2096,38 +2227,83 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
         }
 
         // playback related methods (pumping)
-        private long getCurrentTimeMillis()
+        // JJazzLab: use microseconds instead of milliseconds, required for the PRECISE scheduling mode
+        private long getCurrentTimeMicros()
         {
-            return System.nanoTime() / 1000000l;
+            return System.nanoTime() / 1000l;
             //return perf.highResCounter() * 1000 / perfFreq;
         }
 
-        private long millis2tick(long millis)
+        private long micros2tick(long micros)
         {
             if (divisionType != Sequence.PPQ)
             {
-                double dTick = ((((double) millis) * tempoFactor)
+                double dTick = ((((double) micros) * tempoFactor)
                         * ((double) divisionType)
                         * ((double) resolution))
-                        / ((double) 1000);
+                        / ((double) 1000000);
                 return (long) dTick;
             }
-            return MidiUtils.microsec2ticks(millis * 1000,
+            return MidiUtils.microsec2ticks(micros,
                     currTempo * inverseTempoFactor,
                     resolution);
         }
 
-        private long tick2millis(long tick)
+        private long tick2micros(long tick)
         {
             if (divisionType != Sequence.PPQ)
             {
-                double dMillis = ((((double) tick) * 1000)
+                double dMicros = ((((double) tick) * 1000000)
                         / (tempoFactor * ((double) divisionType) * ((double) resolution)));
-                return (long) dMillis;
+                return (long) dMicros;
             }
             return MidiUtils.ticks2microsec(tick,
                     currTempo * inverseTempoFactor,
-                    resolution) / 1000;
+                    resolution);
+        }
+
+        /**
+         * Compute the due time of the next event to be played, based on the current check point and tempo.
+         * <p>
+         * Tempo changes are themselves events, so the current tempo is valid until the next event.
+         *
+         * @return A System.nanoTime() value, or Long.MIN_VALUE if not known (no check point yet, reindex needed, no more events).
+         */
+        synchronized long getNextEventDueNanos()
+        {
+            if (checkPointMicros == 0 || needReindex || tracks == null)
+            {
+                return Long.MIN_VALUE;
+            }
+            long nextTick = Long.MAX_VALUE;
+            try
+            {
+                for (int t = 0; t < tracks.length && t < trackReadPos.length; t++)
+                {
+                    Track track = tracks[t];
+                    int readPos = trackReadPos[t];
+                    if (readPos < track.size())
+                    {
+                        nextTick = Math.min(nextTick, track.get(readPos).getTick());
+                    }
+                }
+            } catch (ArrayIndexOutOfBoundsException e)
+            {
+                // this happens when messages are removed from the track while this method executes
+                return Long.MIN_VALUE;
+            }
+            if ((loopEnd != -1)
+                    && ((loopCount > 0 && currLoopCounter > 0) || (loopCount == LOOP_CONTINUOUSLY))
+                    && lastTick <= loopEnd)
+            {
+                nextTick = Math.min(nextTick, loopEnd);
+            }
+            if (nextTick == Long.MAX_VALUE)
+            {
+                return Long.MIN_VALUE;
+            }
+            // +1us to make sure that micros2tick() rounding will reach nextTick
+            return (checkPointMicros + tick2micros(nextTick - checkPointTick) + 1) * 1000l;
         }
 
         private void ReindexTrack(int trackNum, long tick)
@@ -2220,14 +2396,14 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
          */
         synchronized boolean pump()
         {
-            long currMillis;
+            long currMicros;
             long targetTick = lastTick;
             MidiEvent currEvent;
             boolean changesPending = false;
             boolean doLoop = false;
             boolean EOM = false;
 
-            currMillis = getCurrentTimeMillis();
+            currMicros = getCurrentTimeMicros();
             int finishedTracks = 0;
             do
             {
@@ -2245,21 +2421,21 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
                         ReindexTrack(t, targetTick);
                     }
                     needReindex = false;
-                    checkPointMillis = 0;
+                    checkPointMicros = 0;
                 }
 
-                // get target tick from current time in millis
-                if (checkPointMillis == 0)
+                // get target tick from current time in micros
+                if (checkPointMicros == 0)
                 {
                     // new check point
-                    currMillis = getCurrentTimeMillis();
-                    checkPointMillis = currMillis;
+                    currMicros = getCurrentTimeMicros();
+                    checkPointMicros = currMicros;
                     targetTick = lastTick;
                     checkPointTick = targetTick;
                 } else
                 {
-                    // calculate current tick based on current time in milliseconds
-                    targetTick = checkPointTick + millis2tick(currMillis - checkPointMillis);
+                    // calculate current tick based on current time in microseconds
+                    targetTick = checkPointTick + micros2tick(currMicros - checkPointMicros);
                     if ((loopEnd != -1)
                             && ((loopCount > 0 && currLoopCounter > 0)
                             || (loopCount == LOOP_CONTINUOUSLY)))
@@ -2307,6 +2483,11 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
                             if (!disabled
                                     || ((t == 0) && (MidiUtils.isMetaTempo(currEvent.getMessage()))))
                             {
+                                long eventTick = currEvent.getTick();
+                                if (eventTick >= checkPointTick)
+                                {
+                                    latencyHistogram.record(currMicros - checkPointMicros - tick2micros(eventTick - checkPointTick));
+                                }
                                 changesPending = dispatchMessage(t, currEvent);
                             }
                         }
@@ -2341,7 +2522,7 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
                         && EOM))
                 {
 
-                    long oldCheckPointMillis = checkPointMillis;
+                    long oldCheckPointMicros = checkPointMicros;
                     long loopEndTick = loopEnd;
                     if (loopEndTick == -1)
                     {
@@ -2354,7 +2535,7 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
                         currLoopCounter--;
                     }
                     setTickPos(loopStart);
-                    // now patch the checkPointMillis so that
+                    // now patch the checkPointMicros so that
                     // it points to the exact beginning of when the loop was finished
 
                     // $$fb TODO: although this is mathematically correct (i.e. the loop position
@@ -2363,7 +2544,7 @@ final class JJazzLabSequencer extends AbstractMidiDevice implements Sequencer, A
                     //            by the chasing.
 
                     // Jerome JJazzLab: see bug fix on setTickPos+chasing which improves chasing perf. => could reduce this drift?
-                    checkPointMillis = oldCheckPointMillis + tick2millis(loopEndTick - checkPointTick);
+                    checkPointMicros = oldCheckPointMicros + tick2micros(loopEndTick - checkPointTick);
                     checkPointTick = loopStart;
                     // no need for reindexing, is done in setTickPos
                     needReindex = false;
@@ -0,0 +1,161 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.midi.api.sequencer;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-bucket histogram of latency values in microseconds.
+ * <p>
+ * Recording a value does not allocate memory so it can be used from a real-time thread. Methods are thread-safe.
+ */
+public class LatencyHistogram
+{
+
+    /**
+     * The upper bound (exclusive) in microseconds of each bucket, except the last bucket which has no upper bound.
+     */
+    private static final long[] BUCKET_UPPER_BOUNDS_MICROS =
+    {
+        50, 100, 250, 500, 1000, 2000, 5000, 10000
+    };
+    private final long[] counts = new long[BUCKET_UPPER_BOUNDS_MICROS.length + 1];
+    private long count;
+    private long sumMicros;
+    private long maxMicros;
+
+    /**
+     * Record a latency value.
+     *
+     * @param micros Negative values are considered as 0.
+     */
+    public synchronized void record(long micros)
+    {
+        if (micros < 0)
+        {
+            micros = 0;
+        }
+        int bucket = 0;
+        while (bucket < BUCKET_UPPER_BOUNDS_MICROS.length && micros >= BUCKET_UPPER_BOUNDS_MICROS[bucket])
+        {
+            bucket++;
+        }
+        counts[bucket]++;
+        count++;
+        sumMicros += micros;
+        if (micros > maxMicros)
+        {
+            maxMicros = micros;
+        }
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public synchronized void reset()
+    {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sumMicros = 0;
+        maxMicros = 0;
+    }
+
+    /**
+     * The upper bounds (exclusive) in microseconds of the buckets.
+     * <p>
+     * There is one more bucket than upper bounds: the last bucket counts all values above the last upper bound.
+     *
+     * @return A copy of the upper bounds array.
+     */
+    public long[] getBucketUpperBoundsMicros()
+    {
+        return BUCKET_UPPER_BOUNDS_MICROS.clone();
+    }
+
+    /**
+     * The number of recorded values per bucket.
+     *
+     * @return A copy of the counts array, size is getBucketUpperBoundsMicros().length + 1.
+     */
+    public synchronized long[] getBucketCounts()
+    {
+        return counts.clone();
+    }
+
+    /**
+     * The total number of recorded values.
+     *
+     * @return
+     */
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * The mean of the recorded values.
+     *
+     * @return 0 if no value recorded.
+     */
+    public synchronized long getMeanMicros()
+    {
+        return count == 0 ? 0 : sumMicros / count;
+    }
+
+    /**
+     * The max recorded value.
+     *
+     * @return
+     */
+    public synchronized long getMaxMicros()
+    {
+        return maxMicros;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("count=").append(count)
+                .append(" mean=").append(getMeanMicros()).append("us")
+                .append(" max=").append(maxMicros).append("us [");
+        long lower = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (i > 0)
+            {
+                sb.append(", ");
+            }
+            if (i < BUCKET_UPPER_BOUNDS_MICROS.length)
+            {
+                sb.append(lower).append("-").append(BUCKET_UPPER_BOUNDS_MICROS[i]).append("us:").append(counts[i]);
+                lower = BUCKET_UPPER_BOUNDS_MICROS[i];
+            } else
+            {
+                sb.append(">=").append(lower).append("us:").append(counts[i]);
+            }
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+}
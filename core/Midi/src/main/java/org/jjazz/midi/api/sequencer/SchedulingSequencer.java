@@ -0,0 +1,76 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.midi.api.sequencer;
+
+/**
+ * Interface for Sequencers which let the user choose how the playback thread waits for the next MIDI events.
+ */
+public interface SchedulingSequencer
+{
+
+    /**
+     * How the playback thread waits between 2 dispatch cycles.
+     */
+    public enum SchedulingMode
+    {
+        /**
+         * Legacy mode: the playback thread sleeps 1ms between 2 dispatch cycles, whatever the next event position.
+         * <p>
+         * Event dispatch jitter is typically in the 1-2ms range.
+         */
+        SLEEP,
+        /**
+         * The playback thread computes the due time of the next event and parks until then, with a short busy-spin for the last
+         * microseconds.
+         * <p>
+         * Event dispatch jitter is typically well below 1ms, and there are fewer wake ups when events are sparse.
+         */
+        PRECISE
+    }
+
+    /**
+     * Set the scheduling mode.
+     * <p>
+     * Can be called while the sequencer is running, the change is taken into account at the next dispatch cycle.
+     *
+     * @param mode
+     */
+    void setSchedulingMode(SchedulingMode mode);
+
+    /**
+     * Get the current scheduling mode.
+     *
+     * @return
+     */
+    SchedulingMode getSchedulingMode();
+
+    /**
+     * The histogram of the dispatch latency of the MIDI events played by this sequencer.
+     * <p>
+     * The latency is the difference between the actual dispatch time of an event and its theoretical time computed from the
+     * sequence tempo.
+     *
+     * @return
+     */
+    LatencyHistogram getLatencyHistogram();
+}
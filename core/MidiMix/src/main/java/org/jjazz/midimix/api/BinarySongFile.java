@@ -0,0 +1,213 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.midimix.api;
+
+import com.google.common.base.Preconditions;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.jjazz.phrase.api.PackedPhrase;
+import org.jjazz.song.api.Song;
+import org.jjazz.song.api.SongCreationException;
+import org.jjazz.utilities.api.Utilities;
+
+/**
+ * A compact binary file which contains a song, its optional MidiMix, and the song user phrases as packed note data.
+ * <p>
+ * The song and the MidiMix are stored as compressed XML, user phrases notes are stored separately as packed primitive values
+ * (pitch/velocity/position/duration). When loading, the user phrases are decoded only when first accessed via Song.getUserPhrase().
+ * <p>
+ * Content is the same as the XML song and mix files: loading a binary song file then saving it with Song.saveToFile() produces the same XML than the
+ * original song.
+ */
+public class BinarySongFile
+{
+
+    public static final String EXTENSION = "sngb";
+    private static final int MAGIC_NUMBER = 0x4A4A5342;     // "JJSB"
+    private static final int FORMAT_VERSION = 1;
+    private static final Logger LOGGER = Logger.getLogger(BinarySongFile.class.getSimpleName());
+
+    /**
+     * The content of a binary song file.
+     *
+     * @param song
+     * @param midiMix Can be null.
+     */
+    public record Content(Song song, MidiMix midiMix)
+            {
+
+    }
+
+    /**
+     * Save a song and its MidiMix.
+     * <p>
+     * Song and MidiMix states are not changed, like Song.saveToFile(f, true).
+     *
+     * @param f
+     * @param song
+     * @param midiMix Can be null.
+     * @throws IOException
+     */
+    static public void save(File f, Song song, MidiMix midiMix) throws IOException
+    {
+        Preconditions.checkNotNull(f);
+        Preconditions.checkNotNull(song);
+
+        // Prepare everything before opening the file, in order not to leave a corrupted file if there is a problem
+        var baos = new ByteArrayOutputStream();
+        try (var dos = new DeflaterOutputStream(baos))
+        {
+            song.saveToStream(dos, false);
+        }
+        byte[] songData = baos.toByteArray();
+
+        byte[] mixData = new byte[0];
+        if (midiMix != null)
+        {
+            baos = new ByteArrayOutputStream();
+            try (var dos = new DeflaterOutputStream(baos))
+            {
+                midiMix.saveToStream(dos);
+            }
+            mixData = baos.toByteArray();
+        }
+
+        List<String> names = new ArrayList<>(song.getUserPhraseNames());
+
+
+        try (var dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f))))
+        {
+            dos.writeInt(MAGIC_NUMBER);
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeInt(songData.length);
+            dos.write(songData);
+            dos.writeInt(mixData.length);
+            dos.write(mixData);
+
+            dos.writeInt(names.size());
+            for (String name : names)
+            {
+                // User phrases which were not decoded since loading are saved as is
+                PackedPhrase pp = song.getPackedUserPhrase(name);
+                dos.writeUTF(name);
+                pp.write(dos);
+            }
+        }
+
+        LOGGER.log(Level.FINE, "save() f={0} song={1} nbUserPhrases={2}", new Object[]
+        {
+            f.getAbsolutePath(), song.getName(), names.size()
+        });
+    }
+
+    /**
+     * Load a song and its MidiMix.
+     * <p>
+     * Song's name is set from the file name. Song's file is not set, the song is not registered by the SongFactory instance and the MidiMix is not associated
+     * to the song: this is the caller responsibility.
+     *
+     * @param f
+     * @return
+     * @throws IOException
+     */
+    static public Content load(File f) throws IOException
+    {
+        Preconditions.checkNotNull(f);
+
+        Song song;
+        MidiMix midiMix = null;
+
+        try (var dis = new DataInputStream(new BufferedInputStream(new FileInputStream(f))))
+        {
+            if (dis.readInt() != MAGIC_NUMBER)
+            {
+                throw new IOException("Not a binary song file: " + f.getAbsolutePath());
+            }
+            int version = dis.readInt();
+            if (version != FORMAT_VERSION)
+            {
+                throw new IOException("Unsupported binary song file format version " + version + ": " + f.getAbsolutePath());
+            }
+
+            byte[] songData = readBlock(dis);
+            try (var is = new InflaterInputStream(new ByteArrayInputStream(songData)))
+            {
+                song = Song.loadFromStream(is);
+            } catch (SongCreationException ex)
+            {
+                throw new IOException(ex.getMessage(), ex);
+            }
+
+            byte[] mixData = readBlock(dis);
+            if (mixData.length > 0)
+            {
+                try (var is = new InflaterInputStream(new ByteArrayInputStream(mixData)))
+                {
+                    midiMix = MidiMix.loadFromStream(is);
+                }
+            }
+
+            int nbPhrases = dis.readInt();
+            for (int i = 0; i < nbPhrases; i++)
+            {
+                String name = dis.readUTF();
+                song.setPackedUserPhrase(name, PackedPhrase.read(dis));
+            }
+        }
+
+        song.setName(Utilities.replaceExtension(f.getName(), ""));
+        song.setSaveNeeded(false);
+
+        return new Content(song, midiMix);
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    static private byte[] readBlock(DataInputStream dis) throws IOException
+    {
+        int size = dis.readInt();
+        if (size < 0)
+        {
+            throw new IOException("Invalid block size=" + size);
+        }
+        byte[] res = new byte[size];
+        dis.readFully(res);
+        return res;
+    }
+
+}
@@ -35,10 +35,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.ObjectStreamException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Serializable;
@@ -1146,9 +1148,7 @@ public class MidiMix implements SgsChangeListener, PropertyChangeListener, Vetoa
 
         try (FileOutputStream fos = new FileOutputStream(f))
         {
-            XStream xstream = XStreamInstancesManager.getInstance().getSaveMidiMixInstance();
-            Writer w = new BufferedWriter(new OutputStreamWriter(fos, "UTF-8"));        // Needed to support special/accented chars
-            xstream.toXML(this, w);
+            saveToStream(fos);
             if (!isCopy)
             {
                 pcs.firePropertyChange(PROP_MODIFIED_OR_SAVED, true, false);
@@ -1160,13 +1160,28 @@ public class MidiMix implements SgsChangeListener, PropertyChangeListener, Vetoa
                 file = null;
             }
             throw new IOException(e);
+        }
+    }
+
+    /**
+     * Save this MidiMix to an output stream (XML format).
+     * <p>
+     * MidiMix state is not changed, like saveToFile(f, true).
+     *
+     * @param os Not closed by this method.
+     * @throws IOException
+     */
+    public void saveToStream(OutputStream os) throws IOException
+    {
+        Preconditions.checkNotNull(os);
+        try
+        {
+            XStream xstream = XStreamInstancesManager.getInstance().getSaveMidiMixInstance();
+            Writer w = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));        // Needed to support special/accented chars
+            xstream.toXML(this, w);
         } catch (XStreamException e)
         {
-            if (!isCopy)
-            {
-                file = null;
-            }
-            LOGGER.log(Level.WARNING, "saveToFile() exception={0}", e.getMessage());
+            LOGGER.log(Level.WARNING, "saveToStream() exception={0}", e.getMessage());
             // Translate into an IOException to be handled by the Netbeans framework 
             throw new IOException("XStream XML unmarshalling error", e);
         }
@@ -1437,16 +1452,34 @@ public class MidiMix implements SgsChangeListener, PropertyChangeListener, Vetoa
 
         try (var fis = new FileInputStream(f))
         {
-            XStream xstream = XStreamInstancesManager.getInstance().getLoadMidiMixInstance();
-            Reader r = new BufferedReader(new InputStreamReader(fis, "UTF-8"));        // Needed to support special/accented chars
-            mm = (MidiMix) xstream.fromXML(r);
+            mm = loadFromStream(fis);
             mm.setFile(f);
+        }
+        return mm;
+    }
+
+    /**
+     * Load a MidiMix from an input stream (XML format).
+     * <p>
+     * Contrary to loadFromFile(), MidiMix file is not set.
+     *
+     * @param is Not closed by this method.
+     * @return
+     * @throws java.io.IOException If problem occured while reading the stream
+     */
+    public static MidiMix loadFromStream(InputStream is) throws IOException
+    {
+        Preconditions.checkNotNull(is);
+        try
+        {
+            XStream xstream = XStreamInstancesManager.getInstance().getLoadMidiMixInstance();
+            Reader r = new BufferedReader(new InputStreamReader(is, "UTF-8"));        // Needed to support special/accented chars
+            return (MidiMix) xstream.fromXML(r);
         } catch (XStreamException e)
         {
-            LOGGER.log(Level.WARNING, "loadFromFile() XStreamException e={0}", e.getMessage());   // Important in order to get the details of the XStream error   
+            LOGGER.log(Level.WARNING, "loadFromStream() XStreamException e={0}", e.getMessage());   // Important in order to get the details of the XStream error   
             throw new IOException("XStream loading error", e);         // Translate into an IOException to be handled by the Netbeans framework 
         }
-        return mm;
     }
 
     //-----------------------------------------------------------------------
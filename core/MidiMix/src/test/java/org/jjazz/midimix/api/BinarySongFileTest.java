@@ -0,0 +1,165 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.midimix.api;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.jjazz.chordleadsheet.api.ChordLeadSheet;
+import org.jjazz.chordleadsheet.api.item.CLI_Factory;
+import org.jjazz.harmony.api.TimeSignature;
+import org.jjazz.phrase.api.NoteEvent;
+import org.jjazz.phrase.api.PackedPhrase;
+import org.jjazz.phrase.api.Phrase;
+import org.jjazz.rhythmdatabase.api.DefaultRhythmDatabase;
+import org.jjazz.rhythmdatabase.api.RhythmDatabase;
+import org.jjazz.song.api.Song;
+import org.jjazz.song.api.SongFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BinarySongFileTest
+{
+
+    private static final String SONG_NAME = "BinarySongFileTest";
+    private static File dir;
+
+    public BinarySongFileTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception
+    {
+        var rdb = (DefaultRhythmDatabase) RhythmDatabase.getDefault();
+        rdb.addRhythmsFromRhythmProviders(false, true, false);
+        dir = Files.createTempDirectory(SONG_NAME).toFile();
+        dir.deleteOnExit();
+    }
+
+    /**
+     * XML to binary to XML must be lossless, and must not decode the user phrases.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testXmlRoundTrip() throws Exception
+    {
+        System.out.println("testXmlRoundTrip");
+
+        // Use XML files produced from a loaded song so that both XML files are produced the same way
+        Song song = createSong();
+        File xmlFile = newFile(".sng");
+        song.saveToFile(xmlFile, true);
+        Song xmlSong = Song.loadFromFile(xmlFile);
+        File xmlFile1 = newFile(".sng");
+        xmlSong.saveToFile(xmlFile1, true);
+
+
+        File binFile = newFile(".sngb");
+        BinarySongFile.save(binFile, xmlSong, null);
+        var content = BinarySongFile.load(binFile);
+        Song binSong = content.song();
+        assertNull(content.midiMix());
+        assertEquals(SONG_NAME, binSong.getName());
+        assertFalse(binSong.isSaveNeeded());
+
+
+        // Loaded user phrases remain packed when saved in both formats
+        assertEquals(xmlSong.getUserPhraseNames(), binSong.getUserPhraseNames());
+        var ppBass = binSong.getPackedUserPhrase("bass");
+        File xmlFile2 = newFile(".sng");
+        binSong.saveToFile(xmlFile2, true);
+        BinarySongFile.save(newFile(".sngb"), binSong, null);
+        assertSame(ppBass, binSong.getPackedUserPhrase("bass"));
+
+
+        assertEquals(Files.readString(xmlFile1.toPath()), Files.readString(xmlFile2.toPath()));
+        for (String name : song.getUserPhraseNames())
+        {
+            assertSamePhrase(song.getUserPhrase(name), binSong.getUserPhrase(name));
+        }
+        assertNotSame(ppBass, binSong.getPackedUserPhrase("bass"));
+
+
+        // Once decoded the XML is still the same
+        File xmlFile3 = newFile(".sng");
+        binSong.saveToFile(xmlFile3, true);
+        assertEquals(Files.readString(xmlFile1.toPath()), Files.readString(xmlFile3.toPath()));
+
+
+        SongFactory.getInstance().unregisterSong(xmlSong);
+        SongFactory.getInstance().unregisterSong(song);
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    private static Song createSong() throws Exception
+    {
+        Song song = SongFactory.getInstance().createEmptySong(SONG_NAME, 8, "A", TimeSignature.FOUR_FOUR, "Cm7");
+        song.setTempo(132);
+        song.setComments("Binary song file test");
+        ChordLeadSheet cls = song.getChordLeadSheet();
+        var clif = CLI_Factory.getDefault();
+        cls.addItem(clif.createChordSymbol("F7", 1, 2f));
+        cls.addItem(clif.createChordSymbol("Bb7M", 2, 0f));
+        cls.addSection(clif.createSection("B", TimeSignature.FOUR_FOUR, 4, cls));
+        cls.addItem(clif.createChordSymbol("G7b9", 5, 0f));
+
+
+        Phrase bass = new Phrase(2, false);
+        float pos = 0;
+        for (int i = 0; i < 200; i++)
+        {
+            bass.add(new NoteEvent(36 + (i * 5) % 24, 0.1f + (i % 7) * 0.23f, 40 + (i * 11) % 87, pos));
+            pos += (i % 4) * 0.25f + 0.1f;
+        }
+        song.setUserPhrase("bass", bass);
+
+        Phrase drums = new Phrase(9, true);
+        for (int i = 0; i < 32; i++)
+        {
+            drums.add(new NoteEvent(i % 2 == 0 ? 36 : 42, 0.1f, 100, i * 0.5f));
+        }
+        song.setUserPhrase("drums", drums);
+
+        return song;
+    }
+
+    private static File newFile(String extension) throws Exception
+    {
+        File subDir = Files.createTempDirectory(dir.toPath(), "t").toFile();
+        File f = new File(subDir, SONG_NAME + extension);
+        subDir.deleteOnExit();
+        f.deleteOnExit();
+        return f;
+    }
+
+    private static void assertSamePhrase(Phrase expected, Phrase p)
+    {
+        assertEquals(expected.getChannel(), p.getChannel());
+        assertEquals(expected.isDrums(), p.isDrums());
+        assertEquals(Phrase.saveAsString(expected), Phrase.saveAsString(p));
+    }
+}
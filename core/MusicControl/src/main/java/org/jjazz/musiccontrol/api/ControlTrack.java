@@ -133,7 +133,7 @@ public class ControlTrack
         {
             throw new IllegalArgumentException("track=" + track);
         }
-        getMidiEvents().forEach(me -> track.add(me));
+        MidiUtilities.addAllSorted(track, getMidiEvents());
     }
 
 
@@ -0,0 +1,213 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.musiccontrol.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
+/**
+ * Execute tasks on the EDT after a delay, using a single thread and a priority queue ordered by due time.
+ * <p>
+ * Tasks which are due at (nearly) the same time are executed in one SwingUtilities.invokeLater() call. Tasks scheduled with the same due
+ * time are executed in the scheduling order.
+ */
+class DelayedEdtTaskScheduler
+{
+
+    /**
+     * Tasks due within this time are executed in the same EDT batch.
+     */
+    private static final long BATCH_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    /**
+     * Max number of pending tasks, additional tasks are dropped.
+     */
+    private static final int MAX_PENDING_TASKS = 10000;
+    private final String name;
+    private final PriorityQueue<DelayedTask> queue = new PriorityQueue<>();
+    private long taskSequence;
+    /**
+     * Incremented by cancelAll() so that batches already posted on the EDT are ignored.
+     */
+    private volatile long generation;
+    private long droppedTaskCount;
+    private Thread thread;
+    private static final Logger LOGGER = Logger.getLogger(DelayedEdtTaskScheduler.class.getSimpleName());
+
+    /**
+     * @param name Used for the scheduler thread name
+     */
+    public DelayedEdtTaskScheduler(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Schedule a task to be run on the EDT after the specified delay.
+     *
+     * @param task
+     * @param delayMs If &lt;= 0 task is directly posted on the EDT.
+     */
+    public void schedule(Runnable task, int delayMs)
+    {
+        if (task == null)
+        {
+            throw new IllegalArgumentException("task=" + task);
+        }
+        if (delayMs <= 0)
+        {
+            SwingUtilities.invokeLater(task);
+            return;
+        }
+
+        long dueTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        synchronized (queue)
+        {
+            if (queue.size() >= MAX_PENDING_TASKS)
+            {
+                droppedTaskCount++;
+                LOGGER.log(Level.FINE, "schedule() too many pending tasks, task dropped. droppedTaskCount={0}", droppedTaskCount);
+                return;
+            }
+            var delayedTask = new DelayedTask(dueTime, taskSequence++, task);
+            queue.add(delayedTask);
+            if (thread == null)
+            {
+                thread = new Thread(() -> run(), name);
+                thread.setDaemon(true);
+                thread.start();
+            } else if (queue.peek() == delayedTask)
+            {
+                // New first task, thread must recompute its wait time
+                queue.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Cancel all pending tasks, including the ones already posted on the EDT but not yet run.
+     */
+    public void cancelAll()
+    {
+        synchronized (queue)
+        {
+            generation++;
+            queue.clear();
+            queue.notifyAll();
+        }
+    }
+
+    /**
+     * The number of tasks not executed because there were too many pending tasks.
+     *
+     * @return
+     */
+    public long getDroppedTaskCount()
+    {
+        synchronized (queue)
+        {
+            return droppedTaskCount;
+        }
+    }
+
+    // =====================================================================================
+    // Private methods
+    // =====================================================================================================================    
+    private void run()
+    {
+        while (true)
+        {
+            List<Runnable> batch;
+            long batchGeneration;
+            synchronized (queue)
+            {
+                try
+                {
+                    DelayedTask first;
+                    long waitNanos;
+                    while ((first = queue.peek()) == null || (waitNanos = first.dueTime - System.nanoTime()) > 0)
+                    {
+                        if (first == null)
+                        {
+                            queue.wait();
+                        } else
+                        {
+                            TimeUnit.NANOSECONDS.timedWait(queue, waitNanos);
+                        }
+                    }
+                } catch (InterruptedException ex)
+                {
+                    LOGGER.log(Level.WARNING, "run() unexpected interruption, scheduler thread stopped. ex={0}", ex.getMessage());
+                    thread = null;
+                    return;
+                }
+
+
+                // Get all the tasks due in the batch window
+                long batchEnd = System.nanoTime() + BATCH_WINDOW_NANOS;
+                batch = new ArrayList<>();
+                while (!queue.isEmpty() && queue.peek().dueTime - batchEnd <= 0)
+                {
+                    batch.add(queue.poll().task);
+                }
+                batchGeneration = generation;
+            }
+
+
+            SwingUtilities.invokeLater(() -> 
+            {
+                for (Runnable task : batch)
+                {
+                    if (generation != batchGeneration)
+                    {
+                        // cancelAll() was called in between
+                        break;
+                    }
+                    task.run();
+                }
+            });
+        }
+    }
+
+    // =====================================================================================
+    // Inner classes
+    // =====================================================================================================================    
+    private record DelayedTask(long dueTime, long sequence, Runnable task) implements Comparable<DelayedTask>
+            {
+
+        @Override
+        public int compareTo(DelayedTask other)
+        {
+            int res = Long.compare(dueTime - other.dueTime, 0);
+            if (res == 0)
+            {
+                res = Long.compare(sequence, other.sequence);
+            }
+            return res;
+        }
+    }
+}
@@ -26,8 +26,6 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
@@ -43,7 +41,6 @@ import javax.sound.midi.Sequencer;
 import javax.sound.midi.ShortMessage;
 import javax.sound.midi.Transmitter;
 import javax.swing.SwingUtilities;
-import javax.swing.Timer;
 import org.jjazz.chordleadsheet.api.item.CLI_ChordSymbol;
 import org.jjazz.harmony.api.Position;
 import org.jjazz.midi.api.MidiConst;
@@ -135,11 +132,11 @@ public class MusicController implements PropertyChangeListener, MetaEventListene
     private float songPartTempoFactor = 1;
     private int audioLatency;
     /**
-     * Keep track of active timers used to compensate the audio latency.
+     * Delay events to compensate the audio latency.
      * <p>
-     * Needed to force stop them when sequencer is stopped/paused by user.
+     * Pending events are cancelled when sequencer is stopped/paused by user.
      */
-    private final Set<Timer> audioLatencyTimers = new HashSet<>();
+    private final DelayedEdtTaskScheduler audioLatencyScheduler = new DelayedEdtTaskScheduler("MusicController-AudioLatencyScheduler");
     /**
      * Our MidiReceiver to be able to fire events to NoteListeners and PlaybackListener (midiActivity).
      */
@@ -1017,35 +1014,13 @@ public class MusicController implements PropertyChangeListener, MetaEventListene
     /**
      * Fire an event on the EDT after a time delay to take into account the current output synth latency.
      * <p>
-     * Active timers are available in audioLatencyTimers.
+     * Pending events are managed by audioLatencyScheduler.
      *
      * @param r
      */
     private void fireLatencyAwareEvent(Runnable r)
     {
-        if (audioLatency == 0)
-        {
-            SwingUtilities.invokeLater(r);
-        } else
-        {
-            Timer t = new Timer(audioLatency, evt -> 
-            {
-                r.run();            // Will be run on the EDT
-            });
-            t.addActionListener(evt -> 
-            {
-                synchronized (audioLatencyTimers)
-                {
-                    audioLatencyTimers.remove(t);
-                }
-            });
-            synchronized (audioLatencyTimers)
-            {
-                audioLatencyTimers.add(t);
-            }
-            t.setRepeats(false);
-            t.start();
-        }
+        audioLatencyScheduler.schedule(r, audioLatency);
     }
 
     /**
@@ -1053,11 +1028,7 @@ public class MusicController implements PropertyChangeListener, MetaEventListene
      */
     private void clearPendingEvents()
     {
-        for (Iterator<Timer> it = audioLatencyTimers.iterator(); it.hasNext();)
-        {
-            it.next().stop();
-            it.remove();
-        }
+        audioLatencyScheduler.cancelAll();
     }
 
     private SongContext getSongContext(PlaybackSession session)
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
 import javax.sound.midi.Track;
 import org.jjazz.musiccontrol.spi.ActiveSongBackgroundMusicBuilder;
 import org.jjazz.midi.api.MidiUtilities;
@@ -60,8 +61,47 @@ public class SongMidiExporter
      * @param midiFile
      * @param rv       If non-null, only export the specified RhythmVoice
      * @return True if write was successful.
+     * @see #songToSequence(org.jjazz.song.api.Song, org.jjazz.midimix.api.MidiMix, org.jjazz.rhythm.api.RhythmVoice)
      */
     static public boolean songToMidiFile(Song song, MidiMix midiMix, File midiFile, RhythmVoice rv)
+    {
+        Sequence sequence = songToSequence(song, midiMix, rv);
+        if (sequence == null)
+        {
+            return false;
+        }
+
+
+        // Write to file
+        LOGGER.log(Level.INFO, "songToMidiFile() writing sequence to Midi file: {0}", midiFile.getAbsolutePath());
+        try
+        {
+            MidiSystem.write(sequence, 1, midiFile);
+            StatusDisplayer.getDefault().setStatusText(ResUtil.getString(SongMidiExporter.class, "CTL_MidiSequenceWritten",
+                    midiFile.getAbsolutePath()));
+        } catch (IOException ex)
+        {
+            LOGGER.log(Level.WARNING, ex.getMessage(), ex);
+            NotifyDescriptor d = new NotifyDescriptor.Message(ex.getLocalizedMessage(), NotifyDescriptor.ERROR_MESSAGE);
+            DialogDisplayer.getDefault().notify(d);
+            return false;
+        }
+
+
+        return true;
+    }
+
+    /**
+     * Build the exportable Midi sequence of a song, e.g. to render it directly with an EmbeddedSynth.
+     * <p>
+     * If song is the active song, try to reuse the last result from the ActiveSongMusicBuilder, otherwise generate the music. Notify user if a problem occured.
+     *
+     * @param song
+     * @param midiMix
+     * @param rv      If non-null, only export the specified RhythmVoice
+     * @return Null if a problem occured.
+     */
+    static public Sequence songToSequence(Song song, MidiMix midiMix, RhythmVoice rv)
     {
         Preconditions.checkNotNull(song);
         Preconditions.checkNotNull(midiMix);
@@ -80,7 +120,7 @@ public class SongMidiExporter
             LOGGER.warning(msg);
             NotifyDescriptor nd = new NotifyDescriptor.Message(msg, NotifyDescriptor.ERROR_MESSAGE);
             DialogDisplayer.getDefault().notify(nd);
-            return false;
+            return null;
         }
 
 
@@ -114,8 +154,8 @@ public class SongMidiExporter
                 String msg = ResUtil.getString(SongMidiExporter.class, "MidiExportProblem", exceptionError);
                 NotifyDescriptor d = new NotifyDescriptor.Message(msg, NotifyDescriptor.ERROR_MESSAGE);
                 DialogDisplayer.getDefault().notify(d);
-                LOGGER.log(Level.WARNING, "songToMidiFile() exception={0}", exceptionError);
-                return false;
+                LOGGER.log(Level.WARNING, "songToSequence() exception={0}", exceptionError);
+                return null;
             }
         }
 
@@ -157,27 +197,11 @@ public class SongMidiExporter
         // Dump sequence in debug mode
         if (MusicController.getInstance().isDebugPlayedSequence())
         {
-            LOGGER.log(Level.INFO, "songToMidiFile() sg={0} - sequence :", song.getName());
+            LOGGER.log(Level.INFO, "songToSequence() sg={0} - sequence :", song.getName());
             LOGGER.info(MidiUtilities.toString(songSequence.sequence));
         }
 
 
-        // Write to file
-        LOGGER.log(Level.INFO, "songToMidiFile() writing sequence to Midi file: {0}", midiFile.getAbsolutePath());
-        try
-        {
-            MidiSystem.write(songSequence.sequence, 1, midiFile);
-            StatusDisplayer.getDefault().setStatusText(ResUtil.getString(SongMidiExporter.class, "CTL_MidiSequenceWritten",
-                    midiFile.getAbsolutePath()));
-        } catch (IOException ex)
-        {
-            LOGGER.log(Level.WARNING, ex.getMessage(), ex);
-            NotifyDescriptor d = new NotifyDescriptor.Message(ex.getLocalizedMessage(), NotifyDescriptor.ERROR_MESSAGE);
-            DialogDisplayer.getDefault().notify(d);
-            return false;
-        }
-
-
-        return true;
+        return songSequence.sequence;
     }
 }
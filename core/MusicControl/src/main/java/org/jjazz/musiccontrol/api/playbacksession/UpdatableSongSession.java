@@ -38,6 +38,8 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.ShortMessage;
 import javax.sound.midi.Sequence;
 import javax.sound.midi.Track;
 import javax.swing.event.SwingPropertyChangeSupport;
@@ -46,8 +48,8 @@ import org.jjazz.midi.api.MidiConst;
 import org.jjazz.midi.api.MidiUtilities;
 import org.jjazz.musiccontrol.api.ControlTrack;
 import org.jjazz.musiccontrol.api.PlaybackSettings;
+import org.jjazz.phrase.api.NoteEvent;
 import org.jjazz.phrase.api.Phrase;
-import org.jjazz.phrase.api.Phrases;
 import org.jjazz.rhythm.api.MusicGenerationException;
 import org.jjazz.rhythm.api.RhythmVoice;
 import org.jjazz.songcontext.api.SongContext;
@@ -166,6 +168,10 @@ public class UpdatableSongSession implements PropertyChangeListener, PlaybackSes
     private Sequence sequence;
     private boolean enabled;
     private final HashMap<Integer, Boolean> mapTrackIdMuted = new HashMap<>();
+    /**
+     * The known phrase content of the tracks, used to update a buffer track incrementally. Key is a sequence track id.
+     */
+    private final HashMap<Integer, PhraseTrackContent> mapTrackIdContent = new HashMap<>();
     private static final List<UpdatableSongSession> sessions = new ArrayList<>();
 
     private final SwingPropertyChangeSupport pcs = new SwingPropertyChangeSupport(this);
@@ -405,7 +411,7 @@ public class UpdatableSongSession implements PropertyChangeListener, PlaybackSes
 
             // Update the track
             int trackId = getOriginalRvTrackIdMap().get(rv);
-            updateTrack(trackId, Phrases.toMidiEvents(updatedPhrase), precountShift);
+            updatePhraseTrack(trackId, updatedPhrase, precountShift);
 
         }
 
@@ -418,7 +424,7 @@ public class UpdatableSongSession implements PropertyChangeListener, PlaybackSes
             Phrase emptyPhrase = new Phrase(channel, urv.isDrums());
             currentMapRvPhrase.put(urv, emptyPhrase);
             int trackId = getOriginalRvTrackIdMap().get(urv);
-            updateTrack(trackId, Phrases.toMidiEvents(emptyPhrase), precountShift);
+            updatePhraseTrack(trackId, emptyPhrase, precountShift);
         }
 
 
@@ -711,6 +717,11 @@ public class UpdatableSongSession implements PropertyChangeListener, PlaybackSes
         originalMapIdMuted.keySet().forEach(trackId -> trackSet.addTrack(trackId));
 
 
+        // The new buffer tracks are empty. Content of the original tracks is unknown, they will be fully rebuilt on their first update.
+        mapTrackIdContent.clear();
+        originalMapIdMuted.keySet().forEach(trackId -> mapTrackIdContent.put(trackSet.getBufferTrackId(trackId), new PhraseTrackContent(-1, 0)));
+
+
         // Initialize our own tracks mute state
         for (int trackId : originalMapIdMuted.keySet())
         {
@@ -737,6 +748,7 @@ public class UpdatableSongSession implements PropertyChangeListener, PlaybackSes
     {
         Track bufferTrack = trackSet.getBufferTrack(trackId);
         MidiUtilities.clearTrack(bufferTrack);
+        mapTrackIdContent.remove(trackSet.getBufferTrackId(trackId));
 
 
         for (MidiEvent me : newEvents)
@@ -749,8 +761,114 @@ public class UpdatableSongSession implements PropertyChangeListener, PlaybackSes
                 throw new IllegalArgumentException(
                         "me=" + MidiUtilities.toString(me.getMessage(), me.getTick()) + " originalTrackTickSize=" + originalTrackTickSize);
             }
-            bufferTrack.add(me);
         }
+        MidiUtilities.addAllSorted(bufferTrack, newEvents);
+
+
+        swapTracks(trackId);
+    }
+
+    /**
+     * Update one track from a phrase.
+     * <p>
+     * If the phrase content of the buffer track is known, only the MidiEvents of the removed and added notes are updated in the buffer
+     * track. Otherwise the buffer track is fully rebuilt.
+     *
+     * @param trackId
+     * @param phrase
+     * @param precountTickOffset
+     * @throws IllegalArgumentException
+     */
+    private void updatePhraseTrack(int trackId, Phrase phrase, long precountTickOffset) throws IllegalArgumentException
+    {
+        int bufferTrackId = trackSet.getBufferTrackId(trackId);
+        Track bufferTrack = trackSet.getBufferTrack(trackId);
+        PhraseTrackContent content = mapTrackIdContent.remove(bufferTrackId);       // Put back only if update is successful
+
+
+        if (content != null && content.isEmpty())
+        {
+            // Empty track, can be reused whatever the channel and offset
+            content = new PhraseTrackContent(phrase.getChannel(), precountTickOffset);
+        } else if (content == null || content.channel != phrase.getChannel() || content.tickOffset != precountTickOffset)
+        {
+            // Unknown or incompatible content, rebuild from scratch
+            LOGGER.log(Level.FINE, "updatePhraseTrack() full rebuild of bufferTrackId={0}", bufferTrackId);
+            MidiUtilities.clearTrack(bufferTrack);
+            content = new PhraseTrackContent(phrase.getChannel(), precountTickOffset);
+        }
+
+
+        List<NoteMidiEvents> oldNotes = content.notes;
+        List<NoteMidiEvents> newNotes = new ArrayList<>(phrase.size());
+        int oldIndex = 0;
+        int nbRemoved = 0;
+        int nbAdded = 0;
+
+
+        if (oldNotes.isEmpty())
+        {
+            // Empty track: bulk load
+            List<MidiEvent> events = new ArrayList<>(2 * phrase.size());
+            for (NoteEvent ne : phrase)
+            {
+                NoteMidiEvents nme = createNoteMidiEvents(ne, phrase.getChannel(), precountTickOffset);
+                events.add(nme.noteOn);
+                events.add(nme.noteOff);
+                newNotes.add(nme);
+            }
+            MidiUtilities.addAllSorted(bufferTrack, events);
+            nbAdded = newNotes.size();
+        } else
+        {
+            // Both lists are sorted by position, pitch, duration, velocity: walk them to find the removed and added notes
+            for (NoteEvent ne : phrase)
+            {
+                int res = -1;
+                while (oldIndex < oldNotes.size() && (res = oldNotes.get(oldIndex).compareTo(ne)) < 0)
+                {
+                    removeNoteMidiEvents(bufferTrack, oldNotes.get(oldIndex));
+                    oldIndex++;
+                    nbRemoved++;
+                }
+                if (oldIndex < oldNotes.size() && res == 0)
+                {
+                    // Unchanged note
+                    newNotes.add(oldNotes.get(oldIndex));
+                    oldIndex++;
+                } else
+                {
+                    newNotes.add(addNoteMidiEvents(bufferTrack, ne, phrase.getChannel(), precountTickOffset));
+                    nbAdded++;
+                }
+            }
+            for (; oldIndex < oldNotes.size(); oldIndex++)
+            {
+                removeNoteMidiEvents(bufferTrack, oldNotes.get(oldIndex));
+                nbRemoved++;
+            }
+        }
+        LOGGER.log(Level.FINE, "updatePhraseTrack() bufferTrackId={0} nbRemoved={1} nbAdded={2}", new Object[]
+        {
+            bufferTrackId, nbRemoved, nbAdded
+        });
+
+
+        content.notes = newNotes;
+        mapTrackIdContent.put(bufferTrackId, content);
+
+
+        swapTracks(trackId);
+    }
+
+    /**
+     * Make the buffer track the active track.
+     *
+     * @param trackId
+     */
+    private void swapTracks(int trackId)
+    {
+        Track bufferTrack = trackSet.getBufferTrack(trackId);
 
 
         // Make sure size is not changed
@@ -768,6 +886,115 @@ public class UpdatableSongSession implements PropertyChangeListener, PlaybackSes
     }
 
 
+    /**
+     * Add the note ON/OFF MidiEvents of a note to a track.
+     *
+     * @param track
+     * @param ne
+     * @param channel
+     * @param tickOffset
+     * @return
+     * @throws IllegalArgumentException If a MidiEvent tick is beyond originalTrackTickSize
+     */
+    private NoteMidiEvents addNoteMidiEvents(Track track, NoteEvent ne, int channel, long tickOffset) throws IllegalArgumentException
+    {
+        var nme = createNoteMidiEvents(ne, channel, tickOffset);
+        track.add(nme.noteOn);
+        addNoteOff(track, nme.noteOff);
+        return nme;
+    }
+
+    /**
+     * Create the note ON/OFF MidiEvents of a note.
+     *
+     * @param ne
+     * @param channel
+     * @param tickOffset
+     * @return
+     * @throws IllegalArgumentException If a MidiEvent tick is beyond originalTrackTickSize
+     */
+    private NoteMidiEvents createNoteMidiEvents(NoteEvent ne, int channel, long tickOffset) throws IllegalArgumentException
+    {
+        var events = ne.toMidiEvents(channel);
+        for (MidiEvent me : events)
+        {
+            me.setTick(me.getTick() + tickOffset);
+            if (me.getTick() > originalTrackTickSize)
+            {
+                throw new IllegalArgumentException(
+                        "me=" + MidiUtilities.toString(me.getMessage(), me.getTick()) + " originalTrackTickSize=" + originalTrackTickSize);
+            }
+        }
+        return new NoteMidiEvents(ne, events.get(0), events.get(1));
+    }
+
+    /**
+     * Remove the note ON/OFF MidiEvents of a note from a track.
+     *
+     * @param track
+     * @param nme
+     */
+    private void removeNoteMidiEvents(Track track, NoteMidiEvents nme)
+    {
+        track.remove(nme.noteOn);
+        track.remove(nme.noteOff);
+    }
+
+    /**
+     * Add a note OFF event so that it is placed before the note ON events at the same tick.
+     * <p>
+     * Track.add() places a new event after the existing events at the same tick. This would break a repeated note if the note ON of the
+     * next note was already there. This is the order obtained when a track is built from scratch from a phrase.
+     *
+     * @param track
+     * @param meOff
+     */
+    private void addNoteOff(Track track, MidiEvent meOff)
+    {
+        long tick = meOff.getTick();
+        List<MidiEvent> noteOns = null;
+
+
+        // Find the first event at tick
+        int low = 0;
+        int high = track.size() - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            if (track.get(mid).getTick() < tick)
+            {
+                low = mid + 1;
+            } else
+            {
+                high = mid - 1;
+            }
+        }
+        for (int i = low; i < track.size() && track.get(i).getTick() == tick; i++)
+        {
+            MidiEvent me = track.get(i);
+            MidiMessage mm = me.getMessage();
+            if (mm instanceof ShortMessage sm && sm.getCommand() == ShortMessage.NOTE_ON && sm.getData2() > 0)
+            {
+                if (noteOns == null)
+                {
+                    noteOns = new ArrayList<>();
+                }
+                noteOns.add(me);
+            }
+        }
+
+
+        if (noteOns == null)
+        {
+            track.add(meOff);
+        } else
+        {
+            noteOns.forEach(me -> track.remove(me));
+            track.add(meOff);
+            noteOns.forEach(me -> track.add(me));
+        }
+    }
+
     /**
      * Find an identical existing session in state NEW or GENERATED and not dirty.
      *
@@ -793,6 +1020,81 @@ public class UpdatableSongSession implements PropertyChangeListener, PlaybackSes
     // ==========================================================================================================
     // Inner classes
     // ==========================================================================================================    
+    /**
+     * The notes of a phrase and their MidiEvents stored in a track.
+     */
+    static private class PhraseTrackContent
+    {
+
+        private final int channel;
+        private final long tickOffset;
+        /**
+         * Sorted like in a Phrase.
+         */
+        private List<NoteMidiEvents> notes = new ArrayList<>();
+
+        public PhraseTrackContent(int channel, long tickOffset)
+        {
+            this.channel = channel;
+            this.tickOffset = tickOffset;
+        }
+
+        public boolean isEmpty()
+        {
+            return notes.isEmpty();
+        }
+    }
+
+    /**
+     * The MidiEvents of a note in a track.
+     * <p>
+     * Note values are copied because a NoteEvent position might be modified afterwards.
+     */
+    static private class NoteMidiEvents
+    {
+
+        private final float position;
+        private final int pitch;
+        private final float duration;
+        private final int velocity;
+        private final MidiEvent noteOn;
+        private final MidiEvent noteOff;
+
+        public NoteMidiEvents(NoteEvent ne, MidiEvent noteOn, MidiEvent noteOff)
+        {
+            this.position = ne.getPositionInBeats();
+            this.pitch = ne.getPitch();
+            this.duration = ne.getDurationInBeats();
+            this.velocity = ne.getVelocity();
+            this.noteOn = noteOn;
+            this.noteOff = noteOff;
+        }
+
+        /**
+         * Compare using the Phrase order, except that 2 notes with the same values are equal.
+         *
+         * @param ne
+         * @return
+         */
+        public int compareTo(NoteEvent ne)
+        {
+            int res = Float.compare(position, ne.getPositionInBeats());
+            if (res == 0)
+            {
+                res = Integer.compare(pitch, ne.getPitch());
+                if (res == 0)
+                {
+                    res = Float.compare(duration, ne.getDurationInBeats());
+                    if (res == 0)
+                    {
+                        res = Float.compare(velocity, ne.getVelocity());
+                    }
+                }
+            }
+            return res;
+        }
+    }
+
     /**
      * Manage a set of tracks of a sequence: N active tracks and N buffer tracks.
      */
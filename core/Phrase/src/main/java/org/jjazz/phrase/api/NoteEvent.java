@@ -43,6 +43,8 @@ import org.openide.util.Exceptions;
  * A Note with a position and optional client properties.
  * <p>
  * This is an immutable class EXCEPT for the client properties.<p>
+ * Client properties and listener support are allocated only when used: a NoteEvent which is never observed (e.g. the notes of a generated phrase) is not
+ * heavier than its note attributes.<p>
  * Two different NoteEvent instances can not be equal. If you need NoteEvent map keys to be considered equal when they share the same Note attributes, use the
  * AsNoteKey inner class.
  */
@@ -61,8 +63,14 @@ public class NoteEvent extends Note implements Cloneable, Comparable<Note>
 
 
     private float position;
+    /**
+     * Lazily created, see getClientProperties().
+     */
     protected ObservableProperties<Object> clientProperties;
-    private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+    /**
+     * Lazily created.
+     */
+    private PropertyChangeSupport pcs;
     private static final Logger LOGGER = Logger.getLogger(NoteEvent.class.getSimpleName());
 
     /**
@@ -81,7 +89,6 @@ public class NoteEvent extends Note implements Cloneable, Comparable<Note>
             throw new IllegalArgumentException("posInBeats=" + posInBeats);
         }
         position = posInBeats;
-        clientProperties = new ObservableProperties<>();
     }
 
     /**
@@ -112,9 +119,9 @@ public class NoteEvent extends Note implements Cloneable, Comparable<Note>
                 duration < 0 ? getDurationInBeats() : duration,
                 velocity < 0 ? getVelocity() : velocity,
                 posInBeats < 0 ? getPositionInBeats() : posInBeats);
-        if (copyProperties)
+        if (copyProperties && hasClientProperties())
         {
-            res.getClientProperties().set(getClientProperties());
+            res.getClientProperties().set(clientProperties);
         }
         return res;
     }
@@ -128,6 +135,10 @@ public class NoteEvent extends Note implements Cloneable, Comparable<Note>
      */
     static public void markIsAdjustingNote(NoteEvent note, boolean b)
     {
+        if (!b && note.clientProperties == null)
+        {
+            return;
+        }
         Boolean value = b == true ? Boolean.TRUE : null;
         note.getClientProperties().put(NoteEvent.PROP_IS_ADJUSTING, value);
     }
@@ -140,7 +151,7 @@ public class NoteEvent extends Note implements Cloneable, Comparable<Note>
      */
     static public boolean isAdjustingNote(NoteEvent ne)
     {
-        return Boolean.TRUE.equals(ne.getClientProperties().get(PROP_IS_ADJUSTING));
+        return ne.clientProperties != null && Boolean.TRUE.equals(ne.clientProperties.get(PROP_IS_ADJUSTING));
     }
 
     /**
@@ -202,14 +213,30 @@ public class NoteEvent extends Note implements Cloneable, Comparable<Note>
 
     /**
      * Get the client properties.
+     * <p>
+     * Properties are created upon the first call: use hasClientProperties() to check for properties without creating them.
      *
      * @return
      */
     public ObservableProperties<Object> getClientProperties()
     {
+        if (clientProperties == null)
+        {
+            clientProperties = new ObservableProperties<>();
+        }
         return clientProperties;
     }
 
+    /**
+     * Check if this NoteEvent has at least one client property.
+     *
+     * @return
+     */
+    public boolean hasClientProperties()
+    {
+        return clientProperties != null && !clientProperties.getPropertyNames().isEmpty();
+    }
+
     /**
      * Convert a note into 2 MidiEvents (NoteON and NoteOFF).
      *
@@ -430,14 +457,21 @@ public class NoteEvent extends Note implements Cloneable, Comparable<Note>
                 System.identityHashCode(this));
     }
 
-    public void addClientPropertyChangeListener(PropertyChangeListener l)
+    public synchronized void addClientPropertyChangeListener(PropertyChangeListener l)
     {
+        if (pcs == null)
+        {
+            pcs = new PropertyChangeSupport(this);
+        }
         pcs.addPropertyChangeListener(l);
     }
 
-    public void removeClientPropertyChangeListener(PropertyChangeListener l)
+    public synchronized void removeClientPropertyChangeListener(PropertyChangeListener l)
     {
-        pcs.removePropertyChangeListener(l);
+        if (pcs != null)
+        {
+            pcs.removePropertyChangeListener(l);
+        }
     }
 
     /**
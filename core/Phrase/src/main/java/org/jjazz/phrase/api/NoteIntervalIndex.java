@@ -0,0 +1,160 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.phrase.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable interval index of NoteEvents to quickly find the notes crossing a position or overlapping a beat range.
+ * <p>
+ * Notes are stored in Phrase order in an array which is used as an implicit balanced binary tree: the node of the [lo;hi] index range is at
+ * (lo+hi)/2, and each node stores the max end position of its subtree. A query visits only the subtrees which can contain a matching note,
+ * giving O(log n + k) for k results, and returns notes in Phrase order.
+ */
+class NoteIntervalIndex
+{
+
+    /**
+     * Below this size a linear scan of the phrase is as fast as building and querying an index.
+     */
+    static final int MIN_SIZE = 64;
+    private final NoteEvent[] notes;
+    private final float[] starts;
+    private final float[] ends;
+    private final float[] maxEnds;
+
+    /**
+     *
+     * @param sortedNotes Must be ordered by position
+     */
+    NoteIntervalIndex(Collection<NoteEvent> sortedNotes)
+    {
+        notes = sortedNotes.toArray(NoteEvent[]::new);
+        starts = new float[notes.length];
+        ends = new float[notes.length];
+        maxEnds = new float[notes.length];
+        for (int i = 0; i < notes.length; i++)
+        {
+            starts[i] = notes[i].getPositionInBeats();
+            ends[i] = starts[i] + notes[i].getDurationInBeats();
+        }
+        buildMaxEnds(0, notes.length - 1);
+    }
+
+    /**
+     * Get the notes which start before startLimit and end after endLimit.
+     *
+     * @param startLimit
+     * @param includeStartLimit If true also accept notes starting at startLimit
+     * @param endLimit
+     * @param includeEndLimit   If true also accept notes ending at endLimit
+     * @return Notes in Phrase order
+     */
+    List<NoteEvent> getNotes(float startLimit, boolean includeStartLimit, float endLimit, boolean includeEndLimit)
+    {
+        List<NoteEvent> res = new ArrayList<>();
+        collect(0, notes.length - 1, startLimit, includeStartLimit, endLimit, includeEndLimit, res);
+        return res;
+    }
+
+    /**
+     * Same as getNotes() but using a linear scan, for small collections.
+     *
+     * @param sortedNotes Must be ordered by position
+     * @param startLimit
+     * @param includeStartLimit
+     * @param endLimit
+     * @param includeEndLimit
+     * @return
+     */
+    static List<NoteEvent> scanNotes(Collection<NoteEvent> sortedNotes, float startLimit, boolean includeStartLimit, float endLimit,
+            boolean includeEndLimit)
+    {
+        List<NoteEvent> res = new ArrayList<>();
+        for (var ne : sortedNotes)
+        {
+            float start = ne.getPositionInBeats();
+            if (!isStartOk(start, startLimit, includeStartLimit))
+            {
+                break;
+            }
+            if (isEndOk(start + ne.getDurationInBeats(), endLimit, includeEndLimit))
+            {
+                res.add(ne);
+            }
+        }
+        return res;
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    private float buildMaxEnds(int lo, int hi)
+    {
+        if (lo > hi)
+        {
+            return Float.NEGATIVE_INFINITY;
+        }
+        int mid = (lo + hi) >>> 1;
+        float max = Math.max(ends[mid], Math.max(buildMaxEnds(lo, mid - 1), buildMaxEnds(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    private void collect(int lo, int hi, float startLimit, boolean includeStartLimit, float endLimit, boolean includeEndLimit, List<NoteEvent> res)
+    {
+        if (lo > hi)
+        {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (!isEndOk(maxEnds[mid], endLimit, includeEndLimit))
+        {
+            // No note of this subtree ends late enough
+            return;
+        }
+        collect(lo, mid - 1, startLimit, includeStartLimit, endLimit, includeEndLimit, res);
+        if (!isStartOk(starts[mid], startLimit, includeStartLimit))
+        {
+            // Notes are sorted: mid and the right subtree start too late
+            return;
+        }
+        if (isEndOk(ends[mid], endLimit, includeEndLimit))
+        {
+            res.add(notes[mid]);
+        }
+        collect(mid + 1, hi, startLimit, includeStartLimit, endLimit, includeEndLimit, res);
+    }
+
+    static private boolean isStartOk(float start, float startLimit, boolean includeStartLimit)
+    {
+        return includeStartLimit ? start <= startLimit : start < startLimit;
+    }
+
+    static private boolean isEndOk(float end, float endLimit, boolean includeEndLimit)
+    {
+        return includeEndLimit ? end >= endLimit : end > endLimit;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.phrase.api;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * An immutable compact copy of a Phrase, its notes being stored as packed primitive values (pitch, velocity, position, duration).
+ * <p>
+ * Can be used to store large phrases without creating the NoteEvent instances, for example for lazy loading. NoteEvent client properties are not
+ * stored.
+ * <p>
+ * Serialization produces the same data than the equivalent Phrase, and deserializes as a Phrase.
+ *
+ * @see PhraseBuffer
+ */
+public class PackedPhrase implements Serializable
+{
+
+    private static final long serialVersionUID = -7712390562211L;
+    /**
+     * Packed note size in bytes: pitch, velocity, position (float), duration (float).
+     */
+    private static final int NOTE_SIZE = 1 + 1 + 4 + 4;
+    private final int channel;
+    private final boolean drums;
+    private final byte[] notes;
+
+    /**
+     * Create a packed copy of p.
+     *
+     * @param p
+     */
+    public PackedPhrase(Phrase p)
+    {
+        checkNotNull(p);
+        channel = p.getChannel();
+        drums = p.isDrums();
+        ByteBuffer bb = ByteBuffer.allocate(p.size() * NOTE_SIZE);
+        for (var ne : p)
+        {
+            bb.put((byte) ne.getPitch());
+            bb.put((byte) ne.getVelocity());
+            bb.putFloat(ne.getPositionInBeats());
+            bb.putFloat(ne.getDurationInBeats());
+        }
+        notes = bb.array();
+    }
+
+    private PackedPhrase(int channel, boolean drums, byte[] notes)
+    {
+        this.channel = channel;
+        this.drums = drums;
+        this.notes = notes;
+    }
+
+    /**
+     * Read a PackedPhrase written by write(DataOutput).
+     *
+     * @param in
+     * @return
+     * @throws IOException If data is invalid
+     */
+    static public PackedPhrase read(DataInput in) throws IOException
+    {
+        int channel = in.readInt();
+        boolean drums = in.readBoolean();
+        int size = in.readInt();
+        if (channel < 0 || channel > 15 || size < 0 || size % NOTE_SIZE != 0)
+        {
+            throw new IOException("Invalid packed phrase data: channel=" + channel + " size=" + size);
+        }
+        byte[] notes = new byte[size];
+        in.readFully(notes);
+        return new PackedPhrase(channel, drums, notes);
+    }
+
+    /**
+     * Write this PackedPhrase so that it can be read back by read(DataInput).
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeInt(channel);
+        out.writeBoolean(drums);
+        out.writeInt(notes.length);
+        out.write(notes);
+    }
+
+    public int getChannel()
+    {
+        return channel;
+    }
+
+    public boolean isDrums()
+    {
+        return drums;
+    }
+
+    /**
+     * @return The number of notes
+     */
+    public int size()
+    {
+        return notes.length / NOTE_SIZE;
+    }
+
+    /**
+     * Create the Phrase.
+     *
+     * @return A new Phrase instance
+     */
+    public Phrase toPhrase()
+    {
+        Phrase p = new Phrase(channel, drums);
+        ByteBuffer bb = ByteBuffer.wrap(notes);
+        for (int i = size(); i > 0; i--)
+        {
+            int pitch = bb.get();
+            int velocity = bb.get();
+            float pos = bb.getFloat();
+            float duration = bb.getFloat();
+            // Phrase is new, no need to use add(): it creates an UndoableEdit and fires a change event for each note
+            p.addSilently(new NoteEvent(pitch, duration, velocity, pos));
+        }
+        return p;
+    }
+
+    /**
+     * Get the same string than Phrase.saveAsString(toPhrase()), without creating the Phrase.
+     *
+     * @return
+     * @see Phrase#saveAsString(org.jjazz.phrase.api.Phrase)
+     */
+    public String toSaveString()
+    {
+        int nbNotes = size();
+        StringBuilder sb = Phrase.startSaveString(channel, drums, nbNotes);
+        ByteBuffer bb = ByteBuffer.wrap(notes);
+        for (int i = 0; i < nbNotes; i++)
+        {
+            int pitch = bb.get();
+            int velocity = bb.get();
+            float pos = bb.getFloat();
+            float duration = bb.getFloat();
+            Phrase.appendSaveString(sb, pitch, velocity, duration, pos);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PackedPhrase[ch=" + channel + (drums ? " drums" : "") + ", size=" + size() + "]";
+    }
+
+    // --------------------------------------------------------------------- 
+    // Serialization
+    // ---------------------------------------------------------------------
+    private Object writeReplace()
+    {
+        return new Phrase.SerializationProxy(toSaveString());
+    }
+
+    private void readObject(ObjectInputStream stream) throws InvalidObjectException
+    {
+        throw new InvalidObjectException("Serialization proxy required");
+    }
+}
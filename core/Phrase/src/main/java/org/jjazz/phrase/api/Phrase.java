@@ -25,6 +25,12 @@ package org.jjazz.phrase.api;
 import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.collect.HashBiMap;
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.InvalidObjectException;
@@ -40,12 +46,12 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.StringJoiner;
 import java.util.TreeSet;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -108,6 +114,16 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
      * Same as PROP_NOTES_REPLACED except this notifies an intermediate operation: a final non-adjusting operation will occur later.
      */
     public static final String PROP_NOTES_REPLACED_ADJUSTING = "PropNoteReplacedAdjusting";
+    /**
+     * Fired by commitBatch() for all the changes done since beginBatch().
+     * <p>
+     * newValue=a NotesChange instance
+     */
+    public static final String PROP_NOTES_CHANGED = "PropNotesChanged";
+    /**
+     * Same as PROP_NOTES_CHANGED except this notifies an intermediate operation: a final non-adjusting operation will occur later.
+     */
+    public static final String PROP_NOTES_CHANGED_ADJUSTING = "PropNotesChangedAdjusting";
 
     /**
      * NoteEvent client property set when new NoteEvents are created from existing ones.
@@ -116,12 +132,20 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
 
     private final int channel;
     private final boolean isDrums;
-    private final TreeSet<NoteEvent> noteEvents = new TreeSet<>();
+    private final TreeSet<NoteEvent> noteEvents = new NoteEventSet();
+    /**
+     * Built on demand by getNotesCrossing(), reset when noteEvents is modified.
+     */
+    private transient NoteIntervalIndex intervalIndex;
     /**
      * The listeners for undoable edits in this LeadSheet.
      */
     protected transient List<UndoableEditListener> undoListeners = new ArrayList<>();
     private final PropertyChangeSupport pcs = new java.beans.PropertyChangeSupport(this);
+    /**
+     * Non null when a batch is in progress.
+     */
+    private transient Batch batch;
     private static final Logger LOGGER = Logger.getLogger(Phrase.class.getSimpleName());
 
     /**
@@ -373,6 +397,32 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
         return res;
     }
 
+    /**
+     * Get the notes which start before startLimit and end after endLimit.
+     * <p>
+     * Use an interval index for large phrases, which is rebuilt only if phrase was modified since the previous call.
+     *
+     * @param startLimit
+     * @param includeStartLimit If true also accept notes starting at startLimit
+     * @param endLimit
+     * @param includeEndLimit   If true also accept notes ending at endLimit
+     * @return Notes in phrase order
+     */
+    List<NoteEvent> getNotesCrossing(float startLimit, boolean includeStartLimit, float endLimit, boolean includeEndLimit)
+    {
+        if (noteEvents.size() < NoteIntervalIndex.MIN_SIZE)
+        {
+            return NoteIntervalIndex.scanNotes(noteEvents, startLimit, includeStartLimit, endLimit, includeEndLimit);
+        }
+        var index = intervalIndex;
+        if (index == null)
+        {
+            index = new NoteIntervalIndex(noteEvents);
+            intervalIndex = index;
+        }
+        return index.getNotes(startLimit, includeStartLimit, endLimit, includeEndLimit);
+    }
+
 
     /**
      * Get the beat range from start of first note to end of last note.
@@ -574,7 +624,135 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
         return propertyName.equals(PROP_NOTES_ADDED_ADJUSTING)
                 || propertyName.equals(PROP_NOTES_REMOVED_ADJUSTING)
                 || propertyName.equals(PROP_NOTES_MOVED_ADJUSTING)
-                || propertyName.equals(PROP_NOTES_REPLACED_ADJUSTING);
+                || propertyName.equals(PROP_NOTES_REPLACED_ADJUSTING)
+                || propertyName.equals(PROP_NOTES_CHANGED_ADJUSTING);
+    }
+
+    /**
+     * Start a batch of changes.
+     * <p>
+     * Until the matching commitBatch() call, the methods which modify this phrase (add, remove, replace, move etc.) are applied immediately but do
+     * not fire change events nor UndoableEdits, and their isAdjusting parameter is ignored. commitBatch() then fires a single PROP_NOTES_CHANGED event
+     * and a single UndoableEdit for the net changes.
+     * <p>
+     * Calls can be nested: only the outermost commitBatch() fires.
+     *
+     * @see #commitBatch(boolean)
+     * @see #runInBatch(java.lang.Runnable)
+     */
+    public void beginBatch()
+    {
+        if (batch == null)
+        {
+            batch = new Batch();
+        } else
+        {
+            batch.depth++;
+        }
+    }
+
+    /**
+     * Run the specified changes in a batch.
+     * <p>
+     * Same as beginBatch() then r.run() then commitBatch(), the batch is committed even if r throws an exception.
+     *
+     * @param r The changes to apply to this phrase
+     * @return The net changes, see commitBatch(boolean)
+     * @see #beginBatch()
+     */
+    public NotesChange runInBatch(Runnable r)
+    {
+        NotesChange res;
+        beginBatch();
+        try
+        {
+            r.run();
+        } finally
+        {
+            res = commitBatch();
+        }
+        return res;
+    }
+
+    /**
+     * Check if a batch of changes is in progress.
+     *
+     * @return
+     * @see #beginBatch()
+     */
+    public boolean isInBatch()
+    {
+        return batch != null;
+    }
+
+    /**
+     * Same as commitBatch(false).
+     *
+     * @return
+     */
+    public NotesChange commitBatch()
+    {
+        return commitBatch(false);
+    }
+
+    /**
+     * End a batch of changes started with beginBatch().
+     * <p>
+     * If this is the outermost batch and there are net changes, create one UndoableEdit and fire one PROP_NOTES_CHANGED or PROP_NOTES_CHANGED_ADJUSTING
+     * event.
+     *
+     * @param isAdjusting If true fire a PROP_NOTES_CHANGED_ADJUSTING instead of PROP_NOTES_CHANGED
+     * @return The net changes since the outermost beginBatch(). Empty for a nested batch.
+     * @throws IllegalStateException If no batch is in progress
+     * @see #beginBatch()
+     */
+    public NotesChange commitBatch(boolean isAdjusting)
+    {
+        if (batch == null)
+        {
+            throw new IllegalStateException("No batch in progress. this=" + this);
+        }
+        if (--batch.depth > 0)
+        {
+            return NotesChange.EMPTY;
+        }
+
+        final NotesChange change = batch.toNotesChange();
+        batch = null;
+        if (change.isEmpty())
+        {
+            return change;
+        }
+
+
+        String PROP = isAdjusting ? PROP_NOTES_CHANGED_ADJUSTING : PROP_NOTES_CHANGED;
+        final NotesChange undoChange = change.getInverse();
+
+
+        // Create the undoable event
+        UndoableEdit edit = new SimpleEdit("Change notes")
+        {
+            @Override
+            public void undoBody()
+            {
+                LOGGER.log(Level.FINER, "commitBatch.undoBody() change={0}", change);
+                applyNotesChange(undoChange);
+                pcs.firePropertyChange(PROP, null, undoChange);
+            }
+
+            @Override
+            public void redoBody()
+            {
+                LOGGER.log(Level.FINER, "commitBatch.redoBody() change={0}", change);
+                applyNotesChange(change);
+                pcs.firePropertyChange(PROP, null, change);
+            }
+        };
+
+        fireUndoableEditHappened(edit);
+        pcs.firePropertyChange(PROP, null, change);
+
+        return change;
     }
 
     // --------------------------------------------------------------------- 
@@ -609,7 +787,10 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
         checkAddNote(ne);
 
         var res = noteEvents.add(ne);
-        if (res)
+        if (res && batch != null)
+        {
+            batch.noteAdded(ne);
+        } else if (res)
         {
             String PROP = isAdjusting ? PROP_NOTES_ADDED_ADJUSTING : PROP_NOTES_ADDED;
             String PROP_UNDO = isAdjusting ? PROP_NOTES_REMOVED_ADJUSTING : PROP_NOTES_REMOVED;
@@ -679,7 +860,10 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
             }
         }
 
-        if (res)
+        if (res && batch != null)
+        {
+            addedList.forEach(ne -> batch.noteAdded(ne));
+        } else if (res)
         {
             // Create the undoable event
             UndoableEdit edit = new SimpleEdit("Add notes " + addedList)
@@ -749,6 +933,12 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
     {
         if (o instanceof NoteEvent ne && noteEvents.remove(ne))
         {
+            if (batch != null)
+            {
+                batch.noteRemoved(ne);
+                return true;
+            }
+
             String PROP = isAdjusting ? PROP_NOTES_REMOVED_ADJUSTING : PROP_NOTES_REMOVED;
             String PROP_UNDO = isAdjusting ? PROP_NOTES_ADDED_ADJUSTING : PROP_NOTES_ADDED;
 
@@ -824,7 +1014,10 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
         }
 
 
-        if (res)
+        if (res && batch != null)
+        {
+            removedList.forEach(ne -> batch.noteRemoved(ne));
+        } else if (res)
         {
             // Create the undoable event
             UndoableEdit edit = new SimpleEdit("Remove notes " + removedList)
@@ -1059,7 +1252,7 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
     @Override
     public NavigableSet<NoteEvent> descendingSet()
     {
-        return noteEvents.descendingSet();
+        return Collections.unmodifiableNavigableSet(noteEvents.descendingSet());
     }
 
     /**
@@ -1131,11 +1324,54 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
      */
     static public String saveAsString(Phrase p)
     {
-        StringJoiner joiner = new StringJoiner("|", "[", "]");
-        String drums = p.isDrums() ? "drums_" : "";
-        joiner.add(drums + String.valueOf(p.getChannel()));
-        p.forEach(ne -> joiner.add(NoteEvent.saveAsString(ne)));
-        return joiner.toString();
+        // Use a single StringBuilder, user phrases can be large
+        StringBuilder sb = startSaveString(p.getChannel(), p.isDrums(), p.size());
+        for (var ne : p)
+        {
+            appendSaveString(sb, ne.getPitch(), ne.getVelocity(), ne.getDurationInBeats(), ne.getPositionInBeats());
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    /**
+     * Start a saveAsString() string, to be followed by appendSaveString() for each note then by a closing ']'.
+     *
+     * @param channel
+     * @param drums
+     * @param nbNotes Used to size the StringBuilder
+     * @return
+     */
+    static StringBuilder startSaveString(int channel, boolean drums, int nbNotes)
+    {
+        StringBuilder sb = new StringBuilder(16 + 20 * nbNotes);
+        sb.append('[');
+        if (drums)
+        {
+            sb.append("drums_");
+        }
+        sb.append(channel);
+        return sb;
+    }
+
+    /**
+     * Append a note to a saveAsString() string.
+     * <p>
+     * Note string must be identical to NoteEvent.saveAsString().
+     *
+     * @param sb
+     * @param pitch
+     * @param velocity
+     * @param durationInBeats
+     * @param posInBeats
+     */
+    static void appendSaveString(StringBuilder sb, int pitch, int velocity, float durationInBeats, float posInBeats)
+    {
+        sb.append('|')
+                .append(pitch).append(',')
+                .append(velocity).append(',')
+                .append(durationInBeats).append(':')
+                .append(posInBeats);
     }
 
     /**
@@ -1169,7 +1405,8 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
                 for (int i = 1; i < strs.length; i++)
                 {
                     NoteEvent ne = NoteEvent.loadAsString(strs[i]);
-                    p.add(ne);
+                    // Phrase is new, no need to use add(): it creates an UndoableEdit and fires a change event for each note
+                    p.addSilently(ne);
                 }
             } catch (IllegalArgumentException | ParseException ex)       // Will catch NumberFormatException too
             {
@@ -1301,6 +1538,11 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
             }
         }
 
+        if (batch != null)
+        {
+            mapOldNew.forEach((oldNe, newNe) -> batch.noteReplaced(oldNe, newNe));
+            return;
+        }
 
         // Create the undoable event
         UndoableEdit edit = new SimpleEdit("Replace/Move notes")
@@ -1339,6 +1581,22 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
         pcs.firePropertyChange(PROP, null, biMapOldNew);
     }
 
+    /**
+     * Update noteEvents with the specified changes, without firing anything.
+     *
+     * @param change
+     */
+    private void applyNotesChange(NotesChange change)
+    {
+        noteEvents.removeAll(change.removed());
+        change.replaced().forEach((oldNe, newNe) -> 
+        {
+            noteEvents.remove(oldNe);
+            noteEvents.add(newNe);
+        });
+        noteEvents.addAll(change.added());
+    }
+
     /**
      * Decorate the specified Iterator to make sure remove() fires a change event.
      *
@@ -1370,7 +1628,10 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
                 it.remove();
 
 
-                if (lastNext != null)
+                if (lastNext != null && batch != null)
+                {
+                    batch.noteRemoved(lastNext);
+                } else if (lastNext != null)
                 {
                     NoteEvent ne = lastNext;
 
@@ -1403,6 +1664,200 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
         return res;
     }
 
+    /**
+     * The noteEvents TreeSet which resets the interval index when modified.
+     */
+    private class NoteEventSet extends TreeSet<NoteEvent>
+    {
+
+        @Override
+        public boolean add(NoteEvent ne)
+        {
+            intervalIndex = null;
+            return super.add(ne);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends NoteEvent> c)
+        {
+            intervalIndex = null;
+            return super.addAll(c);       // Might not call add()
+        }
+
+        @Override
+        public boolean remove(Object o)
+        {
+            intervalIndex = null;
+            return super.remove(o);
+        }
+
+        @Override
+        public void clear()
+        {
+            intervalIndex = null;
+            super.clear();
+        }
+
+        @Override
+        public NoteEvent pollFirst()
+        {
+            intervalIndex = null;
+            return super.pollFirst();
+        }
+
+        @Override
+        public NoteEvent pollLast()
+        {
+            intervalIndex = null;
+            return super.pollLast();
+        }
+
+        @Override
+        public Iterator<NoteEvent> iterator()
+        {
+            return resetIndexOnRemove(super.iterator());
+        }
+
+        @Override
+        public Iterator<NoteEvent> descendingIterator()
+        {
+            return resetIndexOnRemove(super.descendingIterator());
+        }
+
+        private Iterator<NoteEvent> resetIndexOnRemove(Iterator<NoteEvent> it)
+        {
+            return new Iterator<NoteEvent>()
+            {
+                @Override
+                public boolean hasNext()
+                {
+                    return it.hasNext();
+                }
+
+                @Override
+                public NoteEvent next()
+                {
+                    return it.next();
+                }
+
+                @Override
+                public void remove()
+                {
+                    intervalIndex = null;
+                    it.remove();
+                }
+            };
+        }
+    }
+
+    /**
+     * The net changes of a batch of changes.
+     *
+     * @param removed  The removed NoteEvents
+     * @param added    The added NoteEvents
+     * @param replaced A map where keys=oldNoteEvents and values=newNoteEvents
+     * @see #beginBatch()
+     */
+    public record NotesChange(List<NoteEvent> removed, List<NoteEvent> added, Map<NoteEvent, NoteEvent> replaced)
+            {
+
+        public static final NotesChange EMPTY = new NotesChange(List.of(), List.of(), Map.of());
+
+        public NotesChange
+        {
+            removed = Collections.unmodifiableList(removed);
+            added = Collections.unmodifiableList(added);
+            replaced = Collections.unmodifiableMap(replaced);
+        }
+
+        public boolean isEmpty()
+        {
+            return removed.isEmpty() && added.isEmpty() && replaced.isEmpty();
+        }
+
+        /**
+         * Get the change which cancels this change.
+         *
+         * @return
+         */
+        public NotesChange getInverse()
+        {
+            var inverseReplaced = new HashMap<NoteEvent, NoteEvent>();
+            replaced.forEach((oldNe, newNe) -> inverseReplaced.put(newNe, oldNe));
+            return new NotesChange(added, removed, inverseReplaced);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "NotesChange[removed=" + removed.size() + " added=" + added.size() + " replaced=" + replaced.size() + "]";
+        }
+    }
+
+    /**
+     * Track the net changes of a batch, relatively to the phrase state when the batch started.
+     * <p>
+     * A NoteEvent can be in at most one of removed, added, replaced keys or replaced values.
+     */
+    private static class Batch
+    {
+
+        private int depth = 1;
+        private final Set<NoteEvent> removed = new LinkedHashSet<>();
+        private final Set<NoteEvent> added = new LinkedHashSet<>();
+        private final HashBiMap<NoteEvent, NoteEvent> replaced = HashBiMap.create();
+
+        void noteAdded(NoteEvent ne)
+        {
+            if (removed.remove(ne))
+            {
+                // Back to initial state
+            } else if (replaced.containsKey(ne))
+            {
+                // Initial note is back, its replacement becomes an added note
+                added.add(replaced.remove(ne));
+            } else
+            {
+                added.add(ne);
+            }
+        }
+
+        void noteRemoved(NoteEvent ne)
+        {
+            if (added.remove(ne))
+            {
+                // Back to initial state
+            } else if (replaced.containsValue(ne))
+            {
+                removed.add(replaced.inverse().remove(ne));
+            } else
+            {
+                removed.add(ne);
+            }
+        }
+
+        void noteReplaced(NoteEvent oldNe, NoteEvent newNe)
+        {
+            boolean newIsInitial = removed.contains(newNe) || replaced.containsKey(newNe);
+            if (!newIsInitial && replaced.containsValue(oldNe))
+            {
+                replaced.put(replaced.inverse().remove(oldNe), newNe);
+            } else if (!newIsInitial && !added.contains(oldNe))
+            {
+                replaced.put(oldNe, newNe);
+            } else
+            {
+                noteRemoved(oldNe);
+                noteAdded(newNe);
+            }
+        }
+
+        NotesChange toNotesChange()
+        {
+            return new NotesChange(new ArrayList<>(removed), new ArrayList<>(added), new HashMap<>(replaced));
+        }
+    }
+
     /**
      * This enables XStream instance configuration even for private classes or classes from non-public packages of Netbeans modules.
      */
@@ -1417,10 +1872,19 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
             {
                 case SONG_LOAD, SONG_SAVE ->
                 {
+                    if (instanceId.equals(SONG_SAVE))
+                    {
+                        // Saved exactly like a Phrase, see PackedPhrase.writeReplace(). Must be set before the Phrase alias so that "Phrase" still
+                        // maps to Phrase.class.
+                        xstream.alias("Phrase", PackedPhrase.class);
+                    }
                     // From 4.1.0 new aliases to get rid of fully qualified class names in .sng files
                     xstream.alias("Phrase", Phrase.class);
                     xstream.alias("PhraseSP", SerializationProxy.class);
                     xstream.useAttributeFor(SerializationProxy.class, "spVERSION");
+
+                    // Avoid reflection, user phrases can be large
+                    xstream.registerConverter(new SerializationProxyConverter());
                 }
 
                 case MIDIMIX_LOAD ->
@@ -1460,13 +1924,29 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
         }
     }
 
+    /**
+     * Add a NoteEvent without creating an UndoableEdit nor firing a change event.
+     * <p>
+     * Only for a newly created Phrase which can not have listeners yet.
+     *
+     * @param ne
+     * @return False if ne was already part of this Phrase.
+     */
+    boolean addSilently(NoteEvent ne)
+    {
+        checkAddNote(ne);
+        return noteEvents.add(ne);
+    }
+
 
     /**
      * Rely on loadFromString()/saveAsString() methods.
      * <p>
      * spVERSION2 introduces XStream aliases (XStreamConfig)
+     * <p>
+     * Also used by PackedPhrase.
      */
-    private static class SerializationProxy implements Serializable
+    static class SerializationProxy implements Serializable
     {
 
         private static final long serialVersionUID = -1823649110L;
@@ -1479,6 +1959,14 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
             spSaveString = saveAsString(p);
         }
 
+        /**
+         * @param saveString A saveAsString() string
+         */
+        SerializationProxy(String saveString)
+        {
+            spSaveString = saveString;
+        }
+
         private Object readResolve() throws ObjectStreamException
         {
             Phrase p;
@@ -1492,4 +1980,57 @@ public class Phrase implements Collection<NoteEvent>, SortedSet<NoteEvent>, Navi
             return p;
         }
     }
+
+    /**
+     * A reflection-free XStream converter for SerializationProxy.
+     * <p>
+     * Produces the same XML than the default reflection-based converter: a spVERSION attribute and a spSaveString child node. The Phrase is directly
+     * returned when unmarshalling.
+     */
+    private static class SerializationProxyConverter implements Converter
+    {
+
+        @Override
+        public boolean canConvert(Class type)
+        {
+            return type == SerializationProxy.class;
+        }
+
+        @Override
+        public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context)
+        {
+            var sp = (SerializationProxy) source;
+            writer.addAttribute("spVERSION", String.valueOf(sp.spVERSION));
+            writer.startNode("spSaveString");
+            writer.setValue(sp.spSaveString);
+            writer.endNode();
+        }
+
+        @Override
+        public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context)
+        {
+            String saveString = null;
+            while (reader.hasMoreChildren())
+            {
+                reader.moveDown();
+                if (reader.getNodeName().equals("spSaveString"))
+                {
+                    saveString = reader.getValue();
+                }
+                reader.moveUp();
+            }
+            if (saveString == null)
+            {
+                throw new ConversionException("Missing spSaveString node");
+            }
+
+            try
+            {
+                return loadAsString(saveString);
+            } catch (ParseException ex)
+            {
+                throw new ConversionException(ex.getMessage(), ex);
+            }
+        }
+    }
 }
@@ -0,0 +1,591 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.phrase.api;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.ShortMessage;
+import org.jjazz.harmony.api.Note;
+import org.jjazz.midi.api.MidiConst;
+import org.jjazz.midi.api.MidiUtilities;
+import org.jjazz.utilities.api.FloatRange;
+
+/**
+ * A lightweight mutable list of notes stored in primitive arrays, for music generation code which needs to process many notes.
+ * <p>
+ * Notes are stored as parallel pitch/velocity/position/duration arrays: there is no NoteEvent instance per note, no client properties, no undo support
+ * and no change events. Bulk operations work directly on the arrays. Notes are kept in the Phrase order (position, then pitch), sorting is done lazily
+ * only when notes were not appended in order.
+ * <p>
+ * Typical usage is to convert a Phrase once with {@link #of(Phrase)}, do all the processing on the buffer, then convert back once with
+ * {@link #toPhrase(int, boolean)}.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class PhraseBuffer
+{
+
+    private static final int DEFAULT_CAPACITY = 64;
+    /**
+     * Sort keys store the note index on 25 bits.
+     */
+    private static final int MAX_SORTABLE_SIZE = 1 << 25;
+    private int[] pitches;
+    private int[] velocities;
+    private float[] positions;
+    private float[] durations;
+    private int size;
+    private boolean sorted = true;
+    private static final Logger LOGGER = Logger.getLogger(PhraseBuffer.class.getSimpleName());
+
+    public PhraseBuffer()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     *
+     * @param capacity The initial number of notes which can be stored without growing the arrays.
+     */
+    public PhraseBuffer(int capacity)
+    {
+        checkArgument(capacity >= 0, "capacity=%s", capacity);
+        pitches = new int[capacity];
+        velocities = new int[capacity];
+        positions = new float[capacity];
+        durations = new float[capacity];
+    }
+
+    /**
+     * Create a buffer with the notes of the specified phrase.
+     * <p>
+     * NoteEvent client properties are not copied.
+     *
+     * @param p
+     * @return
+     */
+    static public PhraseBuffer of(Phrase p)
+    {
+        var res = new PhraseBuffer(p.size());
+        for (var ne : p)
+        {
+            // Phrase is ordered, no need to check the order
+            res.append(ne.getPitch(), ne.getDurationInBeats(), ne.getVelocity(), ne.getPositionInBeats());
+        }
+        return res;
+    }
+
+    /**
+     * Create a buffer from a list of NOTE_ON/OFF Midi events at MidiConst.PPQ_RESOLUTION.
+     * <p>
+     * Same conversion rules than Phrases.addMidiEvents(): NOTE_ON events without a corresponding NOTE_OFF event are ignored, notes with 0-tick length
+     * are ignored.
+     *
+     * @param midiEvents       MidiEvents which are not ShortMessage.Note_ON/OFF are ignored. Must be ordered by tick position.
+     * @param posInBeatsOffset The position in natural beats of the first tick.
+     * @param channel          If -1 accept all channels, otherwise ignore MidiEvents which do not match this channel.
+     * @return
+     * @see Phrases#addMidiEvents(org.jjazz.phrase.api.Phrase, java.util.List, float, boolean)
+     */
+    static public PhraseBuffer of(List<MidiEvent> midiEvents, float posInBeatsOffset, int channel)
+    {
+        checkArgument(channel == -1 || MidiConst.checkMidiChannel(channel), "channel=%s", channel);
+
+        var res = new PhraseBuffer(midiEvents.size() / 2);
+        long[] lastNoteOnTick = new long[128];
+        int[] lastNoteOnVelocity = new int[128];
+        Arrays.fill(lastNoteOnTick, -1);
+
+        for (MidiEvent me : midiEvents)
+        {
+            ShortMessage sm = MidiUtilities.getNoteShortMessage(me.getMessage());
+            if (sm == null || (channel != -1 && sm.getChannel() != channel))
+            {
+                continue;
+            }
+
+            int pitch = sm.getData1();
+            int velocity = sm.getData2();
+            long tick = me.getTick();
+
+            if (sm.getCommand() == ShortMessage.NOTE_ON && velocity > 0)
+            {
+                lastNoteOnTick[pitch] = tick;
+                lastNoteOnVelocity[pitch] = velocity;
+            } else if (lastNoteOnTick[pitch] >= 0)
+            {
+                long tickOn = lastNoteOnTick[pitch];
+                float duration = ((float) tick - tickOn) / MidiConst.PPQ_RESOLUTION;
+                if (duration > 0)
+                {
+                    float posInBeats = posInBeatsOffset + ((float) tickOn / MidiConst.PPQ_RESOLUTION);
+                    res.add(pitch, duration, lastNoteOnVelocity[pitch], posInBeats);
+                } else
+                {
+                    LOGGER.log(Level.WARNING, "of() Ignoring zero-length note at tick position={0} pitch={1}", new Object[]
+                    {
+                        tickOn, pitch
+                    });
+                }
+                lastNoteOnTick[pitch] = -1;
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Add a note.
+     *
+     * @param pitch
+     * @param durationInBeats Must be &gt; 0
+     * @param velocity
+     * @param posInBeats      Must be &gt;= 0
+     * @throws IllegalArgumentException If a parameter is invalid
+     */
+    public void add(int pitch, float durationInBeats, int velocity, float posInBeats)
+    {
+        checkArgument(Note.checkPitch(pitch) && Note.checkVelocity(velocity) && durationInBeats > 0 && posInBeats >= 0,
+                "pitch=%s durationInBeats=%s velocity=%s posInBeats=%s", pitch, durationInBeats, velocity, posInBeats);
+        if (sorted && size > 0)
+        {
+            int last = size - 1;
+            sorted = positions[last] < posInBeats || (positions[last] == posInBeats && pitches[last] <= pitch);
+        }
+        append(pitch, durationInBeats, velocity, posInBeats);
+    }
+
+    /**
+     * Add a copy of a NoteEvent.
+     *
+     * @param ne
+     */
+    public void add(NoteEvent ne)
+    {
+        add(ne.getPitch(), ne.getDurationInBeats(), ne.getVelocity(), ne.getPositionInBeats());
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public void clear()
+    {
+        size = 0;
+        sorted = true;
+    }
+
+    /**
+     * @param index
+     * @return The pitch of the note at index in the Phrase order.
+     */
+    public int getPitch(int index)
+    {
+        checkIndex(index);
+        ensureSorted();
+        return pitches[index];
+    }
+
+    /**
+     * @param index
+     * @return The velocity of the note at index in the Phrase order.
+     */
+    public int getVelocity(int index)
+    {
+        checkIndex(index);
+        ensureSorted();
+        return velocities[index];
+    }
+
+    /**
+     * @param index
+     * @return The position in beats of the note at index in the Phrase order.
+     */
+    public float getPosition(int index)
+    {
+        checkIndex(index);
+        ensureSorted();
+        return positions[index];
+    }
+
+    /**
+     * @param index
+     * @return The duration in beats of the note at index in the Phrase order.
+     */
+    public float getDuration(int index)
+    {
+        checkIndex(index);
+        ensureSorted();
+        return durations[index];
+    }
+
+    /**
+     * Get a NoteEvent for the note at index.
+     *
+     * @param index
+     * @return A new NoteEvent instance.
+     */
+    public NoteEvent getNoteEvent(int index)
+    {
+        checkIndex(index);
+        ensureSorted();
+        return new NoteEvent(pitches[index], durations[index], velocities[index], positions[index]);
+    }
+
+    /**
+     * The beat range from the start of the first note to the end of the last note.
+     *
+     * @return FloatRange.EMPTY_FLOAT_RANGE if buffer is empty.
+     */
+    public FloatRange getBeatRange()
+    {
+        if (size == 0)
+        {
+            return FloatRange.EMPTY_FLOAT_RANGE;
+        }
+        ensureSorted();
+        float to = 0;
+        for (int i = 0; i < size; i++)
+        {
+            to = Math.max(to, positions[i] + durations[i]);
+        }
+        return new FloatRange(positions[0], to);
+    }
+
+    /**
+     * Shift the position of all notes.
+     *
+     * @param shiftInBeats
+     * @throws IllegalArgumentException If a note position becomes negative.
+     */
+    public void shift(float shiftInBeats)
+    {
+        if (shiftInBeats == 0 || size == 0)
+        {
+            return;
+        }
+        ensureSorted();
+        checkArgument(positions[0] + shiftInBeats >= 0, "shiftInBeats=%s positions[0]=%s", shiftInBeats, positions[0]);
+        for (int i = 0; i < size; i++)
+        {
+            positions[i] += shiftInBeats;
+        }
+        // Float rounding might have made some positions equal
+        sorted = isOrdered();
+    }
+
+    /**
+     * Transpose all notes.
+     * <p>
+     * Resulting pitches are kept in the Midi range by octave transposition, see Note.limitPitch().
+     *
+     * @param pitchDelta
+     */
+    public void transpose(int pitchDelta)
+    {
+        if (pitchDelta == 0)
+        {
+            return;
+        }
+        boolean folded = false;
+        for (int i = 0; i < size; i++)
+        {
+            int pitch = pitches[i] + pitchDelta;
+            if (!Note.checkPitch(pitch))
+            {
+                pitch = Note.limitPitch(pitch, Note.PITCH_MIN, Note.PITCH_MAX);
+                folded = true;
+            }
+            pitches[i] = pitch;
+        }
+        if (folded && sorted)
+        {
+            // Order of notes at the same position might have changed
+            sorted = isOrdered();
+        }
+    }
+
+    /**
+     * Change the velocity of all notes.
+     *
+     * @param mapper Result is limited to the Midi range [0;127].
+     */
+    public void mapVelocity(IntUnaryOperator mapper)
+    {
+        checkNotNull(mapper);
+        for (int i = 0; i < size; i++)
+        {
+            velocities[i] = MidiUtilities.limit(mapper.applyAsInt(velocities[i]));
+        }
+    }
+
+    /**
+     * Get a new buffer with only the notes in the specified beat range.
+     * <p>
+     * Same rules than Phrases.getSlice() with beatWindow=0.
+     *
+     * @param range
+     * @param keepLeft If true a note starting before range.from and ending after range.from is replaced by a shorter note starting at range.from.
+     * @param cutRight 0: a note crossing range.to is kept unchanged, 1: the note is made shorter to end at range.to, 2: the note is removed.
+     * @return
+     * @see Phrases#getSlice(org.jjazz.phrase.api.Phrase, org.jjazz.utilities.api.FloatRange, boolean, int, float)
+     */
+    public PhraseBuffer slice(FloatRange range, boolean keepLeft, int cutRight)
+    {
+        checkNotNull(range);
+        checkArgument(cutRight >= 0 && cutRight <= 2, "cutRight=%s", cutRight);
+        ensureSorted();
+
+        var res = new PhraseBuffer(Math.min(size, DEFAULT_CAPACITY));
+        for (int i = 0; i < size; i++)
+        {
+            float posFrom = positions[i];
+            if (posFrom >= range.to)
+            {
+                // Sorted: no more notes in the range
+                break;
+            }
+            float posTo = posFrom + durations[i];
+            if (posFrom < range.from)
+            {
+                if (!keepLeft || posTo <= range.from || (posTo > range.to && cutRight == 2))
+                {
+                    continue;
+                }
+                posFrom = range.from;
+            } else if (posTo > range.to && cutRight == 2)
+            {
+                continue;
+            }
+            if (posTo > range.to && cutRight == 1)
+            {
+                posTo = range.to;
+            }
+            res.add(pitches[i], posTo - posFrom, velocities[i], posFrom);
+        }
+        return res;
+    }
+
+    /**
+     * Add all the notes of the specified buffer, keeping the Phrase order.
+     *
+     * @param other Unchanged.
+     */
+    public void merge(PhraseBuffer other)
+    {
+        checkArgument(other != this, "other=this");
+        if (other.size == 0)
+        {
+            return;
+        }
+        ensureSorted();
+        other.ensureSorted();
+
+        int newSize = size + other.size;
+        int[] newPitches = new int[newSize];
+        int[] newVelocities = new int[newSize];
+        float[] newPositions = new float[newSize];
+        float[] newDurations = new float[newSize];
+
+        int i = 0, j = 0;
+        for (int k = 0; k < newSize; k++)
+        {
+            boolean takeThis = j >= other.size
+                    || (i < size && (positions[i] < other.positions[j] || (positions[i] == other.positions[j] && pitches[i] <= other.pitches[j])));
+            if (takeThis)
+            {
+                newPitches[k] = pitches[i];
+                newVelocities[k] = velocities[i];
+                newPositions[k] = positions[i];
+                newDurations[k] = durations[i];
+                i++;
+            } else
+            {
+                newPitches[k] = other.pitches[j];
+                newVelocities[k] = other.velocities[j];
+                newPositions[k] = other.positions[j];
+                newDurations[k] = other.durations[j];
+                j++;
+            }
+        }
+
+        pitches = newPitches;
+        velocities = newVelocities;
+        positions = newPositions;
+        durations = newDurations;
+        size = newSize;
+    }
+
+    /**
+     * Create a new Phrase with the notes of this buffer.
+     * <p>
+     * The Phrase is filled without creating UndoableEdits or firing change events.
+     *
+     * @param channel
+     * @param isDrums
+     * @return
+     */
+    public Phrase toPhrase(int channel, boolean isDrums)
+    {
+        Phrase res = new Phrase(channel, isDrums);
+        for (int i = 0; i < size; i++)
+        {
+            res.addSilently(new NoteEvent(pitches[i], durations[i], velocities[i], positions[i]));
+        }
+        return res;
+    }
+
+    /**
+     * Get the notes as MidiEvents.
+     * <p>
+     * Tick resolution used is MidiConst.PPQ_RESOLUTION.
+     *
+     * @param channel
+     * @return Each note is converted into 1 MidiEvent for note ON, 1 for the note OFF, like Phrases.toMidiEvents().
+     * @see Phrases#toMidiEvents(org.jjazz.phrase.api.Phrase)
+     */
+    public List<MidiEvent> toMidiEvents(int channel)
+    {
+        checkArgument(MidiConst.checkMidiChannel(channel), "channel=%s", channel);
+        ensureSorted();
+        List<MidiEvent> res = new ArrayList<>(2 * size);
+        try
+        {
+            for (int i = 0; i < size; i++)
+            {
+                long tickOn = Math.round(positions[i] * MidiConst.PPQ_RESOLUTION);
+                long tickOff = Math.round((positions[i] + durations[i]) * MidiConst.PPQ_RESOLUTION);
+                res.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, channel, pitches[i], velocities[i]), tickOn));
+                res.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, channel, pitches[i], 0), tickOff));
+            }
+        } catch (InvalidMidiDataException ex)
+        {
+            // Should never happen, values are checked when added
+            throw new IllegalStateException(ex);
+        }
+        return res;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PhraseBuffer[size=" + size + "]";
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    private void append(int pitch, float duration, int velocity, float pos)
+    {
+        if (size == pitches.length)
+        {
+            int newCapacity = Math.max(DEFAULT_CAPACITY, size + (size >> 1));
+            pitches = Arrays.copyOf(pitches, newCapacity);
+            velocities = Arrays.copyOf(velocities, newCapacity);
+            positions = Arrays.copyOf(positions, newCapacity);
+            durations = Arrays.copyOf(durations, newCapacity);
+        }
+        pitches[size] = pitch;
+        velocities[size] = velocity;
+        positions[size] = pos;
+        durations[size] = duration;
+        size++;
+    }
+
+    private boolean isOrdered()
+    {
+        for (int i = 1; i < size; i++)
+        {
+            if (positions[i - 1] > positions[i] || (positions[i - 1] == positions[i] && pitches[i - 1] > pitches[i]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("index=" + index + " size=" + size);
+        }
+    }
+
+    /**
+     * Sort notes by position then pitch, keeping insertion order for identical position and pitch.
+     * <p>
+     * Positions are &gt;= 0 so their float bits are ordered like the floats: a single long key array can be sorted.
+     */
+    private void ensureSorted()
+    {
+        if (sorted)
+        {
+            return;
+        }
+        if (size > MAX_SORTABLE_SIZE)
+        {
+            throw new IllegalStateException("size=" + size);
+        }
+
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++)
+        {
+            long posBits = Float.floatToIntBits(positions[i] + 0f);     // + 0f turns -0f into 0f
+            keys[i] = (posBits << 32) | ((long) pitches[i] << 25) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] newPitches = new int[pitches.length];
+        int[] newVelocities = new int[pitches.length];
+        float[] newPositions = new float[pitches.length];
+        float[] newDurations = new float[pitches.length];
+        for (int k = 0; k < size; k++)
+        {
+            int i = (int) (keys[k] & (MAX_SORTABLE_SIZE - 1));
+            newPitches[k] = pitches[i];
+            newVelocities[k] = velocities[i];
+            newPositions[k] = positions[i];
+            newDurations[k] = durations[i];
+        }
+        pitches = newPitches;
+        velocities = newVelocities;
+        positions = newPositions;
+        durations = newDurations;
+        sorted = true;
+    }
+}
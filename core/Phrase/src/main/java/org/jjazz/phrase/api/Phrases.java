@@ -203,7 +203,7 @@ public class Phrases
      */
     static public void fillTrack(Phrase p, Track track)
     {
-        toMidiEvents(p).forEach(me -> track.add(me));
+        MidiUtilities.addAllSorted(track, toMidiEvents(p));
     }
 
 
@@ -233,22 +233,15 @@ public class Phrases
         var toBeRemoved = new ArrayList<>();
         var tobeReplaced = new HashMap<NoteEvent, NoteEvent>();
 
-        var it2 = p.descendingIterator();
-        while (it2.hasNext())
+        // Remove notes after posInBeats
+        toBeRemoved.addAll(p.tailSet(Phrase.getFloorNote(posInBeats), true));
+
+        // Shorten notes before posInBeats but ending after posInBeats
+        for (var ne : p.getNotesCrossing(posInBeats, false, posInBeats, false))
         {
-            NoteEvent ne = it2.next();
-            float pos = ne.getPositionInBeats();
-            if (pos >= posInBeats)
-            {
-                // Remove notes after posInBeats
-                toBeRemoved.add(ne);
-            } else if (pos + ne.getDurationInBeats() > posInBeats)
-            {
-                // Shorten notes before posInBeats but ending after posInBeats
-                float newDuration = posInBeats - pos;
-                NoteEvent newNe = ne.setDuration(newDuration);
-                tobeReplaced.put(ne, newNe);
-            }
+            float newDuration = posInBeats - ne.getPositionInBeats();
+            NoteEvent newNe = ne.setDuration(newDuration);
+            tobeReplaced.put(ne, newNe);
         }
 
         p.removeAll(toBeRemoved);
@@ -290,6 +283,10 @@ public class Phrases
         Phrase res = new Phrase(p.getChannel(), p.isDrums());
 
 
+        // Only notes overlapping [range.from-beatWindow; range.to[ can be impacted
+        var candidateNotes = p.getNotesCrossing(range.to, false, range.from - beatWindow, false);
+
+
         // Preprocess to accomodate for live playing / non-quantized notes
         Set<NoteEvent> beatWindowProcessedNotes = new HashSet<>();
         if (beatWindow > 0)
@@ -297,7 +294,7 @@ public class Phrases
             FloatRange frLeft = range.from - beatWindow > 0 ? new FloatRange(range.from - beatWindow, range.from) : null;
             FloatRange frRight = new FloatRange(range.to - beatWindow, range.to);
 
-            for (var ne : p)
+            for (var ne : candidateNotes)
             {
                 var neBr = ne.getBeatRange();
                 if (frLeft != null && frLeft.contains(neBr.from, true))
@@ -326,7 +323,7 @@ public class Phrases
         }
 
 
-        for (var ne : p)
+        for (var ne : candidateNotes)
         {
 
             if (beatWindowProcessedNotes.contains(ne))
@@ -419,6 +416,8 @@ public class Phrases
      * - if keepRight is false, the note is removed, except if the note starts in the range [range.to-beatWindow;range.to[, then it's replaced by a shorter
      * identical one starting at range<br>
      * - if keepRight is true, the note is replaced by a shorter identical one starting at range.to<br>
+     * <p>
+     * Changes are done in a Phrase batch: one PROP_NOTES_CHANGED event is fired.
      *
      * @param p
      * @param range
@@ -434,81 +433,68 @@ public class Phrases
         List<NoteEvent> toBeAdded = new ArrayList<>();
         Map<NoteEvent, NoteEvent> toBeReplaced = new HashMap<>();
 
-        FloatRange frLeft = FloatRange.EMPTY_FLOAT_RANGE;
-        FloatRange frRight = FloatRange.EMPTY_FLOAT_RANGE;
-
-        if (beatWindow > 0)
-        {
-            frLeft = range.from - beatWindow >= 0 ? new FloatRange(range.from - beatWindow, range.from) : FloatRange.EMPTY_FLOAT_RANGE;
-            frRight = range.to - beatWindow >= range.from ? new FloatRange(range.to - beatWindow, range.to) : FloatRange.EMPTY_FLOAT_RANGE;
-        }
+        FloatRange frLeft = beatWindow > 0 && range.from - beatWindow >= 0 ? new FloatRange(range.from - beatWindow, range.from)
+                : FloatRange.EMPTY_FLOAT_RANGE;
+        FloatRange frRight = beatWindow > 0 && range.to - beatWindow >= range.from ? new FloatRange(range.to - beatWindow, range.to)
+                : FloatRange.EMPTY_FLOAT_RANGE;
 
 
-        Iterator<NoteEvent> it = p.iterator();
-        int index = 0;
-        while (it.hasNext())
+        p.runInBatch(() ->
         {
-            NoteEvent ne = it.next();
-            float nePosFrom = ne.getPositionInBeats();
-            float nePosTo = nePosFrom + ne.getDurationInBeats();
-
-            if (nePosFrom < range.from)
+            // Only notes overlapping range can be impacted
+            for (var ne : p.getNotesCrossing(range.to, false, range.from, false))
             {
-                if (nePosTo <= range.from)
-                {
-                    // Leave note unchanged
+                float nePosFrom = ne.getPositionInBeats();
+                float nePosTo = nePosFrom + ne.getDurationInBeats();
 
-                } else if (cutLeft)
+                if (nePosFrom < range.from)
                 {
-                    // Replace the note by a shorter one, except if it's in the frLeft beat window
-                    if (!frLeft.contains(nePosFrom, true))
+                    if (cutLeft)
                     {
+                        // Replace the note by a shorter one, except if it's in the frLeft beat window
+                        if (!frLeft.contains(nePosFrom, true))
+                        {
 
-                        // Replace
-                        float newDur = range.from - nePosFrom;
-                        NoteEvent newNe = ne.setDuration(newDur);
-                        toBeReplaced.put(ne, newNe);
+                            // Replace
+                            float newDur = range.from - nePosFrom;
+                            NoteEvent newNe = ne.setDuration(newDur);
+                            toBeReplaced.put(ne, newNe);
 
 
-                        // Special case if note was extending beyond range.to and keepRight is true, add a note after range
-                        if (keepRight && nePosTo > range.to)
-                        {
-                            newDur = nePosTo - range.to;
-                            newNe = ne.setAll(-1, newDur, -1, range.to, true);
+                            // Special case if note was extending beyond range.to and keepRight is true, add a note after range
+                            if (keepRight && nePosTo > range.to)
+                            {
+                                newDur = nePosTo - range.to;
+                                newNe = ne.setAll(-1, newDur, -1, range.to, true);
 
-                            toBeAdded.add(newNe);
+                                toBeAdded.add(newNe);
+                            }
+                        } else
+                        {
+                            // It's in the left beat window, remove the note
+                            p.remove(ne);
                         }
-                    } else
-                    {
-                        // It's in the left beat window, remove the note
-                        it.remove();
-                    }
-
-                }
-            } else if (nePosFrom < range.to)
-            {
-                // Remove the note
-                it.remove();
 
-                // Re-add a note after range if required
-                if (nePosTo > range.to && (keepRight || frRight.contains(nePosFrom, true)))
+                    }
+                } else if (nePosFrom < range.to)
                 {
-                    float newDur = nePosTo - range.to;
-                    NoteEvent newNe = ne.setAll(-1, newDur, -1, range.to, true);
-                    toBeAdded.add(newNe);
+                    // Remove the note
+                    p.remove(ne);
+
+                    // Re-add a note after range if required
+                    if (nePosTo > range.to && (keepRight || frRight.contains(nePosFrom, true)))
+                    {
+                        float newDur = nePosTo - range.to;
+                        NoteEvent newNe = ne.setAll(-1, newDur, -1, range.to, true);
+                        toBeAdded.add(newNe);
+                    }
                 }
-            } else
-            {
-                // nePosFrom is after range.to
-                // Nothing
             }
 
-            index++;
-        }
-
-        // Add the new NoteEvents after range
-        p.addAll(toBeAdded);
-        p.replaceAll(toBeReplaced, false);
+            // Add the new NoteEvents after range
+            p.addAll(toBeAdded);
+            p.replaceAll(toBeReplaced, false);
+        });
     }
 
 
@@ -523,20 +509,7 @@ public class Phrases
      */
     static public List<NoteEvent> getCrossingNotes(Phrase p, float posInBeats, boolean strict)
     {
-        ArrayList<NoteEvent> res = new ArrayList<>();
-        for (var ne : p)
-        {
-            float pos = ne.getPositionInBeats();
-            if ((strict && pos >= posInBeats) || (!strict && pos > posInBeats))
-            {
-                break;
-            }
-            if ((strict && pos + ne.getDurationInBeats() > posInBeats) || (!strict && pos + ne.getDurationInBeats() >= posInBeats))
-            {
-                res.add(ne);
-            }
-        }
-        return res;
+        return p.getNotesCrossing(posInBeats, !strict, posInBeats, !strict);
     }
 
 
@@ -0,0 +1,190 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.phrase.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class NoteIntervalIndexTest
+{
+
+    private static final long SEED = 1234567L;
+
+    public NoteIntervalIndexTest()
+    {
+    }
+
+    @Test
+    public void testIndexMatchesScan()
+    {
+        System.out.println("testIndexMatchesScan");
+        Random rand = new Random(SEED);
+        for (int size : new int[]
+        {
+            0, 1, 2, 17, 200, 1000
+        })
+        {
+            Phrase p = createRandomPhrase(rand, size);
+            List<NoteEvent> notes = new ArrayList<>(p);
+            NoteIntervalIndex index = new NoteIntervalIndex(notes);
+            for (int i = 0; i < 500; i++)
+            {
+                float startLimit = randomLimit(rand, p);
+                float endLimit = randomLimit(rand, p);
+                for (int flags = 0; flags < 4; flags++)
+                {
+                    boolean inclStart = (flags & 1) != 0;
+                    boolean inclEnd = (flags & 2) != 0;
+                    assertEquals("size=" + size + " start=" + startLimit + "/" + inclStart + " end=" + endLimit + "/" + inclEnd,
+                            NoteIntervalIndex.scanNotes(notes, startLimit, inclStart, endLimit, inclEnd),
+                            index.getNotes(startLimit, inclStart, endLimit, inclEnd));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGetNotesCrossingAroundMinSize()
+    {
+        System.out.println("testGetNotesCrossingAroundMinSize");
+        Random rand = new Random(SEED + 1);
+        for (int size : new int[]
+        {
+            NoteIntervalIndex.MIN_SIZE - 1, NoteIntervalIndex.MIN_SIZE, NoteIntervalIndex.MIN_SIZE + 1
+        })
+        {
+            Phrase p = createRandomPhrase(rand, size);
+            assertEquals(size, p.size());
+            checkCrossingMatchesScan(rand, p, 200);
+        }
+    }
+
+    @Test
+    public void testGetNotesCrossingAfterChanges()
+    {
+        System.out.println("testGetNotesCrossingAfterChanges");
+        Random rand = new Random(SEED + 2);
+        Phrase p = createRandomPhrase(rand, 300);
+        checkCrossingMatchesScan(rand, p, 50);      // Builds the index
+
+
+        // Each kind of change must invalidate the index
+        p.add(new NoteEvent(60, 40f, 64, 0f));     // Long note crossing almost everything
+        checkCrossingMatchesScan(rand, p, 50);
+
+        p.remove(p.first());
+        checkCrossingMatchesScan(rand, p, 50);
+
+        NoteEvent ne = p.last();
+        p.replace(ne, ne.setDuration(ne.getDurationInBeats() + 8f));
+        checkCrossingMatchesScan(rand, p, 50);
+
+        p.move(p.first(), 5.25f);
+        checkCrossingMatchesScan(rand, p, 50);
+
+        p.runInBatch(() -> 
+        {
+            p.pollFirst();
+            p.add(new NoteEvent(62, 0.25f, 64, 2f));
+        });
+        checkCrossingMatchesScan(rand, p, 50);
+
+        p.shiftAllEvents(1.5f);
+        checkCrossingMatchesScan(rand, p, 50);
+
+        p.removeIf(n -> n.getPitch() % 2 == 0);
+        checkCrossingMatchesScan(rand, p, 50);
+
+        // Drop below MIN_SIZE then grow again
+        while (p.size() >= NoteIntervalIndex.MIN_SIZE)
+        {
+            p.remove(p.last());
+        }
+        checkCrossingMatchesScan(rand, p, 50);
+        for (int i = 0; i < 100; i++)
+        {
+            p.add(randomNote(rand));
+        }
+        checkCrossingMatchesScan(rand, p, 50);
+
+        p.clear();
+        checkCrossingMatchesScan(rand, p, 10);
+    }
+
+    // =================================================================================================
+    // Private methods
+    // =================================================================================================
+    private void checkCrossingMatchesScan(Random rand, Phrase p, int nbQueries)
+    {
+        List<NoteEvent> notes = new ArrayList<>(p);
+        for (int i = 0; i < nbQueries; i++)
+        {
+            float startLimit = randomLimit(rand, p);
+            float endLimit = randomLimit(rand, p);
+            for (int flags = 0; flags < 4; flags++)
+            {
+                boolean inclStart = (flags & 1) != 0;
+                boolean inclEnd = (flags & 2) != 0;
+                assertEquals("size=" + p.size() + " start=" + startLimit + "/" + inclStart + " end=" + endLimit + "/" + inclEnd,
+                        NoteIntervalIndex.scanNotes(notes, startLimit, inclStart, endLimit, inclEnd),
+                        p.getNotesCrossing(startLimit, inclStart, endLimit, inclEnd));
+            }
+        }
+    }
+
+    /**
+     * Positions and durations are multiples of 0.25 beat so that many notes start or end exactly on the limits.
+     */
+    private Phrase createRandomPhrase(Random rand, int size)
+    {
+        Phrase p = new Phrase(0);
+        while (p.size() < size)
+        {
+            p.add(randomNote(rand));
+        }
+        return p;
+    }
+
+    private NoteEvent randomNote(Random rand)
+    {
+        float pos = rand.nextInt(160) * 0.25f;
+        float dur = (1 + rand.nextInt(rand.nextInt(10) == 0 ? 64 : 8)) * 0.25f;
+        return new NoteEvent(20 + rand.nextInt(90), dur, 1 + rand.nextInt(127), pos);
+    }
+
+    /**
+     * A limit inside or around the phrase, often equal to a note start or end.
+     */
+    private float randomLimit(Random rand, Phrase p)
+    {
+        if (!p.isEmpty() && rand.nextBoolean())
+        {
+            NoteEvent ne = new ArrayList<>(p).get(rand.nextInt(p.size()));
+            return rand.nextBoolean() ? ne.getPositionInBeats() : ne.getPositionInBeats() + ne.getDurationInBeats();
+        }
+        return rand.nextInt(200) * 0.25f - 2f;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.phrase.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.text.ParseException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PackedPhraseTest
+{
+
+    private static Phrase phrase;
+    private static Phrase drumsPhrase;
+
+    public PackedPhraseTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        phrase = new Phrase(4, false);
+        float pos = 0;
+        for (int i = 0; i < 500; i++)
+        {
+            phrase.add(new NoteEvent(30 + (i * 7) % 70, 0.05f + (i % 11) * 0.37f, 1 + (i * 13) % 127, pos));
+            pos += (i % 3) * 0.3333f;
+        }
+        drumsPhrase = new Phrase(9, true);
+        drumsPhrase.add(new NoteEvent(36, 0.25f, 127, 0f));
+        drumsPhrase.add(new NoteEvent(42, 0.1f, 64, 0f));
+        drumsPhrase.add(new NoteEvent(38, 0.25f, 100, 1.5f));
+    }
+
+    @Test
+    public void testToPhrase()
+    {
+        System.out.println("testToPhrase");
+        for (Phrase p : new Phrase[]
+        {
+            phrase, drumsPhrase, new Phrase(0, false)
+        })
+        {
+            PackedPhrase pp = new PackedPhrase(p);
+            assertEquals(p.getChannel(), pp.getChannel());
+            assertEquals(p.isDrums(), pp.isDrums());
+            assertEquals(p.size(), pp.size());
+            assertSamePhrase(p, pp.toPhrase());
+        }
+    }
+
+    @Test
+    public void testToSaveString() throws ParseException
+    {
+        System.out.println("testToSaveString");
+        for (Phrase p : new Phrase[]
+        {
+            phrase, drumsPhrase, new Phrase(0, false)
+        })
+        {
+            String s = new PackedPhrase(p).toSaveString();
+            assertEquals(Phrase.saveAsString(p), s);
+            assertSamePhrase(p, Phrase.loadAsString(s));
+        }
+    }
+
+    @Test
+    public void testWriteRead() throws IOException
+    {
+        System.out.println("testWriteRead");
+        var baos = new ByteArrayOutputStream();
+        try (var dos = new DataOutputStream(baos))
+        {
+            new PackedPhrase(phrase).write(dos);
+            new PackedPhrase(drumsPhrase).write(dos);
+        }
+        byte[] data = baos.toByteArray();
+
+        try (var dis = new DataInputStream(new ByteArrayInputStream(data)))
+        {
+            assertSamePhrase(phrase, PackedPhrase.read(dis).toPhrase());
+            assertSamePhrase(drumsPhrase, PackedPhrase.read(dis).toPhrase());
+            assertEquals(-1, dis.read());
+        }
+
+
+        // Invalid note data size
+        data[8]++;
+        try (var dis = new DataInputStream(new ByteArrayInputStream(data)))
+        {
+            PackedPhrase.read(dis);
+            fail("Invalid data not detected");
+        } catch (IOException ex)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testSerializedAsPhrase() throws IOException, ClassNotFoundException
+    {
+        System.out.println("testSerializedAsPhrase");
+        var baos = new ByteArrayOutputStream();
+        try (var oos = new ObjectOutputStream(baos))
+        {
+            oos.writeObject(new PackedPhrase(drumsPhrase));
+        }
+        try (var ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())))
+        {
+            Object o = ois.readObject();
+            assertTrue(o instanceof Phrase);
+            assertSamePhrase(drumsPhrase, (Phrase) o);
+        }
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    private static void assertSamePhrase(Phrase expected, Phrase p)
+    {
+        assertEquals(expected.getChannel(), p.getChannel());
+        assertEquals(expected.isDrums(), p.isDrums());
+        assertEquals(expected.size(), p.size());
+        var it = p.iterator();
+        for (NoteEvent ne : expected)
+        {
+            NoteEvent ne2 = it.next();
+            assertEquals(ne.getPitch(), ne2.getPitch());
+            assertEquals(ne.getVelocity(), ne2.getVelocity());
+            assertEquals(ne.getPositionInBeats(), ne2.getPositionInBeats(), 0);
+            assertEquals(ne.getDurationInBeats(), ne2.getDurationInBeats(), 0);
+        }
+    }
+}
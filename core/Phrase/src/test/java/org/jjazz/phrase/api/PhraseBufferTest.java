@@ -0,0 +1,391 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.phrase.api;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.ShortMessage;
+import org.jjazz.harmony.api.Note;
+import org.jjazz.utilities.api.FloatRange;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PhraseBufferTest
+{
+
+    private static final long SEED = 7654321L;
+
+    public PhraseBufferTest()
+    {
+    }
+
+    @Test
+    public void testIndexAccessAfterUnorderedAdd()
+    {
+        System.out.println("testIndexAccessAfterUnorderedAdd");
+        PhraseBuffer pb = new PhraseBuffer();
+        pb.add(64, 1f, 80, 2f);
+        pb.add(60, 0.5f, 70, 0f);
+        pb.add(67, 2f, 90, 2f);
+        pb.add(62, 1.5f, 100, 1f);
+
+
+        // Index access must follow the Phrase order: position then pitch
+        assertEquals(60, pb.getPitch(0));
+        assertEquals(70, pb.getVelocity(0));
+        assertEquals(0f, pb.getPosition(0), 0);
+        assertEquals(0.5f, pb.getDuration(0), 0);
+
+        assertEquals(62, pb.getPitch(1));
+        assertEquals(1f, pb.getPosition(1), 0);
+        assertEquals(64, pb.getPitch(2));
+        assertEquals(2f, pb.getPosition(2), 0);
+        assertEquals(67, pb.getPitch(3));
+        assertEquals(90, pb.getVelocity(3));
+        assertEquals(2f, pb.getDuration(3), 0);
+
+
+        // Each getter must sort by itself
+        pb.add(59, 1f, 50, 0.5f);
+        assertEquals(0.5f, pb.getPosition(1), 0);
+        pb.add(58, 1f, 51, 0.25f);
+        assertEquals(51, pb.getVelocity(1));
+        pb.add(57, 3f, 52, 0.1f);
+        assertEquals(3f, pb.getDuration(1), 0);
+        pb.add(56, 1f, 53, 0.05f);
+        assertEquals(56, pb.getPitch(1));
+        pb.add(55, 1f, 54, 0.01f);
+        NoteEvent ne = pb.getNoteEvent(1);
+        assertEquals(55, ne.getPitch());
+        assertEquals(54, ne.getVelocity());
+        assertEquals(0.01f, ne.getPositionInBeats(), 0);
+        assertEquals(1f, ne.getDurationInBeats(), 0);
+
+
+        // Same order as the equivalent Phrase
+        Phrase p = pb.toPhrase(0, false);
+        int i = 0;
+        for (NoteEvent pne : p)
+        {
+            assertEquals(pne.getPitch(), pb.getPitch(i));
+            assertEquals(pne.getPositionInBeats(), pb.getPosition(i), 0);
+            i++;
+        }
+        assertEquals(pb.size(), i);
+    }
+
+    @Test
+    public void testSliceMatchesPhrasesGetSlice()
+    {
+        System.out.println("testSliceMatchesPhrasesGetSlice");
+        Random rand = new Random(SEED);
+        Phrase p = createRandomPhrase(rand, 300);
+        PhraseBuffer pb = PhraseBuffer.of(p);
+        for (int i = 0; i < 200; i++)
+        {
+            float from = rand.nextInt(170) * 0.25f;
+            float to = from + (1 + rand.nextInt(40)) * 0.25f;
+            var range = new FloatRange(from, to);
+            for (int cutRight = 0; cutRight <= 2; cutRight++)
+            {
+                for (boolean keepLeft : new boolean[]
+                {
+                    false, true
+                })
+                {
+                    // keepLeft can move a note at range.from where a note with the same pitch already starts
+                    String msg = "range=" + range + " keepLeft=" + keepLeft + " cutRight=" + cutRight;
+                    PhraseBuffer slice = pb.slice(range, keepLeft, cutRight);
+                    assertSameNotesIgnoringOrder(msg, Phrases.getSlice(p, range, keepLeft, cutRight, 0), slice);
+                    assertOrdered(msg, slice);
+                }
+            }
+        }
+        assertEquals(p.size(), pb.size());      // Unchanged
+    }
+
+    @Test
+    public void testMerge()
+    {
+        System.out.println("testMerge");
+        Random rand = new Random(SEED + 1);
+        for (int[] sizes : new int[][]
+        {
+            {
+                0, 10
+            },
+            {
+                10, 0
+            },
+            {
+                50, 120
+            },
+            {
+                200, 3
+            }
+        })
+        {
+            // Even pitches in p1, odd pitches in p2: position+pitch order is never ambiguous
+            Phrase p1 = createRandomPhrase(rand, sizes[0], 0);
+            Phrase p2 = createRandomPhrase(rand, sizes[1], 1);
+            PhraseBuffer pb1 = PhraseBuffer.of(p1);
+            PhraseBuffer pb2 = PhraseBuffer.of(p2);
+            pb1.merge(pb2);
+
+            Phrase expected = new Phrase(0);
+            expected.addAll(p1);
+            expected.addAll(p2);
+            assertSameNotes("sizes=" + sizes[0] + "," + sizes[1], expected, pb1);
+            assertSameNotes("other unchanged", p2, pb2);
+        }
+
+
+        // Merge into a buffer which was filled out of order
+        PhraseBuffer pb = new PhraseBuffer();
+        pb.add(64, 1f, 80, 2f);
+        pb.add(60, 1f, 80, 0f);
+        PhraseBuffer other = new PhraseBuffer();
+        other.add(62, 1f, 80, 1f);
+        other.add(61, 1f, 80, 0f);
+        pb.merge(other);
+        assertEquals(4, pb.size());
+        assertEquals(60, pb.getPitch(0));
+        assertEquals(61, pb.getPitch(1));
+        assertEquals(62, pb.getPitch(2));
+        assertEquals(64, pb.getPitch(3));
+    }
+
+    @Test
+    public void testShift()
+    {
+        System.out.println("testShift");
+        Random rand = new Random(SEED + 2);
+        Phrase p = createRandomPhrase(rand, 150);
+        PhraseBuffer pb = PhraseBuffer.of(p);
+        pb.shift(3.5f);
+        p.shiftAllEvents(3.5f);
+        assertSameNotes("shift=3.5", p, pb);
+
+        float firstPos = pb.getPosition(0);
+        pb.shift(-firstPos);
+        p.shiftAllEvents(-firstPos);
+        assertSameNotes("shift=" + (-firstPos), p, pb);
+        assertEquals(0f, pb.getPosition(0), 0);
+
+        try
+        {
+            pb.shift(-0.25f);
+            fail("Negative position accepted");
+        } catch (IllegalArgumentException ex)
+        {
+            // Expected
+        }
+        assertSameNotes("unchanged after failed shift", p, pb);
+    }
+
+    @Test
+    public void testTranspose()
+    {
+        System.out.println("testTranspose");
+        Random rand = new Random(SEED + 3);
+        Phrase p = createRandomPhrase(rand, 150);
+        for (int delta : new int[]
+        {
+            0, 5, -12, 40, -50
+        })
+        {
+            PhraseBuffer pb = PhraseBuffer.of(p);
+            pb.transpose(delta);
+            Phrase expected = new Phrase(0);
+            for (var ne : p)
+            {
+                expected.add(ne.setPitch(Note.limitPitch(ne.getPitch() + delta, Note.PITCH_MIN, Note.PITCH_MAX)));
+            }
+            assertSameNotesIgnoringOrder("delta=" + delta, expected, pb);
+            assertOrdered("delta=" + delta, pb);      // Octave folding might change the order of notes at the same position
+        }
+    }
+
+    @Test
+    public void testMapVelocity()
+    {
+        System.out.println("testMapVelocity");
+        Random rand = new Random(SEED + 4);
+        Phrase p = createRandomPhrase(rand, 100);
+
+        PhraseBuffer pb = PhraseBuffer.of(p);
+        pb.mapVelocity(v -> v * 2);
+        int i = 0;
+        for (var ne : p)
+        {
+            assertEquals(Math.min(127, ne.getVelocity() * 2), pb.getVelocity(i));
+            assertEquals(ne.getPitch(), pb.getPitch(i));
+            i++;
+        }
+
+        pb.mapVelocity(v -> v - 200);
+        for (i = 0; i < pb.size(); i++)
+        {
+            assertEquals(0, pb.getVelocity(i));
+        }
+    }
+
+    @Test
+    public void testToMidiEventsMatchesPhrases()
+    {
+        System.out.println("testToMidiEventsMatchesPhrases");
+        Random rand = new Random(SEED + 5);
+        Phrase p = new Phrase(5);
+        p.addAll(createRandomPhrase(rand, 200));
+        p.add(new NoteEvent(60, 0.3333f, 64, 1.6667f));      // Not on a tick boundary
+
+        var expected = Phrases.toMidiEvents(p);
+        var events = PhraseBuffer.of(p).toMidiEvents(5);
+        assertEquals(expected.size(), events.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            MidiEvent me = expected.get(i);
+            MidiEvent me2 = events.get(i);
+            assertEquals("i=" + i, me.getTick(), me2.getTick());
+            assertArrayEquals("i=" + i, me.getMessage().getMessage(), me2.getMessage().getMessage());
+        }
+    }
+
+    @Test
+    public void testOfMidiEventsMatchesPhrases() throws InvalidMidiDataException
+    {
+        System.out.println("testOfMidiEventsMatchesPhrases");
+        Random rand = new Random(SEED + 6);
+        Phrase p = new Phrase(2);
+        p.addAll(createRandomPhrase(rand, 200, 0));
+        Phrase pOther = new Phrase(3);
+        pOther.addAll(createRandomPhrase(rand, 50, 1));
+
+        List<MidiEvent> events = new ArrayList<>(Phrases.toMidiEvents(p));
+        events.addAll(Phrases.toMidiEvents(pOther));
+        events.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 2, 100, 64), 480));      // Zero-length note
+        events.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 2, 100, 0), 480));
+        events.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 2, 101, 64), 960));      // No NOTE_OFF
+        events.add(new MidiEvent(new ShortMessage(ShortMessage.CONTROL_CHANGE, 2, 7, 100), 0));
+        events.sort(Comparator.comparingLong(MidiEvent::getTick));
+
+
+        // One channel
+        Phrase expected = new Phrase(2);
+        Phrases.addMidiEvents(expected, events, 4f, false);
+        assertSameNotes("channel=2", expected, PhraseBuffer.of(events, 4f, 2));
+
+
+        // All channels
+        expected = new Phrase(2);
+        Phrases.addMidiEvents(expected, events, 0f, true);
+        assertSameNotes("channel=-1", expected, PhraseBuffer.of(events, 0f, -1));
+    }
+
+    // =================================================================================================
+    // Private methods
+    // =================================================================================================
+    /**
+     * Check that notes are identical and in the same order.
+     */
+    private void assertSameNotes(String msg, Phrase expected, PhraseBuffer pb)
+    {
+        assertEquals(msg, expected.size(), pb.size());
+        int i = 0;
+        for (var ne : expected)
+        {
+            String msgi = msg + " i=" + i + " ne=" + ne;
+            assertEquals(msgi, ne.getPitch(), pb.getPitch(i));
+            assertEquals(msgi, ne.getVelocity(), pb.getVelocity(i));
+            assertEquals(msgi, ne.getPositionInBeats(), pb.getPosition(i), 0);
+            assertEquals(msgi, ne.getDurationInBeats(), pb.getDuration(i), 0);
+            i++;
+        }
+    }
+
+    /**
+     * Check that notes are identical, their order being unspecified if they share the same position and pitch.
+     */
+    private void assertSameNotesIgnoringOrder(String msg, Phrase expected, PhraseBuffer pb)
+    {
+        List<String> expectedNotes = new ArrayList<>();
+        for (var ne : expected)
+        {
+            expectedNotes.add(ne.getPositionInBeats() + ":" + ne.getPitch() + ":" + ne.getVelocity() + ":" + ne.getDurationInBeats());
+        }
+        List<String> notes = new ArrayList<>();
+        for (int i = 0; i < pb.size(); i++)
+        {
+            notes.add(pb.getPosition(i) + ":" + pb.getPitch(i) + ":" + pb.getVelocity(i) + ":" + pb.getDuration(i));
+        }
+        expectedNotes.sort(null);
+        notes.sort(null);
+        assertEquals(msg, expectedNotes, notes);
+    }
+
+    private void assertOrdered(String msg, PhraseBuffer pb)
+    {
+        for (int i = 1; i < pb.size(); i++)
+        {
+            assertTrue(msg + " i=" + i, pb.getPosition(i - 1) < pb.getPosition(i)
+                    || (pb.getPosition(i - 1) == pb.getPosition(i) && pb.getPitch(i - 1) <= pb.getPitch(i)));
+        }
+    }
+
+    private Phrase createRandomPhrase(Random rand, int size)
+    {
+        return createRandomPhrase(rand, size, -1);
+    }
+
+    /**
+     * Positions and durations are multiples of 0.25 beat, a given position+pitch is used only once.
+     *
+     * @param pitchParity If 0 or 1, only use even or odd pitches.
+     */
+    private Phrase createRandomPhrase(Random rand, int size, int pitchParity)
+    {
+        Phrase p = new Phrase(0);
+        var used = new HashSet<String>();
+        while (p.size() < size)
+        {
+            int pitch = 20 + rand.nextInt(90);
+            if (pitchParity != -1 && pitch % 2 != pitchParity)
+            {
+                continue;
+            }
+            float pos = rand.nextInt(160) * 0.25f;
+            if (!used.add(pos + ":" + pitch))
+            {
+                continue;
+            }
+            float dur = (1 + rand.nextInt(rand.nextInt(10) == 0 ? 64 : 8)) * 0.25f;
+            p.add(new NoteEvent(pitch, dur, 1 + rand.nextInt(127), pos));
+        }
+        return p;
+    }
+}
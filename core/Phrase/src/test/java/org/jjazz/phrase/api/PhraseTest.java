@@ -0,0 +1,231 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.phrase.api;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.undo.UndoableEdit;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PhraseTest
+{
+
+    private Phrase phrase;
+    private NoteEvent ne0, ne1, ne2;
+    private List<NoteEvent> initialNotes;
+    private final List<PropertyChangeEvent> events = new ArrayList<>();
+    private final List<UndoableEdit> edits = new ArrayList<>();
+
+    public PhraseTest()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+        phrase = new Phrase(0);
+        ne0 = new NoteEvent(60, 1f, 64, 0f);
+        ne1 = new NoteEvent(62, 1f, 64, 1f);
+        ne2 = new NoteEvent(64, 1f, 64, 2f);
+        phrase.add(ne0);
+        phrase.add(ne1);
+        phrase.add(ne2);
+        initialNotes = new ArrayList<>(phrase);
+
+        events.clear();
+        edits.clear();
+        phrase.addPropertyChangeListener(e -> events.add(e));
+        phrase.addUndoableEditListener(e -> edits.add(e.getEdit()));
+    }
+
+    @Test
+    public void testAddThenRemove()
+    {
+        System.out.println("testAddThenRemove");
+        NoteEvent ne = new NoteEvent(70, 1f, 64, 0.5f);
+        phrase.beginBatch();
+        phrase.add(ne);
+        phrase.remove(ne);
+        phrase.remove(ne1);
+        phrase.add(ne1);
+        var change = phrase.commitBatch();
+
+        assertTrue(change.isEmpty());
+        assertEquals(initialNotes, new ArrayList<>(phrase));
+        assertTrue(events.isEmpty());
+        assertTrue(edits.isEmpty());
+    }
+
+    @Test
+    public void testReplaceChain()
+    {
+        System.out.println("testReplaceChain");
+        NoteEvent ne1b = ne1.setPitch(63);
+        NoteEvent ne1c = ne1b.setVelocity(100);
+        phrase.beginBatch();
+        phrase.replace(ne1, ne1b);
+        phrase.replace(ne1b, ne1c);
+        var change = phrase.commitBatch();
+
+        assertTrue(change.removed().isEmpty());
+        assertTrue(change.added().isEmpty());
+        assertEquals(Map.of(ne1, ne1c), change.replaced());
+        assertEquals(List.of(ne0, ne1c, ne2), new ArrayList<>(phrase));
+        assertSingleChangeEvent(change);
+        assertUndoRedo(List.of(ne0, ne1c, ne2));
+    }
+
+    @Test
+    public void testReplaceBackToOriginal()
+    {
+        System.out.println("testReplaceBackToOriginal");
+        NoteEvent ne1b = ne1.setPitch(63);
+        NoteEvent ne1c = ne1b.setPitch(65);
+        phrase.beginBatch();
+        phrase.replace(ne1, ne1b);
+        phrase.replace(ne1b, ne1c);
+        phrase.replace(ne1c, ne1);
+        var change = phrase.commitBatch();
+
+        assertTrue(change.isEmpty());
+        assertEquals(initialNotes, new ArrayList<>(phrase));
+        assertTrue(events.isEmpty());
+        assertTrue(edits.isEmpty());
+    }
+
+    @Test
+    public void testReplaceAddedAndRemoveReplaced()
+    {
+        System.out.println("testReplaceAddedAndRemoveReplaced");
+        NoteEvent neAdded = new NoteEvent(70, 1f, 64, 0.5f);
+        NoteEvent neAddedB = neAdded.setPitch(71);
+        NoteEvent ne2b = ne2.setPitch(66);
+        phrase.beginBatch();
+        phrase.add(neAdded);
+        phrase.replace(neAdded, neAddedB);      // Still a simple add
+        phrase.replace(ne2, ne2b);
+        phrase.remove(ne2b);                    // Becomes a removal of the initial note
+        var change = phrase.commitBatch();
+
+        assertEquals(List.of(ne2), change.removed());
+        assertEquals(List.of(neAddedB), change.added());
+        assertTrue(change.replaced().isEmpty());
+        assertEquals(List.of(ne0, neAddedB, ne1), new ArrayList<>(phrase));
+        assertSingleChangeEvent(change);
+        assertUndoRedo(List.of(ne0, neAddedB, ne1));
+    }
+
+    @Test
+    public void testNestedBatches()
+    {
+        System.out.println("testNestedBatches");
+        NoteEvent neAdded = new NoteEvent(70, 1f, 64, 3f);
+        NoteEvent ne0b = ne0.setVelocity(20);
+        phrase.beginBatch();
+        phrase.add(neAdded);
+
+        phrase.beginBatch();
+        assertTrue(phrase.isInBatch());
+        phrase.remove(ne1);
+        phrase.replace(ne0, ne0b);
+        var nestedChange = phrase.commitBatch();
+        assertTrue(nestedChange.isEmpty());
+        assertTrue(phrase.isInBatch());
+        assertTrue(events.isEmpty());
+        assertTrue(edits.isEmpty());
+
+        var change = phrase.commitBatch();
+        assertFalse(phrase.isInBatch());
+        assertEquals(List.of(ne1), change.removed());
+        assertEquals(List.of(neAdded), change.added());
+        assertEquals(Map.of(ne0, ne0b), change.replaced());
+        assertEquals(List.of(ne0b, ne2, neAdded), new ArrayList<>(phrase));
+        assertSingleChangeEvent(change);
+        assertUndoRedo(List.of(ne0b, ne2, neAdded));
+    }
+
+    @Test
+    public void testGetInverse()
+    {
+        System.out.println("testGetInverse");
+        NoteEvent neAdded = new NoteEvent(70, 1f, 64, 3f);
+        NoteEvent ne0b = ne0.setVelocity(20);
+        var change = new Phrase.NotesChange(List.of(ne1), List.of(neAdded), Map.of(ne0, ne0b));
+        var inverse = change.getInverse();
+
+        assertEquals(List.of(neAdded), inverse.removed());
+        assertEquals(List.of(ne1), inverse.added());
+        assertEquals(Map.of(ne0b, ne0), inverse.replaced());
+        var inverse2 = inverse.getInverse();
+        assertEquals(change.removed(), inverse2.removed());
+        assertEquals(change.added(), inverse2.added());
+        assertEquals(change.replaced(), inverse2.replaced());
+        assertTrue(Phrase.NotesChange.EMPTY.getInverse().isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCommitWithoutBatch()
+    {
+        System.out.println("testCommitWithoutBatch");
+        phrase.commitBatch();
+    }
+
+    // =================================================================================================
+    // Private methods
+    // =================================================================================================
+    private void assertSingleChangeEvent(Phrase.NotesChange change)
+    {
+        assertEquals(1, events.size());
+        assertEquals(Phrase.PROP_NOTES_CHANGED, events.get(0).getPropertyName());
+        assertSame(change, events.get(0).getNewValue());
+        assertEquals(1, edits.size());
+    }
+
+    /**
+     * Undo then redo the last edit, checking the phrase content and that each operation fires one PROP_NOTES_CHANGED event.
+     *
+     * @param finalNotes The expected notes after the batch
+     */
+    private void assertUndoRedo(List<NoteEvent> finalNotes)
+    {
+        UndoableEdit edit = edits.get(edits.size() - 1);
+
+        events.clear();
+        edit.undo();
+        assertEquals(initialNotes, new ArrayList<>(phrase));
+        assertEquals(1, events.size());
+        assertEquals(Phrase.PROP_NOTES_CHANGED, events.get(0).getPropertyName());
+
+        events.clear();
+        edit.redo();
+        assertEquals(finalNotes, new ArrayList<>(phrase));
+        assertEquals(1, events.size());
+        assertEquals(Phrase.PROP_NOTES_CHANGED, events.get(0).getPropertyName());
+        assertEquals(Set.copyOf(finalNotes).size(), phrase.size());
+    }
+}
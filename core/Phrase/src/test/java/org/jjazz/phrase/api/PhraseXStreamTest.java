@@ -0,0 +1,129 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.phrase.api;
+
+import com.thoughtworks.xstream.XStream;
+import org.jjazz.xstream.spi.XStreamConfigurator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compare the Phrase XStream converter with the default reflection-based XStream serialization.
+ */
+public class PhraseXStreamTest
+{
+
+    private static final int NB_NOTES = 2000;
+    private static Phrase phrase;
+    private static XStream xstreamConverter;
+    private static XStream xstreamReflection;
+
+    public PhraseXStreamTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws ClassNotFoundException
+    {
+        phrase = new Phrase(3, false);
+        float pos = 0;
+        for (int i = 0; i < NB_NOTES; i++)
+        {
+            int pitch = 40 + (i * 7) % 48;
+            int velocity = 40 + (i * 13) % 80;
+            float duration = 0.1f + (i % 17) * 0.173f;
+            phrase.add(new NoteEvent(pitch, duration, velocity, pos));
+            pos += (i % 3) * 0.3333f;
+        }
+
+
+        // As used by XStreamInstancesManager
+        xstreamConverter = getXStream();
+        new Phrase.XStreamConfig().configure(XStreamConfigurator.InstanceId.SONG_SAVE, xstreamConverter);
+
+
+        // The Phrase configuration before the converter was added
+        xstreamReflection = getXStream();
+        Class<?> spClass = Class.forName(Phrase.class.getName() + "$SerializationProxy");
+        xstreamReflection.alias("Phrase", Phrase.class);
+        xstreamReflection.alias("PhraseSP", spClass);
+        xstreamReflection.useAttributeFor(spClass, "spVERSION");
+    }
+
+    @Test
+    public void testSameXml()
+    {
+        System.out.println("testSameXml");
+        String xml = xstreamConverter.toXML(phrase);
+        assertTrue(xml.contains("<spSaveString>"));
+        assertEquals(xstreamReflection.toXML(phrase), xml);
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        System.out.println("testRoundTrip");
+        String xml = xstreamConverter.toXML(phrase);
+        assertSamePhrase(phrase, (Phrase) xstreamConverter.fromXML(xml));
+        assertSamePhrase(phrase, (Phrase) xstreamReflection.fromXML(xml));
+        assertSamePhrase(phrase, (Phrase) xstreamConverter.fromXML(xstreamReflection.toXML(phrase)));
+
+
+        Phrase drums = new Phrase(9, true);
+        drums.add(new NoteEvent(36, 0.5f, 100, 0f));
+        Phrase drums2 = (Phrase) xstreamConverter.fromXML(xstreamConverter.toXML(drums));
+        assertSamePhrase(drums, drums2);
+        assertSamePhrase(new Phrase(0, false), (Phrase) xstreamConverter.fromXML(xstreamConverter.toXML(new Phrase(0, false))));
+    }
+
+    // =================================================================================================================
+    // Private methods
+    // =================================================================================================================
+    private static XStream getXStream()
+    {
+        XStream xstream = new XStream();
+        XStream.setupDefaultSecurity(xstream);
+        xstream.allowTypesByWildcard(new String[]
+        {
+            "org.jjazz.**"
+        });
+        return xstream;
+    }
+
+    private static void assertSamePhrase(Phrase expected, Phrase p)
+    {
+        assertEquals(expected.getChannel(), p.getChannel());
+        assertEquals(expected.isDrums(), p.isDrums());
+        assertEquals(expected.size(), p.size());
+        var it = p.iterator();
+        for (NoteEvent ne : expected)
+        {
+            NoteEvent ne2 = it.next();
+            assertEquals(ne.getPitch(), ne2.getPitch());
+            assertEquals(ne.getVelocity(), ne2.getVelocity());
+            assertEquals(ne.getPositionInBeats(), ne2.getPositionInBeats(), 0);
+            assertEquals(ne.getDurationInBeats(), ne2.getDurationInBeats(), 0);
+        }
+    }
+}
@@ -70,6 +70,19 @@ public interface Rhythm extends Comparable<Rhythm>
 
     boolean isResourcesLoaded();
 
+    /**
+     * Estimate the memory used by the resources loaded by loadResources().
+     * <p>
+     * Used by RhythmResourcesCache to limit the memory used by loaded rhythms. Default implementation returns 0 if resources are not loaded, 1MB otherwise.
+     *
+     * @return A size in bytes
+     * @see RhythmResourcesCache
+     */
+    default long getResourcesSizeEstimate()
+    {
+        return isResourcesLoaded() ? 1024 * 1024 : 0;
+    }
+
     /**
      * @return The voices for which this rhythm can generate music. Each voice must have a unique name.
      */
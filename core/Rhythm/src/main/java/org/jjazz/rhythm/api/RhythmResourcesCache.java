@@ -0,0 +1,435 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.rhythm.api;
+
+import com.google.common.collect.MapMaker;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.prefs.Preferences;
+import org.openide.util.NbPreferences;
+
+/**
+ * A memory-bounded LRU cache of the rhythms whose resources are loaded.
+ * <p>
+ * Registered rhythms are tracked when their resources get loaded or released (PROP_RESOURCES_LOADED change events). When the sum of the
+ * Rhythm.getResourcesSizeEstimate() values exceeds the maximum size, the least recently used rhythms are evicted by calling their releaseResources()
+ * method.
+ * <p>
+ * Pinned rhythms are never evicted, e.g. rhythms used by an opened song or by an ongoing music generation. Pinning an AdaptedRhythm also pins its source
+ * rhythm.
+ * <p>
+ * Each rhythm has a resources lock, see getLock(). The cache only releases the resources of an evicted rhythm while holding its lock and after checking
+ * again that it is not pinned. A music generation must pin the rhythm, then load its resources and generate music while holding its lock.
+ */
+public class RhythmResourcesCache implements PropertyChangeListener
+{
+
+    /**
+     * Cache statistics.
+     *
+     * @param hits            Number of loadResources() calls on already loaded rhythms
+     * @param misses          Number of loadResources() calls on rhythms which were not loaded
+     * @param evictions       Number of rhythms whose resources were released by the cache
+     * @param nbLoadedRhythms Current number of loaded rhythms
+     * @param sizeEstimate    Current size estimate in bytes of the loaded rhythms
+     * @param maxSize         Maximum size in bytes
+     */
+    public record Stats(long hits, long misses, long evictions, int nbLoadedRhythms, long sizeEstimate, long maxSize)
+            {
+
+    }
+
+    private static final String PREF_MAX_SIZE_MB = "RhythmResourcesCacheMaxSizeMB";
+    private static RhythmResourcesCache INSTANCE;
+    /**
+     * The loaded rhythms with their size estimate, in access order.
+     */
+    private final LinkedHashMap<Rhythm, Long> mapRhythmSize = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Rhythm, Integer> mapRhythmPinCount = new HashMap<>();
+    private final Set<Rhythm> registeredRhythms = Collections.newSetFromMap(new WeakHashMap<>());
+    /**
+     * Identity-based weak keys.
+     */
+    private final ConcurrentMap<Rhythm, ReentrantLock> mapRhythmLock = new MapMaker().weakKeys().makeMap();
+    private long maxSize;
+    private long sizeEstimate;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private static final Preferences prefs = NbPreferences.forModule(RhythmResourcesCache.class);
+    private static final Logger LOGGER = Logger.getLogger(RhythmResourcesCache.class.getSimpleName());
+
+    static public RhythmResourcesCache getInstance()
+    {
+        synchronized (RhythmResourcesCache.class)
+        {
+            if (INSTANCE == null)
+            {
+                INSTANCE = new RhythmResourcesCache();
+            }
+        }
+        return INSTANCE;
+    }
+
+    private RhythmResourcesCache()
+    {
+        long defaultMaxSizeMB = Runtime.getRuntime().maxMemory() / (4 * 1024 * 1024);
+        maxSize = prefs.getLong(PREF_MAX_SIZE_MB, defaultMaxSizeMB) * 1024 * 1024;
+    }
+
+    /**
+     * Start tracking the resources of the specified rhythm.
+     * <p>
+     * Do nothing if r is already registered.
+     *
+     * @param r
+     */
+    public void register(Rhythm r)
+    {
+        synchronized (this)
+        {
+            if (!registeredRhythms.add(r))
+            {
+                return;
+            }
+        }
+        r.addPropertyChangeListener(this);
+        if (r.isResourcesLoaded())
+        {
+            resourcesLoaded(r);
+        }
+    }
+
+    /**
+     * Get the lock which protects the resources of the specified rhythm.
+     * <p>
+     * The lock is held by loadResources() and while the cache releases the resources of an evicted rhythm. A music generation should hold it while
+     * generating (after pinning the rhythm) so that the resources can't be released meanwhile. It also serializes the music generations of a given rhythm.
+     *
+     * @param r
+     * @return A reentrant lock
+     */
+    public ReentrantLock getLock(Rhythm r)
+    {
+        return mapRhythmLock.computeIfAbsent(r, k -> new ReentrantLock());
+    }
+
+    /**
+     * Register the rhythm and load its resources.
+     * <p>
+     * Update the statistics and the LRU order, then possibly evict other rhythms. The rhythm lock is held during the operation, and the source rhythm lock
+     * for an AdaptedRhythm.
+     *
+     * @param r
+     * @throws MusicGenerationException
+     * @see #getLock(org.jjazz.rhythm.api.Rhythm)
+     */
+    public void loadResources(Rhythm r) throws MusicGenerationException
+    {
+        register(r);
+        var lock = getLock(r);
+        var sourceLock = r instanceof AdaptedRhythm ar ? getLock(ar.getSourceRhythm()) : null;
+        lock.lock();
+        if (sourceLock != null)
+        {
+            sourceLock.lock();
+        }
+        try
+        {
+            synchronized (this)
+            {
+                if (mapRhythmSize.get(r) != null)      // Also updates the access order
+                {
+                    hits++;
+                } else
+                {
+                    misses++;
+                }
+            }
+            r.loadResources();
+        } finally
+        {
+            if (sourceLock != null)
+            {
+                sourceLock.unlock();
+            }
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release the resources of the specified rhythm now, unless it is pinned.
+     * <p>
+     * To be used instead of Rhythm.releaseResources() when the caller knows the rhythm is not needed anymore, e.g. after a rhythm preview.
+     *
+     * @param r
+     * @return True if resources were released
+     */
+    public boolean releaseResources(Rhythm r)
+    {
+        if (isPinned(r))
+        {
+            return false;
+        }
+        var lock = getLock(r);
+        lock.lock();
+        try
+        {
+            if (isPinned(r))
+            {
+                return false;
+            }
+            r.releaseResources();
+        } finally
+        {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Prevent the resources of the specified rhythm from being evicted.
+     * <p>
+     * Pins are counted: each pin() must be balanced by an unpin().
+     *
+     * @param r
+     */
+    public void pin(Rhythm r)
+    {
+        register(r);
+        synchronized (this)
+        {
+            mapRhythmPinCount.merge(r, 1, Integer::sum);
+        }
+        if (r instanceof AdaptedRhythm ar)
+        {
+            pin(ar.getSourceRhythm());
+        }
+    }
+
+    /**
+     * Release a pin on the specified rhythm.
+     *
+     * @param r
+     * @see #pin(org.jjazz.rhythm.api.Rhythm)
+     */
+    public void unpin(Rhythm r)
+    {
+        synchronized (this)
+        {
+            Integer count = mapRhythmPinCount.get(r);
+            if (count == null)
+            {
+                LOGGER.log(Level.WARNING, "unpin() r={0} is not pinned", r);
+                return;
+            }
+            if (count == 1)
+            {
+                mapRhythmPinCount.remove(r);
+            } else
+            {
+                mapRhythmPinCount.put(r, count - 1);
+            }
+        }
+        if (r instanceof AdaptedRhythm ar)
+        {
+            unpin(ar.getSourceRhythm());
+        }
+        evictIfNeeded(null);
+    }
+
+    public synchronized boolean isPinned(Rhythm r)
+    {
+        return mapRhythmPinCount.containsKey(r);
+    }
+
+    /**
+     * @return The maximum size in bytes of the loaded rhythms resources.
+     */
+    public synchronized long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Set the maximum size of the loaded rhythms resources.
+     * <p>
+     * The value is saved in the preferences.
+     *
+     * @param sizeMB A size in MB, must be &gt; 0
+     */
+    public void setMaxSizeMB(int sizeMB)
+    {
+        if (sizeMB <= 0)
+        {
+            throw new IllegalArgumentException("sizeMB=" + sizeMB);
+        }
+        synchronized (this)
+        {
+            maxSize = sizeMB * 1024L * 1024L;
+        }
+        prefs.putLong(PREF_MAX_SIZE_MB, sizeMB);
+        evictIfNeeded(null);
+    }
+
+    public synchronized Stats getStats()
+    {
+        return new Stats(hits, misses, evictions, mapRhythmSize.size(), sizeEstimate, maxSize);
+    }
+
+    public synchronized void resetStats()
+    {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    // ==========================================================================================================
+    // PropertyChangeListener interface
+    // ==========================================================================================================
+    @Override
+    public void propertyChange(PropertyChangeEvent evt)
+    {
+        if (evt.getSource() instanceof Rhythm r && evt.getPropertyName().equals(Rhythm.PROP_RESOURCES_LOADED))
+        {
+            if (evt.getNewValue() == Boolean.TRUE)
+            {
+                resourcesLoaded(r);
+            } else
+            {
+                synchronized (this)
+                {
+                    Long size = mapRhythmSize.remove(r);
+                    if (size != null)
+                    {
+                        sizeEstimate -= size;
+                    }
+                }
+            }
+        }
+    }
+
+    // ==========================================================================================================
+    // Private methods
+    // ==========================================================================================================
+    private void resourcesLoaded(Rhythm r)
+    {
+        long size = r.getResourcesSizeEstimate();
+        synchronized (this)
+        {
+            Long oldSize = mapRhythmSize.put(r, size);
+            sizeEstimate += size - (oldSize == null ? 0 : oldSize);
+        }
+        LOGGER.log(Level.FINE, "resourcesLoaded() r={0} size={1}", new Object[]
+        {
+            r, size
+        });
+        evictIfNeeded(r);
+    }
+
+    /**
+     * Release the resources of the least recently used rhythms until size is below the maximum size.
+     * <p>
+     * Candidates are selected under the cache lock. Then for each candidate the rhythm lock is acquired, if available, and the pin state is checked again
+     * before releaseResources() is called. A rhythm whose lock is held by another thread is being loaded or used, it is skipped.
+     *
+     * @param excluded Can be null. A rhythm which must not be evicted.
+     */
+    private void evictIfNeeded(Rhythm excluded)
+    {
+        List<Rhythm> candidates = new ArrayList<>();
+        synchronized (this)
+        {
+            if (sizeEstimate <= maxSize)
+            {
+                return;
+            }
+            for (var r : mapRhythmSize.keySet())
+            {
+                if (r != excluded && !mapRhythmPinCount.containsKey(r))
+                {
+                    candidates.add(r);
+                }
+            }
+        }
+
+        for (var r : candidates)
+        {
+            var lock = getLock(r);
+            if (lock.isHeldByCurrentThread() || !lock.tryLock())
+            {
+                continue;
+            }
+            try
+            {
+                synchronized (this)
+                {
+                    if (sizeEstimate <= maxSize)
+                    {
+                        break;
+                    }
+                    if (mapRhythmPinCount.containsKey(r))
+                    {
+                        continue;       // Pinned meanwhile
+                    }
+                    Long size = mapRhythmSize.remove(r);
+                    if (size == null)
+                    {
+                        continue;       // Released meanwhile
+                    }
+                    sizeEstimate -= size;
+                    evictions++;
+                }
+                LOGGER.log(Level.FINE, "evictIfNeeded() releasing resources of r={0}", r);
+                r.releaseResources();
+            } finally
+            {
+                lock.unlock();
+            }
+        }
+
+        synchronized (this)
+        {
+            if (sizeEstimate > maxSize)
+            {
+                LOGGER.log(Level.FINE, "evictIfNeeded() size={0} still above maxSize={1}, remaining rhythms are pinned or in use", new Object[]
+                {
+                    sizeEstimate, maxSize
+                });
+            }
+        }
+    }
+
+}
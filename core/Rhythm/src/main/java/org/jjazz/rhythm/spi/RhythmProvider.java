@@ -28,6 +28,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.jjazz.harmony.api.TimeSignature;
 import org.jjazz.rhythm.api.Rhythm;
 import org.jjazz.rhythm.api.AdaptedRhythm;
@@ -104,6 +111,19 @@ public interface RhythmProvider
      */
     public List<Rhythm> getFileRhythms(boolean forceRescan, MultipleErrorsReport errRpt);
 
+    /**
+     * Get the rhythm files which would be read by getFileRhythms(true, errRpt), without reading them.
+     * <p>
+     * Used by the framework to update its rhythm database cache incrementally: only new or modified files are then read via readFastAll(). Default
+     * implementation returns null.
+     *
+     * @return Null if this RhythmProvider can't list its rhythm files, the framework will then use getFileRhythms(true, errRpt).
+     */
+    default List<File> getFileRhythmFiles()
+    {
+        return null;
+    }
+
     /**
      * Get the file extensions accepted by readFast().
      * <p>
@@ -124,6 +144,95 @@ public interface RhythmProvider
      */
     public Rhythm readFast(File f) throws IOException;
 
+    /**
+     * Read several rhythm files with readFast(File), using all the available processors.
+     * <p>
+     * Default implementation calls readFast(File) concurrently from a temporary thread pool: readFast(File) must be thread-safe.
+     *
+     * @param files
+     * @param errRpt Can't be null. The messages of the readFast(File) IOExceptions are added in the files order.
+     * @return The successfully read rhythms, in the files order.
+     */
+    default List<Rhythm> readFastAll(List<File> files, MultipleErrorsReport errRpt)
+    {
+        Objects.requireNonNull(files);
+        Objects.requireNonNull(errRpt);
+        Logger logger = Logger.getLogger(RhythmProvider.class.getSimpleName());
+        List<Rhythm> res = new ArrayList<>();
+        int nbThreads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+
+
+        if (nbThreads <= 1)
+        {
+            for (File f : files)
+            {
+                try
+                {
+                    res.add(readFast(f));
+                } catch (IOException ex)
+                {
+                    logger.log(Level.WARNING, "readFastAll() ex={0}", ex.getLocalizedMessage());
+                    errRpt.individualErrorMessages.add(ex.getLocalizedMessage());
+                }
+            }
+            return res;
+        }
+
+
+        AtomicInteger threadCount = new AtomicInteger();
+        String threadName = getInfo().getName() + "-readFast-";
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads, r -> 
+        {
+            Thread t = new Thread(r, threadName + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<Rhythm>> futures = new ArrayList<>(files.size());
+        try
+        {
+            for (File f : files)
+            {
+                futures.add(executor.submit(() -> readFast(f)));
+            }
+
+
+            // Collect results in the files order
+            for (var future : futures)
+            {
+                try
+                {
+                    res.add(future.get());
+                } catch (ExecutionException ex)
+                {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException)
+                    {
+                        logger.log(Level.WARNING, "readFastAll() ex={0}", cause.getLocalizedMessage());
+                        errRpt.individualErrorMessages.add(cause.getLocalizedMessage());
+                    } else if (cause instanceof RuntimeException re)
+                    {
+                        throw re;
+                    } else
+                    {
+                        throw new IllegalStateException(cause);
+                    }
+                }
+            }
+        } catch (InterruptedException ex)
+        {
+            logger.log(Level.WARNING, "readFastAll() interrupted, {0} rhythm files read out of {1}", new Object[]
+            {
+                res.size(), files.size()
+            });
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            executor.shutdownNow();
+        }
+
+        return res;
+    }
+
     /**
      * Provide a new rhythm which is an adapted version of r for a different time signature.
      * <p>
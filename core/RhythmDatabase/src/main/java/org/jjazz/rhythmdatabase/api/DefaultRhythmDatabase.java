@@ -26,12 +26,23 @@ import org.jjazz.rhythmdatabase.spi.RhythmDatabaseFactory;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -40,7 +51,11 @@ import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import org.jjazz.harmony.api.TimeSignature;
 import org.jjazz.rhythm.api.AdaptedRhythm;
+import org.jjazz.rhythm.api.Feel;
+import org.jjazz.rhythm.api.Genre;
 import org.jjazz.rhythm.api.Rhythm;
+import org.jjazz.rhythm.api.RhythmResourcesCache;
+import org.jjazz.rhythm.api.TempoRange;
 import org.jjazz.rhythm.spi.RhythmProvider;
 import org.jjazz.rhythm.spi.StubRhythmProvider;
 import org.jjazz.utilities.api.MultipleErrorsReport;
@@ -50,6 +65,9 @@ import org.openide.util.NbPreferences;
  * RhythmDatabase default implementation.
  * <p>
  * Default rhythms are stored as Preferences.
+ * <p>
+ * Secondary indexes (unique id, time signature, genre, feel, tempo range, name and tags words) are updated each time a rhythm is added, so that the usual
+ * lookups do not need to scan the whole database.
  */
 public class DefaultRhythmDatabase implements RhythmDatabase
 {
@@ -64,6 +82,8 @@ public class DefaultRhythmDatabase implements RhythmDatabase
     private final Map<RhythmProvider, List<RhythmInfo>> mapRpRhythms = new HashMap<>();
     /**
      * Save the created Rhythm instances.
+     * <p>
+     * Instances are registered in the RhythmResourcesCache which limits the memory used by their loaded resources.
      */
     private final Map<RhythmInfo, Rhythm> mapInfoInstance = new HashMap<>();
     /**
@@ -72,6 +92,23 @@ public class DefaultRhythmDatabase implements RhythmDatabase
      * Map key=originalRhythmId-TimeSignature
      */
     private final Map<String, AdaptedRhythm> mapAdaptedRhythms = new HashMap<>();
+    /**
+     * The AdaptedRhythms instances created on-demand, by unique id.
+     */
+    private final Map<String, AdaptedRhythm> mapIdAdaptedRhythm = new HashMap<>();
+    /**
+     * Indexes updated by addRhythm().
+     */
+    private final Map<RhythmInfo, RhythmProvider> mapRhythmRp = new HashMap<>();
+    private final Map<String, RhythmInfo> mapIdRhythm = new HashMap<>();
+    private final Map<TimeSignature, List<RhythmInfo>> mapTsRhythms = new LinkedHashMap<>();
+    private final Map<Genre, List<RhythmInfo>> mapGenreRhythms = new EnumMap<>(Genre.class);
+    private final Map<Feel, List<RhythmInfo>> mapFeelRhythms = new EnumMap<>(Feel.class);
+    private final Map<TempoRange, List<RhythmInfo>> mapTempoRangeRhythms = new HashMap<>();
+    /**
+     * The words of the rhythm names and tags, sorted to allow prefix search.
+     */
+    private final TreeMap<String, Set<RhythmInfo>> mapTokenRhythms = new TreeMap<>();
     /**
      * Stores the default rhythms per time signature
      */
@@ -155,6 +192,7 @@ public class DefaultRhythmDatabase implements RhythmDatabase
 
         // Save the instance
         mapInfoInstance.put(ri, r);
+        RhythmResourcesCache.getInstance().register(r);
 
         return r;
     }
@@ -162,17 +200,7 @@ public class DefaultRhythmDatabase implements RhythmDatabase
     @Override
     public RhythmInfo getRhythm(String rhythmId)
     {
-        for (RhythmProvider rp : mapRpRhythms.keySet())
-        {
-            for (RhythmInfo ri : mapRpRhythms.get(rp))
-            {
-                if (ri.rhythmUniqueId().equals(rhythmId))
-                {
-                    return ri;
-                }
-            }
-        }
-        return null;
+        return mapIdRhythm.get(rhythmId);
     }
 
     @Override
@@ -196,6 +224,72 @@ public class DefaultRhythmDatabase implements RhythmDatabase
         return res;
     }
 
+    @Override
+    public List<RhythmInfo> getRhythms(TimeSignature ts)
+    {
+        Objects.requireNonNull(ts);
+        return new ArrayList<>(mapTsRhythms.getOrDefault(ts, List.of()));
+    }
+
+    /**
+     * Get the rhythms which match the specified query.
+     * <p>
+     * The most selective index among the query criteria is used to get the candidate rhythms, which are then tested with the query.
+     *
+     * @param query
+     * @return
+     */
+    @Override
+    public List<RhythmInfo> getRhythms(RhythmQuery query)
+    {
+        Objects.requireNonNull(query);
+
+        Collection<RhythmInfo> candidates = null;
+        if (query.timeSignature() != null)
+        {
+            candidates = getSmallest(candidates, mapTsRhythms.getOrDefault(query.timeSignature(), List.of()));
+        }
+        if (query.genre() != null)
+        {
+            candidates = getSmallest(candidates, mapGenreRhythms.getOrDefault(query.genre(), List.of()));
+        }
+        if (query.feel() != null)
+        {
+            candidates = getSmallest(candidates, mapFeelRhythms.getOrDefault(query.feel(), List.of()));
+        }
+        if (query.tempo() != -1)
+        {
+            List<RhythmInfo> tempoRhythms = new ArrayList<>();
+            for (var tr : mapTempoRangeRhythms.keySet())
+            {
+                if (tr.contains(query.tempo()))
+                {
+                    tempoRhythms.addAll(mapTempoRangeRhythms.get(tr));
+                }
+            }
+            candidates = getSmallest(candidates, tempoRhythms);
+        }
+        for (String token : query.getTextTokens())
+        {
+            candidates = getSmallest(candidates, getTokenRhythms(token));
+        }
+        if (candidates == null)
+        {
+            candidates = mapRhythmRp.keySet();
+        }
+
+
+        List<RhythmInfo> res = new ArrayList<>();
+        for (var ri : candidates)
+        {
+            if (query.test(ri))
+            {
+                res.add(ri);
+            }
+        }
+        return res;
+    }
+
     @Override
     public List<RhythmProvider> getRhythmProviders()
     {
@@ -210,9 +304,10 @@ public class DefaultRhythmDatabase implements RhythmDatabase
 
         if (rId.contains(AdaptedRhythm.RHYTHM_ID_DELIMITER))
         {
-            // It's an adapted rhythm
-            String[] strs = rId.split(AdaptedRhythm.RHYTHM_ID_DELIMITER);
-            if (strs.length == 3)
+            // It's an adapted rhythm, no need to parse rId if it was already created
+            r = mapIdAdaptedRhythm.get(rId);
+            String[] strs = r != null ? null : rId.split(AdaptedRhythm.RHYTHM_ID_DELIMITER);
+            if (strs != null && strs.length == 3)
             {
                 String rpId = strs[0];
                 String rIdOriginal = strs[1];
@@ -270,6 +365,7 @@ public class DefaultRhythmDatabase implements RhythmDatabase
                 {
                     addRhythmInstance(rp, ar);
                     mapAdaptedRhythms.put(adaptedRhythmKey, ar);
+                    mapIdAdaptedRhythm.put(ar.getUniqueId(), ar);
                     break;
                 }
             }
@@ -356,36 +452,15 @@ public class DefaultRhythmDatabase implements RhythmDatabase
     @Override
     public List<TimeSignature> getTimeSignatures()
     {
-        List<TimeSignature> res = new ArrayList<>();
-        for (RhythmProvider rp : mapRpRhythms.keySet())
-        {
-            for (RhythmInfo ri : mapRpRhythms.get(rp))
-            {
-                TimeSignature ts = ri.timeSignature();
-                if (!res.contains(ts))
-                {
-                    res.add(ts);
-                }
-            }
-        }
-        return res;
+        return new ArrayList<>(mapTsRhythms.keySet());
     }
 
 
     @Override
     public RhythmProvider getRhythmProvider(Rhythm r)
     {
-        RhythmProvider resRp = null;
         RhythmInfo ri = getRhythm(r.getUniqueId());
-        for (RhythmProvider rp : mapRpRhythms.keySet())
-        {
-            if (mapRpRhythms.get(rp).contains(ri))
-            {
-                resRp = rp;
-                break;
-            }
-        }
-        return resRp;
+        return ri == null ? null : mapRhythmRp.get(ri);
     }
 
     @Override
@@ -395,17 +470,7 @@ public class DefaultRhythmDatabase implements RhythmDatabase
         {
             throw new IllegalArgumentException("ri=" + ri);
         }
-        for (RhythmProvider rp : mapRpRhythms.keySet())
-        {
-            for (RhythmInfo rInfo : mapRpRhythms.get(rp))
-            {
-                if (rInfo.equals(ri))
-                {
-                    return rp;
-                }
-            }
-        }
-        return null;
+        return mapRhythmRp.get(ri);
     }
 
     @Override
@@ -418,9 +483,10 @@ public class DefaultRhythmDatabase implements RhythmDatabase
             mapRpRhythms.put(rp, rhythms);
         }
 
-        if (!rhythms.contains(ri))
+        if (mapRhythmRp.putIfAbsent(ri, rp) == null)
         {
             rhythms.add(ri);
+            updateIndexes(ri);
             fireChanged();
             return true;
         }
@@ -434,6 +500,7 @@ public class DefaultRhythmDatabase implements RhythmDatabase
         RhythmInfo ri = new RhythmInfo(r, rp);
         boolean added = addRhythm(rp, ri);
         mapInfoInstance.put(ri, r);
+        RhythmResourcesCache.getInstance().register(r);
         return added;
     }
 
@@ -447,13 +514,7 @@ public class DefaultRhythmDatabase implements RhythmDatabase
     @Override
     public int size()
     {
-        int size = 0;
-        for (RhythmProvider rp : mapRpRhythms.keySet())
-        {
-            List<RhythmInfo> rhythms = mapRpRhythms.get(rp);
-            size += rhythms.size();
-        }
-        return size;
+        return mapRhythmRp.size();
     }
 
     @Override
@@ -478,14 +539,60 @@ public class DefaultRhythmDatabase implements RhythmDatabase
      * @see RhythmProvider
      */
     public MultipleErrorsReport addRhythmsFromRhythmProviders(boolean excludeBuiltinRhythms, boolean excludeFileRhythms, boolean forceFileRhythmsRescan)
+    {
+        return addRhythmsFromRhythmProviders(excludeBuiltinRhythms, excludeFileRhythms, forceFileRhythmsRescan, null);
+    }
+
+    /**
+     * Poll RhythmProvider instances from the global lookup to add rhythms.
+     * <p>
+     * The file-based rhythms of the RhythmProviders are retrieved in parallel. Rhythms are added and errors are reported in the
+     * RhythmProviders order, as if RhythmProviders were polled one after the other.
+     *
+     * @param excludeBuiltinRhythms
+     * @param excludeFileRhythms
+     * @param forceFileRhythmsRescan Unused when excludedFileRhythms is true
+     * @param progressListener       If not null, called with a progress message each time the file-based rhythms of a RhythmProvider have
+     *                               been retrieved. Can be called from a different thread.
+     * @return
+     * @see RhythmProvider
+     */
+    public MultipleErrorsReport addRhythmsFromRhythmProviders(boolean excludeBuiltinRhythms, boolean excludeFileRhythms, boolean forceFileRhythmsRescan,
+            Consumer<String> progressListener)
     {
 
         var rps = RhythmProvider.getRhythmProviders();
         final MultipleErrorsReport errReport = new MultipleErrorsReport();
 
+
+        // Start retrieving file-based rhythms in parallel, one task per RhythmProvider (each one uses its own error report)
+        List<CompletableFuture<FileRhythmsResult>> fileRhythmsFutures = new ArrayList<>();
+        ExecutorService executor = null;
+        if (!excludeFileRhythms && !rps.isEmpty())
+        {
+            executor = Executors.newFixedThreadPool(rps.size());
+            AtomicInteger nbDone = new AtomicInteger();
+            for (final RhythmProvider rp : rps)
+            {
+                fileRhythmsFutures.add(CompletableFuture.supplyAsync(() -> 
+                {
+                    var rpErrReport = new MultipleErrorsReport();
+                    var rhythms = rp.getFileRhythms(forceFileRhythmsRescan, rpErrReport);
+                    if (progressListener != null)
+                    {
+                        progressListener.accept(rp.getInfo().getName() + ": " + rhythms.size() + " rhythms (" + nbDone.incrementAndGet() + "/" + rps.size() + ")");
+                    }
+                    return new FileRhythmsResult(rhythms, rpErrReport);
+                }, executor));
+            }
+            executor.shutdown();        // Threads will terminate once tasks are complete
+        }
+
+
         int n = 0;
-        for (final RhythmProvider rp : rps)
+        for (int i = 0; i < rps.size(); i++)
         {
+            RhythmProvider rp = rps.get(i);
 
             // First get builtin rhythms         
             if (!excludeBuiltinRhythms)
@@ -503,8 +610,9 @@ public class DefaultRhythmDatabase implements RhythmDatabase
             // Add file-based rhythms
             if (!excludeFileRhythms)
             {
-                List<Rhythm> rhythmsNotBuiltin = rp.getFileRhythms(forceFileRhythmsRescan, errReport);
-                for (Rhythm r : rhythmsNotBuiltin)
+                FileRhythmsResult fileRhythmsResult = fileRhythmsFutures.get(i).join();
+                errReport.merge(fileRhythmsResult.errReport());
+                for (Rhythm r : fileRhythmsResult.rhythms())
                 {
                     if (addRhythmInstance(rp, r))
                     {
@@ -551,10 +659,50 @@ public class DefaultRhythmDatabase implements RhythmDatabase
 
     }
 
+    private void updateIndexes(RhythmInfo ri)
+    {
+        mapIdRhythm.putIfAbsent(ri.rhythmUniqueId(), ri);
+        mapTsRhythms.computeIfAbsent(ri.timeSignature(), ts -> new ArrayList<>()).add(ri);
+        var rf = ri.rhythmFeatures();
+        mapGenreRhythms.computeIfAbsent(rf.getGenre(), g -> new ArrayList<>()).add(ri);
+        mapFeelRhythms.computeIfAbsent(rf.getFeel(), f -> new ArrayList<>()).add(ri);
+        mapTempoRangeRhythms.computeIfAbsent(rf.getTempoRange(), tr -> new ArrayList<>()).add(ri);
+        for (String token : RhythmQuery.getTokens(ri))
+        {
+            mapTokenRhythms.computeIfAbsent(token, t -> new HashSet<>()).add(ri);
+        }
+    }
+
+    /**
+     * Get the rhythms which have a name or tag word starting with prefix.
+     *
+     * @param prefix
+     * @return
+     */
+    private Set<RhythmInfo> getTokenRhythms(String prefix)
+    {
+        Set<RhythmInfo> res = new HashSet<>();
+        for (var rhythms : mapTokenRhythms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values())
+        {
+            res.addAll(rhythms);
+        }
+        return res;
+    }
+
+    private Collection<RhythmInfo> getSmallest(Collection<RhythmInfo> c1, Collection<RhythmInfo> c2)
+    {
+        return c1 == null || c2.size() < c1.size() ? c2 : c1;
+    }
+
 
     // ================================================================================================
     // Inner classes
     // ================================================================================================  
+    private record FileRhythmsResult(List<Rhythm> rhythms, MultipleErrorsReport errReport)
+            {
+
+    }
+
     private static class DefaultFactory implements RhythmDatabaseFactory
     {
 
@@ -125,6 +125,20 @@ public interface RhythmDatabase
         return getRhythms(ri -> ri.timeSignature().equals(ts));
     }
 
+    /**
+     * Get the rhythms which match the specified query.
+     * <p>
+     * Default implementation tests all the rhythms, implementations should use indexes to speed up the search. Returned list order is not specified.
+     *
+     * @param query
+     * @return
+     */
+    default List<RhythmInfo> getRhythms(RhythmQuery query)
+    {
+        Objects.requireNonNull(query);
+        return getRhythms(ri -> query.test(ri));
+    }
+
     /**
      * The rhythms associated to the specified RhythmProvider
      *
@@ -22,7 +22,10 @@
  */
 package org.jjazz.rhythmdatabase.api;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -32,12 +35,20 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jjazz.harmony.api.TimeSignature;
 import org.jjazz.midi.api.DrumKit;
+import org.jjazz.midi.api.keymap.KeyMapGM;
 import org.jjazz.midi.api.synths.GM1Instrument;
+import org.jjazz.midi.api.synths.GMSynth;
+import org.jjazz.midi.spi.KeyMapProvider;
 import org.jjazz.rhythm.api.AdaptedRhythm;
+import org.jjazz.rhythm.api.Beat;
+import org.jjazz.rhythm.api.Feel;
+import org.jjazz.rhythm.api.Genre;
+import org.jjazz.rhythm.api.Intensity;
 import org.jjazz.rhythm.api.Rhythm;
 import org.jjazz.rhythm.api.RhythmFeatures;
 import org.jjazz.rhythm.api.RhythmParameter;
 import org.jjazz.rhythm.api.RhythmVoice;
+import org.jjazz.rhythm.api.TempoRange;
 import org.jjazz.rhythm.spi.RhythmProvider;
 
 
@@ -129,6 +140,139 @@ public class RhythmInfo implements Serializable
         }
     }
 
+    /**
+     * Used by readFrom().
+     */
+    private RhythmInfo()
+    {
+    }
+
+    /**
+     * Write this RhythmInfo in a compact binary form.
+     * <p>
+     * Format is not versioned: callers which persist the data must handle versioning.
+     *
+     * @param out
+     * @throws IOException
+     * @see #readFrom(java.io.DataInput)
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeUTF(rhythmProviderId);
+        out.writeUTF(rhythmUniqueId);
+        out.writeUTF(file.getPath());
+        out.writeUTF(name);
+        out.writeInt(tags.length);
+        for (String tag : tags)
+        {
+            out.writeUTF(tag);
+        }
+        writeNullableString(out, description);
+        writeNullableString(out, version);
+        writeNullableString(out, author);
+        out.writeUTF(timeSignature.name());
+        out.writeInt(preferredTempo);
+        out.writeUTF(rhythmFeatures.getFeel().name());
+        out.writeUTF(rhythmFeatures.getBeat().name());
+        out.writeUTF(rhythmFeatures.getGenre().name());
+        out.writeUTF(rhythmFeatures.getIntensity().name());
+        TempoRange tr = rhythmFeatures.getTempoRange();
+        out.writeInt(tr.getMin());
+        out.writeInt(tr.getMax());
+        out.writeUTF(tr.getName());
+        out.writeBoolean(isAdaptedRhythm);
+
+        out.writeInt(cacheRvs.size());
+        for (RvInfo rvi : cacheRvs)
+        {
+            out.writeUTF(rvi.name());
+            out.writeInt(rvi.gmSubstitute() == null ? -1 : rvi.gmSubstitute().getMidiAddress().getProgramChange());
+            out.writeInt(rvi.preferredChannel());
+            out.writeBoolean(rvi.drumKit() != null);
+            if (rvi.drumKit() != null)
+            {
+                out.writeUTF(rvi.drumKit().getType().name());
+                out.writeUTF(rvi.drumKit().getKeyMap().getName());
+            }
+            out.writeUTF(rvi.type().name());
+        }
+
+        out.writeInt(cacheRps.size());
+        for (RpInfo rpi : cacheRps)
+        {
+            out.writeUTF(rpi.displayName());
+            writeNullableString(out, rpi.description());
+            out.writeUTF(rpi.className());
+        }
+    }
+
+    /**
+     * Read a RhythmInfo written by writeTo().
+     *
+     * @param in
+     * @return
+     * @throws IOException If data is truncated or invalid
+     * @see #writeTo(java.io.DataOutput)
+     */
+    static public RhythmInfo readFrom(DataInput in) throws IOException
+    {
+        RhythmInfo ri = new RhythmInfo();
+        try
+        {
+            ri.rhythmProviderId = in.readUTF();
+            ri.rhythmUniqueId = in.readUTF();
+            ri.file = new File(in.readUTF());
+            ri.name = in.readUTF();
+            ri.tags = new String[readSize(in)];
+            for (int i = 0; i < ri.tags.length; i++)
+            {
+                ri.tags[i] = in.readUTF();
+            }
+            ri.description = readNullableString(in);
+            ri.version = readNullableString(in);
+            ri.author = readNullableString(in);
+            ri.timeSignature = TimeSignature.valueOf(in.readUTF());
+            ri.preferredTempo = in.readInt();
+            Feel feel = Feel.valueOf(in.readUTF());
+            Beat beat = Beat.valueOf(in.readUTF());
+            Genre genre = Genre.valueOf(in.readUTF());
+            Intensity intensity = Intensity.valueOf(in.readUTF());
+            TempoRange tr = new TempoRange(in.readInt(), in.readInt(), in.readUTF());
+            ri.rhythmFeatures = new RhythmFeatures(feel, beat, genre, tr, intensity);
+            ri.isAdaptedRhythm = in.readBoolean();
+
+            int nbRvs = readSize(in);
+            for (int i = 0; i < nbRvs; i++)
+            {
+                String rvName = in.readUTF();
+                int pc = in.readInt();
+                GM1Instrument gmSubstitute = pc == -1 ? null : GMSynth.getInstance().getGM1Bank().getInstrument(pc);
+                int preferredChannel = in.readInt();
+                DrumKit drumKit = null;
+                if (in.readBoolean())
+                {
+                    DrumKit.Type dkType = DrumKit.Type.valueOf(in.readUTF());
+                    DrumKit.KeyMap keyMap = KeyMapProvider.Util.getKeyMap(in.readUTF());
+                    drumKit = new DrumKit(dkType, keyMap != null ? keyMap : KeyMapGM.getInstance());
+                }
+                RhythmVoice.Type rvType = RhythmVoice.Type.valueOf(in.readUTF());
+                ri.cacheRvs.add(new RvInfo(rvName, gmSubstitute, preferredChannel, drumKit, rvType));
+            }
+
+            int nbRps = readSize(in);
+            for (int i = 0; i < nbRps; i++)
+            {
+                ri.cacheRps.add(new RpInfo(in.readUTF(), readNullableString(in), in.readUTF()));
+            }
+        } catch (IllegalArgumentException ex)
+        {
+            // Invalid enum name, invalid TempoRange, etc.
+            throw new IOException("Invalid RhythmInfo data. ex=" + ex.getMessage());
+        }
+
+        return ri;
+    }
+
     /**
      * Check that this RhythmInfo object matches data from specified rhythm.
      * <p>
@@ -367,5 +511,28 @@ public class RhythmInfo implements Serializable
     // ===========================================================================================
     // Private methods
     // ===========================================================================================
+    static private void writeNullableString(DataOutput out, String str) throws IOException
+    {
+        out.writeBoolean(str != null);
+        if (str != null)
+        {
+            out.writeUTF(str);
+        }
+    }
+
+    static private String readNullableString(DataInput in) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static private int readSize(DataInput in) throws IOException
+    {
+        int size = in.readInt();
+        if (size < 0)
+        {
+            throw new IOException("Invalid size=" + size);
+        }
+        return size;
+    }
 
 }
@@ -0,0 +1,168 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.rhythmdatabase.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.jjazz.harmony.api.TimeSignature;
+import org.jjazz.rhythm.api.Feel;
+import org.jjazz.rhythm.api.Genre;
+import org.jjazz.rhythm.api.RhythmFeatures;
+import org.jjazz.rhythm.api.TempoRange;
+
+/**
+ * A typed query to search rhythms in a RhythmDatabase.
+ * <p>
+ * A null (or -1 for tempo) criterion matches all rhythms. All the non-null criteria must match.
+ *
+ * @param timeSignature If not null rhythm must have this time signature
+ * @param genre         If not null rhythm features must have this genre
+ * @param feel          If not null rhythm features must have this feel
+ * @param tempo         If not -1 rhythm features tempo range must contain this tempo
+ * @param text          If not null or blank, each word of text must be the start of a word of the rhythm name or of one of its tags (case insensitive).
+ *                      E.g. "bos nov" matches "BossaNova Pop" with tag "bossa", "nova".
+ * @see RhythmDatabase#getRhythms(org.jjazz.rhythmdatabase.api.RhythmQuery)
+ */
+public record RhythmQuery(TimeSignature timeSignature, Genre genre, Feel feel, int tempo, String text)
+        {
+
+    /**
+     * A query which matches all rhythms.
+     */
+    public static final RhythmQuery ALL = new RhythmQuery(null, null, null, -1, null);
+
+    public RhythmQuery
+    {
+        if (tempo != -1 && !TempoRange.checkTempo(tempo))
+        {
+            throw new IllegalArgumentException("tempo=" + tempo);
+        }
+    }
+
+    /**
+     * A query on time signature only.
+     *
+     * @param ts Can't be null
+     */
+    public RhythmQuery(TimeSignature ts)
+    {
+        this(ts, null, null, -1, null);
+        if (ts == null)
+        {
+            throw new NullPointerException("ts");
+        }
+    }
+
+    /**
+     * Test the rhythm against this query criteria.
+     *
+     * @param ri
+     * @return
+     */
+    public boolean test(RhythmInfo ri)
+    {
+        if (timeSignature != null && ri.timeSignature() != timeSignature)
+        {
+            return false;
+        }
+        RhythmFeatures rf = ri.rhythmFeatures();
+        if (genre != null && rf.getGenre() != genre)
+        {
+            return false;
+        }
+        if (feel != null && rf.getFeel() != feel)
+        {
+            return false;
+        }
+        if (tempo != -1 && !rf.getTempoRange().contains(tempo))
+        {
+            return false;
+        }
+        var textTokens = getTextTokens();
+        if (!textTokens.isEmpty())
+        {
+            var riTokens = getTokens(ri);
+            for (String textToken : textTokens)
+            {
+                if (riTokens.stream().noneMatch(t -> t.startsWith(textToken)))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The lowercase words of text.
+     *
+     * @return Can be empty
+     */
+    public List<String> getTextTokens()
+    {
+        return tokenize(text);
+    }
+
+    // =========================================================================
+    // Package methods
+    // =========================================================================
+    /**
+     * The lowercase words of the rhythm name and tags.
+     *
+     * @param ri
+     * @return
+     */
+    static List<String> getTokens(RhythmInfo ri)
+    {
+        List<String> res = tokenize(ri.name());
+        for (String tag : ri.tags())
+        {
+            res.addAll(tokenize(tag));
+        }
+        return res;
+    }
+
+    /**
+     * Split a string in lowercase words.
+     *
+     * @param s Can be null
+     * @return Can be empty
+     */
+    static List<String> tokenize(String s)
+    {
+        List<String> res = new ArrayList<>();
+        if (s == null)
+        {
+            return res;
+        }
+        for (String token : s.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+        {
+            if (!token.isEmpty())
+            {
+                res.add(token);
+            }
+        }
+        return res;
+    }
+}
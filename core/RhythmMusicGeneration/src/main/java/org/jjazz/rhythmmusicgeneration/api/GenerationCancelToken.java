@@ -0,0 +1,77 @@
+/*
+ *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ * 
+ *  Copyright @2019 Jerome Lelasseux. All rights reserved.
+ *
+ *  This file is part of the JJazzLab software.
+ *   
+ *  JJazzLab is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License (LGPLv3) 
+ *  as published by the Free Software Foundation, either version 3 of the License, 
+ *  or (at your option) any later version.
+ *
+ *  JJazzLab is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with JJazzLab.  If not, see <https://www.gnu.org/licenses/>
+ * 
+ *  Contributor(s): 
+ */
+package org.jjazz.rhythmmusicgeneration.api;
+
+import org.jjazz.rhythm.api.GenerationCancelledException;
+
+/**
+ * A token used to cooperatively cancel a music generation.
+ * <p>
+ * The music generation code calls checkCancelled() at regular points (e.g. between chord sequences or post-processing steps), the
+ * generation is aborted as soon as another thread has called cancel().
+ */
+public class GenerationCancelToken
+{
+
+    /**
+     * A token which can not be cancelled: cancel() does nothing.
+     */
+    public static final GenerationCancelToken NONE = new GenerationCancelToken()
+    {
+        @Override
+        public void cancel()
+        {
+            // Nothing
+        }
+    };
+
+    private volatile boolean cancelled;
+
+    /**
+     * Request the cancellation of the music generation which uses this token.
+     * <p>
+     * Can be called from any thread.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Throw an exception if cancel() was called.
+     *
+     * @throws GenerationCancelledException
+     */
+    public void checkCancelled() throws GenerationCancelledException
+    {
+        if (cancelled)
+        {
+            throw new GenerationCancelledException("Music generation was cancelled");
+        }
+    }
+}
@@ -34,6 +34,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.event.ChangeListener;
 import org.jjazz.phrase.api.Phrase;
+import org.jjazz.rhythm.api.GenerationCancelledException;
 import org.jjazz.rhythm.api.MusicGenerationException;
 import org.jjazz.rhythm.api.RhythmVoice;
 import org.jjazz.rhythm.api.UserErrorGenerationException;
@@ -50,13 +51,16 @@ import org.openide.util.ChangeSupport;
  * If several music generation requests arrive while a music generation task is already running, only the last request is kept. When generation task is done, a
  * new music generation task is started with that last request.
  * <p>
+ * The thread is blocked while there is nothing to do: it is woken up when a request is added or when a generation task completes.
+ * <p>
+ * If enabled, a generation task which is generating music for an obsolete request is cancelled when a new request arrives, so that
+ * music for the new request is available sooner.
+ * <p>
  * A ChangeEvent is fired when a music generation task is complete and a result is available. Note that ChangeEvent is fired outside of the Swing EDT.
  */
 public class MusicGenerationQueue implements Runnable
 {
 
-    private static final int POLL_INTERVAL_MS = 20;
-
     /**
      * A result from a music generation.
      *
@@ -72,26 +76,48 @@ public class MusicGenerationQueue implements Runnable
     private ExecutorService executorService;
     private ScheduledExecutorService generationExecutorService;
     private Future<?> generationFuture;
-    private UpdateGenerationTask generationTask;
-    private SongContext threadSharedSongContext;
+    private volatile UpdateGenerationTask generationTask;
+    private Request threadSharedRequest;
     private SongContext lastAddedSongContext;
+    private long droppedRequestCount;
+    private long cancelledRequestCount;
+    private long processedRequestCount;
+    private long lastQueueLatencyNs;
+    private long maxQueueLatencyNs;
+    private long totalQueueLatencyNs;
+    private long lastResultLatencyNs;
     private Result lastResult;
     private final int preUpdateBufferTimeMs;
     private final int postUpdateSleepTimeMs;
+    private final boolean cancelObsoleteGeneration;
     private volatile boolean running;
     private final ChangeSupport cs = new ChangeSupport(this);
     private static final Logger LOGGER = Logger.getLogger(MusicGenerationQueue.class.getSimpleName());
 
     /**
-     * Create the handler.
+     * Create the handler with cancelObsoleteGeneration=true.
      *
      * @param preUpdateBufferTimeMs (milliseconds) Wait this time upon receiving the first request before starting the music generation
      * @param postUpdateSleepTimeMs (milliseconds) Wait this time before restarting a music generation
      */
     public MusicGenerationQueue(int preUpdateBufferTimeMs, int postUpdateSleepTimeMs)
+    {
+        this(preUpdateBufferTimeMs, postUpdateSleepTimeMs, true);
+    }
+
+    /**
+     * Create the handler.
+     *
+     * @param preUpdateBufferTimeMs    (milliseconds) Wait this time upon receiving the first request before starting the music generation
+     * @param postUpdateSleepTimeMs    (milliseconds) Wait this time before restarting a music generation
+     * @param cancelObsoleteGeneration If true a running music generation is cancelled when a new request arrives. No Result is produced for a
+     *                                 cancelled generation, and the post update sleep time is skipped.
+     */
+    public MusicGenerationQueue(int preUpdateBufferTimeMs, int postUpdateSleepTimeMs, boolean cancelObsoleteGeneration)
     {
         this.preUpdateBufferTimeMs = preUpdateBufferTimeMs;
         this.postUpdateSleepTimeMs = postUpdateSleepTimeMs;
+        this.cancelObsoleteGeneration = cancelObsoleteGeneration;
     }
 
     /**
@@ -103,7 +129,16 @@ public class MusicGenerationQueue implements Runnable
     {
         Preconditions.checkNotNull(sgContext);
         lastAddedSongContext = sgContext;
-        writeThreadSharedSongContext(sgContext);
+        synchronized (this)
+        {
+            if (threadSharedRequest != null)
+            {
+                // Previous request was not handled yet, latest request wins
+                droppedRequestCount++;
+            }
+            threadSharedRequest = new Request(sgContext, System.nanoTime());
+            notifyAll();
+        }
     }
 
     public SongContext getLastAddedSongContext()
@@ -168,6 +203,14 @@ public class MusicGenerationQueue implements Runnable
         return postUpdateSleepTimeMs;
     }
 
+    /**
+     * @return True if a running music generation is cancelled when a new request arrives.
+     */
+    public boolean isCancelObsoleteGeneration()
+    {
+        return cancelObsoleteGeneration;
+    }
+
     /**
      * Stop the thread.
      */
@@ -175,7 +218,17 @@ public class MusicGenerationQueue implements Runnable
     {
         if (running)
         {
-            running = false;
+            synchronized (this)
+            {
+                running = false;
+                notifyAll();
+            }
+            var task = generationTask;
+            if (task != null)
+            {
+                // No need to wait for the post update sleep time
+                task.skipPostUpdateSleep();
+            }
             Utilities.shutdownAndAwaitTermination(generationExecutorService, 1000, 100);
             Utilities.shutdownAndAwaitTermination(executorService, 1, 1);
         }
@@ -184,41 +237,55 @@ public class MusicGenerationQueue implements Runnable
     @Override
     public void run()
     {
-        SongContext pendingSongContext = null;
+        Request pendingRequest = null;
 
 
         while (running)
         {
-            SongContext incoming = readThreadSharedSongContextThenNullify();
+            Request incoming;
+            synchronized (this)
+            {
+                // Block until there is a new request, or until the running generation task completes if there is a pending request
+                while (running && threadSharedRequest == null && (pendingRequest == null || !isGenerationTaskComplete()))
+                {
+                    try
+                    {
+                        wait();
+                    } catch (InterruptedException ex)
+                    {
+                        return;
+                    }
+                }
+                incoming = threadSharedRequest;
+                threadSharedRequest = null;
+            }
 
-            if (incoming != null)
+            if (!running)
             {
-//                LOGGER.log(Level.FINE, "MusicGenerationQueue.run() handling incoming={0} nanoTime()={1}", new Object[]
-//                {
-//                    incoming, System.nanoTime()
-//                });
-                // LOGGER.info("UpdateRequestsHandler.run() handling cls=" + toDebugString(incoming.getSong().getChordLeadSheet()));
+                return;
+            }
 
-                // Handle new context, save as pending if handling failed
-                pendingSongContext = handleContext(incoming) ? null : incoming;
 
-            } else if (pendingSongContext != null)
+            if (incoming != null)
             {
-                // Handle the last pending context, reset it if handling was successful
-                if (handleContext(pendingSongContext))
+                // LOGGER.info("UpdateRequestsHandler.run() handling cls=" + toDebugString(incoming.getSong().getChordLeadSheet()));
+
+                if (pendingRequest != null)
                 {
-//                    LOGGER.log(Level.FINE, "MusicGenerationQueue.run() handled pendingSongContext={0}", pendingSongContext);
-                    pendingSongContext = null;
+                    // Pending request will never be generated
+                    incrementDroppedRequestCount();
                 }
-            }
 
+                // Handle new request, save as pending if handling failed
+                pendingRequest = handleRequest(incoming) ? null : incoming;
 
-            try
-            {
-                Thread.sleep(POLL_INTERVAL_MS);
-            } catch (InterruptedException ex)
+            } else if (pendingRequest != null)
             {
-                return;
+                // Handle the last pending request, reset it if handling was successful
+                if (handleRequest(pendingRequest))
+                {
+                    pendingRequest = null;
+                }
             }
         }
     }
@@ -254,65 +321,178 @@ public class MusicGenerationQueue implements Runnable
         return lastResult;
     }
 
+    /**
+     * The number of requests which were discarded because a more recent request was added before their music generation started.
+     *
+     * @return
+     */
+    public synchronized long getDroppedRequestCount()
+    {
+        return droppedRequestCount;
+    }
+
+    /**
+     * The number of requests whose music generation was started then cancelled because a more recent request was added.
+     *
+     * @return
+     * @see #isCancelObsoleteGeneration()
+     */
+    public synchronized long getCancelledRequestCount()
+    {
+        return cancelledRequestCount;
+    }
+
+    /**
+     * The number of requests for which music was generated.
+     *
+     * @return
+     */
+    public synchronized long getProcessedRequestCount()
+    {
+        return processedRequestCount;
+    }
+
+    /**
+     * The time between the add() call and the start of the music generation for the last processed request.
+     * <p>
+     * Includes the getPreUpdateBufferTimeMs() delay.
+     *
+     * @return Nanoseconds
+     */
+    public synchronized long getLastQueueLatencyNs()
+    {
+        return lastQueueLatencyNs;
+    }
+
+    /**
+     * The maximum value of getLastQueueLatencyNs() since start or last resetStatistics().
+     *
+     * @return Nanoseconds
+     */
+    public synchronized long getMaxQueueLatencyNs()
+    {
+        return maxQueueLatencyNs;
+    }
+
+    /**
+     * The average value of getLastQueueLatencyNs() since start or last resetStatistics().
+     *
+     * @return Nanoseconds
+     */
+    public synchronized long getAverageQueueLatencyNs()
+    {
+        return processedRequestCount == 0 ? 0 : totalQueueLatencyNs / processedRequestCount;
+    }
+
+    /**
+     * The time between the add() call and the availability of the Result for the last processed request.
+     *
+     * @return Nanoseconds
+     */
+    public synchronized long getLastResultLatencyNs()
+    {
+        return lastResultLatencyNs;
+    }
+
+    /**
+     * Reset the dropped/processed request counters and the latency statistics.
+     */
+    public synchronized void resetStatistics()
+    {
+        droppedRequestCount = 0;
+        cancelledRequestCount = 0;
+        processedRequestCount = 0;
+        lastQueueLatencyNs = 0;
+        maxQueueLatencyNs = 0;
+        totalQueueLatencyNs = 0;
+        lastResultLatencyNs = 0;
+    }
+
 
     // =============================================================================================
     // Private methods
     // =============================================================================================
-    private synchronized void writeThreadSharedSongContext(SongContext sgContext)
+    private synchronized void incrementDroppedRequestCount()
+    {
+        droppedRequestCount++;
+    }
+
+    private synchronized void incrementCancelledRequestCount()
+    {
+        cancelledRequestCount++;
+    }
+
+    private synchronized void updateLatencyStatistics(long queueLatencyNs, long resultLatencyNs)
     {
-        threadSharedSongContext = sgContext;
+        processedRequestCount++;
+        lastQueueLatencyNs = queueLatencyNs;
+        maxQueueLatencyNs = Math.max(maxQueueLatencyNs, queueLatencyNs);
+        totalQueueLatencyNs += queueLatencyNs;
+        lastResultLatencyNs = resultLatencyNs;
     }
 
-    private synchronized SongContext readThreadSharedSongContext()
+    /**
+     * Called by the generation task when it's complete, including the post update sleep time.
+     */
+    private synchronized void generationTaskComplete()
     {
-        return threadSharedSongContext;
+        notifyAll();
     }
 
-    private synchronized SongContext readThreadSharedSongContextThenNullify()
+    /**
+     * Must be called from the queue thread.
+     *
+     * @return True if there is no generation task or if it is complete
+     */
+    private boolean isGenerationTaskComplete()
     {
-        var res = threadSharedSongContext;
-        threadSharedSongContext = null;
-        return res;
+        return generationTask == null || generationTask.isComplete();
     }
 
     /**
      * Try to start a new task or update existing task if possible.
      * <p>
-     * If not possible, sgContext becomes the pendingContext.
+     * If not possible, request becomes the pending request.
      *
-     * @param sgContext
-     * @return True if task could be started or updated with sgContext, false otherwise
+     * @param request
+     * @return True if task could be started or updated with request, false otherwise
      */
-    private boolean handleContext(SongContext sgContext)
+    private boolean handleRequest(Request request)
     {
         boolean b;
         if (generationFuture == null)
         {
             // No generation task created yet, start one
-            // LOGGER.fine("handleContext() start generation FIRST TIME");
-            startGenerationTask(sgContext);
+            // LOGGER.fine("handleRequest() start generation FIRST TIME");
+            startGenerationTask(request);
             b = true;
 
-        } else if (generationFuture.isDone())
+        } else if (generationFuture.isDone() || generationTask.isComplete())
         {
             // There is a generation task but it is complete, restart one
-            // LOGGER.fine("handleContext() start generation");
-            startGenerationTask(sgContext);
+            // LOGGER.fine("handleRequest() start generation");
+            startGenerationTask(request);
             b = true;
 
         } else
         {
             // There is a generation task : because not started yet (wait preUpdateBufferTimeMs) or generating music
             // Try to update it
-            if (generationTask.changeContext(sgContext))
+            if (generationTask.changeRequest(request))
             {
-                // LOGGER.fine("handleContext() changed context of current generation task");
+                // LOGGER.fine("handleRequest() changed context of current generation task");
                 // OK, task was waiting, we're done
+                incrementDroppedRequestCount();
                 b = true;
 
             } else
             {
-                // NOK, task is generating music
+                // NOK, task is generating music for an obsolete request, or it's in its post update sleep time
+                if (cancelObsoleteGeneration && generationTask.cancel())
+                {
+                    // LOGGER.fine("handleRequest() cancelled current generation task");
+                    incrementCancelledRequestCount();
+                }
                 b = false;
             }
         }
@@ -324,13 +504,13 @@ public class MusicGenerationQueue implements Runnable
     /**
      * Start a generation task after a fixed delay.
      *
-     * @param sgContext
+     * @param request
      */
-    private void startGenerationTask(SongContext sgContext)
+    private void startGenerationTask(Request request)
     {
         try
         {
-            generationTask = new UpdateGenerationTask(sgContext, postUpdateSleepTimeMs);
+            generationTask = new UpdateGenerationTask(request, postUpdateSleepTimeMs);
             generationFuture = generationExecutorService.schedule(generationTask, preUpdateBufferTimeMs, TimeUnit.MILLISECONDS);
         } catch (RejectedExecutionException ex)
         {
@@ -344,6 +524,17 @@ public class MusicGenerationQueue implements Runnable
     // =============================================================================================
     // Inner classes
     // =============================================================================================
+    /**
+     * A music generation request.
+     *
+     * @param songContext
+     * @param nanoTime    The System.nanoTime() when request was added
+     */
+    private record Request(SongContext songContext, long nanoTime)
+            {
+
+    }
+
     /**
      * A task which creates the update and sleeps postUpdateSleepTime after notifying that the update is ready.
      */
@@ -351,48 +542,104 @@ public class MusicGenerationQueue implements Runnable
     {
 
         private boolean started = false;
+        private boolean generating = false;
+        private boolean complete = false;
+        private boolean sleepSkipped = false;
+        private final GenerationCancelToken cancelToken = new GenerationCancelToken();
         private SongContext songContext;
+        private long requestNanoTime;
         private final int postUpdateSleepTime;
 
         /**
-         * Create an UpdateGenerator task for the given SongContext.
+         * Create an UpdateGenerator task for the given request.
          * <p>
          *
-         * @param sgContext           This must be an immutable instance (e.g. song must not be modified in parallel)
+         * @param request             The SongContext must be an immutable instance (e.g. song must not be modified in parallel)
          * @param postUpdateSleepTime This delay avoids to have too many sequencer changes in a short period of time, which can cause audio issues with notes
          *                            muted/unmuted too many times.
          */
-        UpdateGenerationTask(SongContext sgContext, int postUpdateSleepTime)
+        UpdateGenerationTask(Request request, int postUpdateSleepTime)
         {
-            this.songContext = sgContext;
+            this.songContext = request.songContext();
+            this.requestNanoTime = request.nanoTime();
             this.postUpdateSleepTime = postUpdateSleepTime;
         }
 
         /**
-         * Change the context for which to generate the update
+         * Change the request for which to generate the update
          * <p>
-         * Once the task has started (run() was called) the context can't be changed anymore.
+         * Once the task has started (run() was called) the request can't be changed anymore.
          *
-         * @param sgContext This must be an immutable instance (e.g. song must not be modified in parallel)
-         * @return True if context could be changed (task is not started yet)
+         * @param request The SongContext must be an immutable instance (e.g. song must not be modified in parallel)
+         * @return True if request could be changed (task is not started yet)
          */
-        synchronized boolean changeContext(SongContext sgContext)
+        synchronized boolean changeRequest(Request request)
         {
             if (!started)
             {
-                this.songContext = sgContext;
+                this.songContext = request.songContext();
+                this.requestNanoTime = request.nanoTime();
                 return true;
             }
             return false;
         }
 
+        /**
+         * Cancel the music generation.
+         * <p>
+         * Has no effect if music generation is not running, e.g. if task is in its post update sleep time.
+         *
+         * @return True if the running music generation was cancelled, false if music generation is not running or was already cancelled
+         */
+        synchronized boolean cancel()
+        {
+            if (!generating || cancelToken.isCancelled())
+            {
+                return false;
+            }
+            cancelToken.cancel();
+            return true;
+        }
+
+        /**
+         * Stop the post update sleep time now, or skip it if task did not reach it yet.
+         */
+        synchronized void skipPostUpdateSleep()
+        {
+            sleepSkipped = true;
+            notifyAll();
+        }
+
+        /**
+         * @return True if run() is complete, including the post update sleep time.
+         */
+        synchronized boolean isComplete()
+        {
+            return complete;
+        }
 
         @Override
         public void run()
+        {
+            try
+            {
+                generate();
+            } finally
+            {
+                synchronized (this)
+                {
+                    complete = true;
+                }
+                generationTaskComplete();
+            }
+        }
+
+        private void generate()
         {
             synchronized (this)
             {
                 started = true;
+                generating = true;
             }
 
 
@@ -405,9 +652,14 @@ public class MusicGenerationQueue implements Runnable
             SongSequenceBuilder sgBuilder = new SongSequenceBuilder(songContext);
             Exception exception = null;
             Map<RhythmVoice, Phrase> map = null;
+            boolean cancelled = false;
             try
             {
-                map = sgBuilder.buildMapRvPhrase(true);
+                map = sgBuilder.buildMapRvPhrase(true, cancelToken);
+            } catch (GenerationCancelledException ex)
+            {
+                cancelled = true;
+
             } catch (UserErrorGenerationException ex)
             {
                 LOGGER.warning(ex.getMessage());
@@ -428,8 +680,23 @@ public class MusicGenerationQueue implements Runnable
                 ex.printStackTrace();
             }
 
+            synchronized (this)
+            {
+                generating = false;
+                // cancel() might have been called after the last cancel token check
+                cancelled |= cancelToken.isCancelled();
+            }
+
+            if (cancelled)
+            {
+                // A more recent request is waiting, no result, no sleep
+                LOGGER.log(Level.FINE, "UpdateGenerationTask.run() <<< CANCELLED generation duration={0}ns", System.nanoTime() - startTime);
+                return;
+            }
+
 
             lastResult = new Result(songContext, map, exception);
+            updateLatencyStatistics(startTime - requestNanoTime, System.nanoTime() - requestNanoTime);
 
 
             LOGGER.log(Level.FINE, "UpdateGenerationTask.run() <<< ENDING generation  duration={0}ns", System.nanoTime() - startTime);
@@ -440,7 +707,7 @@ public class MusicGenerationQueue implements Runnable
 
             try
             {
-                Thread.sleep(postUpdateSleepTime);
+                postUpdateSleep();
             } catch (InterruptedException ex)
             {
                 LOGGER.log(Level.WARNING, "UpdateGenerator.run() Unexpected UpdateGenerator thread.sleep interruption ex={0}", ex.getMessage());
@@ -450,5 +717,20 @@ public class MusicGenerationQueue implements Runnable
 
         }
 
+        /**
+         * Wait postUpdateSleepTime, unless skipPostUpdateSleep() is called.
+         *
+         * @throws InterruptedException
+         */
+        private synchronized void postUpdateSleep() throws InterruptedException
+        {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(postUpdateSleepTime);
+            long remaining;
+            while (!sleepSkipped && (remaining = deadline - System.nanoTime()) > 0)
+            {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+
     }
 }
@@ -31,12 +31,20 @@ import org.jjazz.rhythm.api.MusicGenerationException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MetaMessage;
@@ -65,6 +73,7 @@ import org.jjazz.phrasetransform.api.rps.RP_SYS_DrumsTransform;
 import org.jjazz.phrasetransform.api.rps.RP_SYS_DrumsTransformValue;
 import org.jjazz.rhythm.api.AdaptedRhythm;
 import org.jjazz.rhythm.api.Rhythm;
+import org.jjazz.rhythm.api.RhythmResourcesCache;
 import org.jjazz.rhythm.api.RhythmVoice;
 import org.jjazz.rhythm.api.RhythmVoiceDelegate;
 import org.jjazz.rhythm.api.rhythmparameters.RP_SYS_CustomPhrase;
@@ -81,6 +90,7 @@ import org.jjazz.utilities.api.IntRange;
 import org.jjazz.utilities.api.ResUtil;
 import org.openide.util.Exceptions;
 import org.jjazz.outputsynth.spi.OutputSynthManager;
+import org.openide.util.NbPreferences;
 
 /**
  * Methods to convert a Song into Phrases and Midi sequence.
@@ -94,6 +104,10 @@ public class SongSequenceBuilder
      * @see #getTempoFactor(javax.sound.midi.MetaMessage)
      */
     public static final int TEMPO_FACTOR_META_EVENT_TYPE = 12;
+    private static final String PREF_MAX_GENERATION_THREADS = "MaxGenerationThreads";
+    private static final Preferences prefs = NbPreferences.forModule(SongSequenceBuilder.class);
+    private static ExecutorService generationExecutor;
+    private static int generationExecutorSize;
 
     /**
      * The return value of the buildSongSequence() methods.
@@ -135,7 +149,7 @@ public class SongSequenceBuilder
      */
     public SongSequence buildAll(boolean silent) throws MusicGenerationException
     {
-        RvPhrasesBuilderTask task = new RvPhrasesBuilderTask();
+        RvPhrasesBuilderTask task = new RvPhrasesBuilderTask(GenerationCancelToken.NONE);
         if (silent)
         {
             task.run();
@@ -174,7 +188,25 @@ public class SongSequenceBuilder
      */
     public Map<RhythmVoice, Phrase> buildMapRvPhrase(boolean silent) throws MusicGenerationException
     {
-        RvPhrasesBuilderTask task = new RvPhrasesBuilderTask();
+        return buildMapRvPhrase(silent, GenerationCancelToken.NONE);
+    }
+
+    /**
+     * Same as buildMapRvPhrase(boolean) but the generation can be cancelled from another thread.
+     * <p>
+     * The token is checked before and after each rhythm generation and between the post-processing steps, and is passed to each
+     * MusicGenerator.
+     *
+     * @param silent      If true do not show a progress dialog
+     * @param cancelToken
+     * @return
+     * @throws MusicGenerationException A GenerationCancelledException if the generation was cancelled
+     * @see #buildMapRvPhrase(boolean)
+     */
+    public Map<RhythmVoice, Phrase> buildMapRvPhrase(boolean silent, GenerationCancelToken cancelToken) throws MusicGenerationException
+    {
+        Preconditions.checkNotNull(cancelToken);
+        RvPhrasesBuilderTask task = new RvPhrasesBuilderTask(cancelToken);
         if (silent)
         {
             task.run();
@@ -452,6 +484,34 @@ public class SongSequenceBuilder
         return songContext;
     }
 
+    /**
+     * Get the maximum number of threads used to generate the music of the different rhythms of a song.
+     *
+     * @return 1 by default, meaning rhythms are generated sequentially.
+     * @see #setMaxGenerationThreads(int)
+     */
+    static public int getMaxGenerationThreads()
+    {
+        return prefs.getInt(PREF_MAX_GENERATION_THREADS, 1);
+    }
+
+    /**
+     * Set the maximum number of threads used to generate the music of the different rhythms of a song.
+     * <p>
+     * When &gt; 1 and the song uses several rhythms, buildMapRvPhrase() runs the MusicGenerator of each rhythm in parallel on a bounded
+     * thread pool. An AdaptedRhythm is always generated in the same task than its source rhythm, since they usually share the same
+     * resources. Generated phrases are merged in the SongContext.getUniqueRhythms() order, then post-processed sequentially as usual.
+     * <p>
+     * Value is saved in the preferences.
+     *
+     * @param n A value in the [1;Runtime.availableProcessors()] range
+     */
+    static public void setMaxGenerationThreads(int n)
+    {
+        Preconditions.checkArgument(n >= 1 && n <= Runtime.getRuntime().availableProcessors(), "n=%s", n);
+        prefs.putInt(PREF_MAX_GENERATION_THREADS, n);
+    }
+
     @Override
     public String toString()
     {
@@ -501,7 +561,7 @@ public class SongSequenceBuilder
     // =========================================================================
     // Private methods
     // =========================================================================
-    private Map<RhythmVoice, Phrase> buildMapRvPhrase() throws MusicGenerationException
+    private Map<RhythmVoice, Phrase> buildMapRvPhrase(GenerationCancelToken cancelToken) throws MusicGenerationException
     {
         Map<RhythmVoice, Phrase> res = new HashMap<>();
 
@@ -514,33 +574,40 @@ public class SongSequenceBuilder
         checkChordsAtSamePosition(songContext);            // throws MusicGenerationException        
 
 
-        for (Rhythm r : songContext.getUniqueRhythms())
-        {
+        // Generate the rhythm phrases, possibly in parallel
+        var uniqueRhythms = songContext.getUniqueRhythms();
+        Map<Rhythm, Map<RhythmVoice, Phrase>> mapRhythmPhrases = getMaxGenerationThreads() > 1 && uniqueRhythms.size() > 1
+                ? generateAllRhythmPhrasesParallel(uniqueRhythms, cancelToken)
+                : generateAllRhythmPhrases(uniqueRhythms, cancelToken);         // Possible MusicGenerationException here
+
 
-            // Generate the phrase
-            Map<RhythmVoice, Phrase> rMap = generateRhythmPhrases(r);                       // Possible MusicGenerationException here
+        // Merge into the final result, always in the same order
+        for (Rhythm r : uniqueRhythms)
+        {
+            Map<RhythmVoice, Phrase> rMap = mapRhythmPhrases.get(r);
 
-            if (songContext.getUniqueRhythms().size() > 1)
+            if (uniqueRhythms.size() > 1)
             {
                 checkRhythmPhrasesScope(songContext, r, rMap);                              // Possible MusicGenerationException here
             }
 
-            // Merge into the final result
             res.putAll(rMap);
-
         }
 
 
         // Handle the RP_SYS_CustomPhrase changes
+        cancelToken.checkCancelled();
         processCustomPhrases(songContext, res);
 
         // Handle the RP_SYS_DrumsTransform changes
+        cancelToken.checkCancelled();
         processDrumsTransforms(songContext, res);
 
         // Handle muted instruments via the SongPart's RP_SYS_Mute parameter
         processMutedInstruments(songContext, res);
 
         // Handle the NC chord symbols 
+        cancelToken.checkCancelled();
         processNoChords(songContext, res);
 
 
@@ -599,6 +666,7 @@ public class SongSequenceBuilder
 
 
         // Handle instrument settings which impact the phrases: transposition, velocity shift, ...
+        cancelToken.checkCancelled();
         processInstrumentsSettings(songContext, res);
 
 
@@ -616,14 +684,126 @@ public class SongSequenceBuilder
     }
 
 
+    /**
+     * Generate the phrases of each rhythm sequentially.
+     *
+     * @param rhythms
+     * @param cancelToken
+     * @return
+     * @throws MusicGenerationException
+     */
+    private Map<Rhythm, Map<RhythmVoice, Phrase>> generateAllRhythmPhrases(List<Rhythm> rhythms, GenerationCancelToken cancelToken) throws MusicGenerationException
+    {
+        Map<Rhythm, Map<RhythmVoice, Phrase>> res = new HashMap<>();
+        for (Rhythm r : rhythms)
+        {
+            cancelToken.checkCancelled();
+            res.put(r, generateRhythmPhrases(r, cancelToken));        // Possible MusicGenerationException here
+        }
+        return res;
+    }
+
+    /**
+     * Generate the phrases of each rhythm using the shared generation thread pool.
+     * <p>
+     * One task per source rhythm: an AdaptedRhythm is generated in the task of its source rhythm (if source rhythm is also used in the
+     * context), so that a generator never runs concurrently with itself. If several tasks fail, the exception of the first rhythm (in
+     * <code>rhythms</code> order) is thrown.
+     *
+     * @param rhythms
+     * @param cancelToken Shared by all tasks
+     * @return
+     * @throws MusicGenerationException
+     */
+    private Map<Rhythm, Map<RhythmVoice, Phrase>> generateAllRhythmPhrasesParallel(List<Rhythm> rhythms, GenerationCancelToken cancelToken) throws MusicGenerationException
+    {
+        // Group rhythms per source rhythm, preserving order
+        Map<Rhythm, List<Rhythm>> mapGroupRhythms = new LinkedHashMap<>();
+        for (Rhythm r : rhythms)
+        {
+            Rhythm key = (r instanceof AdaptedRhythm ar && rhythms.contains(ar.getSourceRhythm())) ? ar.getSourceRhythm() : r;
+            mapGroupRhythms.computeIfAbsent(key, k -> new ArrayList<>()).add(r);
+        }
+
+
+        // Submit one task per group
+        ExecutorService executor = getGenerationExecutor();
+        List<Future<Map<Rhythm, Map<RhythmVoice, Phrase>>>> futures = new ArrayList<>();
+        for (List<Rhythm> group : mapGroupRhythms.values())
+        {
+            futures.add(executor.submit(() -> generateAllRhythmPhrases(group, cancelToken)));
+        }
+
+
+        // Collect the results in order
+        Map<Rhythm, Map<RhythmVoice, Phrase>> res = new HashMap<>();
+        MusicGenerationException firstException = null;
+        for (var future : futures)
+        {
+            try
+            {
+                res.putAll(future.get());
+            } catch (InterruptedException ex)
+            {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new MusicGenerationException("Music generation was interrupted");
+            } catch (ExecutionException ex)
+            {
+                if (firstException == null)
+                {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof MusicGenerationException mge)
+                    {
+                        firstException = mge;
+                    } else
+                    {
+                        LOGGER.log(Level.WARNING, "generateAllRhythmPhrasesParallel() Unexpected exception", cause);
+                        firstException = new MusicGenerationException(cause.getLocalizedMessage());
+                    }
+                }
+            }
+        }
+
+        if (firstException != null)
+        {
+            throw firstException;
+        }
+
+        return res;
+    }
+
+    /**
+     * Get the shared thread pool used for parallel generation, (re)created if getMaxGenerationThreads() has changed.
+     *
+     * @return
+     */
+    static synchronized private ExecutorService getGenerationExecutor()
+    {
+        int n = getMaxGenerationThreads();
+        if (generationExecutor == null || generationExecutorSize != n)
+        {
+            if (generationExecutor != null)
+            {
+                generationExecutor.shutdown();      // Let running tasks complete
+            }
+            generationExecutor = Executors.newFixedThreadPool(n, new GenerationThreadFactory());
+            generationExecutorSize = n;
+        }
+        return generationExecutor;
+    }
+
     /**
      * Ask specified rhythm to generate music.
+     * <p>
+     * Waits if the same Rhythm instance is already generating music in another thread.
      *
      * @param r
+     * @param cancelToken
      * @return
      * @throws org.jjazz.rhythm.api.MusicGenerationException
      */
-    private Map<RhythmVoice, Phrase> generateRhythmPhrases(Rhythm r) throws MusicGenerationException
+    private Map<RhythmVoice, Phrase> generateRhythmPhrases(Rhythm r, GenerationCancelToken cancelToken) throws MusicGenerationException
     {
         Preconditions.checkNotNull(r);
 
@@ -633,8 +813,22 @@ public class SongSequenceBuilder
             {
                 r.getName(), Objects.hashCode(r)
             });
-            r.loadResources();
-            return mg.generateMusic(songContext);
+            // Pin the rhythm so that its resources can't be evicted by another rhythm generation, and hold its resources lock so that they can't
+            // be released while generating. The lock also serializes the generations of a given rhythm: MusicGenerator implementations usually have
+            // mutable per-generation state, even between different SongSequenceBuilder instances.
+            var cache = RhythmResourcesCache.getInstance();
+            cache.pin(r);
+            var lock = cache.getLock(r);
+            lock.lock();
+            try
+            {
+                cache.loadResources(r);
+                return mg.generateMusic(songContext, cancelToken);
+            } finally
+            {
+                lock.unlock();
+                cache.unpin(r);
+            }
         } else
         {
             LOGGER.log(Level.WARNING, "generateRhythmPhrases() r={0} is not a MusicGenerator instance", r);
@@ -1145,13 +1339,19 @@ public class SongSequenceBuilder
         // The generated sequence from the phrases
         private Map<RhythmVoice, Phrase> rvPhrases;
         private MusicGenerationException musicException = null;
+        private final GenerationCancelToken cancelToken;
+
+        RvPhrasesBuilderTask(GenerationCancelToken cancelToken)
+        {
+            this.cancelToken = cancelToken;
+        }
 
         @Override
         public void run()
         {
             try
             {
-                rvPhrases = buildMapRvPhrase();
+                rvPhrases = buildMapRvPhrase(cancelToken);
             } catch (MusicGenerationException ex)
             {
                 musicException = ex;
@@ -1160,6 +1360,23 @@ public class SongSequenceBuilder
     }
 
 
+    /**
+     * Daemon threads so that the pool never prevents JVM shutdown.
+     */
+    static private class GenerationThreadFactory implements ThreadFactory
+    {
+
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "SongSequenceBuilder-generation-" + COUNTER.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
     static private class MmTempoFactor extends MetaMessage
     {
 
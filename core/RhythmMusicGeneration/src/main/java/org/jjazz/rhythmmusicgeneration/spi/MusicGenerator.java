@@ -27,6 +27,7 @@ import java.util.Map;
 import org.jjazz.phrase.api.Phrase;
 import org.jjazz.rhythm.api.MusicGenerationException;
 import org.jjazz.rhythm.api.RhythmVoice;
+import org.jjazz.rhythmmusicgeneration.api.GenerationCancelToken;
 
 /**
  * Define the music generation capability of a Rhythm.
@@ -60,6 +61,10 @@ public interface MusicGenerator
      * - Handling of the instrument's specific transposition<br>
      * - Drums rerouting<br>
      * - NC chord symbols<br>
+     * <p>
+     * If SongSequenceBuilder.getMaxGenerationThreads() &gt; 1, generateMusic() may be called concurrently for the different rhythms of a
+     * song: implementation must not modify the context and must not share mutable state between rhythm instances, except with an
+     * AdaptedRhythm and its source rhythm which are always called from the same thread.
      *
      * @param context The information to be used for music generation
      * @return One Phrase per rhythm voice/channel.
@@ -69,4 +74,25 @@ public interface MusicGenerator
      *
      */
     Map<RhythmVoice, Phrase> generateMusic(SongContext context) throws MusicGenerationException;
+
+    /**
+     * Same as generateMusic(SongContext) but the generation can be cancelled before completion.
+     * <p>
+     * Implementations should call <code>cancelToken.checkCancelled()</code> at regular points of the generation process (e.g. between
+     * chord sequences) so that an obsolete generation is aborted quickly. The default implementation only checks the token before and
+     * after calling generateMusic(SongContext).
+     *
+     * @param context
+     * @param cancelToken
+     * @return
+     * @throws MusicGenerationException A GenerationCancelledException if generation was cancelled
+     * @see GenerationCancelToken#checkCancelled()
+     */
+    default Map<RhythmVoice, Phrase> generateMusic(SongContext context, GenerationCancelToken cancelToken) throws MusicGenerationException
+    {
+        cancelToken.checkCancelled();
+        var res = generateMusic(context);
+        cancelToken.checkCancelled();
+        return res;
+    }
 }
@@ -38,16 +38,19 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.ObjectStreamException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Serializable;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -63,6 +66,7 @@ import org.jjazz.chordleadsheet.api.UnsupportedEditException;
 import org.jjazz.chordleadsheet.api.event.ClsActionEvent;
 import org.jjazz.chordleadsheet.api.event.ClsChangeEvent;
 import org.jjazz.chordleadsheet.api.item.CLI_Section;
+import org.jjazz.phrase.api.PackedPhrase;
 import org.jjazz.phrase.api.Phrase;
 import org.jjazz.quantizer.api.Quantization;
 import org.jjazz.rhythm.api.Rhythm;
@@ -135,6 +139,14 @@ public class Song implements Serializable, ClsChangeListener, SgsChangeListener,
     private int tempo = 120;
     private List<String> tags = new ArrayList<>();
     private Map<String, Phrase> mapUserPhrases = new HashMap<>();
+    /**
+     * User phrases not decoded yet, see setPackedUserPhrase().
+     */
+    private final transient Map<String, PackedPhrase> mapPackedUserPhrases = new HashMap<>();
+    /**
+     * If true user phrases are serialized without their notes, see saveToStream().
+     */
+    private transient boolean serializeEmptyUserPhrases;
     private final StringProperties clientProperties = new StringProperties(this);
     private transient File file;
     private transient boolean saveNeeded = false;
@@ -439,7 +451,7 @@ public class Song implements Serializable, ClsChangeListener, SgsChangeListener,
     {
         checkNotNull(name);
 
-        Phrase p = mapUserPhrases.get(name);
+        Phrase p = getUserPhrase(name);
         if (p == null)
         {
             return null;
@@ -525,7 +537,13 @@ public class Song implements Serializable, ClsChangeListener, SgsChangeListener,
      */
     public synchronized Set<String> getUserPhraseNames()
     {
-        return mapUserPhrases.keySet();
+        if (mapPackedUserPhrases.isEmpty())
+        {
+            return mapUserPhrases.keySet();
+        }
+        var res = new HashSet<>(mapUserPhrases.keySet());
+        res.addAll(mapPackedUserPhrases.keySet());
+        return res;
     }
 
     /**
@@ -541,9 +559,58 @@ public class Song implements Serializable, ClsChangeListener, SgsChangeListener,
      */
     public synchronized Phrase getUserPhrase(String name)
     {
+        var pp = mapPackedUserPhrases.remove(name);
+        if (pp != null)
+        {
+            Phrase p = pp.toPhrase();
+            mapUserPhrases.put(name, p);
+            p.addPropertyChangeListener(this);
+        }
         return mapUserPhrases.get(name);
     }
 
+    /**
+     * Associate a packed user phrase to name, the phrase being decoded only when first needed by getUserPhrase().
+     * <p>
+     * Intended to be used while loading a song, e.g. to avoid decoding large user phrases which might not be used. Replace any existing user phrase for name.
+     * No undoable edit is created and no change event is fired: the song is not modified from the user point of view.
+     *
+     * @param name Can't be blank.
+     * @param pp   Can't be null.
+     */
+    public synchronized void setPackedUserPhrase(String name, PackedPhrase pp)
+    {
+        checkNotNull(name);
+        checkNotNull(pp);
+        checkArgument(!name.isBlank(), "name=%s", name);
+
+        var p = mapUserPhrases.remove(name);
+        if (p != null)
+        {
+            p.removePropertyChangeListener(this);
+        }
+        mapPackedUserPhrases.put(name, pp);
+    }
+
+    /**
+     * Get the user phrase associated to name as a PackedPhrase.
+     * <p>
+     * Contrary to getUserPhrase(), a user phrase set with setPackedUserPhrase() and not decoded yet remains packed.
+     *
+     * @param name
+     * @return Null if no phrase associated to name.
+     */
+    public synchronized PackedPhrase getPackedUserPhrase(String name)
+    {
+        var pp = mapPackedUserPhrases.get(name);
+        if (pp == null)
+        {
+            var p = mapUserPhrases.get(name);
+            pp = p == null ? null : new PackedPhrase(p);
+        }
+        return pp;
+    }
+
 
     public ChordLeadSheet getChordLeadSheet()
     {
@@ -817,16 +884,13 @@ public class Song implements Serializable, ClsChangeListener, SgsChangeListener,
         {
             throw new IllegalArgumentException("f=" + f);
         }
-        Song song = null;
+        Song song;
 
         // Read file
         try (var fis = new FileInputStream(f))
         {
-            XStream xstream = XStreamInstancesManager.getInstance().getLoadSongInstance();
-            Reader r = new BufferedReader(new InputStreamReader(fis, "UTF-8"));        // Needed to support special/accented chars
-            song = (Song) xstream.fromXML(r);
-
-        } catch (XStreamException | IOException e)
+            song = loadFromStream(fis);
+        } catch (IOException e)
         {
             throw new SongCreationException(e);
         }
@@ -842,6 +906,67 @@ public class Song implements Serializable, ClsChangeListener, SgsChangeListener,
         return song;
     }
 
+    /**
+     * Load a Song from an input stream (XML format).
+     * <p>
+     * Contrary to loadFromFile(), song file is not set and song is not registered by the SongFactory instance.
+     *
+     * @param is Not closed by this method.
+     * @return
+     * @throws org.jjazz.song.api.SongCreationException
+     */
+    static public Song loadFromStream(InputStream is) throws SongCreationException
+    {
+        checkNotNull(is);
+        try
+        {
+            XStream xstream = XStreamInstancesManager.getInstance().getLoadSongInstance();
+            Reader r = new BufferedReader(new InputStreamReader(is, "UTF-8"));        // Needed to support special/accented chars
+            return (Song) xstream.fromXML(r);
+        } catch (XStreamException | IOException e)
+        {
+            throw new SongCreationException(e);
+        }
+    }
+
+    /**
+     * Save this song to an output stream (XML format).
+     * <p>
+     * Song state is not changed, like saveToFile(f, true).
+     * <p>
+     * TODO: only user phrases have a dedicated XStream converter (see Phrase.XStreamConfig). Song, ChordLeadSheet and SongStructure are still
+     * serialized by XStream reflection, a streaming converter for them is a pending follow-up.
+     *
+     * @param os                 Not closed by this method.
+     * @param includeUserPhrases If false user phrases are saved without their notes (only name, channel and drums state), e.g. because notes are saved
+     *                           elsewhere.
+     * @throws IOException
+     */
+    public void saveToStream(OutputStream os, boolean includeUserPhrases) throws IOException
+    {
+        checkNotNull(os);
+        try
+        {
+            XStream xstream = XStreamInstancesManager.getInstance().getSaveSongInstance();
+            Writer w = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));        // Needed to support special/accented chars
+            synchronized (this)
+            {
+                serializeEmptyUserPhrases = !includeUserPhrases;
+                try
+                {
+                    xstream.toXML(this, w);
+                } finally
+                {
+                    serializeEmptyUserPhrases = false;
+                }
+            }
+        } catch (XStreamException e)
+        {
+            // Translate into an IOException to be handled by the Netbeans framework 
+            throw new IOException("XStream XML marshalling error", e);
+        }
+    }
+
     /**
      * Save this song to a file (XML format).
      * <p>
@@ -867,9 +992,7 @@ public class Song implements Serializable, ClsChangeListener, SgsChangeListener,
 
         try (FileOutputStream fos = new FileOutputStream(songFile))
         {
-            XStream xstream = XStreamInstancesManager.getInstance().getSaveSongInstance();
-            Writer w = new BufferedWriter(new OutputStreamWriter(fos, "UTF-8"));        // Needed to support special/accented chars
-            xstream.toXML(this, w);
+            saveToStream(fos, true);
             if (!isCopy)
             {
                 setName(Song.removeSongExtension(songFile.getName()));
@@ -882,14 +1005,6 @@ public class Song implements Serializable, ClsChangeListener, SgsChangeListener,
                 file = null;
             }
             throw e;
-        } catch (XStreamException e)
-        {
-            if (!isCopy)
-            {
-                file = null;
-            }
-            // Translate into an IOException to be handled by the Netbeans framework 
-            throw new IOException("XStream XML marshalling error", e);
         }
     }
 
@@ -1202,8 +1317,8 @@ public class Song implements Serializable, ClsChangeListener, SgsChangeListener,
         private List<String> spTags;
         private ChordLeadSheet spChordLeadSheet;
         private SongStructure spSongStructure;
-        // New since spVERSION 2
-        private Map<String, Phrase> spMapUserPhrases;
+        // New since spVERSION 2. Values are Phrase or PackedPhrase instances, which are saved the same way and always loaded as Phrase instances.
+        private Map<String, Serializable> spMapUserPhrases;
         // Until spVERSION 2
         private Properties spClientProperties;
         // Since spVERSION 3, replace spClientProperties
@@ -1220,7 +1335,21 @@ public class Song implements Serializable, ClsChangeListener, SgsChangeListener,
             // Since spVERSION 3
             spClientPropertiesV3 = s.clientProperties;
             // Since spVERSION 2
-            spMapUserPhrases = s.mapUserPhrases;
+            spMapUserPhrases = new HashMap<>();
+            synchronized (s)
+            {
+                for (var entry : s.mapUserPhrases.entrySet())
+                {
+                    Phrase p = entry.getValue();
+                    spMapUserPhrases.put(entry.getKey(), s.serializeEmptyUserPhrases ? new Phrase(p.getChannel(), p.isDrums()) : p);
+                }
+                // Don't decode the packed user phrases
+                for (var entry : s.mapPackedUserPhrases.entrySet())
+                {
+                    PackedPhrase pp = entry.getValue();
+                    spMapUserPhrases.put(entry.getKey(), s.serializeEmptyUserPhrases ? new Phrase(pp.getChannel(), pp.isDrums()) : pp);
+                }
+            }
         }
 
         private Object readResolve() throws ObjectStreamException
@@ -1235,7 +1364,7 @@ public class Song implements Serializable, ClsChangeListener, SgsChangeListener,
             {
                 for (String name : spMapUserPhrases.keySet())
                 {
-                    Phrase p = spMapUserPhrases.get(name);
+                    Phrase p = (Phrase) spMapUserPhrases.get(name);
                     try
                     {
                         newSong.setUserPhrase(name, p);
@@ -104,6 +104,10 @@ public class SongStructureImpl implements SongStructure, Serializable, PropertyC
      * Manage updates from parentChordLeadSheet
      */
     private transient SgsUpdater sgsUpdater;
+    /**
+     * Lookup index of songParts, built on demand and reset each time songParts or their bar ranges change.
+     */
+    private transient SptIndex sptIndex;
     private static final Logger LOGGER = Logger.getLogger(SongStructureImpl.class.getSimpleName());
     private static int DEBUG_UNDOEDIT_ID = 0;
 
@@ -176,25 +180,8 @@ public class SongStructureImpl implements SongStructure, Serializable, PropertyC
             return FloatRange.EMPTY_FLOAT_RANGE;
         }
 
-        float startPos = -1;
-        float endPos = -1;
-        for (SongPart spt : getSongParts())     // Synchronized
-        {
-            TimeSignature ts = spt.getRhythm().getTimeSignature();
-            IntRange ir = rg.getIntersection(spt.getBarRange());
-            if (ir.isEmpty())
-            {
-                continue;
-            }
-            if (startPos == -1)
-            {
-                startPos = toPositionInNaturalBeats(ir.from);
-                endPos = startPos + ir.size() * ts.getNbNaturalBeats();
-            } else
-            {
-                endPos += ir.size() * ts.getNbNaturalBeats();
-            }
-        }
+        float startPos = toPositionInNaturalBeats(rg.from);
+        float endPos = toPositionInNaturalBeats(rg.to + 1);
         return new FloatRange(startPos, endPos);
     }
 
@@ -385,15 +372,9 @@ public class SongStructureImpl implements SongStructure, Serializable, PropertyC
     @Override
     public synchronized SongPart getSongPart(int absoluteBarIndex)
     {
-        int abi = absoluteBarIndex;
-        for (SongPart spt : songParts)
-        {
-            if (spt.getBarRange().contains(abi))
-            {
-                return spt;
-            }
-        }
-        return null;
+        var index = getSptIndex();
+        int i = index.indexOfBar(absoluteBarIndex);
+        return i == -1 ? null : index.spts[i];
     }
 
     @Override
@@ -409,20 +390,18 @@ public class SongStructureImpl implements SongStructure, Serializable, PropertyC
         {
             throw new IllegalArgumentException("posInBeats=" + posInBeats);
         }
-        for (SongPart spt : getSongParts())     // Synchronized
+        var index = getSptIndex();      // Synchronized
+        int i = index.indexOfBeat(posInBeats);
+        if (i == -1)
         {
-            FloatRange rg = toBeatRange(spt.getBarRange());
-            if (rg.contains(posInBeats, true))
-            {
-                TimeSignature ts = spt.getRhythm().getTimeSignature();
-                float beatInSpt = posInBeats - rg.from;
-                int barOffset = (int) Math.floor(beatInSpt / ts.getNbNaturalBeats());
-                int bar = spt.getStartBarIndex() + barOffset;
-                float beatInBar = posInBeats - rg.from - barOffset * ts.getNbNaturalBeats();
-                return new Position(bar, beatInBar);
-            }
+            return null;
         }
-        return null;
+        float nbBeatsPerBar = index.nbBeatsPerBar[i];
+        float beatInSpt = posInBeats - index.startBeats[i];
+        int barOffset = (int) Math.floor(beatInSpt / nbBeatsPerBar);
+        int bar = index.startBars[i] + barOffset;
+        float beatInBar = beatInSpt - barOffset * nbBeatsPerBar;
+        return new Position(bar, beatInBar);
     }
 
     @Override
@@ -432,31 +411,14 @@ public class SongStructureImpl implements SongStructure, Serializable, PropertyC
         {
             throw new IllegalArgumentException("barIndex=" + barIndex);
         }
-        float posInBeats = 0;
+        var index = getSptIndex();
         if (barIndex == getSizeInBars())
         {
             // Special case : barIndex is the bar right after the end of the songStructure
-            for (SongPart spt : songParts)
-            {
-                TimeSignature ts = spt.getParentSection().getData().getTimeSignature();
-                posInBeats += spt.getNbBars() * ts.getNbNaturalBeats();
-            }
-        } else
-        {
-            // Normal case: it's a bar within the songStructure
-            SongPart spt = getSongPart(barIndex);
-            for (SongPart spti : songParts)
-            {
-                TimeSignature ts = spti.getParentSection().getData().getTimeSignature();
-                if (spti == spt)
-                {
-                    posInBeats += (barIndex - spt.getStartBarIndex()) * ts.getNbNaturalBeats();
-                    break;
-                }
-                posInBeats += spti.getNbBars() * ts.getNbNaturalBeats();
-            }
+            return index.startBeats[index.spts.length];
         }
-        return posInBeats;
+        int i = index.indexOfBar(barIndex);
+        return index.startBeats[i] + (barIndex - index.startBars[i]) * index.nbBeatsPerBar[i];
     }
 
     @Override
@@ -763,6 +725,7 @@ public class SongStructureImpl implements SongStructure, Serializable, PropertyC
                 // Update songParts and set new container
                 int rpIndex = songParts.indexOf(oldSpt);
                 songParts.set(rpIndex, newSpt);
+                sptIndex = null;
                 ((SongPartImpl) newSpt).setContainer(this);
 
                 // Update mapTsLastRhythm
@@ -793,6 +756,7 @@ public class SongStructureImpl implements SongStructure, Serializable, PropertyC
                 {
                     // Restore the state of the songStructure
                     songParts = new ArrayList<>(oldSongParts);      // Must use a copy to make sure oldSongParts remains unaffected
+                    sptIndex = null;
                     mapTsLastRhythm = new HashMap<>(oldMapTsRhythm);           // Must use a copy to make sure map remains unaffected            
                     // restore the container of the replacing songparts
                     for (int i = 0; i < newSpts.size(); i++)
@@ -818,6 +782,7 @@ public class SongStructureImpl implements SongStructure, Serializable, PropertyC
                 {
                     // Restore the state of the songStructure
                     songParts = new ArrayList<>(newSongParts);      // Must use a copy to make sure newSongParts remains unaffected
+                    sptIndex = null;
                     mapTsLastRhythm = new HashMap<>(newMapTsRhythm);          // Must use a copy to make sure map remains unaffected                        
                     // Change the container of the replacing songparts
                     for (int i = 0; i < newSpts.size(); i++)
@@ -1288,6 +1253,7 @@ public class SongStructureImpl implements SongStructure, Serializable, PropertyC
      */
     private void updateStartBarIndexes()
     {
+        sptIndex = null;
         int barIndex = 0;
         for (SongPart spt : songParts)
         {
@@ -1301,6 +1267,15 @@ public class SongStructureImpl implements SongStructure, Serializable, PropertyC
     }
 
 
+    private synchronized SptIndex getSptIndex()
+    {
+        if (sptIndex == null)
+        {
+            sptIndex = new SptIndex(songParts);
+        }
+        return sptIndex;
+    }
+
     /**
      * Make sure change is authorized by all listeners.
      *
@@ -1350,6 +1325,71 @@ public class SongStructureImpl implements SongStructure, Serializable, PropertyC
         }
     }
 
+    /**
+     * Song parts start bar and start position in natural beats, for binary search lookups.
+     */
+    private static class SptIndex
+    {
+
+        private final SongPart[] spts;
+        private final int[] startBars;
+        /**
+         * One more value than spts: the last value is the song size in natural beats.
+         */
+        private final float[] startBeats;
+        private final float[] nbBeatsPerBar;
+
+        private SptIndex(List<SongPart> songParts)
+        {
+            int n = songParts.size();
+            spts = songParts.toArray(SongPart[]::new);
+            startBars = new int[n];
+            startBeats = new float[n + 1];
+            nbBeatsPerBar = new float[n];
+            float posInBeats = 0;
+            for (int i = 0; i < n; i++)
+            {
+                SongPart spt = spts[i];
+                startBars[i] = spt.getStartBarIndex();
+                startBeats[i] = posInBeats;
+                nbBeatsPerBar[i] = spt.getRhythm().getTimeSignature().getNbNaturalBeats();
+                posInBeats += spt.getNbBars() * nbBeatsPerBar[i];
+            }
+            startBeats[n] = posInBeats;
+        }
+
+        /**
+         *
+         * @param barIndex
+         * @return The index of the SongPart which contains barIndex, or -1.
+         */
+        private int indexOfBar(int barIndex)
+        {
+            int i = Arrays.binarySearch(startBars, barIndex);
+            if (i < 0)
+            {
+                i = -i - 2;         // Index of the last SongPart starting before barIndex
+            }
+            return (i >= 0 && barIndex < startBars[i] + spts[i].getNbBars()) ? i : -1;
+        }
+
+        /**
+         *
+         * @param posInBeats
+         * @return The index of the SongPart which contains posInBeats, or -1.
+         */
+        private int indexOfBeat(float posInBeats)
+        {
+            int n = spts.length;
+            int i = Arrays.binarySearch(startBeats, 0, n, posInBeats);
+            if (i < 0)
+            {
+                i = -i - 2;         // Index of the last SongPart starting before posInBeats
+            }
+            return (i >= 0 && posInBeats < startBeats[i + 1]) ? i : -1;
+        }
+    }
+
     /**
      * This enables XStream instance configuration even for private classes or classes from non-public packages of Netbeans modules.
      */
@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.jjazz.chordleadsheet.api.UnsupportedEditException;
+import org.jjazz.harmony.api.Position;
 import org.jjazz.harmony.api.TimeSignature;
 import org.jjazz.rhythm.api.Rhythm;
 import org.jjazz.rhythmdatabase.api.DefaultRhythmDatabase;
@@ -259,6 +260,55 @@ public class SongStructureImplTest
         assertTrue(spt == spt1);
         spt = sgs.getSongPart(15);
         assertTrue(spt == spt2);
+        assertTrue(sgs.getSongPart(20) == null);
+    }
+
+    /**
+     * Test of getSongPart, toPosition and toPositionInNaturalBeats methods after changes, of class SongStructure.
+     */
+    @Test
+    public void testPositionLookups()
+    {
+        System.out.println("\n============ Test positionLookups");
+        checkPositionLookups();
+
+        sgs.resizeSongParts(msm(spt1, 2));
+        checkPositionLookups();
+        assertTrue(sgs.getSongPart(12) == spt2);
+
+        spt3.setStartBarIndex(spt1.getStartBarIndex());
+        spt3.setNbBars(spt1.getNbBars());
+        try
+        {
+            sgs.replaceSongParts(Arrays.asList((SongPart) spt1), Arrays.asList((SongPart) spt3));
+        } catch (UnsupportedEditException ex)
+        {
+            Exceptions.printStackTrace(ex);
+        }
+        checkPositionLookups();
+        assertTrue(sgs.getSongPart(10) == spt3);
+    }
+
+    /**
+     * Compare lookups with values computed from the song parts.
+     */
+    private void checkPositionLookups()
+    {
+        float posInBeats = 0;
+        for (SongPart spt : sgs.getSongParts())
+        {
+            float nbBeats = spt.getRhythm().getTimeSignature().getNbNaturalBeats();
+            for (int bar = spt.getStartBarIndex(); bar <= spt.getBarRange().to; bar++)
+            {
+                assertTrue(sgs.getSongPart(bar) == spt);
+                assertEquals(posInBeats, sgs.toPositionInNaturalBeats(bar), 0);
+                assertEquals(new Position(bar, 0), sgs.toPosition(posInBeats));
+                assertEquals(new Position(bar, 1.5f), sgs.toPosition(posInBeats + 1.5f));
+                posInBeats += nbBeats;
+            }
+        }
+        assertEquals(posInBeats, sgs.toPositionInNaturalBeats(sgs.getSizeInBars()), 0);
+        assertTrue(sgs.toPosition(posInBeats) == null);
     }
 
     private List<SongPart> ml(SongPart rp)
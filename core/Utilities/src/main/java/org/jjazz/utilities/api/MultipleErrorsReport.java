@@ -54,4 +54,24 @@ public class MultipleErrorsReport
      * [1] = "bb.sty: invalid low key parameter value=182 at byte 0x1029. Authorized value range is 0-127."
      */
     public List<String> individualErrorMessages = new ArrayList<>();
+
+    /**
+     * Add the errors of another report to this report.
+     * <p>
+     * Individual error messages are appended. Primary and secondary messages are replaced only if other's primary message is not null.
+     *
+     * @param other
+     */
+    public synchronized void merge(MultipleErrorsReport other)
+    {
+        synchronized (other)
+        {
+            individualErrorMessages.addAll(other.individualErrorMessages);
+            if (other.primaryErrorMessage != null)
+            {
+                primaryErrorMessage = other.primaryErrorMessage;
+                secondaryErrorMessage = other.secondaryErrorMessage;
+            }
+        }
+    }
 }
@@ -44,7 +44,10 @@ public class ObservableProperties<T> implements Serializable
 
     private Map<String, T> properties;
     private Object owner;
-    private transient final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+    /**
+     * Lazily created: most instances are never listened to.
+     */
+    private transient PropertyChangeSupport pcs;
     private static final Logger LOGGER = Logger.getLogger(ObservableProperties.class.getSimpleName());
 
     public ObservableProperties()
@@ -204,6 +207,10 @@ public class ObservableProperties<T> implements Serializable
      */
     public void clear()
     {
+        if (properties == null)
+        {
+            return;
+        }
         for (String prop : properties.keySet().toArray(String[]::new))
         {
             put(prop, null);  // this will fire an event
@@ -211,24 +218,30 @@ public class ObservableProperties<T> implements Serializable
     }
 
 
-    public void addPropertyChangeListener(PropertyChangeListener listener)
+    public synchronized void addPropertyChangeListener(PropertyChangeListener listener)
     {
-        pcs.addPropertyChangeListener(listener);
+        getPcs().addPropertyChangeListener(listener);
     }
 
-    public void removePropertyChangeListener(PropertyChangeListener listener)
+    public synchronized void removePropertyChangeListener(PropertyChangeListener listener)
     {
-        pcs.removePropertyChangeListener(listener);
+        if (pcs != null)
+        {
+            pcs.removePropertyChangeListener(listener);
+        }
     }
 
-    public void addPropertyChangeListener(String property, PropertyChangeListener listener)
+    public synchronized void addPropertyChangeListener(String property, PropertyChangeListener listener)
     {
-        pcs.addPropertyChangeListener(property, listener);
+        getPcs().addPropertyChangeListener(property, listener);
     }
 
-    public void removePropertyChangeListener(String property, PropertyChangeListener listener)
+    public synchronized void removePropertyChangeListener(String property, PropertyChangeListener listener)
     {
-        pcs.removePropertyChangeListener(property, listener);
+        if (pcs != null)
+        {
+            pcs.removePropertyChangeListener(property, listener);
+        }
     }
 
     // =============================================================================================
@@ -237,6 +250,19 @@ public class ObservableProperties<T> implements Serializable
 
     protected void firePropertyChange(String prop, T oldValue, T newValue)
     {
-        pcs.firePropertyChange(prop, oldValue, newValue);
+        PropertyChangeSupport p = pcs;
+        if (p != null)
+        {
+            p.firePropertyChange(prop, oldValue, newValue);
+        }
+    }
+
+    private PropertyChangeSupport getPcs()
+    {
+        if (pcs == null)
+        {
+            pcs = new PropertyChangeSupport(this);
+        }
+        return pcs;
     }
 }
@@ -54,6 +54,7 @@ import org.jjazz.rhythm.api.rhythmparameters.RP_SYS_Marker;
 import org.jjazz.rhythm.api.rhythmparameters.RP_SYS_Mute;
 import org.jjazz.rhythm.api.rhythmparameters.RP_SYS_TempoFactor;
 import org.jjazz.rhythmmusicgeneration.spi.MusicGenerator;
+import org.jjazz.rhythmmusicgeneration.api.GenerationCancelToken;
 import org.jjazz.songcontext.api.SongContext;
 import org.jjazz.utilities.api.ResUtil;
 import org.jjazz.yamjjazz.rhythm.api.AccType;
@@ -97,12 +98,18 @@ public class YamJJazzAdaptedRhythmImpl implements YamJJazzRhythm, AdaptedRhythm,
     // ==================================================================================================
     @Override
     public HashMap<RhythmVoice, Phrase> generateMusic(SongContext context) throws MusicGenerationException
+    {
+        return generateMusic(context, GenerationCancelToken.NONE);
+    }
+
+    @Override
+    public HashMap<RhythmVoice, Phrase> generateMusic(SongContext context, GenerationCancelToken cancelToken) throws MusicGenerationException
     {
         if (generator == null)
         {
             generator = new YamJJazzRhythmGenerator(this);
         }
-        return generator.generateMusic(context);
+        return generator.generateMusic(context, cancelToken);
     }
 
     // ==================================================================================================
@@ -236,6 +243,10 @@ public class YamJJazzAdaptedRhythmImpl implements YamJJazzRhythm, AdaptedRhythm,
             return;
         }
         newStyle = null;
+        if (generator != null)
+        {
+            generator.clearCache();
+        }
         pcs.firePropertyChange(PROP_RESOURCES_LOADED, true, false);
     }
 
@@ -245,6 +256,13 @@ public class YamJJazzAdaptedRhythmImpl implements YamJJazzRhythm, AdaptedRhythm,
         return newStyle != null;
     }
 
+    @Override
+    public long getResourcesSizeEstimate()
+    {
+        Style st = newStyle;
+        return st == null ? 0 : st.getMusicDataSizeEstimate();
+    }
+
     @Override
     public List<RhythmVoice> getRhythmVoices()
     {
@@ -26,6 +26,7 @@ import org.jjazz.yamjjazz.rhythm.api.YamJJazzRhythm;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -53,6 +54,7 @@ import org.jjazz.rhythmmusicgeneration.api.AccentProcessor.HoldShotMode;
 import org.jjazz.rhythmmusicgeneration.api.AnticipatedChordProcessor;
 import org.jjazz.rhythm.api.RhythmVoiceDelegate;
 import org.jjazz.rhythmmusicgeneration.api.ChordSequence;
+import org.jjazz.rhythmmusicgeneration.api.GenerationCancelToken;
 import org.jjazz.rhythmmusicgeneration.api.SongChordSequence;
 import org.jjazz.phrase.api.Grid;
 import org.jjazz.phrase.api.NoteEvent;
@@ -98,9 +100,29 @@ public class YamJJazzRhythmGenerator
 {
 
     public static boolean ENABLE_DRUM_KEY_MAPPING = true;
+    /**
+     * If true reuse the phrases generated for a short chord sequence when the same SourcePhraseSet is picked with unchanged chords.
+     */
+    public static boolean ENABLE_GENERATION_CACHE = true;
+    private static final int GENERATION_CACHE_MAX_SIZE = 2000;
     private YamJJazzRhythm rhythm;
     private SongContext contextOriginal;
     private SongContext contextWork;
+    /**
+     * The midi channel and instrument of each RhythmVoice for the current generation.
+     */
+    private List<Object> midiMixSignature;
+    /**
+     * The phrases generated for each short chord sequence, least recently used first.
+     */
+    private final LinkedHashMap<ShortChordSeqKey, HashMap<AccType, Phrase>> generationCache = new LinkedHashMap<>(64, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ShortChordSeqKey, HashMap<AccType, Phrase>> eldest)
+        {
+            return size() > GENERATION_CACHE_MAX_SIZE;
+        }
+    };
 
     /**
      * The Chord Sequence with all the chords.
@@ -120,11 +142,25 @@ public class YamJJazzRhythmGenerator
 
     public HashMap<RhythmVoice, Phrase> generateMusic(SongContext contextOrig) throws MusicGenerationException
     {
-        if (contextOrig == null)
+        return generateMusic(contextOrig, GenerationCancelToken.NONE);
+    }
+
+    /**
+     * Generate the music, cancelToken is checked between each chord sequence and between each post-processing step.
+     *
+     * @param contextOrig
+     * @param cancelToken
+     * @return
+     * @throws MusicGenerationException
+     */
+    public HashMap<RhythmVoice, Phrase> generateMusic(SongContext contextOrig, GenerationCancelToken cancelToken) throws MusicGenerationException
+    {
+        if (contextOrig == null || cancelToken == null)
         {
-            throw new NullPointerException("contextOrig=" + contextOrig);   //NOI18N
+            throw new NullPointerException("contextOrig=" + contextOrig + " cancelToken=" + cancelToken);   //NOI18N
         }
         contextOriginal = contextOrig;
+        cancelToken.checkCancelled();
 
 
         // Prepare a working context because SongStructure/ChordLeadsheet might be modified by preprocessFillParameter
@@ -135,6 +171,9 @@ public class YamJJazzRhythmGenerator
         // The working context 
         this.contextWork = new SongContext(songCopy, contextOriginal.getMidiMix(), contextOriginal.getBarRange());
 
+        // Used by the generation cache
+        midiMixSignature = computeMidiMixSignature();
+
         // Build the main chord sequence
         songChordSequence = new SongChordSequence(songCopy, contextWork.getBarRange());   // Throw UserErrorGenerationException but no risk: will have a chord at beginning. Handle alternate chord symbols.       
 
@@ -144,19 +183,22 @@ public class YamJJazzRhythmGenerator
         });
 
         // The final result to fill in
-        List<ChordSeqPhrases> chordSeqPhrases = getAllPhrasesAllChordSequences();
+        List<ChordSeqPhrases> chordSeqPhrases = getAllPhrasesAllChordSequences(cancelToken);
 
         // Get a simplified version: merge all ChordSequences which use our rhythm
         List<ChordSeqPhrases> chordSeqPhrasesMerged = mergeChordSequences(chordSeqPhrases);
 
         // Perfom post process operations
+        cancelToken.checkCancelled();
         processAnticipationsAndAccents(chordSeqPhrasesMerged);
 
         // Apply the Intensity parameter 
+        cancelToken.checkCancelled();
         processIntensityParameter(chordSeqPhrasesMerged);
 
         // Post process bass line for in-bar chord symbols
         processBassLine(chordSeqPhrasesMerged);
+        cancelToken.checkCancelled();
 
         // Fill the resulting phrase for each RhythmVoice    
         HashMap<RhythmVoice, Phrase> res = new HashMap<>();
@@ -191,6 +233,19 @@ public class YamJJazzRhythmGenerator
         return res;
     }
 
+    /**
+     * Discard the phrases reused between generations.
+     * <p>
+     * Should be called when the rhythm resources are released.
+     */
+    public void clearCache()
+    {
+        synchronized (generationCache)
+        {
+            generationCache.clear();
+        }
+    }
+
     // ===============================================================================
     // Private methods
     // ===============================================================================
@@ -199,10 +254,11 @@ public class YamJJazzRhythmGenerator
      * <p>
      * Create one SimpleChordSequence for several contiguous parts sharing the same rhythm and same style part.
      *
+     * @param cancelToken Checked before each chord sequence
      * @return
      * @throws org.jjazz.rhythm.api.MusicGenerationException
      */
-    private List<ChordSeqPhrases> getAllPhrasesAllChordSequences() throws MusicGenerationException
+    private List<ChordSeqPhrases> getAllPhrasesAllChordSequences(GenerationCancelToken cancelToken) throws MusicGenerationException
     {
         LOGGER.fine("getAllPhrasesAllChordSequences()--");
 
@@ -214,6 +270,8 @@ public class YamJJazzRhythmGenerator
 
         for (SplitResult<String> splitResult : splitResults)
         {
+            cancelToken.checkCancelled();
+
             // Generate music for each chord sequence
             SimpleChordSequence cSeq = splitResult.simpleChordSequence;
             String rpValue = splitResult.rpValue;
@@ -307,7 +365,9 @@ public class YamJJazzRhythmGenerator
      * Get all phrases for each StylePart's AccType adjusted to a "short ChordSequence".
      * <p>
      * Short chordSequence means its size is equal or less than the stylePart.<br>
-     * If there are several SourcePhraseSet alternatives for the given stylePart and complexity, we select
+     * If there are several SourcePhraseSet alternatives for the given stylePart and complexity, we select one randomly at each call. If
+     * ENABLE_GENERATION_CACHE is true, the phrases adapted from the picked SourcePhraseSet are reused when the same chords and Midi mix settings
+     * were already processed with it.
      *
      * @param stylePart
      * @param complexity
@@ -336,6 +396,24 @@ public class YamJJazzRhythmGenerator
         SourcePhraseSet sps = srp.pick(shortcSeq.getBarRange().from);
 
 
+        // The random pick above is redone at each generation, only the phrase adaptation for the picked SourcePhraseSet can be reused
+        ShortChordSeqKey key = null;
+        if (ENABLE_GENERATION_CACHE)
+        {
+            key = computeShortChordSeqKey(stylePart, sps, shortcSeq);
+            HashMap<AccType, Phrase> cached;
+            synchronized (generationCache)
+            {
+                cached = generationCache.get(key);
+            }
+            if (cached != null)
+            {
+                LOGGER.log(Level.FINE, "getAllAccTypesPhrasesOneShortChordSequence() cache hit shortcSeq={0}", shortcSeq);
+                return copyPhrases(cached);     // Returned phrases will be modified by caller
+            }
+        }
+
+
         // Get the phrase for each AccType = bass, chord1, drums, etc.
         for (AccType at : stylePart.getAccTypes())
         {
@@ -343,9 +421,41 @@ public class YamJJazzRhythmGenerator
             mapAccTypePhrase.put(at, p);
         }
 
+
+        if (key != null)
+        {
+            var copy = copyPhrases(mapAccTypePhrase);
+            synchronized (generationCache)
+            {
+                generationCache.put(key, copy);
+            }
+        }
+
         return mapAccTypePhrase;
     }
 
+    /**
+     * Get the cache key for getAllAccTypesPhrasesOneShortChordSequence().
+     *
+     * @param stylePart
+     * @param sps       The picked SourcePhraseSet
+     * @param shortcSeq
+     * @return
+     */
+    private ShortChordSeqKey computeShortChordSeqKey(StylePart stylePart, SourcePhraseSet sps, SimpleChordSequence shortcSeq)
+    {
+        SongStructure ss = contextWork.getSong().getSongStructure();
+        List<ChordKey> chords = new ArrayList<>();
+        for (var cliCs : shortcSeq)
+        {
+            chords.add(new ChordKey(new Position(cliCs.getPosition()), cliCs.getData()));
+        }
+        return new ShortChordSeqKey(stylePart, sps, shortcSeq.getBarRange(), shortcSeq.getTimeSignature(), chords,
+                ss.toPositionInNaturalBeats(shortcSeq.getBarRange().from),
+                ss.toPositionInNaturalBeats(shortcSeq.getBarRange().to + 1),
+                midiMixSignature);
+    }
+
     /**
      * Get the style's source phrase for the specified style's AccType for a "short chordSequence".
      * <p>
@@ -1303,6 +1413,31 @@ public class YamJJazzRhythmGenerator
         return res;
     }
 
+    private HashMap<AccType, Phrase> copyPhrases(HashMap<AccType, Phrase> mapAccTypePhrase)
+    {
+        HashMap<AccType, Phrase> res = new HashMap<>();
+        mapAccTypePhrase.forEach((at, p) -> res.put(at, p.clone()));
+        return res;
+    }
+
+    /**
+     * Get the Midi mix settings which impact the generated phrases: destination channel and instrument (for drums key map) of each RhythmVoice.
+     *
+     * @return
+     */
+    private List<Object> computeMidiMixSignature()
+    {
+        List<Object> res = new ArrayList<>();
+        for (RhythmVoice rv : rhythm.getRhythmVoices())
+        {
+            int channel = getChannelFromMidiMix(rv);
+            var insMix = channel == -1 ? null : contextWork.getMidiMix().getInstrumentMix(channel);
+            res.add(channel);
+            res.add(insMix == null ? null : insMix.getInstrument());
+        }
+        return res;
+    }
+
     private int getVelocityShiftFromRpIntensity(int rpValue)
     {
         return 3 * rpValue;
@@ -1360,6 +1495,22 @@ public class YamJJazzRhythmGenerator
     // =====================================================================================================================
     // Inner classes
     // =====================================================================================================================
+    private record ChordKey(Position position, ExtChordSymbol ecs)
+            {
+
+    }
+
+    /**
+     * All the data which impact the phrases generated by getAllAccTypesPhrasesOneShortChordSequence() once the SourcePhraseSet is picked.
+     * <p>
+     * SourcePhraseSet is compared by identity.
+     */
+    private record ShortChordSeqKey(StylePart stylePart, SourcePhraseSet sps, IntRange barRange, TimeSignature ts, List<ChordKey> chords,
+            float startPosInBeats, float endPosInBeats, List<Object> midiMixSignature)
+            {
+
+    }
+
     private static class ChordSeqPhrases
     {
 
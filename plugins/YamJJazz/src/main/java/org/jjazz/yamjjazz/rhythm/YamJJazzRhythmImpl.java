@@ -51,6 +51,7 @@ import org.jjazz.rhythm.api.RhythmVoice;
 import org.jjazz.rhythm.api.TempoRange;
 import org.jjazz.songcontext.api.SongContext;
 import org.jjazz.rhythmmusicgeneration.spi.MusicGenerator;
+import org.jjazz.rhythmmusicgeneration.api.GenerationCancelToken;
 import org.jjazz.rhythm.api.rhythmparameters.RP_STD_Fill;
 import org.jjazz.rhythm.api.rhythmparameters.RP_STD_Intensity;
 import org.jjazz.rhythm.api.rhythmparameters.RP_STD_Variation;
@@ -327,12 +328,18 @@ public class YamJJazzRhythmImpl implements YamJJazzRhythm, MusicGenerator
     // ==================================================================================================
     @Override
     public HashMap<RhythmVoice, Phrase> generateMusic(SongContext context) throws MusicGenerationException
+    {
+        return generateMusic(context, GenerationCancelToken.NONE);
+    }
+
+    @Override
+    public HashMap<RhythmVoice, Phrase> generateMusic(SongContext context, GenerationCancelToken cancelToken) throws MusicGenerationException
     {
         if (generator == null)
         {
             generator = new YamJJazzRhythmGenerator(this);
         }
-        return generator.generateMusic(context);
+        return generator.generateMusic(context, cancelToken);
     }
 
     // ================================================================================================
@@ -345,6 +352,12 @@ public class YamJJazzRhythmImpl implements YamJJazzRhythm, MusicGenerator
         return spMainA == null ? false : spMainA.isMusicLoaded();
     }
 
+    @Override
+    public long getResourcesSizeEstimate()
+    {
+        return style.getMusicDataSizeEstimate();
+    }
+
     /**
      * If StyleParts Phrases are not loaded, load them.
      * <p>
@@ -391,6 +404,10 @@ public class YamJJazzRhythmImpl implements YamJJazzRhythm, MusicGenerator
             StylePart sp = style.getStylePart(type);
             sp.clearMusicData(-1);
         }
+        if (generator != null)
+        {
+            generator.clearCache();
+        }
         pcs.firePropertyChange(PROP_RESOURCES_LOADED, true, false);
     }
 
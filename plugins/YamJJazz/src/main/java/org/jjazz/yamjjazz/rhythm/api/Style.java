@@ -74,6 +74,10 @@ public class Style
     private final SInt sInt = new SInt();
     private final HashSet<AccType> returnedAccTypes = new HashSet<>();         // Internal state data, set and used by getAccType(channel)
 
+    /**
+     * Estimated memory size in bytes of a NoteEvent, including its Note and its client properties.
+     */
+    private static final int NOTE_SIZE_ESTIMATE = 200;
     private static final Logger LOGGER = Logger.getLogger(Style.class.getSimpleName());
 
     /**
@@ -119,6 +123,21 @@ public class Style
         return result;
     }
 
+    /**
+     * Estimate the memory used by the music data of the StyleParts.
+     *
+     * @return A size in bytes, 0 if music data is not loaded
+     */
+    public long getMusicDataSizeEstimate()
+    {
+        long nbNotes = 0;
+        for (StylePart sp : mapTypeStylePart.values())
+        {
+            nbNotes += sp.getMusicDataNbNotes();
+        }
+        return nbNotes * NOTE_SIZE_ESTIMATE;
+    }
+
     public SInt getSInt()
     {
         return sInt;
@@ -255,6 +255,27 @@ public class StylePart
         return b;
     }
 
+    /**
+     * The number of notes of all the SourcePhrases of this StylePart.
+     *
+     * @return 0 if music data is not loaded
+     */
+    public int getMusicDataNbNotes()
+    {
+        int res = 0;
+        for (List<SourcePhraseSet> spsList : mapComplexity_PhraseList.values())
+        {
+            for (SourcePhraseSet sps : spsList)
+            {
+                for (int channel : sps.getSourceChannels())
+                {
+                    res += sps.getPhrase(channel).size();
+                }
+            }
+        }
+        return res;
+    }
+
     /**
      * Remove the music data for the specified complexity level.
      * <p>
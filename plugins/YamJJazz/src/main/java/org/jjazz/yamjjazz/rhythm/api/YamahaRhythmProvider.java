@@ -121,73 +121,55 @@ public class YamahaRhythmProvider implements RhythmProvider
         }
 
 
-        // Reset data
-        fileRhythms = new ArrayList<>();
+        // Read the rhythm files in parallel
+        fileRhythms = new ArrayList<>(readFastAll(getFileRhythmFiles(), errRpt));
 
-
-        // Get the default rhythms
-        for (File f : getDefaultRhythmFiles())
+        if (!errRpt.individualErrorMessages.isEmpty())
         {
-            Rhythm r;
-            try
-            {
-                r = readFast(f);
-            } catch (IOException ex)
-            {
-                LOGGER.log(Level.WARNING, "getFileRhythms() ex={0}", ex.getLocalizedMessage());
-                errRpt.individualErrorMessages.add(ex.getLocalizedMessage());
-                continue;
-            }
-            fileRhythms.add(r);
+            errRpt.primaryErrorMessage = errRpt.individualErrorMessages.size() + " rhythm files could not be read.";
+            errRpt.secondaryErrorMessage = "Rhythm Provider: YamJJazz";
         }
 
+        return new ArrayList<>(fileRhythms);
+    }
+
+    @Override
+    public List<File> getFileRhythmFiles()
+    {
+        // Get the default rhythms
+        List<File> res = new ArrayList<>(getDefaultRhythmFiles());
+
 
         // Check user rhythm dir is available
         File rDir = RhythmDirsLocator.getDefault().getUserRhythmsDirectory();
         if (!rDir.isDirectory())
         {
-            LOGGER.log(Level.WARNING, "getFileRhythms() RhythmProvider={0} - Rhythm file directory does not exist : {1}", new Object[]
+            LOGGER.log(Level.WARNING, "getFileRhythmFiles() RhythmProvider={0} - Rhythm file directory does not exist : {1}", new Object[]
             {
                 info.getName(),
                 rDir.getAbsolutePath()
             });
-            return fileRhythms;
+            return res;
         }
 
 
         // Collect all the user-provided rhythm files (including .yjz files to be able to exclude base styles)
         ExtensionFileFilter specialFilter = new ExtensionFileFilter(YamJJazzRhythmProvider.FILE_EXTENSION, getSupportedFileExtensions());
         HashSet<Path> userRhythmPaths = Utilities.listFiles(rDir, specialFilter, PREFIX_IGNORED_SUBDIR, SUBDIR_MAX_DEPTH);
-        LOGGER.log(Level.FINE, "getFileRhythms()   userRhythmPaths={0}", userRhythmPaths);
+        LOGGER.log(Level.FINE, "getFileRhythmFiles()   userRhythmPaths={0}", userRhythmPaths);
 
 
         // Don't add it it's the style is just a base style of a .yjz file
         removeYjzAndTheirBaseStyles(userRhythmPaths);
 
 
-        // Read the user rhythm files
-        for (Path path : userRhythmPaths)
-        {
-            Rhythm r;
-            try
-            {
-                r = readFast(path.toFile());
-            } catch (IOException ex)
-            {
-                LOGGER.log(Level.WARNING, "getFileRhythms() ex={0}", ex.getLocalizedMessage());
-                errRpt.individualErrorMessages.add(ex.getLocalizedMessage());
-                continue;
-            }
-            fileRhythms.add(r);
-        }
-
-        if (!errRpt.individualErrorMessages.isEmpty())
-        {
-            errRpt.primaryErrorMessage = errRpt.individualErrorMessages.size() + " rhythm files could not be read.";
-            errRpt.secondaryErrorMessage = "Rhythm Provider: YamJJazz";
-        }
+        // Sort files to get a deterministic order
+        userRhythmPaths.stream()
+                .sorted()
+                .map(p -> p.toFile())
+                .forEach(f -> res.add(f));
 
-        return new ArrayList<>(fileRhythms);
+        return res;
     }
 
     /**